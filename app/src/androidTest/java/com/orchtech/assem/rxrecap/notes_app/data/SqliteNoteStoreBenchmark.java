@@ -0,0 +1,110 @@
+package com.orchtech.assem.rxrecap.notes_app.data;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.orchtech.assem.rxrecap.notes_app.network.model.Note;
+import com.orchtech.assem.rxrecap.notes_app.view.PagedNoteList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Time to first note at 10k notes, read from the store
+ * against decoding and sorting the same notes the way fetchAllNotes() had to, before any network time
+ * and the first page of PagedNoteList at 100k notes against reading them all
+ */
+@RunWith(AndroidJUnit4.class)
+public class SqliteNoteStoreBenchmark {
+    private static final String TAG = SqliteNoteStoreBenchmark.class.getSimpleName();
+    private static final int NOTES = 10000;
+    private static final int PAGED_NOTES = 100000;
+    private static final int RUNS = 5;
+
+    private SqliteNoteStore store;
+    private List<Note> notes;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        store = SqliteNoteStore.getInstance(context);
+        notes = notes(NOTES);
+        store.replaceAll(notes, 0);
+    }
+
+    @After
+    public void tearDown() {
+        store.replaceAll(Collections.<Note>emptyList(), 0);
+    }
+
+    @Test
+    public void timeToFirstNote() {
+        String json = new Gson().toJson(notes);
+
+        long storeMillis = Long.MAX_VALUE;
+        long decodeMillis = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = SystemClock.elapsedRealtime();
+            List<Note> stored = store.loadAll();
+            storeMillis = Math.min(storeMillis, SystemClock.elapsedRealtime() - start);
+            assertEquals(NOTES, stored.size());
+
+            start = SystemClock.elapsedRealtime();
+            List<Note> decoded = new Gson().fromJson(json, new TypeToken<List<Note>>() {
+            }.getType());
+            Collections.sort(decoded, (n1, n2) -> n2.getId() - n1.getId());
+            decodeMillis = Math.min(decodeMillis, SystemClock.elapsedRealtime() - start);
+            assertEquals(NOTES, decoded.size());
+        }
+
+        Log.i(TAG, "time to first note at " + NOTES + " notes: store " + storeMillis
+                + "ms, decode+sort without store " + decodeMillis + "ms plus the round trip");
+    }
+
+    @Test
+    public void firstPageAt100kNotes() {
+        store.replaceAll(notes(PAGED_NOTES), 0);
+
+        long pagedMillis = Long.MAX_VALUE;
+        long allMillis = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = SystemClock.elapsedRealtime();
+            int[] ids = store.loadIds();
+            List<Note> page = store.loadNotes(Arrays.copyOf(ids, PagedNoteList.PAGE_SIZE));
+            pagedMillis = Math.min(pagedMillis, SystemClock.elapsedRealtime() - start);
+            assertEquals(PAGED_NOTES, ids.length);
+            assertEquals(PagedNoteList.PAGE_SIZE, page.size());
+
+            start = SystemClock.elapsedRealtime();
+            List<Note> all = store.loadAll();
+            allMillis = Math.min(allMillis, SystemClock.elapsedRealtime() - start);
+            assertEquals(PAGED_NOTES, all.size());
+        }
+
+        Log.i(TAG, "first page at " + PAGED_NOTES + " notes: ids + one page " + pagedMillis
+                + "ms, whole list " + allMillis + "ms");
+    }
+
+    private static List<Note> notes(int count) {
+        List<Note> notes = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            notes.add(new Note(i, "note number " + i + " with a few more words in it", "2018-02-21 00:15:42"));
+        }
+        return notes;
+    }
+}
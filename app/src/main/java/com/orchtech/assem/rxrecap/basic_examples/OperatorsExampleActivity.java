@@ -7,11 +7,14 @@ import android.util.Log;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.orchtech.assem.rxrecap.R;
+import com.orchtech.assem.rxrecap.math.MathObservable;
+import com.orchtech.assem.rxrecap.network.HttpCore;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
+import io.reactivex.MaybeObserver;
 import io.reactivex.Observable;
 import io.reactivex.ObservableEmitter;
 import io.reactivex.ObservableOnSubscribe;
@@ -326,32 +329,62 @@ public class OperatorsExampleActivity extends AppCompatActivity {
 
     // 7.
     // Max, Min, Sum, Average, Count & Reduce
-    // it has conflict with rx-java2
+    // rxjava-math is built on RxJava 1, MathObservable has the same operators for RxJava 2
+    // sumInt() gives a Single, as the sum of no numbers is 0, min, max and average give a Maybe that completes empty for no numbers
+    // count() and reduce() are part of Observable already
     private void mathExample() {
-//        Integer[] numbers = {5, 101, 404, 22, 3, 1024, 65};
-//
-//        Observable<Integer> observable = Observable.from(numbers);
-//
-//        MathObservable
-////                .sumInteger(observable)
-////                .min(observable)
-//                .max(observable)
-//                .subscribe(new Subscriber<Integer>() {
-//                    @Override
-//                    public void onCompleted() {
-//
-//                    }
-//
-//                    @Override
-//                    public void onError(Throwable e) {
-//
-//                    }
-//
-//                    @Override
-//                    public void onNext(Integer integer) {
-//                        Log.d(TAG, "Max value: " + integer);
-//                    }
-//                });
+        Integer[] numbers = {5, 101, 404, 22, 3, 1024, 65};
+
+        Observable<Integer> observable = Observable.fromArray(numbers);
+
+        MathObservable
+//                .minInt(observable)
+                .maxInt(observable)
+                .subscribe(new MaybeObserver<Integer>() {
+                    @Override
+                    public void onSubscribe(Disposable d) {
+
+                    }
+
+                    @Override
+                    public void onSuccess(Integer integer) {
+                        Log.d(TAG, "Max value: " + integer);
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+
+                    }
+
+                    @Override
+                    public void onComplete() {
+
+                    }
+                });
+
+        MathObservable
+                .rollingAverageInt(observable, 3)
+                .subscribe(new Observer<Double>() {
+                    @Override
+                    public void onSubscribe(Disposable d) {
+
+                    }
+
+                    @Override
+                    public void onNext(Double average) {
+                        Log.d(TAG, "Average of the last 3: " + average);
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+
+                    }
+
+                    @Override
+                    public void onComplete() {
+
+                    }
+                });
     }
 
    /*
@@ -433,7 +466,7 @@ public class OperatorsExampleActivity extends AppCompatActivity {
      */
     private void mapExample() {
         getMaleObservable()
-                .subscribeOn(Schedulers.io())
+                .subscribeOn(HttpCore.getScheduler())
                 .observeOn(AndroidSchedulers.mainThread())
                 .map(new Function<User, User>() {
                     @Override
@@ -486,7 +519,7 @@ public class OperatorsExampleActivity extends AppCompatActivity {
      */
     private void flatOrContactMapExample() {
         getMaleObservable()
-                .subscribeOn(Schedulers.io())
+                .subscribeOn(HttpCore.getScheduler())
                 .observeOn(AndroidSchedulers.mainThread())
                 //.concatMap(new Function<User, Observable<User>>() {
                 .flatMap(new Function<User, ObservableSource<User>>() {
@@ -547,7 +580,7 @@ public class OperatorsExampleActivity extends AppCompatActivity {
                             emitter.onComplete();
                         }
                     }
-                }).subscribeOn(Schedulers.io());
+                }).subscribeOn(HttpCore.getScheduler());
     }
 
     private Observable<User> getMaleObservable() {
@@ -575,7 +608,7 @@ public class OperatorsExampleActivity extends AppCompatActivity {
                             emitter.onComplete();
                         }
                     }
-                }).subscribeOn(Schedulers.io());
+                }).subscribeOn(HttpCore.getScheduler());
     }
 
     /**
@@ -606,7 +639,7 @@ public class OperatorsExampleActivity extends AppCompatActivity {
                             emitter.onComplete();
                         }
                     }
-                }).subscribeOn(Schedulers.io());
+                }).subscribeOn(HttpCore.getScheduler());
     }
 
     @Override
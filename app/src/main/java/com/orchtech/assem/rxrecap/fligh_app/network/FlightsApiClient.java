@@ -1,52 +1,73 @@
 package com.orchtech.assem.rxrecap.fligh_app.network;
 
-import com.jakewharton.retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
+import android.content.Context;
+import android.util.Log;
+
+import com.orchtech.assem.rxrecap.BuildConfig;
 import com.orchtech.assem.rxrecap.Const;
+import com.orchtech.assem.rxrecap.network.AsyncCallAdapterFactory;
+import com.orchtech.assem.rxrecap.network.HttpCore;
+import com.orchtech.assem.rxrecap.network.HttpDiskCache;
+import com.orchtech.assem.rxrecap.network.Resilience;
+import com.orchtech.assem.rxrecap.network.ResilientCallAdapterFactory;
+import com.orchtech.assem.rxrecap.network.SampledLoggingInterceptor;
+import com.orchtech.assem.rxrecap.network.SingleFlightInterceptor;
 
 import java.io.IOException;
-import java.util.concurrent.TimeUnit;
 
 import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
-import okhttp3.logging.HttpLoggingInterceptor;
 import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
 
 public class FlightsApiClient {
     private static String TAG = FlightsApiClient.class.getSimpleName();
     private static Retrofit retrofit = null;
-    private static int REQUEST_TIMEOUT = 60;
     private static OkHttpClient okHttpClient;
+    private static PriceCache priceCache;
+    // Identical GETs in flight at the same time share one network call
+    private static SingleFlightInterceptor singleFlight = new SingleFlightInterceptor();
+    // Ticket search results are kept on disk, revalidated with ETag / Last-Modified and served offline
+    private static HttpDiskCache httpCache;
+    // Retries with backoff, a circuit breaker per endpoint and one retry budget for the flights backend
+    private static Resilience resilience = new Resilience();
 
 
-    public static Retrofit getClient() {
+    public static Retrofit getClient(Context context) {
 
         if (okHttpClient == null)
-            initOkHttp();
+            initOkHttp(context);
 
         if (retrofit == null) {
             retrofit = new Retrofit.Builder()
                     .baseUrl(Const.Flights_BASE_URL)
                     .client(okHttpClient)
-                    .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
+                    .addCallAdapterFactory(ResilientCallAdapterFactory.create(resilience))
+                    // Calls are enqueued on the shared dispatcher, a call in flight does not hold a thread
+                    .addCallAdapterFactory(AsyncCallAdapterFactory.create())
                     .addConverterFactory(GsonConverterFactory.create())
                     .build();
         }
         return retrofit;
     }
 
-    private static void initOkHttp() {
-        OkHttpClient.Builder httpClient = new OkHttpClient().newBuilder()
-                .connectTimeout(REQUEST_TIMEOUT, TimeUnit.SECONDS)
-                .readTimeout(REQUEST_TIMEOUT, TimeUnit.SECONDS)
-                .writeTimeout(REQUEST_TIMEOUT, TimeUnit.SECONDS);
+    private static void initOkHttp(Context context) {
+        // Shares connection pool, dispatcher and timeouts with every other api client
+        OkHttpClient.Builder httpClient = HttpCore.getClient().newBuilder();
+
+        httpClient.addInterceptor(singleFlight);
 
-        HttpLoggingInterceptor interceptor = new HttpLoggingInterceptor();
-        interceptor.setLevel(HttpLoggingInterceptor.Level.BODY);
+        // One Cache per directory, a client rebuilt after resetApiClient() installs the same one
+        if (httpCache == null)
+            httpCache = HttpDiskCache.create(context, "airline-tickets.php");
+        httpCache.install(httpClient);
 
-        httpClient.addInterceptor(interceptor);
+        // Sampled and written off the request thread, release builds do not log at all
+        if (BuildConfig.DEBUG) {
+            httpClient.addInterceptor(new SampledLoggingInterceptor(message -> Log.d(TAG, message)));
+        }
 
         httpClient.addInterceptor(new Interceptor() {
             @Override
@@ -65,6 +86,32 @@ public class FlightsApiClient {
         okHttpClient = httpClient.build();
     }
 
+    /**
+     * Process wide price cache, it outlives FlightAppActivity
+     * so re-opening a route does not reprice every ticket
+     */
+    public static synchronized PriceCache getPriceCache() {
+        if (priceCache == null)
+            priceCache = new PriceCache();
+        return priceCache;
+    }
+
+    public static SingleFlightInterceptor getSingleFlight() {
+        return singleFlight;
+    }
+
+    public static Resilience getResilience() {
+        return resilience;
+    }
+
+    public static HttpDiskCache getHttpCache() {
+        return httpCache;
+    }
+
+    /**
+     * The disk cache is kept open, it belongs to the directory rather than to the client
+     * The price cache is kept too, prices do not depend on the client that loaded them
+     */
     public static void resetApiClient() {
         retrofit = null;
         okHttpClient = null;
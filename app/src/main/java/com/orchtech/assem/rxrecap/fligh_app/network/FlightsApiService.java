@@ -6,8 +6,10 @@ import com.orchtech.assem.rxrecap.fligh_app.network.model.Ticket;
 import java.util.List;
 
 import io.reactivex.Single;
+import okhttp3.ResponseBody;
 import retrofit2.http.GET;
 import retrofit2.http.Query;
+import retrofit2.http.Streaming;
 
 public interface FlightsApiService {
 
@@ -15,7 +17,16 @@ public interface FlightsApiService {
     @GET("airline-tickets.php")
     Single<List<Ticket>> searchTickets(@Query("from") String from, @Query("to") String to);
 
+    // Same response as searchTickets, left unread so it can be decoded while it downloads, see TicketStreamDecoder
+    @Streaming
+    @GET("airline-tickets.php")
+    Single<ResponseBody> searchTicketsStream(@Query("from") String from, @Query("to") String to);
+
     @GET("airline-tickets-price.php")
     Single<Price> getPrice(@Query("flight_number") String flightNumber, @Query("from") String from, @Query("to") String to);
 
+    // flight_numbers is a comma separated list, see PriceBatcher
+    @GET("airline-tickets-price-batch.php")
+    Single<List<Price>> getPrices(@Query("flight_numbers") String flightNumbers, @Query("from") String from, @Query("to") String to);
+
 }
@@ -0,0 +1,226 @@
+package com.orchtech.assem.rxrecap.fligh_app.network;
+
+import com.jakewharton.retrofit2.adapter.rxjava2.HttpException;
+import com.orchtech.assem.rxrecap.fligh_app.network.model.Price;
+import com.orchtech.assem.rxrecap.fligh_app.network.model.Ticket;
+import com.orchtech.assem.rxrecap.network.AdaptiveConcurrencyLimiter;
+import com.orchtech.assem.rxrecap.network.HttpCore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.SerialDisposable;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
+
+/**
+ * Collects getPrice() calls made within a short window (or until maxBatchSize is reached)
+ * and sends them as a single airline-tickets-price-batch.php request per route.
+ * Batch results are split back to every caller by flight number.
+ * When the batch endpoint is not available it falls back to single getPrice() calls.
+ * Every HTTP call it makes runs through the given AdaptiveConcurrencyLimiter.
+ * Disposing a getPrice() Single cancels its call, a batch call once every caller waiting on it is gone.
+ * dispose() fails the calls still waiting for their batch.
+ */
+public class PriceBatcher {
+    private static final long DEFAULT_WINDOW_MILLIS = 50;
+    private static final int DEFAULT_MAX_BATCH_SIZE = 50;
+
+    private final FlightsApiService apiService;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final Scheduler scheduler;
+    private final Subject<PriceRequest> requests = PublishSubject.<PriceRequest>create().toSerialized();
+    private final Disposable batching;
+    // Requests waiting for their batch to be sent, dispose() fails them
+    private final Set<PriceRequest> buffered = Collections.newSetFromMap(new ConcurrentHashMap<PriceRequest, Boolean>());
+
+    private volatile boolean disposed;
+    private volatile boolean batchUnavailable;
+    private final AtomicLong batchCalls = new AtomicLong();
+    private final AtomicLong singleCalls = new AtomicLong();
+
+    public PriceBatcher(FlightsApiService apiService, AdaptiveConcurrencyLimiter limiter) {
+        this(apiService, limiter, DEFAULT_WINDOW_MILLIS, DEFAULT_MAX_BATCH_SIZE, HttpCore.getScheduler());
+    }
+
+    public PriceBatcher(FlightsApiService apiService, AdaptiveConcurrencyLimiter limiter,
+                        long windowMillis, int maxBatchSize, Scheduler scheduler) {
+        this.apiService = apiService;
+        this.limiter = limiter;
+        this.scheduler = scheduler;
+
+        // One buffer per route, a batch request can only carry a single from/to pair
+        batching = requests
+                .groupBy(PriceRequest::routeKey)
+                .flatMap(route -> route.buffer(windowMillis, TimeUnit.MILLISECONDS, scheduler, maxBatchSize))
+                .filter(batch -> !batch.isEmpty())
+                .subscribe(this::dispatch);
+    }
+
+    /**
+     * Same contract as FlightsApiService.getPrice()
+     * The call is queued and sent with the next batch of the same route
+     */
+    public Single<Price> getPrice(final String flightNumber, final String from, final String to) {
+        return Single.create(emitter -> {
+            final PriceRequest request = new PriceRequest(flightNumber, from, to, emitter);
+            buffered.add(request);
+            // Replaced by the call once the request is sent
+            emitter.setCancellable(() -> buffered.remove(request));
+            if (disposed) {
+                emitter.tryOnError(new CancellationException("PriceBatcher is disposed"));
+                return;
+            }
+            requests.onNext(request);
+        });
+    }
+
+    private void dispatch(List<PriceRequest> batch) {
+        if (batchUnavailable || batch.size() == 1) {
+            for (PriceRequest request : batch) {
+                fetchSingle(request);
+            }
+            return;
+        }
+
+        // Same flight number requested twice in one window is sent once
+        final Map<String, List<PriceRequest>> byFlight = new LinkedHashMap<>();
+        for (PriceRequest request : batch) {
+            if (request.emitter.isDisposed()) {
+                continue;
+            }
+            String key = Ticket.normalizeFlightNumber(request.flightNumber);
+            List<PriceRequest> waiting = byFlight.get(key);
+            if (waiting == null) {
+                waiting = new ArrayList<>();
+                byFlight.put(key, waiting);
+            }
+            waiting.add(request);
+        }
+        if (byFlight.isEmpty()) {
+            return;
+        }
+
+        StringBuilder flightNumbers = new StringBuilder();
+        for (List<PriceRequest> waiting : byFlight.values()) {
+            if (flightNumbers.length() > 0) {
+                flightNumbers.append(',');
+            }
+            flightNumbers.append(waiting.get(0).flightNumber);
+        }
+
+        // The batch call is cancelled when the last caller waiting on it is disposed
+        final SerialDisposable call = new SerialDisposable();
+        final AtomicInteger waitingCallers = new AtomicInteger();
+        for (List<PriceRequest> waiting : byFlight.values()) {
+            for (PriceRequest request : waiting) {
+                waitingCallers.incrementAndGet();
+                request.emitter.setCancellable(() -> {
+                    if (waitingCallers.decrementAndGet() == 0) {
+                        call.dispose();
+                    }
+                });
+            }
+        }
+
+        PriceRequest first = batch.get(0);
+        batchCalls.incrementAndGet();
+        call.replace(limiter.submit(apiService.getPrices(flightNumbers.toString(), first.from, first.to)
+                .subscribeOn(scheduler))
+                .subscribe(prices -> {
+                    for (Price price : prices) {
+                        List<PriceRequest> waiting = byFlight.remove(Ticket.normalizeFlightNumber(price.getFlightNumber()));
+                        if (waiting == null) {
+                            continue;
+                        }
+                        for (PriceRequest request : waiting) {
+                            request.emitter.onSuccess(price);
+                        }
+                    }
+                    // Flights missing from the batch response are asked for one by one
+                    fetchAll(byFlight);
+                }, e -> {
+                    if (isBatchEndpointMissing(e)) {
+                        batchUnavailable = true;
+                    }
+                    fetchAll(byFlight);
+                }));
+    }
+
+    private void fetchAll(Map<String, List<PriceRequest>> byFlight) {
+        for (List<PriceRequest> waiting : byFlight.values()) {
+            for (PriceRequest request : waiting) {
+                fetchSingle(request);
+            }
+        }
+    }
+
+    private void fetchSingle(final PriceRequest request) {
+        if (request.emitter.isDisposed()) {
+            return;
+        }
+        singleCalls.incrementAndGet();
+        request.emitter.setDisposable(limiter.submit(apiService.getPrice(request.flightNumber, request.from, request.to)
+                .subscribeOn(scheduler))
+                .subscribe(request.emitter::onSuccess, request.emitter::tryOnError));
+    }
+
+    private static boolean isBatchEndpointMissing(Throwable e) {
+        if (!(e instanceof HttpException)) {
+            return false;
+        }
+        int code = ((HttpException) e).code();
+        return code == 404 || code == 405 || code == 501;
+    }
+
+    public boolean isBatchUnavailable() {
+        return batchUnavailable;
+    }
+
+    public long getBatchCallCount() {
+        return batchCalls.get();
+    }
+
+    public long getSingleCallCount() {
+        return singleCalls.get();
+    }
+
+    public void dispose() {
+        disposed = true;
+        batching.dispose();
+        for (PriceRequest request : new ArrayList<>(buffered)) {
+            request.emitter.tryOnError(new CancellationException("PriceBatcher is disposed"));
+        }
+    }
+
+    private static class PriceRequest {
+        final String flightNumber;
+        final String from;
+        final String to;
+        final SingleEmitter<Price> emitter;
+
+        PriceRequest(String flightNumber, String from, String to, SingleEmitter<Price> emitter) {
+            this.flightNumber = flightNumber;
+            this.from = from;
+            this.to = to;
+            this.emitter = emitter;
+        }
+
+        String routeKey() {
+            return from + "-" + to;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.orchtech.assem.rxrecap.fligh_app.network;
+
+import com.orchtech.assem.rxrecap.fligh_app.network.model.Price;
+import com.orchtech.assem.rxrecap.fligh_app.network.model.Ticket;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * In-memory price cache keyed by (flightNumber, from, to)
+ * Holds at most maxEntries prices, the least recently used one is evicted first
+ * A price older than ttl is stale: it is emitted right away and followed by the refreshed price
+ * Concurrent misses for the same key share a single load, it is disposed once every caller waiting on it is gone
+ */
+public class PriceCache {
+    private static final int DEFAULT_MAX_ENTRIES = 500;
+    private static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
+    private final long ttlMillis;
+    // Time source, a TestScheduler can be passed to move time in tests
+    private final Scheduler clock;
+    private final LinkedHashMap<String, Entry> entries;
+    private final Map<String, Load> loading = new HashMap<>();
+
+    private long hits;
+    private long staleHits;
+    private long misses;
+    private long collapsed;
+    private long evictions;
+
+    public PriceCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS, Schedulers.computation());
+    }
+
+    public PriceCache(final int maxEntries, long ttlMillis, Scheduler clock) {
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        // accessOrder = true keeps the least recently used entry first
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Emits the cached price when there is one, and loads it with load otherwise
+     * load has to be cold, it is only subscribed on a miss or a stale hit
+     * A failed refresh of a stale price is dropped, the stale price was already emitted
+     */
+    public Observable<Price> get(String flightNumber, String from, String to, Single<Price> load) {
+        String key = key(flightNumber, from, to);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                misses++;
+                return load(key, load).toObservable();
+            }
+            if (now() - entry.loadedAt < ttlMillis) {
+                hits++;
+                return Observable.just(entry.price);
+            }
+            staleHits++;
+            return Observable.just(entry.price)
+                    .concatWith(load(key, load).toObservable().onErrorResumeNext(Observable.<Price>empty()));
+        }
+    }
+
+    // Called holding the lock
+    private Single<Price> load(final String key, Single<Price> load) {
+        Load pending = loading.get(key);
+        if (pending != null) {
+            collapsed++;
+            return pending.price;
+        }
+        final Load started = new Load();
+        // refCount() rather than cache(): a load nobody waits for anymore is disposed and dropped,
+        // otherwise a load that never ends would hang every later call for the key
+        started.price = load
+                .doOnSuccess(price -> put(key, price))
+                .doFinally(() -> finishLoad(key, started))
+                .toObservable()
+                .replay(1)
+                .refCount()
+                .singleOrError();
+        loading.put(key, started);
+        return started.price;
+    }
+
+    private synchronized void put(String key, Price price) {
+        entries.put(key, new Entry(price, now()));
+    }
+
+    private synchronized void finishLoad(String key, Load load) {
+        // A newer load may have taken the key already
+        if (loading.get(key) == load) {
+            loading.remove(key);
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    private long now() {
+        return clock.now(TimeUnit.MILLISECONDS);
+    }
+
+    private static String key(String flightNumber, String from, String to) {
+        return Ticket.normalizeFlightNumber(flightNumber) + "|" + from + "|" + to;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getStaleHitCount() {
+        return staleHits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getCollapsedCount() {
+        return collapsed;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PriceCache{size=" + entries.size()
+                + ", hits=" + hits
+                + ", staleHits=" + staleHits
+                + ", misses=" + misses
+                + ", collapsed=" + collapsed
+                + ", evictions=" + evictions + "}";
+    }
+
+    private static class Load {
+        Single<Price> price;
+    }
+
+    private static class Entry {
+        final Price price;
+        final long loadedAt;
+
+        Entry(Price price, long loadedAt) {
+            this.price = price;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
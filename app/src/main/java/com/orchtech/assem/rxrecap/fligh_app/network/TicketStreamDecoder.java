@@ -0,0 +1,48 @@
+package com.orchtech.assem.rxrecap.fligh_app.network;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.orchtech.assem.rxrecap.fligh_app.network.model.Ticket;
+
+import java.io.IOException;
+
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import okhttp3.ResponseBody;
+
+/**
+ * Decodes the airline-tickets.php JSON array one ticket at a time while the body is still downloading
+ * Only as many tickets are read as the subscriber has requested,
+ * cancelling closes the body and with it the HTTP call
+ */
+public class TicketStreamDecoder {
+    private static final Gson gson = new Gson();
+
+    public static Flowable<Ticket> decode(Single<ResponseBody> response) {
+        return response.toFlowable().concatMap(TicketStreamDecoder::decode);
+    }
+
+    public static Flowable<Ticket> decode(final ResponseBody body) {
+        return Flowable.generate(
+                () -> {
+                    JsonReader reader = new JsonReader(body.charStream());
+                    try {
+                        reader.beginArray();
+                    } catch (IOException e) {
+                        reader.close();
+                        throw e;
+                    }
+                    return reader;
+                },
+                (reader, emitter) -> {
+                    if (reader.hasNext()) {
+                        Ticket ticket = gson.fromJson(reader, Ticket.class);
+                        emitter.onNext(ticket);
+                    } else {
+                        reader.endArray();
+                        emitter.onComplete();
+                    }
+                },
+                JsonReader::close);
+    }
+}
@@ -1,6 +1,8 @@
 package com.orchtech.assem.rxrecap.fligh_app.network.model;
 
 import com.google.gson.annotations.SerializedName;
+
+import java.util.Locale;
  
 public class Ticket {
  
@@ -66,6 +68,33 @@ public class Ticket {
         this.price = price;
     }
  
+    /**
+     * A copy of this ticket with the given price, this one is left as it is
+     * Prices arrive on network threads while the main thread reads the tickets it shows
+     */
+    public Ticket withPrice(Price price) {
+        Ticket priced = new Ticket();
+        priced.from = from;
+        priced.to = to;
+        priced.flightNumber = flightNumber;
+        priced.departure = departure;
+        priced.arrival = arrival;
+        priced.duration = duration;
+        priced.instructions = instructions;
+        priced.numberOfStops = numberOfStops;
+        priced.airline = airline;
+        priced.price = price;
+        return priced;
+    }
+ 
+    /**
+     * Flight numbers are compared ignoring case and surrounding spaces
+     * equals(), hashCode() and every flight number keyed map use this form
+     */
+    public static String normalizeFlightNumber(String flightNumber) {
+        return flightNumber == null ? "" : flightNumber.trim().toUpperCase(Locale.US);
+    }
+ 
     @Override
     public boolean equals(Object obj) {
         if (obj == this) {
@@ -76,13 +105,13 @@ public class Ticket {
             return false;
         }
  
-        return flightNumber.equalsIgnoreCase(((Ticket) obj).getFlightNumber());
+        return normalizeFlightNumber(flightNumber).equals(normalizeFlightNumber(((Ticket) obj).getFlightNumber()));
     }
  
     @Override
     public int hashCode() {
         int hash = 3;
-        hash = 53 * hash + (this.flightNumber != null ? this.flightNumber.hashCode() : 0);
+        hash = 53 * hash + normalizeFlightNumber(flightNumber).hashCode();
         return hash;
     }
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import android.content.res.Resources;
 import android.graphics.Color;
 import android.graphics.Rect;
 import android.os.Bundle;
+import android.os.Looper;
 import android.util.Log;
 import android.util.TypedValue;
 import android.view.View;
@@ -17,13 +18,21 @@ import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.snackbar.Snackbar;
+import com.orchtech.assem.rxrecap.BuildConfig;
 import com.orchtech.assem.rxrecap.R;
 import com.orchtech.assem.rxrecap.fligh_app.network.FlightsApiClient;
 import com.orchtech.assem.rxrecap.fligh_app.network.FlightsApiService;
+import com.orchtech.assem.rxrecap.fligh_app.network.PriceBatcher;
+import com.orchtech.assem.rxrecap.fligh_app.network.PriceCache;
+import com.orchtech.assem.rxrecap.fligh_app.network.TicketStreamDecoder;
 import com.orchtech.assem.rxrecap.fligh_app.network.model.Price;
 import com.orchtech.assem.rxrecap.fligh_app.network.model.Ticket;
+import com.orchtech.assem.rxrecap.network.AdaptiveConcurrencyLimiter;
+import com.orchtech.assem.rxrecap.network.HttpCore;
+import com.orchtech.assem.rxrecap.tracing.PipelineTracer;
 
-import java.util.ArrayList;
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 
 import butterknife.BindView;
@@ -36,22 +45,31 @@ import io.reactivex.disposables.CompositeDisposable;
 import io.reactivex.functions.Function;
 import io.reactivex.observables.ConnectableObservable;
 import io.reactivex.observers.DisposableObserver;
-import io.reactivex.schedulers.Schedulers;
 
 public class FlightAppActivity extends AppCompatActivity implements TicketsAdapter.TicketsAdapterListener {
 
     private static final String TAG = FlightAppActivity.class.getSimpleName();
     private static final String from = "DEL";
     private static final String to = "HYD";
+    // Decoded tickets are handed to the UI in chunks of this size, the last one may be smaller
+    private static final int TICKETS_CHUNK_SIZE = 20;
+    // Chunks decoded ahead of the main thread, the decoder waits for it beyond that
+    private static final int TICKETS_CHUNKS_AHEAD = 4;
 
     private CompositeDisposable disposable = new CompositeDisposable();
-    ConnectableObservable<List<Ticket>> ticketsObservable;
+    ConnectableObservable<List<TicketRow>> ticketsObservable;
 
     private Unbinder unbinder;
 
     private FlightsApiService apiService;
+    private PriceBatcher priceBatcher;
+    private PriceCache priceCache;
+    // Shared by every price request, the limit adapts to the observed latency and errors
+    private AdaptiveConcurrencyLimiter priceLimiter = new AdaptiveConcurrencyLimiter();
     private TicketsAdapter mAdapter;
-    private ArrayList<Ticket> ticketsList = new ArrayList<>();
+    private FrameCoalescedUpdates priceUpdates;
+    // indexOf() is an O(1) lookup, each price update no longer scans the list
+    private TicketStore ticketsList = new TicketStore();
     @BindView(R.id.recycler_view)
     RecyclerView recyclerView;
 
@@ -61,12 +79,19 @@ public class FlightAppActivity extends AppCompatActivity implements TicketsAdapt
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        // Before any pipeline is assembled, operators assembled earlier are not traced
+        if (BuildConfig.TRACE_PIPELINES) {
+            PipelineTracer.install(Looper.getMainLooper().getThread());
+        }
         setContentView(R.layout.activity_flight_app);
         unbinder = ButterKnife.bind(this);
 
-        apiService = FlightsApiClient.getClient().create(FlightsApiService.class);
+        apiService = FlightsApiClient.getClient(getApplicationContext()).create(FlightsApiService.class);
+        priceBatcher = new PriceBatcher(apiService, priceLimiter);
+        priceCache = FlightsApiClient.getPriceCache();
 
         mAdapter = new TicketsAdapter(this, ticketsList, this);
+        priceUpdates = new FrameCoalescedUpdates(mAdapter, TicketsAdapter.PAYLOAD_PRICE);
 
         RecyclerView.LayoutManager mLayoutManager = new GridLayoutManager(this, 1);
         recyclerView.setLayoutManager(mLayoutManager);
@@ -82,21 +107,22 @@ public class FlightAppActivity extends AppCompatActivity implements TicketsAdapt
 
     /**
      * Fetching all tickets first
-     * Observable emits List<Ticket> at once
-     * All the items will be added to RecyclerView
+     * Observable emits List<Ticket> chunks while the response is being decoded
+     * Every chunk is appended to RecyclerView as soon as it arrives
      */
     private void fetchAllFlights() {
         disposable.add(
                 ticketsObservable
-                        .subscribeOn(Schedulers.io())
+                        .subscribeOn(HttpCore.getScheduler())
                         .observeOn(AndroidSchedulers.mainThread())
-                        .subscribeWith(new DisposableObserver<List<Ticket>>() {
+                        .compose(PipelineTracer.named("fetchAllFlights"))
+                        .subscribeWith(new DisposableObserver<List<TicketRow>>() {
 
                             @Override
-                            public void onNext(List<Ticket> tickets) {
-                                ticketsList.clear();
-                                ticketsList.addAll(tickets);
-                                mAdapter.notifyDataSetChanged();
+                            public void onNext(List<TicketRow> tickets) {
+                                int start = ticketsList.size();
+                                ticketsList.addRows(tickets);
+                                mAdapter.notifyItemRangeInserted(start, tickets.size());
                             }
 
                             @Override
@@ -106,7 +132,7 @@ public class FlightAppActivity extends AppCompatActivity implements TicketsAdapt
 
                             @Override
                             public void onComplete() {
-
+                                Log.d(TAG, "All tickets fetched: " + FlightsApiClient.getHttpCache());
                             }
                         })
         );
@@ -120,31 +146,36 @@ public class FlightAppActivity extends AppCompatActivity implements TicketsAdapt
     private void fetchTicketPrice() {
         disposable.add(
                 ticketsObservable
-                        .subscribeOn(Schedulers.io())
+                        .subscribeOn(HttpCore.getScheduler())
                         .observeOn(AndroidSchedulers.mainThread())
                         /**
                          * Converting List<Ticket> emission to single Ticket emissions
                          * */
-                        .flatMap(new Function<List<Ticket>, ObservableSource<Ticket>>() {
+                        .flatMap(new Function<List<TicketRow>, ObservableSource<Ticket>>() {
 
                             @Override
-                            public ObservableSource<Ticket> apply(List<Ticket> tickets) throws Exception {
-                                return Observable.fromIterable(tickets);
+                            public ObservableSource<Ticket> apply(List<TicketRow> rows) throws Exception {
+                                return Observable.fromIterable(rows).map(TicketRow::getTicket);
                             }
                         })
                         /**
                          * Fetching price on each Ticket emission
                          * */
-                        .flatMap(new Function<Ticket, ObservableSource<Ticket>>() {
+                        .flatMap(new Function<Ticket, ObservableSource<TicketRow>>() {
                             @Override
-                            public ObservableSource<Ticket> apply(Ticket ticket) throws Exception {
+                            public ObservableSource<TicketRow> apply(Ticket ticket) throws Exception {
                                 return getPriceObservable(ticket);
                             }
-                        }).subscribeWith(new DisposableObserver<Ticket>() {
+                        })
+                        /**
+                         * Traced as one pipeline with the price lookups, when tracing is on
+                         * */
+                        .compose(PipelineTracer.named("fetchTicketPrice"))
+                        .subscribeWith(new DisposableObserver<TicketRow>() {
 
                     @Override
-                    public void onNext(Ticket ticket) {
-                        int position = ticketsList.indexOf(ticket);
+                    public void onNext(TicketRow row) {
+                        int position = ticketsList.indexOf(row.getTicket());
                         if (position == -1) {
                             // TODO - take action
                             // Ticket not found in the list
@@ -152,8 +183,9 @@ public class FlightAppActivity extends AppCompatActivity implements TicketsAdapt
                             return;
                         }
 
-                        ticketsList.set(position, ticket);
-                        mAdapter.notifyItemChanged(position);
+                        ticketsList.setRow(position, row);
+                        // Prices arriving in the same frame end up in one adapter update
+                        priceUpdates.itemChanged(position);
                     }
 
                     @Override
@@ -163,7 +195,9 @@ public class FlightAppActivity extends AppCompatActivity implements TicketsAdapt
 
                     @Override
                     public void onComplete() {
-
+                        Log.d(TAG, "All prices fetched: " + priceLimiter + ", " + priceCache + ", "
+                                + FlightsApiClient.getSingleFlight() + ", " + HttpCore.getStats() + ", "
+                                + FlightsApiClient.getResilience());
                     }
                 })
         );
@@ -173,32 +207,47 @@ public class FlightAppActivity extends AppCompatActivity implements TicketsAdapt
 
     /**
      * Making Retrofit call to fetch all tickets
+     * The response is decoded one ticket at a time and emitted in small chunks,
+     * so the first tickets are shown and priced before the whole response has arrived
+     * Rows for the adapter are built here too, before the chunk reaches the main thread
+     * Chunks are counted, not timed, so demand from the main thread reaches the decoder and a busy
+     * main thread stops the download instead of queueing rows. On a slow link the first rows wait for
+     * a whole chunk, which is 20 tickets of a few hundred bytes each
      */
-    private Observable<List<Ticket>> getTickets(String from, String to) {
-        return apiService.searchTickets(from, to)
+    private Observable<List<TicketRow>> getTickets(String from, String to) {
+        return TicketStreamDecoder.decode(apiService.searchTicketsStream(from, to))
+                .buffer(TICKETS_CHUNK_SIZE)
+                .map(TicketRow::ofAll)
+                .subscribeOn(HttpCore.getScheduler())
+                .observeOn(AndroidSchedulers.mainThread(), false, TICKETS_CHUNKS_AHEAD)
                 .toObservable()
-                .subscribeOn(Schedulers.io())
-                .observeOn(AndroidSchedulers.mainThread());
+                // replay() subscribes to it on connect(), outside of the pipelines above
+                .compose(PipelineTracer.named("getTickets"));
     }
 
     /**
      * Making Retrofit call to get single ticket price
      * get price HTTP call returns Price object, but
      * map() operator is used to change the return type to Ticket
+     * Calls go through PriceBatcher so the whole list is priced with a few batch requests
+     * Cached prices are emitted at once, a stale one is followed by the refreshed price
+     * The priced row, and the priced copy of the ticket it holds, are built before the main thread,
+     * which only swaps them in
+     * The lookup only queues the call, it takes a network thread for a moment, not for the whole request
      */
-    private Observable<Ticket> getPriceObservable(final Ticket ticket) {
-        return apiService
-                .getPrice(ticket.getFlightNumber(), ticket.getFrom(), ticket.getTo())
-                .toObservable()
-                .subscribeOn(Schedulers.io())
-                .observeOn(AndroidSchedulers.mainThread())
-                .map(new Function<Price, Ticket>() {
+    private Observable<TicketRow> getPriceObservable(final Ticket ticket) {
+        return priceCache
+                .get(ticket.getFlightNumber(), ticket.getFrom(), ticket.getTo(),
+                        priceBatcher.getPrice(ticket.getFlightNumber(), ticket.getFrom(), ticket.getTo()))
+                .subscribeOn(HttpCore.getScheduler())
+                .map(new Function<Price, TicketRow>() {
                     @Override
-                    public Ticket apply(Price price) throws Exception {
-                        ticket.setPrice(price);
-                        return ticket;
+                    public TicketRow apply(Price price) throws Exception {
+                        // The shown ticket is not touched here, the store swaps in the priced copy on main
+                        return TicketRow.priced(ticket, price);
                     }
-                });
+                })
+                .observeOn(AndroidSchedulers.mainThread());
     }
 
     public class GridSpacingItemDecoration extends RecyclerView.ItemDecoration {
@@ -264,6 +313,26 @@ public class FlightAppActivity extends AppCompatActivity implements TicketsAdapt
     protected void onDestroy() {
         super.onDestroy();
         disposable.dispose();
+        priceUpdates.cancel();
+        priceBatcher.dispose();
         unbinder.unbind();
+        if (PipelineTracer.isInstalled()) {
+            dumpPipelineTraces();
+        }
+    }
+
+    /**
+     * Writes what was traced to rx-trace-<time>.json in the app's external files directory,
+     * adb pull it from there to analyse it
+     */
+    private void dumpPipelineTraces() {
+        File dir = getExternalFilesDir(null);
+        File file = new File(dir != null ? dir : getFilesDir(), "rx-trace-" + System.currentTimeMillis() + ".json");
+        try {
+            PipelineTracer.dump(file);
+            Log.d(TAG, "Pipeline traces written to " + file);
+        } catch (IOException e) {
+            Log.e(TAG, "Could not write pipeline traces", e);
+        }
     }
 }
\ No newline at end of file
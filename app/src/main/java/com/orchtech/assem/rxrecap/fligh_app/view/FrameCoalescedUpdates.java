@@ -0,0 +1,57 @@
+package com.orchtech.assem.rxrecap.fligh_app.view;
+
+import android.view.Choreographer;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.BitSet;
+
+/**
+ * Collects changed adapter positions and notifies them once per frame
+ * Adjacent positions go out as a single notifyItemRangeChanged() carrying payload
+ * Must be used from the main thread
+ */
+public class FrameCoalescedUpdates implements Choreographer.FrameCallback {
+    private final RecyclerView.Adapter<?> adapter;
+    private final Object payload;
+    private final BitSet pending = new BitSet();
+    private boolean scheduled;
+
+    public FrameCoalescedUpdates(RecyclerView.Adapter<?> adapter, Object payload) {
+        this.adapter = adapter;
+        this.payload = payload;
+    }
+
+    public void itemChanged(int position) {
+        pending.set(position);
+        if (!scheduled) {
+            scheduled = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        scheduled = false;
+        int count = adapter.getItemCount();
+        int start = pending.nextSetBit(0);
+        while (start >= 0 && start < count) {
+            int end = Math.min(pending.nextClearBit(start), count);
+            adapter.notifyItemRangeChanged(start, end - start, payload);
+            start = pending.nextSetBit(end);
+        }
+        pending.clear();
+    }
+
+    /**
+     * Drops pending positions and the frame callback, call it before the adapter goes away
+     * Positions are not shifted, so a list that gets replaced or has rows removed has to call it first too
+     */
+    public void cancel() {
+        if (scheduled) {
+            Choreographer.getInstance().removeFrameCallback(this);
+            scheduled = false;
+        }
+        pending.clear();
+    }
+}
@@ -0,0 +1,106 @@
+package com.orchtech.assem.rxrecap.fligh_app.view;
+
+import com.orchtech.assem.rxrecap.fligh_app.network.model.Price;
+import com.orchtech.assem.rxrecap.fligh_app.network.model.Ticket;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A ticket as TicketsAdapter shows it, every string built on the thread that decoded or priced the ticket
+ * A priced ticket gets a new row, rows are never changed
+ */
+public class TicketRow {
+    private final Ticket ticket;
+    private final String airlineName;
+    private final String logo;
+    private final String departure;
+    private final String arrival;
+    private final String duration;
+    private final String stops;
+    private final String price;
+    private final String seats;
+
+    private TicketRow(Ticket ticket, Price price) {
+        this.ticket = ticket;
+        this.airlineName = ticket.getAirline() == null ? "" : ticket.getAirline().getName();
+        this.logo = ticket.getAirline() == null ? null : ticket.getAirline().getLogo();
+        this.departure = ticket.getDeparture() + " Dep";
+        this.arrival = ticket.getArrival() + " Dest";
+
+        StringBuilder duration = new StringBuilder()
+                .append(ticket.getFlightNumber()).append(", ").append(ticket.getDuration());
+        if (ticket.getInstructions() != null && !ticket.getInstructions().isEmpty()) {
+            duration.append(", ").append(ticket.getInstructions());
+        }
+        this.duration = duration.toString();
+        this.stops = ticket.getNumberOfStops() + " Stops";
+
+        if (price == null) {
+            this.price = null;
+            this.seats = null;
+        } else {
+            this.price = "₹" + String.format(Locale.getDefault(), "%.0f", price.getPrice());
+            this.seats = price.getSeats() + " Seats";
+        }
+    }
+
+    public static TicketRow of(Ticket ticket) {
+        return new TicketRow(ticket, ticket.getPrice());
+    }
+
+    /**
+     * The row of a priced copy of the ticket, safe to build off the main thread while the ticket is shown
+     */
+    public static TicketRow priced(Ticket ticket, Price price) {
+        return new TicketRow(ticket.withPrice(price), price);
+    }
+
+    public static List<TicketRow> ofAll(List<Ticket> tickets) {
+        List<TicketRow> rows = new ArrayList<>(tickets.size());
+        for (Ticket ticket : tickets) {
+            rows.add(of(ticket));
+        }
+        return rows;
+    }
+
+    public Ticket getTicket() {
+        return ticket;
+    }
+
+    public String getAirlineName() {
+        return airlineName;
+    }
+
+    public String getLogo() {
+        return logo;
+    }
+
+    public String getDeparture() {
+        return departure;
+    }
+
+    public String getArrival() {
+        return arrival;
+    }
+
+    public String getDuration() {
+        return duration;
+    }
+
+    public String getStops() {
+        return stops;
+    }
+
+    /**
+     * Null until the ticket is priced, the row shows the loader meanwhile
+     */
+    public String getPrice() {
+        return price;
+    }
+
+    public String getSeats() {
+        return seats;
+    }
+}
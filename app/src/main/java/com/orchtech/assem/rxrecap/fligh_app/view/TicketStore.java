@@ -0,0 +1,132 @@
+package com.orchtech.assem.rxrecap.fligh_app.view;
+
+import com.orchtech.assem.rxrecap.fligh_app.network.model.Ticket;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.RandomAccess;
+
+/**
+ * Ticket list with a normalized flight number -> position index
+ * indexOf() and contains() are O(1) instead of a linear scan
+ * Replacing, inserting, removing and sorting keep the index in sync
+ * Like ArrayList.indexOf(), a flight number listed twice maps to its first position
+ * Tickets are held as the TicketRow the adapter binds, rows built off the main thread go in with addRows() / setRow()
+ */
+public class TicketStore extends AbstractList<Ticket> implements RandomAccess {
+    private final ArrayList<TicketRow> tickets = new ArrayList<>();
+    private final HashMap<String, Integer> positions = new HashMap<>();
+
+    public void setTickets(Collection<Ticket> newTickets) {
+        tickets.clear();
+        for (Ticket ticket : newTickets) {
+            tickets.add(TicketRow.of(ticket));
+        }
+        reindex();
+    }
+
+    public void sortBy(Comparator<? super Ticket> comparator) {
+        Collections.sort(tickets, (r1, r2) -> comparator.compare(r1.getTicket(), r2.getTicket()));
+        reindex();
+    }
+
+    @Override
+    public Ticket get(int index) {
+        return tickets.get(index).getTicket();
+    }
+
+    public TicketRow getRow(int index) {
+        return tickets.get(index);
+    }
+
+    public void addRows(Collection<TicketRow> rows) {
+        for (TicketRow row : rows) {
+            add(tickets.size(), row);
+        }
+    }
+
+    public TicketRow setRow(int index, TicketRow row) {
+        TicketRow old = tickets.set(index, row);
+        // Price updates put the same flight back in place, nothing moves
+        if (!keyOf(old.getTicket()).equals(keyOf(row.getTicket()))) {
+            reindex();
+        }
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return tickets.size();
+    }
+
+    @Override
+    public Ticket set(int index, Ticket ticket) {
+        return setRow(index, TicketRow.of(ticket)).getTicket();
+    }
+
+    @Override
+    public void add(int index, Ticket ticket) {
+        add(index, TicketRow.of(ticket));
+    }
+
+    private void add(int index, TicketRow row) {
+        tickets.add(index, row);
+        if (index == tickets.size() - 1) {
+            String key = keyOf(row.getTicket());
+            if (!positions.containsKey(key)) {
+                positions.put(key, index);
+            }
+        } else {
+            reindex();
+        }
+        modCount++;
+    }
+
+    @Override
+    public Ticket remove(int index) {
+        TicketRow old = tickets.remove(index);
+        reindex();
+        modCount++;
+        return old.getTicket();
+    }
+
+    @Override
+    public void clear() {
+        tickets.clear();
+        positions.clear();
+        modCount++;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof Ticket)) {
+            return -1;
+        }
+        Integer position = positions.get(keyOf((Ticket) o));
+        return position == null ? -1 : position;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) != -1;
+    }
+
+    private void reindex() {
+        positions.clear();
+        for (int i = 0; i < tickets.size(); i++) {
+            String key = keyOf(tickets.get(i).getTicket());
+            if (!positions.containsKey(key)) {
+                positions.put(key, i);
+            }
+        }
+        modCount++;
+    }
+
+    private static String keyOf(Ticket ticket) {
+        return ticket == null ? "" : Ticket.normalizeFlightNumber(ticket.getFlightNumber());
+    }
+}
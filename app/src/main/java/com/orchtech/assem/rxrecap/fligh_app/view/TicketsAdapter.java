@@ -1,7 +1,6 @@
 package com.orchtech.assem.rxrecap.fligh_app.view;
 
 import android.content.Context;
-import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -23,8 +22,12 @@ import butterknife.ButterKnife;
 
  
 public class TicketsAdapter extends RecyclerView.Adapter<TicketsAdapter.MyViewHolder> {
+    // Only price, seats and loader changed, the rest of the row is left as it is
+    public static final Object PAYLOAD_PRICE = "payload_price";
+
     private Context context;
-    private List<Ticket> contactList;
+    // Rows come with every string built, binding does no formatting
+    private TicketStore contactList;
     private TicketsAdapterListener listener;
  
     public class MyViewHolder extends RecyclerView.ViewHolder {
@@ -69,7 +72,7 @@ public class TicketsAdapter extends RecyclerView.Adapter<TicketsAdapter.MyViewHo
         }
     }
  
-    public TicketsAdapter(Context context, List<Ticket> contactList, TicketsAdapterListener listener) {
+    public TicketsAdapter(Context context, TicketStore contactList, TicketsAdapterListener listener) {
         this.context = context;
         this.listener = listener;
         this.contactList = contactList;
@@ -85,29 +88,42 @@ public class TicketsAdapter extends RecyclerView.Adapter<TicketsAdapter.MyViewHo
  
     @Override
     public void onBindViewHolder(MyViewHolder holder, final int position) {
-        final Ticket ticket = contactList.get(position);
+        final TicketRow row = contactList.getRow(position);
  
         Glide.with(context)
-                .load(ticket.getAirline().getLogo())
+                .load(row.getLogo())
                 .apply(RequestOptions.circleCropTransform())
                 .into(holder.logo);
  
-        holder.airlineName.setText(ticket.getAirline().getName());
+        holder.airlineName.setText(row.getAirlineName());
+        holder.departure.setText(row.getDeparture());
+        holder.arrival.setText(row.getArrival());
+        holder.duration.setText(row.getDuration());
+        holder.stops.setText(row.getStops());
  
-        holder.departure.setText(ticket.getDeparture() + " Dep");
-        holder.arrival.setText(ticket.getArrival() + " Dest");
+        bindPrice(holder, row);
+    }
  
-        holder.duration.setText(ticket.getFlightNumber());
-        holder.duration.append(", " + ticket.getDuration());
-        holder.stops.setText(ticket.getNumberOfStops() + " Stops");
+    @Override
+    public void onBindViewHolder(MyViewHolder holder, int position, List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
  
-        if (!TextUtils.isEmpty(ticket.getInstructions())) {
-            holder.duration.append(", " + ticket.getInstructions());
+        for (Object payload : payloads) {
+            if (payload != PAYLOAD_PRICE) {
+                onBindViewHolder(holder, position);
+                return;
+            }
         }
+        bindPrice(holder, contactList.getRow(position));
+    }
  
-        if (ticket.getPrice() != null) {
-            holder.price.setText("₹" + String.format("%.0f", ticket.getPrice().getPrice()));
-            holder.seats.setText(ticket.getPrice().getSeats() + " Seats");
+    private void bindPrice(MyViewHolder holder, TicketRow row) {
+        if (row.getPrice() != null) {
+            holder.price.setText(row.getPrice());
+            holder.seats.setText(row.getSeats());
             holder.loader.setVisibility(View.INVISIBLE);
         } else {
             holder.loader.setVisibility(View.VISIBLE);
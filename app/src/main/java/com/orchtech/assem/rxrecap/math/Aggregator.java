@@ -0,0 +1,45 @@
+package com.orchtech.assem.rxrecap.math;
+
+/**
+ * The running sum, minimum, maximum or average of the numbers one subscription has seen
+ * The state is primitive, so adding a value allocates nothing, only the result is boxed
+ * int and long values are aggregated as longs and an int result is narrowed at the end, which wraps
+ * the same way adding ints does. double values are aggregated as doubles
+ * With a window only the last window values count, otherwise all of them
+ */
+abstract class Aggregator {
+    enum Op {SUM, MIN, MAX, AVERAGE}
+
+    static Aggregator ofLongs(Op op) {
+        return new LongAggregator(op);
+    }
+
+    static Aggregator ofLongs(Op op, int window) {
+        return new RollingLongAggregator(op, window);
+    }
+
+    static Aggregator ofDoubles(Op op) {
+        return new DoubleAggregator(op);
+    }
+
+    static Aggregator ofDoubles(Op op, int window) {
+        return new RollingDoubleAggregator(op, window);
+    }
+
+    abstract void add(Number value);
+
+    /**
+     * Whether nothing was added yet, a minimum, maximum or average has no value then
+     */
+    abstract boolean isEmpty();
+
+    abstract long longValue();
+
+    abstract double doubleValue();
+
+    static void checkWindow(int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("window must be at least 1, was " + window);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.orchtech.assem.rxrecap.math;
+
+/**
+ * Aggregates every value added, minimum and maximum compare with < and > like a hand-written reduce would
+ */
+final class DoubleAggregator extends Aggregator {
+    private final Op op;
+    private double value;
+    private long count;
+
+    DoubleAggregator(Op op) {
+        this.op = op;
+    }
+
+    @Override
+    void add(Number number) {
+        double next = number.doubleValue();
+        switch (op) {
+            case MIN:
+                if (count == 0 || next < value) {
+                    value = next;
+                }
+                break;
+            case MAX:
+                if (count == 0 || next > value) {
+                    value = next;
+                }
+                break;
+            default:
+                value += next;
+        }
+        count++;
+    }
+
+    @Override
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    @Override
+    long longValue() {
+        return (long) doubleValue();
+    }
+
+    @Override
+    double doubleValue() {
+        return op == Op.AVERAGE ? value / count : value;
+    }
+}
@@ -0,0 +1,49 @@
+package com.orchtech.assem.rxrecap.math;
+
+/**
+ * Aggregates every value added, the average divides a long sum, which overflows like adding the longs would
+ */
+final class LongAggregator extends Aggregator {
+    private final Op op;
+    private long value;
+    private long count;
+
+    LongAggregator(Op op) {
+        this.op = op;
+    }
+
+    @Override
+    void add(Number number) {
+        long next = number.longValue();
+        switch (op) {
+            case MIN:
+                if (count == 0 || next < value) {
+                    value = next;
+                }
+                break;
+            case MAX:
+                if (count == 0 || next > value) {
+                    value = next;
+                }
+                break;
+            default:
+                value += next;
+        }
+        count++;
+    }
+
+    @Override
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    @Override
+    long longValue() {
+        return value;
+    }
+
+    @Override
+    double doubleValue() {
+        return op == Op.AVERAGE ? (double) value / count : value;
+    }
+}
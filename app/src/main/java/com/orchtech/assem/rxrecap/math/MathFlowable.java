@@ -0,0 +1,145 @@
+package com.orchtech.assem.rxrecap.math;
+
+import java.util.concurrent.Callable;
+
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import io.reactivex.functions.BiConsumer;
+import io.reactivex.functions.Function;
+
+import static com.orchtech.assem.rxrecap.math.Aggregator.Op.AVERAGE;
+import static com.orchtech.assem.rxrecap.math.Aggregator.Op.MAX;
+import static com.orchtech.assem.rxrecap.math.Aggregator.Op.MIN;
+import static com.orchtech.assem.rxrecap.math.Aggregator.Op.SUM;
+
+/**
+ * The MathObservable operators for a Flowable
+ * The aggregates request everything from the source, the rolling variants pass the downstream requests on
+ */
+public final class MathFlowable {
+    private static final BiConsumer<Aggregator, Number> ADD = Aggregator::add;
+    private static final Function<Aggregator, Integer> TO_INT = aggregator -> (int) aggregator.longValue();
+    private static final Function<Aggregator, Long> TO_LONG = Aggregator::longValue;
+    private static final Function<Aggregator, Double> TO_DOUBLE = Aggregator::doubleValue;
+
+    private MathFlowable() {
+    }
+
+    public static Single<Integer> sumInt(Flowable<Integer> source) {
+        return source.collect(() -> Aggregator.ofLongs(SUM), ADD).map(TO_INT);
+    }
+
+    public static Single<Long> sumLong(Flowable<Long> source) {
+        return source.collect(() -> Aggregator.ofLongs(SUM), ADD).map(TO_LONG);
+    }
+
+    public static Single<Double> sumDouble(Flowable<Double> source) {
+        return source.collect(() -> Aggregator.ofDoubles(SUM), ADD).map(TO_DOUBLE);
+    }
+
+    public static Maybe<Integer> minInt(Flowable<Integer> source) {
+        return aggregate(source, () -> Aggregator.ofLongs(MIN), TO_INT);
+    }
+
+    public static Maybe<Long> minLong(Flowable<Long> source) {
+        return aggregate(source, () -> Aggregator.ofLongs(MIN), TO_LONG);
+    }
+
+    public static Maybe<Double> minDouble(Flowable<Double> source) {
+        return aggregate(source, () -> Aggregator.ofDoubles(MIN), TO_DOUBLE);
+    }
+
+    public static Maybe<Integer> maxInt(Flowable<Integer> source) {
+        return aggregate(source, () -> Aggregator.ofLongs(MAX), TO_INT);
+    }
+
+    public static Maybe<Long> maxLong(Flowable<Long> source) {
+        return aggregate(source, () -> Aggregator.ofLongs(MAX), TO_LONG);
+    }
+
+    public static Maybe<Double> maxDouble(Flowable<Double> source) {
+        return aggregate(source, () -> Aggregator.ofDoubles(MAX), TO_DOUBLE);
+    }
+
+    public static Maybe<Double> averageInt(Flowable<Integer> source) {
+        return aggregate(source, () -> Aggregator.ofLongs(AVERAGE), TO_DOUBLE);
+    }
+
+    public static Maybe<Double> averageLong(Flowable<Long> source) {
+        return aggregate(source, () -> Aggregator.ofLongs(AVERAGE), TO_DOUBLE);
+    }
+
+    public static Maybe<Double> averageDouble(Flowable<Double> source) {
+        return aggregate(source, () -> Aggregator.ofDoubles(AVERAGE), TO_DOUBLE);
+    }
+
+    public static Flowable<Integer> rollingSumInt(Flowable<Integer> source, int window) {
+        return rolling(source, window, () -> Aggregator.ofLongs(SUM, window), TO_INT);
+    }
+
+    public static Flowable<Long> rollingSumLong(Flowable<Long> source, int window) {
+        return rolling(source, window, () -> Aggregator.ofLongs(SUM, window), TO_LONG);
+    }
+
+    public static Flowable<Double> rollingSumDouble(Flowable<Double> source, int window) {
+        return rolling(source, window, () -> Aggregator.ofDoubles(SUM, window), TO_DOUBLE);
+    }
+
+    public static Flowable<Integer> rollingMinInt(Flowable<Integer> source, int window) {
+        return rolling(source, window, () -> Aggregator.ofLongs(MIN, window), TO_INT);
+    }
+
+    public static Flowable<Long> rollingMinLong(Flowable<Long> source, int window) {
+        return rolling(source, window, () -> Aggregator.ofLongs(MIN, window), TO_LONG);
+    }
+
+    public static Flowable<Double> rollingMinDouble(Flowable<Double> source, int window) {
+        return rolling(source, window, () -> Aggregator.ofDoubles(MIN, window), TO_DOUBLE);
+    }
+
+    public static Flowable<Integer> rollingMaxInt(Flowable<Integer> source, int window) {
+        return rolling(source, window, () -> Aggregator.ofLongs(MAX, window), TO_INT);
+    }
+
+    public static Flowable<Long> rollingMaxLong(Flowable<Long> source, int window) {
+        return rolling(source, window, () -> Aggregator.ofLongs(MAX, window), TO_LONG);
+    }
+
+    public static Flowable<Double> rollingMaxDouble(Flowable<Double> source, int window) {
+        return rolling(source, window, () -> Aggregator.ofDoubles(MAX, window), TO_DOUBLE);
+    }
+
+    public static Flowable<Double> rollingAverageInt(Flowable<Integer> source, int window) {
+        return rolling(source, window, () -> Aggregator.ofLongs(AVERAGE, window), TO_DOUBLE);
+    }
+
+    public static Flowable<Double> rollingAverageLong(Flowable<Long> source, int window) {
+        return rolling(source, window, () -> Aggregator.ofLongs(AVERAGE, window), TO_DOUBLE);
+    }
+
+    public static Flowable<Double> rollingAverageDouble(Flowable<Double> source, int window) {
+        return rolling(source, window, () -> Aggregator.ofDoubles(AVERAGE, window), TO_DOUBLE);
+    }
+
+    private static <T extends Number, R> Maybe<R> aggregate(Flowable<T> source, Callable<Aggregator> aggregator,
+                                                            Function<Aggregator, R> result) {
+        return source.collect(aggregator, ADD)
+                .filter(collected -> !collected.isEmpty())
+                .map(result);
+    }
+
+    // Each subscriber gets its own aggregator
+    private static <T extends Number, R> Flowable<R> rolling(Flowable<T> source, int window,
+                                                               Callable<Aggregator> aggregator,
+                                                               Function<Aggregator, R> result) {
+        Aggregator.checkWindow(window);
+        return Flowable.defer(() -> {
+            final Aggregator rolling = aggregator.call();
+            return source.map(value -> {
+                rolling.add(value);
+                return result.apply(rolling);
+            });
+        });
+    }
+}
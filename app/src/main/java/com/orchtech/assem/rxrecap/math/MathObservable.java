@@ -0,0 +1,149 @@
+package com.orchtech.assem.rxrecap.math;
+
+import java.util.concurrent.Callable;
+
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.functions.BiConsumer;
+import io.reactivex.functions.Function;
+
+import static com.orchtech.assem.rxrecap.math.Aggregator.Op.AVERAGE;
+import static com.orchtech.assem.rxrecap.math.Aggregator.Op.MAX;
+import static com.orchtech.assem.rxrecap.math.Aggregator.Op.MIN;
+import static com.orchtech.assem.rxrecap.math.Aggregator.Op.SUM;
+
+/**
+ * Sum, min, max and average of an Observable of ints, longs or doubles, in place of rxjava-math,
+ * which is built on RxJava 1
+ * Unlike reduce((a, b) -> a + b) they do not box a new number for every item, the running value
+ * is a primitive and only the result is boxed. count() is already in Observable and does not box either
+ * The sum of no items is 0, min, max and average of no items complete empty
+ * The rolling variants emit the aggregate of the last window items for every item
+ */
+public final class MathObservable {
+    private static final BiConsumer<Aggregator, Number> ADD = Aggregator::add;
+    private static final Function<Aggregator, Integer> TO_INT = aggregator -> (int) aggregator.longValue();
+    private static final Function<Aggregator, Long> TO_LONG = Aggregator::longValue;
+    private static final Function<Aggregator, Double> TO_DOUBLE = Aggregator::doubleValue;
+
+    private MathObservable() {
+    }
+
+    public static Single<Integer> sumInt(Observable<Integer> source) {
+        return source.collect(() -> Aggregator.ofLongs(SUM), ADD).map(TO_INT);
+    }
+
+    public static Single<Long> sumLong(Observable<Long> source) {
+        return source.collect(() -> Aggregator.ofLongs(SUM), ADD).map(TO_LONG);
+    }
+
+    public static Single<Double> sumDouble(Observable<Double> source) {
+        return source.collect(() -> Aggregator.ofDoubles(SUM), ADD).map(TO_DOUBLE);
+    }
+
+    public static Maybe<Integer> minInt(Observable<Integer> source) {
+        return aggregate(source, () -> Aggregator.ofLongs(MIN), TO_INT);
+    }
+
+    public static Maybe<Long> minLong(Observable<Long> source) {
+        return aggregate(source, () -> Aggregator.ofLongs(MIN), TO_LONG);
+    }
+
+    public static Maybe<Double> minDouble(Observable<Double> source) {
+        return aggregate(source, () -> Aggregator.ofDoubles(MIN), TO_DOUBLE);
+    }
+
+    public static Maybe<Integer> maxInt(Observable<Integer> source) {
+        return aggregate(source, () -> Aggregator.ofLongs(MAX), TO_INT);
+    }
+
+    public static Maybe<Long> maxLong(Observable<Long> source) {
+        return aggregate(source, () -> Aggregator.ofLongs(MAX), TO_LONG);
+    }
+
+    public static Maybe<Double> maxDouble(Observable<Double> source) {
+        return aggregate(source, () -> Aggregator.ofDoubles(MAX), TO_DOUBLE);
+    }
+
+    public static Maybe<Double> averageInt(Observable<Integer> source) {
+        return aggregate(source, () -> Aggregator.ofLongs(AVERAGE), TO_DOUBLE);
+    }
+
+    public static Maybe<Double> averageLong(Observable<Long> source) {
+        return aggregate(source, () -> Aggregator.ofLongs(AVERAGE), TO_DOUBLE);
+    }
+
+    public static Maybe<Double> averageDouble(Observable<Double> source) {
+        return aggregate(source, () -> Aggregator.ofDoubles(AVERAGE), TO_DOUBLE);
+    }
+
+    public static Observable<Integer> rollingSumInt(Observable<Integer> source, int window) {
+        return rolling(source, window, () -> Aggregator.ofLongs(SUM, window), TO_INT);
+    }
+
+    public static Observable<Long> rollingSumLong(Observable<Long> source, int window) {
+        return rolling(source, window, () -> Aggregator.ofLongs(SUM, window), TO_LONG);
+    }
+
+    public static Observable<Double> rollingSumDouble(Observable<Double> source, int window) {
+        return rolling(source, window, () -> Aggregator.ofDoubles(SUM, window), TO_DOUBLE);
+    }
+
+    public static Observable<Integer> rollingMinInt(Observable<Integer> source, int window) {
+        return rolling(source, window, () -> Aggregator.ofLongs(MIN, window), TO_INT);
+    }
+
+    public static Observable<Long> rollingMinLong(Observable<Long> source, int window) {
+        return rolling(source, window, () -> Aggregator.ofLongs(MIN, window), TO_LONG);
+    }
+
+    public static Observable<Double> rollingMinDouble(Observable<Double> source, int window) {
+        return rolling(source, window, () -> Aggregator.ofDoubles(MIN, window), TO_DOUBLE);
+    }
+
+    public static Observable<Integer> rollingMaxInt(Observable<Integer> source, int window) {
+        return rolling(source, window, () -> Aggregator.ofLongs(MAX, window), TO_INT);
+    }
+
+    public static Observable<Long> rollingMaxLong(Observable<Long> source, int window) {
+        return rolling(source, window, () -> Aggregator.ofLongs(MAX, window), TO_LONG);
+    }
+
+    public static Observable<Double> rollingMaxDouble(Observable<Double> source, int window) {
+        return rolling(source, window, () -> Aggregator.ofDoubles(MAX, window), TO_DOUBLE);
+    }
+
+    public static Observable<Double> rollingAverageInt(Observable<Integer> source, int window) {
+        return rolling(source, window, () -> Aggregator.ofLongs(AVERAGE, window), TO_DOUBLE);
+    }
+
+    public static Observable<Double> rollingAverageLong(Observable<Long> source, int window) {
+        return rolling(source, window, () -> Aggregator.ofLongs(AVERAGE, window), TO_DOUBLE);
+    }
+
+    public static Observable<Double> rollingAverageDouble(Observable<Double> source, int window) {
+        return rolling(source, window, () -> Aggregator.ofDoubles(AVERAGE, window), TO_DOUBLE);
+    }
+
+    private static <T extends Number, R> Maybe<R> aggregate(Observable<T> source, Callable<Aggregator> aggregator,
+                                                            Function<Aggregator, R> result) {
+        return source.collect(aggregator, ADD)
+                .filter(collected -> !collected.isEmpty())
+                .map(result);
+    }
+
+    // Each subscriber gets its own aggregator
+    private static <T extends Number, R> Observable<R> rolling(Observable<T> source, int window,
+                                                               Callable<Aggregator> aggregator,
+                                                               Function<Aggregator, R> result) {
+        Aggregator.checkWindow(window);
+        return Observable.defer(() -> {
+            final Aggregator rolling = aggregator.call();
+            return source.map(value -> {
+                rolling.add(value);
+                return result.apply(rolling);
+            });
+        });
+    }
+}
@@ -0,0 +1,71 @@
+package com.orchtech.assem.rxrecap.math;
+
+/**
+ * Aggregates the last window values added, like RollingLongAggregator
+ * The sum is kept by adding and taking away, so it carries the rounding errors of values that left the window
+ */
+final class RollingDoubleAggregator extends Aggregator {
+    private final Op op;
+    private final double[] values;
+    // Sequence numbers of the candidates for the minimum or maximum, oldest first, a ring as well
+    private final long[] candidates;
+    private int first;
+    private int candidateCount;
+    private long added;
+    private double sum;
+
+    RollingDoubleAggregator(Op op, int window) {
+        checkWindow(window);
+        this.op = op;
+        this.values = new double[window];
+        this.candidates = op == Op.MIN || op == Op.MAX ? new long[window] : null;
+    }
+
+    @Override
+    void add(Number number) {
+        double next = number.doubleValue();
+        int window = values.length;
+        int slot = (int) (added % window);
+        if (candidates != null) {
+            if (candidateCount > 0 && candidates[first] <= added - window) {
+                first = (first + 1) % window;
+                candidateCount--;
+            }
+            // A newer value at least as good means the older ones can never be the result again
+            while (candidateCount > 0) {
+                double last = values[(int) (candidates[(first + candidateCount - 1) % window] % window)];
+                if (op == Op.MIN ? last < next : last > next) {
+                    break;
+                }
+                candidateCount--;
+            }
+            candidates[(first + candidateCount) % window] = added;
+            candidateCount++;
+        } else {
+            if (added >= window) {
+                sum -= values[slot];
+            }
+            sum += next;
+        }
+        values[slot] = next;
+        added++;
+    }
+
+    @Override
+    boolean isEmpty() {
+        return added == 0;
+    }
+
+    @Override
+    long longValue() {
+        return (long) doubleValue();
+    }
+
+    @Override
+    double doubleValue() {
+        if (candidates != null) {
+            return values[(int) (candidates[first] % values.length)];
+        }
+        return op == Op.AVERAGE ? sum / Math.min(added, values.length) : sum;
+    }
+}
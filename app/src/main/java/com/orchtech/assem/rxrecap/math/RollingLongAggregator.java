@@ -0,0 +1,73 @@
+package com.orchtech.assem.rxrecap.math;
+
+/**
+ * Aggregates the last window values added
+ * The values are kept in a ring, the sum by adding the new value and taking away the one leaving the window
+ * Minimum and maximum keep a monotonic queue of the values that can still become the result,
+ * so each value is queued and dropped once and every add is constant time on average
+ */
+final class RollingLongAggregator extends Aggregator {
+    private final Op op;
+    private final long[] values;
+    // Sequence numbers of the candidates for the minimum or maximum, oldest first, a ring as well
+    private final long[] candidates;
+    private int first;
+    private int candidateCount;
+    private long added;
+    private long sum;
+
+    RollingLongAggregator(Op op, int window) {
+        checkWindow(window);
+        this.op = op;
+        this.values = new long[window];
+        this.candidates = op == Op.MIN || op == Op.MAX ? new long[window] : null;
+    }
+
+    @Override
+    void add(Number number) {
+        long next = number.longValue();
+        int window = values.length;
+        int slot = (int) (added % window);
+        if (candidates != null) {
+            if (candidateCount > 0 && candidates[first] <= added - window) {
+                first = (first + 1) % window;
+                candidateCount--;
+            }
+            // A newer value at least as good means the older ones can never be the result again
+            while (candidateCount > 0) {
+                long last = values[(int) (candidates[(first + candidateCount - 1) % window] % window)];
+                if (op == Op.MIN ? last < next : last > next) {
+                    break;
+                }
+                candidateCount--;
+            }
+            candidates[(first + candidateCount) % window] = added;
+            candidateCount++;
+        } else {
+            if (added >= window) {
+                sum -= values[slot];
+            }
+            sum += next;
+        }
+        values[slot] = next;
+        added++;
+    }
+
+    @Override
+    boolean isEmpty() {
+        return added == 0;
+    }
+
+    @Override
+    long longValue() {
+        if (candidates != null) {
+            return values[(int) (candidates[first] % values.length)];
+        }
+        return sum;
+    }
+
+    @Override
+    double doubleValue() {
+        return op == Op.AVERAGE ? (double) sum / Math.min(added, values.length) : longValue();
+    }
+}
@@ -0,0 +1,274 @@
+package com.orchtech.assem.rxrecap.network;
+
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.Observer;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Limits how many calls run at the same time, the rest wait in a bounded queue
+ * The limit is not fixed, it follows AIMD:
+ * every fast successful call adds 1 / limit, so the limit grows by one per "round trip"
+ * every failed call, or a smoothed latency above tolerance * the lowest latency seen, multiplies it by backoffRatio
+ * at most once per round, so one slow burst does not collapse the limit
+ * Calls that arrive while the queue is full fail with RejectedExecutionException
+ */
+public class AdaptiveConcurrencyLimiter {
+    private static final int DEFAULT_INITIAL_LIMIT = 8;
+    private static final int DEFAULT_MIN_LIMIT = 1;
+    private static final int DEFAULT_MAX_LIMIT = 64;
+    private static final int DEFAULT_MAX_QUEUE = 1000;
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    // Jitter below this is never taken as congestion, fast links would back off on noise otherwise
+    private static final long LATENCY_SLACK_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+    private static final double SMOOTHING = 0.2;
+    // Lowest latency is forgotten after this many samples so the limiter can follow a slower network
+    private static final int MIN_LATENCY_WINDOW = 200;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final Scheduler clock;
+
+    private final ArrayDeque<Slot> queue = new ArrayDeque<>();
+    // Taken off the queue but not started yet, see drain()
+    private final ArrayDeque<Slot> starting = new ArrayDeque<>();
+    private boolean draining;
+    private double limit;
+    private int inFlight;
+    private long minLatencyNanos = Long.MAX_VALUE;
+    private double smoothedLatencyNanos;
+    private int samples;
+    private int samplesSinceBackoff;
+
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public AdaptiveConcurrencyLimiter() {
+        this(DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT, DEFAULT_MAX_QUEUE);
+    }
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, int maxQueue) {
+        this(initialLimit, minLimit, maxLimit, maxQueue, Schedulers.computation());
+    }
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, int maxQueue, Scheduler clock) {
+        if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("expected 1 <= minLimit <= initialLimit <= maxLimit");
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueue = maxQueue;
+        this.clock = clock;
+    }
+
+    /**
+     * Subscribes to call once a slot is free
+     * Disposing before that removes it from the queue
+     */
+    public <T> Observable<T> submit(final Observable<T> call) {
+        return Observable.create(emitter -> {
+            final Slot slot = new Slot();
+            slot.start = () -> subscribe(call, emitter, slot);
+            emitter.setCancellable(() -> cancel(slot));
+            acquire(slot, emitter);
+        });
+    }
+
+    public <T> Single<T> submit(Single<T> call) {
+        return submit(call.toObservable()).singleOrError();
+    }
+
+    private <T> void subscribe(Observable<T> call, final ObservableEmitter<T> emitter, final Slot slot) {
+        slot.startNanos = clock.now(TimeUnit.NANOSECONDS);
+        call.subscribe(new Observer<T>() {
+            @Override
+            public void onSubscribe(Disposable d) {
+                slot.upstream = d;
+                if (emitter.isDisposed()) {
+                    d.dispose();
+                }
+            }
+
+            @Override
+            public void onNext(T t) {
+                emitter.onNext(t);
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                release(slot, true, true);
+                emitter.tryOnError(e);
+            }
+
+            @Override
+            public void onComplete() {
+                release(slot, true, false);
+                emitter.onComplete();
+            }
+        });
+    }
+
+    private void acquire(Slot slot, ObservableEmitter<?> emitter) {
+        synchronized (this) {
+            if (inFlight >= (int) limit) {
+                if (queue.size() >= maxQueue) {
+                    rejected.incrementAndGet();
+                    emitter.tryOnError(new RejectedExecutionException("Limiter queue is full: " + maxQueue));
+                    return;
+                }
+                queue.add(slot);
+                return;
+            }
+            inFlight++;
+            slot.started = true;
+        }
+        slot.start.run();
+    }
+
+    private void cancel(Slot slot) {
+        synchronized (this) {
+            if (!slot.started) {
+                queue.remove(slot);
+                return;
+            }
+        }
+        Disposable upstream = slot.upstream;
+        if (upstream != null) {
+            upstream.dispose();
+        }
+        // Cancelled calls say nothing about the network, the limit is left as it is
+        release(slot, false, false);
+    }
+
+    private void release(Slot slot, boolean measured, boolean error) {
+        synchronized (this) {
+            if (slot.released) {
+                return;
+            }
+            slot.released = true;
+            inFlight--;
+
+            if (measured) {
+                onSample(clock.now(TimeUnit.NANOSECONDS) - slot.startNanos, error);
+            }
+
+            while (inFlight < (int) limit && !queue.isEmpty()) {
+                Slot queued = queue.poll();
+                queued.started = true;
+                inFlight++;
+                starting.add(queued);
+            }
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+        drain();
+    }
+
+    /**
+     * Starts the slots release() took off the queue, one after another
+     * A call that completes while it is started releases again from inside start.run(), that release
+     * only adds to starting and the loop here picks it up, so a queue of synchronous calls does not
+     * grow the stack
+     */
+    private void drain() {
+        while (true) {
+            Slot next;
+            synchronized (this) {
+                next = starting.poll();
+                if (next == null) {
+                    draining = false;
+                    return;
+                }
+            }
+            next.start.run();
+        }
+    }
+
+    // Called holding the lock
+    private void onSample(long latencyNanos, boolean error) {
+        if (error) {
+            failed.incrementAndGet();
+        } else {
+            completed.incrementAndGet();
+        }
+
+        if (++samples > MIN_LATENCY_WINDOW) {
+            samples = 0;
+            minLatencyNanos = Long.MAX_VALUE;
+        }
+        if (!error) {
+            minLatencyNanos = Math.min(minLatencyNanos, latencyNanos);
+            smoothedLatencyNanos = smoothedLatencyNanos == 0
+                    ? latencyNanos
+                    : smoothedLatencyNanos + SMOOTHING * (latencyNanos - smoothedLatencyNanos);
+        }
+
+        double threshold = Math.max(minLatencyNanos * LATENCY_TOLERANCE, minLatencyNanos + LATENCY_SLACK_NANOS);
+        boolean congested = error || smoothedLatencyNanos > threshold;
+        samplesSinceBackoff++;
+        if (congested) {
+            // Calls already in flight when we backed off report the same congestion again
+            if (samplesSinceBackoff >= (int) limit) {
+                limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+                samplesSinceBackoff = 0;
+            }
+        } else if (inFlight + 1 >= (int) limit) {
+            // Only grow while the current limit is actually in use
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueueLength() {
+        return queue.size();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US,
+                "AdaptiveConcurrencyLimiter{limit=%.2f, inFlight=%d, queued=%d, completed=%d, failed=%d, rejected=%d}",
+                limit, inFlight, queue.size(), completed.get(), failed.get(), rejected.get());
+    }
+
+    private static class Slot {
+        Runnable start;
+        volatile Disposable upstream;
+        long startNanos;
+        boolean started;
+        boolean released;
+    }
+}
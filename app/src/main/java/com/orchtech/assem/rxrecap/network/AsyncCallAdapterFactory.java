@@ -0,0 +1,186 @@
+package com.orchtech.assem.rxrecap.network;
+
+import com.jakewharton.retrofit2.adapter.rxjava2.HttpException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+import io.reactivex.Completable;
+import io.reactivex.Single;
+import io.reactivex.SingleObserver;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.exceptions.Exceptions;
+import io.reactivex.plugins.RxJavaPlugins;
+import retrofit2.Call;
+import retrofit2.CallAdapter;
+import retrofit2.Callback;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+
+/**
+ * Makes the Single and Completable a Retrofit service returns run their call with Call.enqueue()
+ * RxJava2CallAdapterFactory runs Call.execute() on the subscribing thread, which then waits on the socket
+ * for the whole request. Here the call is handed to OkHttp's Dispatcher and the result is emitted from
+ * its callback thread, so calls in flight hold no scheduler threads and the Dispatcher's limits decide
+ * how many run at once
+ * Every subscription enqueues its own clone of the call, so a retry is a new request, disposing cancels it
+ * A response outside 2xx fails with the HttpException the Rx adapter used, Single<Response<Foo>> gets every response
+ */
+public class AsyncCallAdapterFactory extends CallAdapter.Factory {
+    private static final int BODY = 0;
+    private static final int RESPONSE = 1;
+    private static final int COMPLETION = 2;
+
+    private AsyncCallAdapterFactory() {
+    }
+
+    public static AsyncCallAdapterFactory create() {
+        return new AsyncCallAdapterFactory();
+    }
+
+    @Override
+    public CallAdapter<?> get(Type returnType, Annotation[] annotations, Retrofit retrofit) {
+        Class<?> rawType = getRawType(returnType);
+        if (rawType == Completable.class) {
+            return new EnqueueCallAdapter(Void.class, COMPLETION);
+        }
+        if (rawType != Single.class) {
+            return null;
+        }
+        if (!(returnType instanceof ParameterizedType)) {
+            throw new IllegalStateException("Single return type must be parameterized as Single<Foo> or Single<? extends Foo>");
+        }
+        Type singleType = getParameterUpperBound(0, (ParameterizedType) returnType);
+        if (getRawType(singleType) != Response.class) {
+            return new EnqueueCallAdapter(singleType, BODY);
+        }
+        if (!(singleType instanceof ParameterizedType)) {
+            throw new IllegalStateException("Response must be parameterized as Response<Foo> or Response<? extends Foo>");
+        }
+        return new EnqueueCallAdapter(getParameterUpperBound(0, (ParameterizedType) singleType), RESPONSE);
+    }
+
+    private static class EnqueueCallAdapter implements CallAdapter<Object> {
+        private final Type responseType;
+        private final int emits;
+
+        EnqueueCallAdapter(Type responseType, int emits) {
+            this.responseType = responseType;
+            this.emits = emits;
+        }
+
+        @Override
+        public Type responseType() {
+            return responseType;
+        }
+
+        @Override
+        public <R> Object adapt(Call<R> call) {
+            Single<Object> single = new EnqueueSingle<>(call, emits);
+            return emits == COMPLETION ? single.ignoreElement() : single;
+        }
+    }
+
+    private static class EnqueueSingle<R> extends Single<Object> {
+        private final Call<R> call;
+        private final int emits;
+
+        EnqueueSingle(Call<R> call, int emits) {
+            this.call = call;
+            this.emits = emits;
+        }
+
+        @Override
+        protected void subscribeActual(SingleObserver<? super Object> observer) {
+            Call<R> own = call.clone();
+            CallCallback<R> callback = new CallCallback<>(own, observer, emits);
+            observer.onSubscribe(callback);
+            if (!callback.isDisposed()) {
+                own.enqueue(callback);
+            }
+        }
+    }
+
+    private static class CallCallback<R> implements Callback<R>, Disposable {
+        private final Call<R> call;
+        private final SingleObserver<? super Object> observer;
+        private final int emits;
+        private volatile boolean disposed;
+
+        CallCallback(Call<R> call, SingleObserver<? super Object> observer, int emits) {
+            this.call = call;
+            this.observer = observer;
+            this.emits = emits;
+        }
+
+        @Override
+        public void onResponse(Call<R> call, Response<R> response) {
+            if (disposed) {
+                // An unread streaming body still holds the connection
+                closeQuietly(response.body());
+                return;
+            }
+            Object result = response;
+            if (emits != RESPONSE) {
+                if (!response.isSuccessful()) {
+                    deliverError(new HttpException(response));
+                    return;
+                }
+                if (emits == BODY) {
+                    result = response.body();
+                    if (result == null) {
+                        deliverError(new NullPointerException("No body in the " + response.code() + " response"));
+                        return;
+                    }
+                }
+            }
+            try {
+                observer.onSuccess(result);
+            } catch (Throwable t) {
+                Exceptions.throwIfFatal(t);
+                RxJavaPlugins.onError(t);
+            }
+        }
+
+        @Override
+        public void onFailure(Call<R> call, Throwable t) {
+            // Disposing cancels the call, which then fails with an IOException nobody waits for
+            if (!disposed) {
+                deliverError(t);
+            }
+        }
+
+        private void deliverError(Throwable error) {
+            try {
+                observer.onError(error);
+            } catch (Throwable t) {
+                Exceptions.throwIfFatal(t);
+                RxJavaPlugins.onError(t);
+            }
+        }
+
+        @Override
+        public void dispose() {
+            disposed = true;
+            call.cancel();
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return disposed;
+        }
+
+        private static void closeQuietly(Object body) {
+            if (body instanceof Closeable) {
+                try {
+                    ((Closeable) body).close();
+                } catch (IOException ignored) {
+                    // Nothing left to read it anyway
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.orchtech.assem.rxrecap.network;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Scheduler;
+
+/**
+ * Fails calls to one endpoint fast while it is failing, instead of sending every user's retries to it
+ * Closed: calls go through, the outcome of the last windowSize calls is kept
+ * Open: once at least minCalls of them are known and failureRatio of them failed, calls fail at once
+ * for openMillis, then halfOpenCalls probe calls are let through (half open)
+ * The probes close the breaker with a fresh window unless failureRatio of them fail, which opens it again
+ * The ratio is well above the error rate retries can still get through, and more than one probe decides,
+ * so an endpoint failing half its calls at random keeps being called instead of flapping open
+ */
+public class CircuitBreaker {
+    public enum State {CLOSED, OPEN, HALF_OPEN}
+
+    private static final int DEFAULT_WINDOW_SIZE = 20;
+    private static final int DEFAULT_MIN_CALLS = 20;
+    private static final double DEFAULT_FAILURE_RATIO = 0.8;
+    private static final long DEFAULT_OPEN_MILLIS = 15000;
+    private static final int DEFAULT_HALF_OPEN_CALLS = 5;
+
+    private final String name;
+    private final int minCalls;
+    private final double failureRatio;
+    private final long openMillis;
+    private final int halfOpenCalls;
+    // Probe failures that open the breaker again
+    private final int probeFailuresToOpen;
+    // Time comes from the scheduler so tests can move it
+    private final Scheduler clock;
+
+    // Ring of the last outcomes, true for a failure
+    private final boolean[] outcomes;
+    private int next;
+    private int recorded;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probes;
+    private int probeSuccesses;
+    private int probeFailures;
+
+    private long rejected;
+    private long opened;
+
+    public CircuitBreaker(String name, Scheduler clock) {
+        this(name, DEFAULT_WINDOW_SIZE, DEFAULT_MIN_CALLS, DEFAULT_FAILURE_RATIO, DEFAULT_OPEN_MILLIS, clock);
+    }
+
+    public CircuitBreaker(String name, int windowSize, int minCalls, double failureRatio, long openMillis,
+                          Scheduler clock) {
+        this(name, windowSize, minCalls, failureRatio, openMillis, DEFAULT_HALF_OPEN_CALLS, clock);
+    }
+
+    public CircuitBreaker(String name, int windowSize, int minCalls, double failureRatio, long openMillis,
+                          int halfOpenCalls, Scheduler clock) {
+        if (minCalls < 1 || windowSize < minCalls || failureRatio <= 0 || failureRatio > 1 || halfOpenCalls < 1) {
+            throw new IllegalArgumentException(
+                    "expected 1 <= minCalls <= windowSize, 0 < failureRatio <= 1 and halfOpenCalls >= 1");
+        }
+        this.name = name;
+        this.outcomes = new boolean[windowSize];
+        this.minCalls = minCalls;
+        this.failureRatio = failureRatio;
+        this.openMillis = openMillis;
+        this.halfOpenCalls = halfOpenCalls;
+        this.probeFailuresToOpen = (int) Math.ceil(failureRatio * halfOpenCalls);
+        this.clock = clock;
+    }
+
+    /**
+     * Whether a call may go out now, every true has to be followed by onSuccess(), onFailure() or onCancel()
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (clock.now(TimeUnit.MILLISECONDS) - openedAt < openMillis) {
+                rejected++;
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probes = 0;
+            probeSuccesses = 0;
+            probeFailures = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probes >= halfOpenCalls) {
+                rejected++;
+                return false;
+            }
+            probes++;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            // Closes as soon as the remaining probes cannot fail enough to open it
+            if (++probeSuccesses > halfOpenCalls - probeFailuresToOpen) {
+                state = State.CLOSED;
+                clearWindow();
+            }
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            if (++probeFailures >= probeFailuresToOpen) {
+                open();
+            }
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && recorded >= minCalls && failures >= failureRatio * recorded) {
+            open();
+        }
+    }
+
+    /**
+     * The call was disposed before it finished, it says nothing about the endpoint
+     */
+    public synchronized void onCancel() {
+        if (state == State.HALF_OPEN && probes > probeSuccesses + probeFailures) {
+            probes--;
+        }
+    }
+
+    private void record(boolean failure) {
+        if (recorded == outcomes.length) {
+            if (outcomes[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        outcomes[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % outcomes.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = clock.now(TimeUnit.MILLISECONDS);
+        opened++;
+        clearWindow();
+    }
+
+    private void clearWindow() {
+        next = 0;
+        recorded = 0;
+        failures = 0;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Calls failed fast without reaching the endpoint
+     */
+    public synchronized long getRejectedCount() {
+        return rejected;
+    }
+
+    public synchronized long getOpenedCount() {
+        return opened;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "CircuitBreaker{%s, state=%s, failures=%d/%d, opened=%d, rejected=%d}",
+                name, state, failures, recorded, opened, rejected);
+    }
+}
@@ -0,0 +1,15 @@
+package com.orchtech.assem.rxrecap.network;
+
+import java.io.IOException;
+
+/**
+ * The call was not made, the endpoint's CircuitBreaker is open
+ * An IOException like any other failure to reach the server, so callers need no extra handling
+ */
+public class CircuitOpenException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public CircuitOpenException(String endpoint) {
+        super("Circuit open, not calling " + endpoint);
+    }
+}
@@ -0,0 +1,94 @@
+package com.orchtech.assem.rxrecap.network;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Scheduler;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+/**
+ * The one OkHttpClient every api client derives from with newBuilder()
+ * Clients built that way share its connection pool, dispatcher and thread pools,
+ * so sockets, TLS sessions and threads are not duplicated per api
+ * Api calls are enqueued on its dispatcher (see AsyncCallAdapterFactory), whose limits decide how many run at once
+ * Network pipelines subscribe on its one bounded NetworkScheduler for the same reason
+ */
+public class HttpCore {
+    private static final int REQUEST_TIMEOUT = 60;
+    private static final int MAX_IDLE_CONNECTIONS = 8;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    // Sized for the price fan-out: enqueued calls hold no thread, so a per host limit below it only
+    // makes the fan-out take more round trips than execute() on io did (see PriceFanOutBenchmark)
+    private static final int MAX_REQUESTS = 128;
+    private static final int MAX_REQUESTS_PER_HOST = 64;
+
+    private static OkHttpClient okHttpClient;
+    private static NetworkScheduler networkScheduler;
+
+    public static synchronized OkHttpClient getClient() {
+        if (okHttpClient == null) {
+            Dispatcher dispatcher = new Dispatcher();
+            dispatcher.setMaxRequests(MAX_REQUESTS);
+            dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+
+            okHttpClient = new OkHttpClient.Builder()
+                    .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                    .dispatcher(dispatcher)
+                    // HTTP/2 is negotiated with ALPN where the server supports it, one connection then carries every call
+                    .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                    .connectTimeout(REQUEST_TIMEOUT, TimeUnit.SECONDS)
+                    .readTimeout(REQUEST_TIMEOUT, TimeUnit.SECONDS)
+                    .writeTimeout(REQUEST_TIMEOUT, TimeUnit.SECONDS)
+                    .build();
+        }
+        return okHttpClient;
+    }
+
+    /**
+     * Where blocking network calls run, instead of Schedulers.io()
+     * Activities subscribe on it from the main thread, so a full queue spills to Schedulers.io() rather than blocking
+     */
+    public static Scheduler getScheduler() {
+        return getNetworkScheduler().getScheduler();
+    }
+
+    public static synchronized NetworkScheduler getNetworkScheduler() {
+        if (networkScheduler == null) {
+            networkScheduler = new NetworkScheduler("network");
+        }
+        return networkScheduler;
+    }
+
+    public static int getConnectionCount() {
+        return getClient().connectionPool().connectionCount();
+    }
+
+    public static int getIdleConnectionCount() {
+        return getClient().connectionPool().idleConnectionCount();
+    }
+
+    public static int getActiveConnectionCount() {
+        ConnectionPool pool = getClient().connectionPool();
+        return pool.connectionCount() - pool.idleConnectionCount();
+    }
+
+    public static int getRunningCallsCount() {
+        return getClient().dispatcher().runningCallsCount();
+    }
+
+    public static int getQueuedCallsCount() {
+        return getClient().dispatcher().queuedCallsCount();
+    }
+
+    public static String getStats() {
+        return "HttpCore{connections=" + getConnectionCount()
+                + ", active=" + getActiveConnectionCount()
+                + ", idle=" + getIdleConnectionCount()
+                + ", runningCalls=" + getRunningCallsCount()
+                + ", queuedCalls=" + getQueuedCallsCount()
+                + ", " + getNetworkScheduler() + "}";
+    }
+}
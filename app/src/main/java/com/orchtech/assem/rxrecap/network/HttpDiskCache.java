@@ -0,0 +1,203 @@
+package com.orchtech.assem.rxrecap.network;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Bounded OkHttp disk cache for the given paths
+ * Responses carrying an ETag or Last-Modified but no Cache-Control are stored as immediately stale,
+ * so the next request revalidates them and an unchanged result costs a 304
+ * While offline, or when the network call fails, the last cached response is served right away
+ */
+public class HttpDiskCache {
+    private static final long DEFAULT_MAX_SIZE = 10 * 1024 * 1024;
+
+    public interface NetworkState {
+        boolean isOnline();
+    }
+
+    private final Cache cache;
+    private final NetworkState networkState;
+    private final String[] cachedPaths;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong networkFetches = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong conditionalHits = new AtomicLong();
+    private final AtomicLong offlineHits = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    public static HttpDiskCache create(Context context, String... cachedPaths) {
+        final Context appContext = context.getApplicationContext();
+        return new HttpDiskCache(new File(appContext.getCacheDir(), "http"), DEFAULT_MAX_SIZE, () -> {
+            ConnectivityManager cm = (ConnectivityManager) appContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+            NetworkInfo info = cm == null ? null : cm.getActiveNetworkInfo();
+            return info != null && info.isConnected();
+        }, cachedPaths);
+    }
+
+    public HttpDiskCache(File directory, long maxSize, NetworkState networkState, String... cachedPaths) {
+        this.cache = new Cache(directory, maxSize);
+        this.networkState = networkState;
+        this.cachedPaths = cachedPaths;
+    }
+
+    public void install(OkHttpClient.Builder builder) {
+        builder.cache(cache)
+                .addInterceptor(this::offlineFirst)
+                .addNetworkInterceptor(this::revalidate);
+    }
+
+    private Response offlineFirst(Interceptor.Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!isCached(request)) {
+            return chain.proceed(request);
+        }
+
+        requests.incrementAndGet();
+        if (!networkState.isOnline()) {
+            return fromCacheOnly(chain, null);
+        }
+
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            return fromCacheOnly(chain, e);
+        }
+
+        if (response.networkResponse() == null && response.cacheResponse() != null) {
+            cacheHits.incrementAndGet();
+            bytesSaved.addAndGet(bodyLength(response));
+        } else if (response.networkResponse() != null && response.networkResponse().code() == 304) {
+            conditionalHits.incrementAndGet();
+            bytesSaved.addAndGet(bodyLength(response));
+        } else {
+            networkFetches.incrementAndGet();
+        }
+        return response;
+    }
+
+    /**
+     * With nothing cached the network error is thrown again,
+     * or OkHttp's 504 is returned when there was no network to begin with
+     */
+    private Response fromCacheOnly(Interceptor.Chain chain, IOException networkError) throws IOException {
+        Request request = chain.request().newBuilder()
+                .cacheControl(CacheControl.FORCE_CACHE)
+                .build();
+        Response cached = chain.proceed(request);
+        if (cached.code() == 504) {
+            if (networkError != null) {
+                cached.close();
+                throw networkError;
+            }
+            return cached;
+        }
+        offlineHits.incrementAndGet();
+        bytesSaved.addAndGet(bodyLength(cached));
+        return cached;
+    }
+
+    private Response revalidate(Interceptor.Chain chain) throws IOException {
+        Request request = chain.request();
+        Response response = chain.proceed(request);
+        if (!isCached(request) || response.header("Cache-Control") != null) {
+            return response;
+        }
+        if (response.header("ETag") == null && response.header("Last-Modified") == null) {
+            return response;
+        }
+        // max-age=0 and not no-cache, no-cache would stop FORCE_CACHE from serving it offline
+        return response.newBuilder()
+                .header("Cache-Control", "max-age=0")
+                .removeHeader("Pragma")
+                .build();
+    }
+
+    private boolean isCached(Request request) {
+        if (!"GET".equals(request.method())) {
+            return false;
+        }
+        String path = request.url().encodedPath();
+        for (String cachedPath : cachedPaths) {
+            if (path.endsWith(cachedPath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long bodyLength(Response response) {
+        long length = response.body() == null ? -1 : response.body().contentLength();
+        return Math.max(length, 0);
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public long getSize() {
+        try {
+            return cache.size();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getNetworkFetchCount() {
+        return networkFetches.get();
+    }
+
+    public long getCacheHitCount() {
+        return cacheHits.get();
+    }
+
+    public long getConditionalHitCount() {
+        return conditionalHits.get();
+    }
+
+    public long getOfflineHitCount() {
+        return offlineHits.get();
+    }
+
+    /**
+     * Cached, revalidated (304) and offline responses over all requests to the cached paths
+     */
+    public double getHitRatio() {
+        long total = requests.get();
+        if (total == 0) {
+            return 0;
+        }
+        return (double) (cacheHits.get() + conditionalHits.get() + offlineHits.get()) / total;
+    }
+
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "HttpDiskCache{size=%d/%d, requests=%d, network=%d, hits=%d, notModified=%d, offline=%d, hitRatio=%.2f, bytesSaved=%d}",
+                getSize(), cache.maxSize(), requests.get(), networkFetches.get(), cacheHits.get(),
+                conditionalHits.get(), offlineHits.get(), getHitRatio(), bytesSaved.get());
+    }
+}
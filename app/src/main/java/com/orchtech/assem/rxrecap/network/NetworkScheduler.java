@@ -0,0 +1,249 @@
+package com.orchtech.assem.rxrecap.network;
+
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * A bounded Scheduler for blocking network work, in place of Schedulers.io()
+ * Schedulers.io() starts a thread whenever all of its threads are busy, so a fan-out of blocking calls
+ * grows it to one thread per call. Here at most maxThreads run, up to queueCapacity more tasks wait
+ * in a queue, and what comes after that is handled by the SaturationPolicy, SPILL_TO_IO unless given
+ * Idle threads stop after a while, the pool starts empty
+ * Reports active threads, queue depth and how long tasks waited for a thread
+ */
+public class NetworkScheduler {
+    public enum SaturationPolicy {
+        // The scheduling thread waits for room in the queue, nothing is lost
+        // A thread of this scheduler runs the task itself instead, all of them waiting would never end
+        // Whoever calls subscribeOn() waits, the main thread included, so it is only for schedulers
+        // the main thread never subscribes on
+        BLOCK,
+        // The task runs on Schedulers.io() instead, no thread waits and nothing is lost
+        // The thread bound only gives way while the queue is full
+        SPILL_TO_IO,
+        // The task runs on the scheduling thread, which must not be the main thread
+        CALLER_RUNS,
+        // The task is dropped and RxJavaPlugins gets a RejectedExecutionException, the pipeline never
+        // runs, so it should have a timeout
+        ABORT
+    }
+
+    private static final int DEFAULT_MAX_THREADS = 16;
+    private static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final String name;
+    private final SaturationPolicy policy;
+    private final InstrumentedExecutor executor;
+    private final Scheduler scheduler;
+
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong saturated = new AtomicLong();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    public NetworkScheduler(String name) {
+        this(name, DEFAULT_MAX_THREADS, DEFAULT_QUEUE_CAPACITY, SaturationPolicy.SPILL_TO_IO);
+    }
+
+    public NetworkScheduler(String name, int maxThreads, int queueCapacity, SaturationPolicy policy) {
+        if (maxThreads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("expected maxThreads >= 1 and queueCapacity >= 1");
+        }
+        this.name = name;
+        this.policy = policy;
+        this.executor = new InstrumentedExecutor(maxThreads, queueCapacity);
+        this.scheduler = Schedulers.from(executor);
+    }
+
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Threads running a task now
+     */
+    public int getActiveThreadCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Threads alive now, busy or idle
+     */
+    public int getThreadCount() {
+        return executor.getPoolSize();
+    }
+
+    public int getLargestThreadCount() {
+        return executor.getLargestPoolSize();
+    }
+
+    /**
+     * Tasks waiting for a thread now
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    public long getStartedTaskCount() {
+        return started.get();
+    }
+
+    /**
+     * Tasks that found the queue full and were handled by the SaturationPolicy
+     */
+    public long getSaturatedCount() {
+        return saturated.get();
+    }
+
+    public double getAverageWaitMillis() {
+        long count = started.get();
+        return count == 0 ? 0 : totalWaitNanos.get() / 1e6 / count;
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1e6;
+    }
+
+    public SaturationPolicy getSaturationPolicy() {
+        return policy;
+    }
+
+    /**
+     * Lets the queued tasks finish and stops the threads, nothing can be scheduled afterwards
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "NetworkScheduler{%s, active=%d, threads=%d/%d, queued=%d (max %d), "
+                        + "saturated=%d, wait avg=%.1fms max=%.1fms}",
+                name, getActiveThreadCount(), getThreadCount(), executor.getMaximumPoolSize(), getQueueDepth(),
+                getMaxQueueDepth(), getSaturatedCount(), getAverageWaitMillis(), getMaxWaitMillis());
+    }
+
+    private void onStarted(long enqueuedAt) {
+        long wait = System.nanoTime() - enqueuedAt;
+        started.incrementAndGet();
+        totalWaitNanos.addAndGet(wait);
+        long max;
+        while (wait > (max = maxWaitNanos.get()) && !maxWaitNanos.compareAndSet(max, wait)) {
+            // Lost to another thread, read the new max
+        }
+    }
+
+    /**
+     * Every thread is a core thread, so a task starts a new one until maxThreads run and is queued after that,
+     * core threads time out like extra threads would
+     */
+    private class InstrumentedExecutor extends ThreadPoolExecutor {
+
+        InstrumentedExecutor(int maxThreads, int queueCapacity) {
+            super(maxThreads, maxThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(queueCapacity), new NamedThreadFactory(), new Saturation());
+            allowCoreThreadTimeOut(true);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            super.execute(new TimedTask(command));
+            int depth = getQueue().size();
+            int max;
+            while (depth > (max = maxQueueDepth.get()) && !maxQueueDepth.compareAndSet(max, depth)) {
+                // Lost to another thread, read the new max
+            }
+        }
+    }
+
+    private class TimedTask implements Runnable {
+        private final Runnable task;
+        private final long enqueuedAt = System.nanoTime();
+
+        TimedTask(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            onStarted(enqueuedAt);
+            task.run();
+        }
+    }
+
+    private class Saturation implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException(name + " is shut down");
+            }
+            saturated.incrementAndGet();
+            switch (policy) {
+                case CALLER_RUNS:
+                    task.run();
+                    break;
+                case SPILL_TO_IO:
+                    Schedulers.io().scheduleDirect(task);
+                    break;
+                case BLOCK:
+                    if (isOwnThread()) {
+                        task.run();
+                        break;
+                    }
+                    BlockingQueue<Runnable> queue = executor.getQueue();
+                    try {
+                        queue.put(task);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException(name + " was interrupted waiting for room", e);
+                    }
+                    break;
+                default:
+                    throw new RejectedExecutionException(name + " is saturated");
+            }
+        }
+    }
+
+    private boolean isOwnThread() {
+        Thread current = Thread.currentThread();
+        return current instanceof NetworkThread && ((NetworkThread) current).owner == this;
+    }
+
+    private static class NetworkThread extends Thread {
+        final NetworkScheduler owner;
+
+        NetworkThread(Runnable runnable, String name, NetworkScheduler owner) {
+            super(runnable, name);
+            this.owner = owner;
+        }
+    }
+
+    private class NamedThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new NetworkThread(runnable, name + "-" + count.incrementAndGet(), NetworkScheduler.this);
+            // Like the Schedulers.io() threads, they do not keep the process alive
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.orchtech.assem.rxrecap.network;
+
+import com.jakewharton.retrofit2.adapter.rxjava2.HttpException;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.reactivex.CompletableTransformer;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.SingleTransformer;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Retries, circuit breaking and a retry budget for the calls to one backend
+ * Every attempt goes through the endpoint's CircuitBreaker, an open breaker fails it at once with
+ * CircuitOpenException and ends the retries
+ * A transient failure is retried up to maxAttempts in all, after an exponential backoff with full jitter:
+ * a random wait between 0 and min(maxDelay, baseDelay * 2^(retry - 1)), so clients that failed together
+ * do not come back together. Retries are taken from one RetryBudget shared by every endpoint
+ * Idempotent calls are retried on network errors, 5xx, 408 and 429, others only on 429, 503 and
+ * connection failures, where the server cannot have acted on them
+ */
+public class Resilience {
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final long DEFAULT_BASE_DELAY_MILLIS = 250;
+    private static final long DEFAULT_MAX_DELAY_MILLIS = 4000;
+    private static final Object DONE = new Object();
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final RetryBudget budget;
+    private final Function<String, CircuitBreaker> breakerFactory;
+    private final Scheduler scheduler;
+    private final Random random = new Random();
+    private final Map<String, CircuitBreaker> breakers = new HashMap<>();
+
+    public Resilience() {
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS, new RetryBudget(),
+                endpoint -> new CircuitBreaker(endpoint, Schedulers.computation()), Schedulers.computation());
+    }
+
+    /**
+     * breakerFactory makes the breaker for an endpoint the first time it is called, scheduler runs the backoff timers
+     */
+    public Resilience(int maxAttempts, long baseDelayMillis, long maxDelayMillis, RetryBudget budget,
+                      Function<String, CircuitBreaker> breakerFactory, Scheduler scheduler) {
+        if (maxAttempts < 1 || baseDelayMillis < 0 || maxDelayMillis < baseDelayMillis) {
+            throw new IllegalArgumentException("expected maxAttempts >= 1 and 0 <= baseDelayMillis <= maxDelayMillis");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.budget = budget;
+        this.breakerFactory = breakerFactory;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Each subscription is one call, retried as a whole, so call has to make a new request per subscription
+     * like the Singles Retrofit returns do
+     */
+    public <T> SingleTransformer<T, T> single(final String endpoint, final boolean idempotent) {
+        final CircuitBreaker breaker = getBreaker(endpoint);
+        return call -> Single.defer(() -> {
+            budget.onCall();
+            final int[] attempts = {1};
+            return attempt(call, endpoint, breaker)
+                    .retryWhen(errors -> errors.flatMap(error -> {
+                        if (attempts[0] >= maxAttempts || !isRetryable(error, idempotent) || !budget.tryRetry()) {
+                            return Flowable.error(error);
+                        }
+                        return Flowable.timer(backoffMillis(attempts[0]++), TimeUnit.MILLISECONDS, scheduler);
+                    }));
+        });
+    }
+
+    public CompletableTransformer completable(String endpoint, boolean idempotent) {
+        final SingleTransformer<Object, Object> single = single(endpoint, idempotent);
+        return call -> call.toSingleDefault(DONE).compose(single).ignoreElement();
+    }
+
+    private <T> Single<T> attempt(Single<T> call, String endpoint, CircuitBreaker breaker) {
+        return Single.defer(() -> {
+            if (!breaker.tryAcquire()) {
+                return Single.<T>error(new CircuitOpenException(endpoint));
+            }
+            final AtomicBoolean finished = new AtomicBoolean();
+            return call
+                    .doOnSuccess(result -> {
+                        finished.set(true);
+                        breaker.onSuccess();
+                    })
+                    .doOnError(error -> {
+                        finished.set(true);
+                        if (isFailure(error)) {
+                            breaker.onFailure();
+                        } else {
+                            // The server answered, it is up even if it did not like the request
+                            breaker.onSuccess();
+                        }
+                    })
+                    .doOnDispose(() -> {
+                        if (finished.compareAndSet(false, true)) {
+                            breaker.onCancel();
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Wait before the retry-th retry, 1 for the first one
+     */
+    long backoffMillis(int retry) {
+        long ceiling = baseDelayMillis << Math.min(retry - 1, 30);
+        if (ceiling <= 0 || ceiling > maxDelayMillis) {
+            ceiling = maxDelayMillis;
+        }
+        synchronized (random) {
+            return (long) (random.nextDouble() * (ceiling + 1));
+        }
+    }
+
+    private static boolean isRetryable(Throwable error, boolean idempotent) {
+        if (error instanceof CircuitOpenException) {
+            return false;
+        }
+        if (error instanceof HttpException) {
+            int code = ((HttpException) error).code();
+            if (code == 429 || code == 503) {
+                return true;
+            }
+            return idempotent && (code >= 500 || code == 408);
+        }
+        if (error instanceof ConnectException) {
+            return true;
+        }
+        return idempotent && error instanceof IOException;
+    }
+
+    // Whether the error says the endpoint is in trouble, as opposed to this one request being wrong
+    private static boolean isFailure(Throwable error) {
+        if (error instanceof HttpException) {
+            int code = ((HttpException) error).code();
+            return code >= 500 || code == 408 || code == 429;
+        }
+        return error instanceof IOException;
+    }
+
+    public synchronized CircuitBreaker getBreaker(String endpoint) {
+        CircuitBreaker breaker = breakers.get(endpoint);
+        if (breaker == null) {
+            try {
+                breaker = breakerFactory.apply(endpoint);
+            } catch (Exception e) {
+                throw new IllegalStateException("Could not create the circuit breaker for " + endpoint, e);
+            }
+            breakers.put(endpoint, breaker);
+        }
+        return breaker;
+    }
+
+    public synchronized List<CircuitBreaker> getBreakers() {
+        return new ArrayList<>(breakers.values());
+    }
+
+    public RetryBudget getBudget() {
+        return budget;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder text = new StringBuilder("Resilience{").append(budget);
+        for (CircuitBreaker breaker : breakers.values()) {
+            text.append(", ").append(breaker);
+        }
+        return text.append('}').toString();
+    }
+}
@@ -0,0 +1,80 @@
+package com.orchtech.assem.rxrecap.network;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import io.reactivex.Completable;
+import io.reactivex.Single;
+import retrofit2.Call;
+import retrofit2.CallAdapter;
+import retrofit2.Retrofit;
+import retrofit2.http.DELETE;
+import retrofit2.http.GET;
+import retrofit2.http.POST;
+import retrofit2.http.PUT;
+
+/**
+ * Puts every Single and Completable a Retrofit service returns through Resilience
+ * The endpoint is the method and relative url as declared, "GET notes/all" or "PUT notes/{id}",
+ * so each one has its own circuit breaker. GET, PUT and DELETE count as idempotent, POST does not
+ * Added before the factory that builds the Rx types, it wraps what that factory returns
+ */
+public class ResilientCallAdapterFactory extends CallAdapter.Factory {
+    private final Resilience resilience;
+
+    private ResilientCallAdapterFactory(Resilience resilience) {
+        this.resilience = resilience;
+    }
+
+    public static ResilientCallAdapterFactory create(Resilience resilience) {
+        return new ResilientCallAdapterFactory(resilience);
+    }
+
+    @Override
+    public CallAdapter<?> get(Type returnType, Annotation[] annotations, Retrofit retrofit) {
+        Class<?> rawType = getRawType(returnType);
+        if (rawType != Single.class && rawType != Completable.class) {
+            return null;
+        }
+
+        String endpoint = null;
+        boolean idempotent = false;
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof GET) {
+                endpoint = "GET " + ((GET) annotation).value();
+                idempotent = true;
+            } else if (annotation instanceof PUT) {
+                endpoint = "PUT " + ((PUT) annotation).value();
+                idempotent = true;
+            } else if (annotation instanceof DELETE) {
+                endpoint = "DELETE " + ((DELETE) annotation).value();
+                idempotent = true;
+            } else if (annotation instanceof POST) {
+                endpoint = "POST " + ((POST) annotation).value();
+            }
+        }
+        if (endpoint == null) {
+            return null;
+        }
+
+        final CallAdapter<?> delegate = retrofit.nextCallAdapter(this, returnType, annotations);
+        final String name = endpoint;
+        final boolean retryAnyError = idempotent;
+        return new CallAdapter<Object>() {
+            @Override
+            public Type responseType() {
+                return delegate.responseType();
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public <R> Object adapt(Call<R> call) {
+                Object adapted = delegate.adapt(call);
+                if (adapted instanceof Completable) {
+                    return ((Completable) adapted).compose(resilience.completable(name, retryAnyError));
+                }
+                return ((Single<Object>) adapted).compose(resilience.single(name, retryAnyError));
+            }
+        };
+    }
+}
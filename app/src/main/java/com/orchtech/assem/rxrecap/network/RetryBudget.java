@@ -0,0 +1,76 @@
+package com.orchtech.assem.rxrecap.network;
+
+import java.util.Locale;
+
+/**
+ * Caps retries at a share of the calls made, so a failing backend gets at most that much extra load
+ * A token bucket: every call adds ratio tokens, every retry takes a whole one
+ * It starts full with minRetries tokens, so a quiet app can still retry its few calls
+ */
+public class RetryBudget {
+    private static final double DEFAULT_RATIO = 0.2;
+    private static final int DEFAULT_MIN_RETRIES = 10;
+
+    private final double ratio;
+    private final double maxTokens;
+    private double tokens;
+
+    private long calls;
+    private long retries;
+    private long denied;
+
+    public RetryBudget() {
+        this(DEFAULT_RATIO, DEFAULT_MIN_RETRIES);
+    }
+
+    public RetryBudget(double ratio, int minRetries) {
+        if (ratio < 0 || minRetries < 0) {
+            throw new IllegalArgumentException("expected ratio >= 0 and minRetries >= 0");
+        }
+        this.ratio = ratio;
+        this.maxTokens = Math.max(minRetries, 1);
+        this.tokens = minRetries;
+    }
+
+    /**
+     * A first attempt is being made
+     */
+    public synchronized void onCall() {
+        calls++;
+        tokens = Math.min(maxTokens, tokens + ratio);
+    }
+
+    /**
+     * Whether one more retry fits in the budget, takes it if so
+     */
+    public synchronized boolean tryRetry() {
+        if (tokens < 1) {
+            denied++;
+            return false;
+        }
+        tokens--;
+        retries++;
+        return true;
+    }
+
+    public synchronized long getCallCount() {
+        return calls;
+    }
+
+    public synchronized long getRetryCount() {
+        return retries;
+    }
+
+    /**
+     * Retries not made because the budget was spent
+     */
+    public synchronized long getDeniedCount() {
+        return denied;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "RetryBudget{tokens=%.1f, calls=%d, retries=%d, denied=%d}",
+                tokens, calls, retries, denied);
+    }
+}
@@ -0,0 +1,191 @@
+package com.orchtech.assem.rxrecap.network;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Headers;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+
+/**
+ * Replacement for HttpLoggingInterceptor at Level.BODY
+ * Only a sample of the calls is logged, failed calls are always logged
+ * At most maxBodyBytes of a body are peeked, the rest of the response is left unread
+ * Log lines are built and written on a single background thread, when it falls behind lines are dropped
+ */
+public class SampledLoggingInterceptor implements Interceptor {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int MAX_PENDING_LINES = 256;
+
+    public interface Logger {
+        void log(String message);
+    }
+
+    private static final AtomicLong dropped = new AtomicLong();
+    private static final ExecutorService writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(MAX_PENDING_LINES),
+            runnable -> {
+                Thread thread = new Thread(runnable, "http-log");
+                thread.setDaemon(true);
+                return thread;
+            },
+            (runnable, executor) -> dropped.incrementAndGet());
+
+    private final Logger logger;
+    private final Random random;
+    private volatile double sampleRate = 0.1;
+    private volatile long maxBodyBytes = 2048;
+    private volatile boolean logHeaders;
+
+    public SampledLoggingInterceptor(Logger logger) {
+        this(logger, new Random());
+    }
+
+    /**
+     * random decides which calls are sampled
+     */
+    public SampledLoggingInterceptor(Logger logger, Random random) {
+        this.logger = logger;
+        this.random = random;
+    }
+
+    /**
+     * Share of successful calls that is logged, from 0 (none) to 1 (all)
+     */
+    public SampledLoggingInterceptor setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+        return this;
+    }
+
+    /**
+     * Body bytes logged per request / response, 0 logs no bodies
+     */
+    public SampledLoggingInterceptor setMaxBodyBytes(long maxBodyBytes) {
+        this.maxBodyBytes = maxBodyBytes;
+        return this;
+    }
+
+    public SampledLoggingInterceptor setLogHeaders(boolean logHeaders) {
+        this.logHeaders = logHeaders;
+        return this;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        boolean sampled = random.nextDouble() < sampleRate;
+        long startNs = System.nanoTime();
+
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            long tookMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNs);
+            write(new Entry(request, requestBody(request), null, null, tookMs, e));
+            throw e;
+        }
+
+        if (sampled || !response.isSuccessful()) {
+            long tookMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNs);
+            ResponseBody peeked = maxBodyBytes > 0 && response.body() != null
+                    ? response.peekBody(maxBodyBytes)
+                    : null;
+            write(new Entry(request, requestBody(request), response, peeked, tookMs, null));
+        }
+        return response;
+    }
+
+    // Request bodies here are small form posts, they are copied up to the cap on the calling thread
+    private Buffer requestBody(Request request) throws IOException {
+        RequestBody body = request.body();
+        if (body == null || maxBodyBytes <= 0 || body.contentLength() < 0 || body.contentLength() > maxBodyBytes) {
+            return null;
+        }
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+        return buffer;
+    }
+
+    private void write(final Entry entry) {
+        final boolean headers = logHeaders;
+        final long bodyCap = maxBodyBytes;
+        writer.execute(() -> logger.log(entry.format(headers, bodyCap)));
+    }
+
+    public static long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private static class Entry {
+        final Request request;
+        final Buffer requestBody;
+        final Response response;
+        final ResponseBody responseBody;
+        final long tookMs;
+        final IOException error;
+
+        Entry(Request request, Buffer requestBody, Response response, ResponseBody responseBody,
+              long tookMs, IOException error) {
+            this.request = request;
+            this.requestBody = requestBody;
+            this.response = response;
+            this.responseBody = responseBody;
+            this.tookMs = tookMs;
+            this.error = error;
+        }
+
+        String format(boolean logHeaders, long maxBodyBytes) {
+            StringBuilder line = new StringBuilder()
+                    .append("--> ").append(request.method()).append(' ').append(request.url());
+            if (logHeaders) {
+                appendHeaders(line, request.headers());
+            }
+            if (requestBody != null) {
+                line.append('\n').append(requestBody.readString(charset(request.body().contentType())));
+            }
+
+            if (error != null) {
+                return line.append("\n<-- HTTP FAILED (").append(tookMs).append("ms): ").append(error).toString();
+            }
+
+            line.append("\n<-- ").append(response.code()).append(' ').append(response.message())
+                    .append(" (").append(tookMs).append("ms)");
+            if (logHeaders) {
+                appendHeaders(line, response.headers());
+            }
+            if (responseBody != null) {
+                try {
+                    line.append('\n').append(new String(responseBody.bytes(), charset(responseBody.contentType())));
+                } catch (IOException e) {
+                    line.append("\n(body unavailable: ").append(e).append(')');
+                }
+                if (responseBody.contentLength() >= maxBodyBytes) {
+                    line.append("...");
+                }
+            }
+            return line.toString();
+        }
+
+        private static void appendHeaders(StringBuilder line, Headers headers) {
+            for (int i = 0; i < headers.size(); i++) {
+                line.append('\n').append(headers.name(i)).append(": ").append(headers.value(i));
+            }
+        }
+
+        private static Charset charset(MediaType contentType) {
+            Charset charset = contentType == null ? null : contentType.charset(UTF8);
+            return charset == null ? UTF8 : charset;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.orchtech.assem.rxrecap.network;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.Okio;
+import okio.Source;
+import okio.Timeout;
+
+/**
+ * Collapses identical GET requests that are in flight at the same time into one network call
+ * The first caller (leader) makes the call, later callers with the same method, url and
+ * Authorization header join it and get their own copy of the response
+ * The body is shared while it downloads, so a streamed response still streams for every caller
+ */
+public class SingleFlightInterceptor implements Interceptor {
+    private static final long CANCEL_POLL_MILLIS = 100;
+
+    private final Map<String, Flight> inFlight = new HashMap<>();
+    private final AtomicLong leaders = new AtomicLong();
+    private final AtomicLong joined = new AtomicLong();
+    private final AtomicLong bypassed = new AtomicLong();
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!"GET".equals(request.method()) || request.header("Range") != null) {
+            bypassed.incrementAndGet();
+            return chain.proceed(request);
+        }
+
+        final String key = request.method() + " " + request.url() + " " + request.header("Authorization");
+        final Flight flight;
+        boolean leader = false;
+        synchronized (this) {
+            Flight existing = inFlight.get(key);
+            if (existing == null) {
+                existing = new Flight();
+                inFlight.put(key, existing);
+                leader = true;
+            }
+            flight = existing;
+        }
+
+        if (!leader) {
+            return join(chain, flight);
+        }
+
+        leaders.incrementAndGet();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException | RuntimeException e) {
+            finish(key, flight);
+            flight.fail(e);
+            throw e;
+        }
+
+        ResponseBody body = response.body();
+        if (body == null) {
+            finish(key, flight);
+            flight.complete(response, null);
+            return response;
+        }
+
+        SharedBody shared = new SharedBody(body, () -> finish(key, flight));
+        flight.complete(response, shared);
+        return response.newBuilder().body(shared.newReader()).build();
+    }
+
+    private Response join(Chain chain, Flight flight) throws IOException {
+        // Poll so that a cancelled follower does not wait for the whole leader call
+        try {
+            while (!flight.done.await(CANCEL_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (chain.call().isCanceled()) {
+                    throw new IOException("Canceled");
+                }
+            }
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+
+        Request request = chain.request();
+        if (flight.failure != null) {
+            throw new IOException("Shared call failed: " + request.url(), flight.failure);
+        }
+
+        ResponseBody body = flight.shared == null ? null : flight.shared.newReader();
+        if (flight.shared != null && body == null) {
+            // Leader gave up on the body before it was complete, nothing left to share
+            bypassed.incrementAndGet();
+            return chain.proceed(request);
+        }
+
+        joined.incrementAndGet();
+        return flight.response.newBuilder()
+                .request(request)
+                .body(body)
+                .build();
+    }
+
+    private synchronized void finish(String key, Flight flight) {
+        if (inFlight.get(key) == flight) {
+            inFlight.remove(key);
+        }
+    }
+
+    public long getLeaderCount() {
+        return leaders.get();
+    }
+
+    /**
+     * Requests that were answered without a network call of their own
+     */
+    public long getDedupHitCount() {
+        return joined.get();
+    }
+
+    public long getBypassedCount() {
+        return bypassed.get();
+    }
+
+    @Override
+    public String toString() {
+        return "SingleFlightInterceptor{leaders=" + leaders.get()
+                + ", dedupHits=" + joined.get()
+                + ", bypassed=" + bypassed.get() + "}";
+    }
+
+    private static class Flight {
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile Response response;
+        volatile SharedBody shared;
+        volatile Throwable failure;
+
+        void complete(Response response, SharedBody shared) {
+            this.response = response;
+            this.shared = shared;
+            done.countDown();
+        }
+
+        void fail(Throwable failure) {
+            this.failure = failure;
+            done.countDown();
+        }
+    }
+
+    /**
+     * Reads the upstream body once into a growing buffer
+     * Every reader has its own position in that buffer
+     * Upstream is closed when it is exhausted, or when every reader closed before that
+     */
+    private static class SharedBody {
+        private static final long SEGMENT = 8192;
+
+        private final ResponseBody upstream;
+        private final Runnable onFinished;
+        private final Buffer cache = new Buffer();
+        private int openReaders;
+        private boolean exhausted;
+        private boolean upstreamClosed;
+        private IOException failure;
+
+        SharedBody(ResponseBody upstream, Runnable onFinished) {
+            this.upstream = upstream;
+            this.onFinished = onFinished;
+        }
+
+        synchronized ResponseBody newReader() {
+            if (upstreamClosed && !exhausted) {
+                return null;
+            }
+            openReaders++;
+            final BufferedSource source = Okio.buffer(new ReaderSource());
+            return new ResponseBody() {
+                @Override
+                public MediaType contentType() {
+                    return upstream.contentType();
+                }
+
+                @Override
+                public long contentLength() {
+                    return upstream.contentLength();
+                }
+
+                @Override
+                public BufferedSource source() {
+                    return source;
+                }
+            };
+        }
+
+        // Called holding the lock
+        private void pull() throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+            try {
+                long read = upstream.source().read(cache, SEGMENT);
+                if (read == -1) {
+                    exhausted = true;
+                    closeUpstream();
+                }
+            } catch (IOException e) {
+                failure = e;
+                closeUpstream();
+                throw e;
+            }
+        }
+
+        private void closeUpstream() {
+            if (!upstreamClosed) {
+                upstreamClosed = true;
+                upstream.close();
+                onFinished.run();
+            }
+        }
+
+        private class ReaderSource implements Source {
+            private long position;
+            private boolean closed;
+
+            @Override
+            public long read(Buffer sink, long byteCount) throws IOException {
+                synchronized (SharedBody.this) {
+                    if (closed) {
+                        throw new IllegalStateException("closed");
+                    }
+                    while (position >= cache.size() && !exhausted) {
+                        if (upstreamClosed) {
+                            throw failure != null ? failure : new IOException("Shared body closed");
+                        }
+                        pull();
+                    }
+                    if (position >= cache.size()) {
+                        return -1;
+                    }
+                    long count = Math.min(byteCount, cache.size() - position);
+                    cache.copyTo(sink, position, count);
+                    position += count;
+                    return count;
+                }
+            }
+
+            @Override
+            public Timeout timeout() {
+                return upstream.source().timeout();
+            }
+
+            @Override
+            public void close() {
+                synchronized (SharedBody.this) {
+                    if (closed) {
+                        return;
+                    }
+                    closed = true;
+                    if (--openReaders == 0 && !exhausted) {
+                        closeUpstream();
+                    }
+                }
+            }
+        }
+    }
+}
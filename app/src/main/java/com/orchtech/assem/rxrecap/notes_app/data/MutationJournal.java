@@ -0,0 +1,643 @@
+package com.orchtech.assem.rxrecap.notes_app.data;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.orchtech.assem.rxrecap.notes_app.network.model.Note;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import io.reactivex.functions.Action;
+
+/**
+ * Note changes waiting to be sent to the server, kept in an append-only file
+ * One JSON record per line, replayed on open, so pending changes survive process death
+ * Changes to the same note are coalesced while they wait: updates collapse into the last one,
+ * a create takes the text of later updates and a create followed by a delete cancels out
+ * A change that was taken for sending is never coalesced, "take" and "ack" records let replay
+ * tell those apart, and when records pile up the file is compacted to the pending changes
+ * For every note with pending changes the journal also keeps its base, the note as the server last
+ * confirmed it, so a refused change can be rolled back to exactly that plus the changes still pending
+ * The file is read on first use rather than on open(), so opening it on the main thread does no disk work
+ */
+public class MutationJournal {
+    public static final String CREATE = "create";
+    public static final String UPDATE = "update";
+    public static final String DELETE = "delete";
+
+    private static final String TAKE = "take";
+    private static final String ACK = "ack";
+    private static final String BASE = "base";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int MIN_RECORDS_TO_COMPACT = 64;
+
+    private static final Map<String, MutationJournal> opened = new HashMap<>();
+
+    /**
+     * One journal per file in the process, a missing or unreadable file starts empty
+     * Cheap, the file is replayed by the first call that needs its contents
+     */
+    public static synchronized MutationJournal open(File file) {
+        String path = file.getAbsolutePath();
+        MutationJournal journal = opened.get(path);
+        if (journal == null) {
+            journal = new MutationJournal(file);
+            opened.put(path, journal);
+        }
+        return journal;
+    }
+
+    /**
+     * A change as it is sent, entries in the journal are coalesced in place so callers get copies
+     */
+    public static class Mutation {
+        private final String type;
+        private final int noteId;
+        private final String note;
+        private final long enqueuedAt;
+
+        Mutation(String type, int noteId, String note, long enqueuedAt) {
+            this.type = type;
+            this.noteId = noteId;
+            this.note = note;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public int getNoteId() {
+            return noteId;
+        }
+
+        public String getNote() {
+            return note;
+        }
+
+        /**
+         * When the oldest change folded into this one was made
+         */
+        public long getEnqueuedAt() {
+            return enqueuedAt;
+        }
+    }
+
+    private static class Entry {
+        String type;
+        int noteId;
+        String note;
+        long enqueuedAt;
+        // Was taken for sending once, later changes to the note queue up behind it instead
+        boolean pinned;
+
+        Entry(String type, int noteId, String note, long enqueuedAt) {
+            this.type = type;
+            this.noteId = noteId;
+            this.note = note;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        Mutation toMutation() {
+            return new Mutation(type, noteId, note, enqueuedAt);
+        }
+    }
+
+    // One line of the file
+    private static class Record {
+        String op;
+        int id;
+        String note;
+        long at;
+        Integer serverId;
+        Boolean pinned;
+        // The note before the change, on the first change to a server note, and on base records
+        String base;
+        String stamp;
+    }
+
+    private final File file;
+    private final Gson gson = new Gson();
+    private final LinkedList<Entry> queue = new LinkedList<>();
+    private final Map<Integer, Entry> coalescable = new HashMap<>();
+    // Only for notes with pending changes, a null value means the server has no such note
+    private final Map<Integer, Note> bases = new HashMap<>();
+    private Entry inFlight;
+    // What take() handed out for inFlight, answers and releases for an older take are ignored
+    private Mutation taken;
+    // What recording the server's answer to inFlight takes, kept here so it outlives the flush that got it
+    private Action answer;
+    private final Object answerLock = new Object();
+    private boolean loaded;
+    private Writer writer;
+    private int recordCount;
+    private int lowestNoteId;
+
+    private long appended;
+    private long coalesced;
+    private long sent;
+    private long rejected;
+    private long compactions;
+    private long lastFlushLatency;
+    private long maxFlushLatency;
+    private long totalFlushLatency;
+
+    // Package-private so tests can reopen a file the way a restarted process would
+    MutationJournal(File file) {
+        this.file = file;
+    }
+
+    // Called holding the lock by everything that reads or changes the contents
+    private void load() {
+        if (!loaded) {
+            loaded = true;
+            replay();
+        }
+    }
+
+    /**
+     * Id for a note created on the device, negative so it never clashes with server ids
+     */
+    public synchronized int nextTempId() {
+        load();
+        lowestNoteId = Math.min(lowestNoteId, 0) - 1;
+        return lowestNoteId;
+    }
+
+    public synchronized void append(String type, int noteId, String note) throws IOException {
+        append(type, noteId, note, null);
+    }
+
+    /**
+     * base is the stored note before this change, kept only when the note has no pending changes yet,
+     * otherwise the stored note already includes changes the server has not confirmed
+     */
+    public synchronized void append(String type, int noteId, String note, Note base) throws IOException {
+        load();
+        Record record = new Record();
+        record.op = type;
+        record.id = noteId;
+        record.note = note;
+        record.at = System.currentTimeMillis();
+        if (base != null && noteId > 0 && !hasPending(noteId)) {
+            record.base = base.getNote();
+            record.stamp = base.getTimestamp();
+        }
+        write(record);
+        appended++;
+        apply(record);
+    }
+
+    /**
+     * The next change to send, or null when nothing is pending or a change is already out
+     * It stays in the journal until ack(), reject() or release()
+     */
+    public synchronized Mutation take() throws IOException {
+        load();
+        if (inFlight != null || queue.isEmpty()) {
+            return null;
+        }
+        Record record = new Record();
+        record.op = TAKE;
+        record.id = queue.getFirst().noteId;
+        write(record);
+        apply(record);
+        taken = inFlight.toMutation();
+        return taken;
+    }
+
+    /**
+     * The server applied the taken change, serverId is the id it gave a created note
+     * Changes queued for the temporary id are moved to the server id
+     */
+    public synchronized void ack(int serverId) throws IOException {
+        finish(serverId);
+    }
+
+    /**
+     * The server refused the taken change for good
+     * When a create is refused, the changes queued behind it for the same note are dropped too
+     */
+    public synchronized void reject() throws IOException {
+        finish(0);
+    }
+
+    /**
+     * The taken change could not be sent right now, it goes back to the front of the queue
+     */
+    public synchronized void release() {
+        load();
+        if (inFlight != null) {
+            queue.addFirst(inFlight);
+            inFlight = null;
+            taken = null;
+        }
+    }
+
+    /**
+     * The server answered sent, the change take() returned, answer records it with ack() or reject()
+     * Kept until recordAnswer() ran it without throwing, so a failed write is retried rather than the send
+     * Ignored when sent is not the taken change anymore, it was released and goes out again
+     */
+    public void answered(Mutation sent, Action answer) {
+        synchronized (answerLock) {
+            if (isTaken(sent)) {
+                this.answer = answer;
+            }
+        }
+    }
+
+    /**
+     * Runs the answer kept by answered(), if any
+     * Outside the journal's lock, answers take the store's lock and then the journal's
+     */
+    public void recordAnswer() throws Exception {
+        synchronized (answerLock) {
+            if (answer != null) {
+                answer.run();
+                answer = null;
+            }
+        }
+    }
+
+    /**
+     * The send of sent was given up before an answer came, it goes back to the front of the queue
+     * A change with a kept answer stays taken, the server applied it or refused it already
+     */
+    public void releaseUnanswered(Mutation sent) {
+        synchronized (answerLock) {
+            if (answer == null && isTaken(sent)) {
+                release();
+            }
+        }
+    }
+
+    private synchronized boolean isTaken(Mutation sent) {
+        return taken != null && taken == sent;
+    }
+
+    private void finish(int serverId) throws IOException {
+        load();
+        if (inFlight == null) {
+            return;
+        }
+        Record record = new Record();
+        record.op = ACK;
+        record.id = inFlight.noteId;
+        record.serverId = serverId;
+        write(record);
+
+        long latency = System.currentTimeMillis() - inFlight.enqueuedAt;
+        if (serverId == 0) {
+            rejected++;
+        } else {
+            sent++;
+            lastFlushLatency = latency;
+            maxFlushLatency = Math.max(maxFlushLatency, latency);
+            totalFlushLatency += latency;
+        }
+        apply(record);
+        taken = null;
+
+        if (recordCount >= MIN_RECORDS_TO_COMPACT && recordCount > 4 * (queue.size() + 1)) {
+            compact();
+        }
+    }
+
+    /**
+     * The server sent its version of the note, null when it deleted it
+     * Becomes the note's base if it has pending changes, otherwise there is nothing to roll back to it
+     */
+    public synchronized void rebase(int noteId, Note serverNote) throws IOException {
+        load();
+        if (!hasPending(noteId)) {
+            return;
+        }
+        Record record = new Record();
+        record.op = BASE;
+        record.id = noteId;
+        if (serverNote != null) {
+            record.base = serverNote.getNote();
+            record.stamp = serverNote.getTimestamp();
+        }
+        write(record);
+        apply(record);
+    }
+
+    /**
+     * Whether the note's base is known, false for notes created on the device and notes without pending changes
+     */
+    public synchronized boolean hasBase(int noteId) {
+        load();
+        return bases.containsKey(noteId);
+    }
+
+    /**
+     * The note as the server last confirmed it, null when the server has no such note or it is not known
+     * Read it before reject(), a refused change that was the last one pending drops the base
+     */
+    public synchronized Note getBase(int noteId) {
+        load();
+        return bases.get(noteId);
+    }
+
+    /**
+     * Every change not yet acknowledged, the one being sent first
+     */
+    public synchronized List<Mutation> pending() {
+        load();
+        List<Mutation> pending = new ArrayList<>(queue.size() + 1);
+        if (inFlight != null) {
+            pending.add(inFlight.toMutation());
+        }
+        for (Entry entry : queue) {
+            pending.add(entry.toMutation());
+        }
+        return pending;
+    }
+
+    // Replay and live changes both go through here, so a replayed journal ends up in the same state
+    private void apply(Record record) {
+        lowestNoteId = Math.min(lowestNoteId, record.id);
+        switch (record.op) {
+            case TAKE:
+                // A second take without an ack means the first one was released and taken again
+                if (inFlight == null && !queue.isEmpty()) {
+                    inFlight = queue.removeFirst();
+                    inFlight.pinned = true;
+                    if (coalescable.get(inFlight.noteId) == inFlight) {
+                        coalescable.remove(inFlight.noteId);
+                    }
+                }
+                return;
+            case ACK:
+                if (inFlight == null) {
+                    return;
+                }
+                Entry acked = inFlight;
+                inFlight = null;
+                int serverId = record.serverId == null ? 0 : record.serverId;
+                if (CREATE.equals(acked.type)) {
+                    moveNote(acked.noteId, serverId);
+                } else if (serverId != 0 && bases.containsKey(acked.noteId)) {
+                    // Confirmed, later changes roll back to this instead
+                    Note base = bases.get(acked.noteId);
+                    bases.put(acked.noteId, DELETE.equals(acked.type) || base == null
+                            ? null : new Note(acked.noteId, acked.note, base.getTimestamp()));
+                }
+                if (!hasPending(acked.noteId)) {
+                    bases.remove(acked.noteId);
+                }
+                return;
+            case BASE:
+                bases.put(record.id, record.base == null ? null : new Note(record.id, record.base, record.stamp));
+                return;
+            default:
+                enqueue(record);
+        }
+    }
+
+    private void enqueue(Record record) {
+        if (record.base != null && !bases.containsKey(record.id)) {
+            bases.put(record.id, new Note(record.id, record.base, record.stamp));
+        }
+        Entry existing = coalescable.get(record.id);
+        if (existing == null) {
+            Entry entry = new Entry(record.op, record.id, record.note, record.at);
+            entry.pinned = Boolean.TRUE.equals(record.pinned);
+            queue.addLast(entry);
+            if (!entry.pinned) {
+                coalescable.put(entry.noteId, entry);
+            }
+            return;
+        }
+
+        coalesced++;
+        if (DELETE.equals(existing.type)) {
+            // Nothing left to change
+            return;
+        }
+        if (DELETE.equals(record.op)) {
+            if (CREATE.equals(existing.type)) {
+                // Never reached the server, neither has to
+                queue.remove(existing);
+                coalescable.remove(existing.noteId);
+            } else {
+                existing.type = DELETE;
+                existing.note = null;
+            }
+            return;
+        }
+        // Update after a create or an update, only the last text matters
+        existing.note = record.note;
+    }
+
+    private boolean hasPending(int noteId) {
+        if (inFlight != null && inFlight.noteId == noteId) {
+            return true;
+        }
+        for (Entry entry : queue) {
+            if (entry.noteId == noteId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // A created note got its server id, or was refused (serverId 0) and everything queued for it goes
+    private void moveNote(int tempId, int serverId) {
+        Iterator<Entry> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.noteId != tempId) {
+                continue;
+            }
+            if (serverId == 0) {
+                iterator.remove();
+            } else {
+                entry.noteId = serverId;
+            }
+        }
+        Entry entry = coalescable.remove(tempId);
+        if (entry != null && serverId != 0) {
+            coalescable.put(serverId, entry);
+        }
+    }
+
+    private void replay() {
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF8));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    Record record;
+                    try {
+                        record = gson.fromJson(line, Record.class);
+                    } catch (JsonParseException e) {
+                        // Torn last line from a crash mid-write
+                        break;
+                    }
+                    if (record == null || record.op == null) {
+                        break;
+                    }
+                    recordCount++;
+                    apply(record);
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            // What was read so far is kept
+        }
+        // Whatever was being sent when the process died is sent again first
+        release();
+    }
+
+    private void write(Record record) throws IOException {
+        if (writer == null) {
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), UTF8));
+        }
+        writer.write(gson.toJson(record));
+        writer.write('\n');
+        // Flushed to the OS, which is enough to survive process death
+        writer.flush();
+        recordCount++;
+    }
+
+    /**
+     * Rewrites the file with only the pending changes, through a temp file and a rename
+     */
+    private void compact() throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), UTF8));
+        int written = 0;
+        try {
+            // Ahead of the changes, so replay sees them before a change could record an older base
+            for (Map.Entry<Integer, Note> base : bases.entrySet()) {
+                Record record = new Record();
+                record.op = BASE;
+                record.id = base.getKey();
+                if (base.getValue() != null) {
+                    record.base = base.getValue().getNote();
+                    record.stamp = base.getValue().getTimestamp();
+                }
+                out.write(gson.toJson(record));
+                out.write('\n');
+                written++;
+            }
+            if (inFlight != null) {
+                out.write(gson.toJson(toRecord(inFlight)));
+                out.write('\n');
+                Record take = new Record();
+                take.op = TAKE;
+                take.id = inFlight.noteId;
+                out.write(gson.toJson(take));
+                out.write('\n');
+                written += 2;
+            }
+            for (Entry entry : queue) {
+                out.write(gson.toJson(toRecord(entry)));
+                out.write('\n');
+                written++;
+            }
+        } finally {
+            out.close();
+        }
+
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Could not replace " + file);
+        }
+        recordCount = written;
+        compactions++;
+    }
+
+    private static Record toRecord(Entry entry) {
+        Record record = new Record();
+        record.op = entry.type;
+        record.id = entry.noteId;
+        record.note = entry.note;
+        record.at = entry.enqueuedAt;
+        record.pinned = entry.pinned ? Boolean.TRUE : null;
+        return record;
+    }
+
+    /**
+     * Changes waiting to be sent, including the one being sent
+     */
+    public synchronized int getDepth() {
+        load();
+        return queue.size() + (inFlight == null ? 0 : 1);
+    }
+
+    public synchronized long getAppendedCount() {
+        return appended;
+    }
+
+    public synchronized long getCoalescedCount() {
+        load();
+        return coalesced;
+    }
+
+    public synchronized long getSentCount() {
+        return sent;
+    }
+
+    public synchronized long getRejectedCount() {
+        return rejected;
+    }
+
+    public synchronized long getCompactionCount() {
+        return compactions;
+    }
+
+    public synchronized int getRecordCount() {
+        load();
+        return recordCount;
+    }
+
+    /**
+     * Milliseconds from the change being made to the server acknowledging it
+     */
+    public synchronized long getLastFlushLatencyMillis() {
+        return lastFlushLatency;
+    }
+
+    public synchronized long getMaxFlushLatencyMillis() {
+        return maxFlushLatency;
+    }
+
+    public synchronized long getAverageFlushLatencyMillis() {
+        return sent == 0 ? 0 : totalFlushLatency / sent;
+    }
+
+    @Override
+    public synchronized String toString() {
+        load();
+        return String.format(Locale.US,
+                "MutationJournal{depth=%d, appended=%d, coalesced=%d, sent=%d, rejected=%d, records=%d, compactions=%d, flushLatencyMs=last %d/avg %d/max %d}",
+                getDepth(), appended, coalesced, sent, rejected, recordCount, compactions,
+                lastFlushLatency, getAverageFlushLatencyMillis(), maxFlushLatency);
+    }
+}
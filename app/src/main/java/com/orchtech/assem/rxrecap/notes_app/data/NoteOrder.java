@@ -0,0 +1,45 @@
+package com.orchtech.assem.rxrecap.notes_app.data;
+
+import com.orchtech.assem.rxrecap.notes_app.network.model.Note;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Order the notes are shown in: notes created on the device and not sent yet (negative ids) first,
+ * newest first, then server notes by id, highest first
+ */
+public class NoteOrder {
+
+    public static final Comparator<Note> NEWEST_FIRST = (n1, n2) -> compareIds(n1.getId(), n2.getId());
+
+    public static int compareIds(int id1, int id2) {
+        boolean local1 = id1 < 0;
+        boolean local2 = id2 < 0;
+        if (local1 != local2) {
+            return local1 ? -1 : 1;
+        }
+        // Integer.compare and not a subtraction, which overflows for ids far apart
+        return local1 ? Integer.compare(id1, id2) : Integer.compare(id2, id1);
+    }
+
+    /**
+     * Sorts ids in place in this order with a primitive sort, no boxing and no comparator calls
+     * In natural order the local ids already come first, newest first, only the server ids are reversed after
+     */
+    public static void sortIds(int[] ids) {
+        Arrays.sort(ids);
+        int firstServerId = Arrays.binarySearch(ids, 0);
+        if (firstServerId < 0) {
+            firstServerId = -firstServerId - 1;
+        }
+        for (int i = firstServerId, j = ids.length - 1; i < j; i++, j--) {
+            int id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+        }
+    }
+
+    private NoteOrder() {
+    }
+}
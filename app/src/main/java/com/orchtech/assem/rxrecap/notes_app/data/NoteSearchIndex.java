@@ -0,0 +1,287 @@
+package com.orchtech.assem.rxrecap.notes_app.data;
+
+import com.orchtech.assem.rxrecap.notes_app.network.model.Note;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Inverted index over the text of the notes, word -> ids of the notes containing it
+ * Words are sorted, so every word of a query matches as a prefix: "gro mil" finds "Groceries: milk"
+ * Built from the store on the first search, kept up to date from the NotesDelta the repository publishes
+ * and dropped on a reset, the next search builds it again
+ */
+public class NoteSearchIndex {
+    private static final int[] NONE = new int[0];
+
+    private final NoteStore store;
+    private final TreeMap<String, Postings> words = new TreeMap<>();
+    // The words each note was indexed under, to take it out again on an update or delete
+    private final Map<Integer, String[]> noteWords = new HashMap<>();
+    private boolean built;
+
+    private long builds;
+    private long searches;
+    private long lastBuildMillis;
+    private long lastSearchMicros;
+
+    public NoteSearchIndex(NoteStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Ids of the notes containing every word of the query as a prefix of one of their words, in no particular order
+     * A query without words matches nothing
+     */
+    public synchronized int[] search(String query) {
+        if (!built) {
+            build();
+        }
+        long start = System.nanoTime();
+        String[] queryWords = tokenize(query);
+        int[] matches = null;
+        for (String prefix : queryWords) {
+            int[] ids = idsWithPrefix(prefix);
+            matches = matches == null ? ids : intersect(matches, ids);
+            if (matches.length == 0) {
+                break;
+            }
+        }
+        searches++;
+        lastSearchMicros = (System.nanoTime() - start) / 1000;
+        return matches == null ? NONE : matches;
+    }
+
+    /**
+     * Same test as search(), for a single note that changed while a search is shown
+     */
+    public static boolean matches(Note note, String query) {
+        String[] queryWords = tokenize(query);
+        if (queryWords.length == 0) {
+            return false;
+        }
+        String[] words = tokenize(note.getNote());
+        for (String prefix : queryWords) {
+            boolean found = false;
+            for (String word : words) {
+                if (word.startsWith(prefix)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Called with every delta before it is published, so a search never misses a change that is already shown
+     */
+    synchronized void apply(NotesDelta delta) {
+        if (delta.isReset()) {
+            clear();
+            return;
+        }
+        if (!built) {
+            // The first search reads the store, which already has the change
+            return;
+        }
+        for (int noteId : delta.getDeleted()) {
+            remove(noteId);
+        }
+        for (Note note : delta.getUpserted()) {
+            remove(note.getId());
+            add(note.getId(), note.getNote());
+        }
+    }
+
+    private void build() {
+        long start = System.currentTimeMillis();
+        clear();
+        List<Note> notes = store.loadAll();
+        // Ids ascending, so postings are built by appending
+        Note[] byId = notes.toArray(new Note[notes.size()]);
+        Arrays.sort(byId, (n1, n2) -> Integer.compare(n1.getId(), n2.getId()));
+        for (Note note : byId) {
+            add(note.getId(), note.getNote());
+        }
+        built = true;
+        builds++;
+        lastBuildMillis = System.currentTimeMillis() - start;
+    }
+
+    private void clear() {
+        words.clear();
+        noteWords.clear();
+        built = false;
+    }
+
+    private void add(int noteId, String text) {
+        String[] tokens = tokenize(text);
+        if (tokens.length == 0) {
+            return;
+        }
+        noteWords.put(noteId, tokens);
+        for (String token : tokens) {
+            Postings postings = words.get(token);
+            if (postings == null) {
+                postings = new Postings();
+                words.put(token, postings);
+            }
+            postings.add(noteId);
+        }
+    }
+
+    private void remove(int noteId) {
+        String[] tokens = noteWords.remove(noteId);
+        if (tokens == null) {
+            return;
+        }
+        for (String token : tokens) {
+            Postings postings = words.get(token);
+            if (postings != null && postings.remove(noteId) && postings.size == 0) {
+                words.remove(token);
+            }
+        }
+    }
+
+    // Union of the postings of every word starting with prefix, sorted ascending
+    private int[] idsWithPrefix(String prefix) {
+        SortedMap<String, Postings> matching = words.subMap(prefix, prefix + Character.MAX_VALUE);
+        if (matching.isEmpty()) {
+            return NONE;
+        }
+        if (matching.size() == 1) {
+            Postings postings = matching.values().iterator().next();
+            return Arrays.copyOf(postings.ids, postings.size);
+        }
+        int total = 0;
+        for (Postings postings : matching.values()) {
+            total += postings.size;
+        }
+        int[] ids = new int[total];
+        int count = 0;
+        for (Postings postings : matching.values()) {
+            System.arraycopy(postings.ids, 0, ids, count, postings.size);
+            count += postings.size;
+        }
+        Arrays.sort(ids);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || ids[i] != ids[unique - 1]) {
+                ids[unique++] = ids[i];
+            }
+        }
+        return Arrays.copyOf(ids, unique);
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] both = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                both[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(both, count);
+    }
+
+    /**
+     * Lower-cased runs of letters and digits, duplicates dropped
+     */
+    static String[] tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return new String[0];
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        Set<String> tokens = new LinkedHashSet<>();
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens.toArray(new String[tokens.size()]);
+    }
+
+    public synchronized int getWordCount() {
+        return words.size();
+    }
+
+    public synchronized int getIndexedNoteCount() {
+        return noteWords.size();
+    }
+
+    public synchronized long getSearchCount() {
+        return searches;
+    }
+
+    public synchronized long getLastBuildMillis() {
+        return lastBuildMillis;
+    }
+
+    public synchronized long getLastSearchMicros() {
+        return lastSearchMicros;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "NoteSearchIndex{built=" + built + ", words=" + words.size() + ", notes=" + noteWords.size()
+                + ", builds=" + builds + ", lastBuildMs=" + lastBuildMillis + ", searches=" + searches
+                + ", lastSearchUs=" + lastSearchMicros + "}";
+    }
+
+    // Ids of the notes containing a word, sorted ascending
+    private static class Postings {
+        int[] ids = new int[2];
+        int size;
+
+        void add(int noteId) {
+            int position = size == 0 || ids[size - 1] < noteId ? size : Arrays.binarySearch(ids, 0, size, noteId);
+            if (position >= 0 && position < size) {
+                // Already there
+                return;
+            }
+            if (position < 0) {
+                position = -position - 1;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = noteId;
+            size++;
+        }
+
+        boolean remove(int noteId) {
+            int position = Arrays.binarySearch(ids, 0, size, noteId);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            size--;
+            return true;
+        }
+    }
+}
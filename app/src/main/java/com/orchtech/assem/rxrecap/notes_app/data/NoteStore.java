@@ -0,0 +1,55 @@
+package com.orchtech.assem.rxrecap.notes_app.data;
+
+import com.orchtech.assem.rxrecap.notes_app.network.model.Note;
+
+import java.util.List;
+
+/**
+ * Notes kept on the device, the list NotesAppActivity shows before the server answers
+ * Calls block, callers run them on a background scheduler
+ */
+public interface NoteStore {
+
+    /**
+     * Every note, in NoteOrder
+     */
+    List<Note> loadAll();
+
+    /**
+     * Ids of every note, in no particular order, NoteOrder.sortIds() puts them in order
+     */
+    int[] loadIds();
+
+    /**
+     * The notes with these ids that still exist, in no particular order
+     */
+    List<Note> loadNotes(int[] noteIds);
+
+    /**
+     * The note with this id, or null
+     */
+    Note load(int noteId);
+
+    int count();
+
+    /**
+     * Cursor the store is in sync with, 0 before the first delta sync
+     */
+    long getSyncCursor();
+
+    /**
+     * Makes the store hold exactly the given notes
+     */
+    void replaceAll(List<Note> notes, long syncCursor);
+
+    /**
+     * Writes the changed notes, removes the deleted ones and moves the cursor, all or nothing
+     */
+    void applyChanges(List<Note> changed, List<Integer> deleted, long syncCursor);
+
+    void upsert(Note note);
+
+    void updateText(int noteId, String note);
+
+    void delete(int noteId);
+}
@@ -0,0 +1,78 @@
+package com.orchtech.assem.rxrecap.notes_app.data;
+
+import com.orchtech.assem.rxrecap.notes_app.network.model.Note;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What changed in the NoteStore: notes written and ids deleted,
+ * or a reset when the whole store was replaced and has to be read again
+ * Applying a delta twice gives the same list, so one that raced a full read does no harm
+ */
+public class NotesDelta {
+    static final NotesDelta RESET = new NotesDelta(true, Collections.<Note>emptyList(), Collections.<Integer>emptyList());
+
+    private final boolean reset;
+    private final List<Note> upserted;
+    private final List<Integer> deleted;
+
+    NotesDelta(boolean reset, List<Note> upserted, List<Integer> deleted) {
+        this.reset = reset;
+        this.upserted = upserted;
+        this.deleted = deleted;
+    }
+
+    static NotesDelta of(Collection<Note> upserted, Collection<Integer> deleted) {
+        return new NotesDelta(false, new ArrayList<>(upserted), new ArrayList<>(deleted));
+    }
+
+    static NotesDelta upsert(Note note) {
+        return new NotesDelta(false, Collections.singletonList(note), Collections.<Integer>emptyList());
+    }
+
+    static NotesDelta delete(int noteId) {
+        return new NotesDelta(false, Collections.<Note>emptyList(), Collections.singletonList(noteId));
+    }
+
+    public boolean isReset() {
+        return reset;
+    }
+
+    public List<Note> getUpserted() {
+        return upserted;
+    }
+
+    public List<Integer> getDeleted() {
+        return deleted;
+    }
+
+    public boolean isEmpty() {
+        return !reset && upserted.isEmpty() && deleted.isEmpty();
+    }
+
+    /**
+     * A copy of the list, sorted by NoteOrder, with this delta applied by binary search
+     */
+    public List<Note> applyTo(List<Note> notes) {
+        List<Note> result = new ArrayList<>(notes.size() + upserted.size());
+        result.addAll(notes);
+        for (int noteId : deleted) {
+            int position = Collections.binarySearch(result, new Note(noteId, null, null), NoteOrder.NEWEST_FIRST);
+            if (position >= 0) {
+                result.remove(position);
+            }
+        }
+        for (Note note : upserted) {
+            int position = Collections.binarySearch(result, note, NoteOrder.NEWEST_FIRST);
+            if (position >= 0) {
+                result.set(position, note);
+            } else {
+                result.add(-position - 1, note);
+            }
+        }
+        return result;
+    }
+}
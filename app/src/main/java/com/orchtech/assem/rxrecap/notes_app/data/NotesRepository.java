@@ -0,0 +1,457 @@
+package com.orchtech.assem.rxrecap.notes_app.data;
+
+import com.jakewharton.retrofit2.adapter.rxjava2.HttpException;
+import com.orchtech.assem.rxrecap.notes_app.data.MutationJournal.Mutation;
+import com.orchtech.assem.rxrecap.notes_app.network.NotesApiService;
+import com.orchtech.assem.rxrecap.notes_app.network.model.Note;
+import com.orchtech.assem.rxrecap.notes_app.network.model.NoteChanges;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Action;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
+
+/**
+ * Offline-first access to the notes
+ * The UI reads from the NoteStore, sync() brings the store in line with the server in the background
+ * Writes land in the store and the MutationJournal right away and reach the server when the journal is flushed
+ * Every write goes through here and is published as a NotesDelta, so observeNotes() only patches what changed
+ * A change the server refuses is rolled back to the note's base in the journal with the changes still pending on top
+ */
+public class NotesRepository {
+    private static final Object FLUSH = new Object();
+    private static final long FLUSH_RETRY_SECONDS = 30;
+    // Notes per notes/changes call, a first sync of a large account arrives in pages of this size
+    private static final int SYNC_PAGE_SIZE = 1000;
+
+    private final NotesApiService apiService;
+    private final NoteStore store;
+    private final MutationJournal journal;
+    // Store and journal work
+    private final Scheduler scheduler;
+    // Calls to the server, sync() and flush()
+    private final Scheduler networkScheduler;
+    private final Subject<NotesDelta> deltas = PublishSubject.<NotesDelta>create().toSerialized();
+    private final Subject<Object> flushRequests = PublishSubject.create().toSerialized();
+    private final Subject<Throwable> refusals = PublishSubject.<Throwable>create().toSerialized();
+    private final NoteSearchIndex searchIndex;
+    private long rollbacks;
+    // Held while the store and the journal change together: local writes, server changes, acks and rollbacks
+    private final Object storeLock = new Object();
+    // Set once the server answered notes/changes with 404, full syncs from then on
+    private volatile boolean deltaSyncUnavailable;
+
+    public NotesRepository(NotesApiService apiService, NoteStore store, MutationJournal journal, Scheduler scheduler) {
+        this(apiService, store, journal, scheduler, scheduler);
+    }
+
+    public NotesRepository(NotesApiService apiService, NoteStore store, MutationJournal journal, Scheduler scheduler,
+                           Scheduler networkScheduler) {
+        this.apiService = apiService;
+        this.store = store;
+        this.journal = journal;
+        this.scheduler = scheduler;
+        this.networkScheduler = networkScheduler;
+        this.searchIndex = new NoteSearchIndex(store);
+    }
+
+    /**
+     * The stored notes in NoteOrder, read once and then patched with every delta
+     * Deltas are subscribed to before the read, a write racing it is applied twice, which is harmless
+     */
+    public Observable<List<Note>> observeNotes() {
+        return deltas.mergeWith(Observable.just(NotesDelta.RESET))
+                .observeOn(scheduler)
+                .scan(Collections.<Note>emptyList(), (notes, delta) -> delta.isReset() ? store.loadAll() : delta.applyTo(notes))
+                .skip(1);
+    }
+
+    /**
+     * Every delta from now on, starting with a reset, for views that load notes themselves
+     */
+    public Observable<NotesDelta> observeChanges() {
+        return deltas.mergeWith(Observable.just(NotesDelta.RESET));
+    }
+
+    /**
+     * Ids of every stored note, unsorted
+     */
+    public Single<int[]> loadIds() {
+        return Single.fromCallable(store::loadIds).subscribeOn(scheduler);
+    }
+
+    public Single<List<Note>> loadNotes(int[] noteIds) {
+        return Single.fromCallable(() -> store.loadNotes(noteIds)).subscribeOn(scheduler);
+    }
+
+    /**
+     * Ids of the notes matching the query, unsorted, see NoteSearchIndex
+     * The first search after a reset builds the index from the store
+     */
+    public Single<int[]> searchIds(String query) {
+        return Single.fromCallable(() -> searchIndex.search(query)).subscribeOn(scheduler);
+    }
+
+    /**
+     * Sends pending changes, then fetches what changed on the server since the last sync
+     * Changes still pending after that are applied on top, so they do not flicker away
+     */
+    public Completable sync() {
+        return flush()
+                .onErrorComplete()
+                .andThen(Completable.defer(() -> deltaSyncUnavailable ? fullSync() : deltaSync()))
+                .subscribeOn(networkScheduler);
+    }
+
+    /**
+     * Asks for changes a page at a time, each page is stored and shown before the next one is fetched
+     */
+    private Completable deltaSync() {
+        return Completable.defer(() -> {
+            final long[] cursor = {store.getSyncCursor()};
+            final boolean[] more = {false};
+            return Single.defer(() -> apiService.fetchChanges(cursor[0], SYNC_PAGE_SIZE))
+                    .doOnSuccess(changes -> {
+                        applyServerChanges(cursor[0], changes);
+                        more[0] = changes.hasMore() && changes.getCursor() > cursor[0];
+                        cursor[0] = changes.getCursor();
+                    })
+                    .repeatUntil(() -> !more[0])
+                    .ignoreElements();
+        }).onErrorResumeNext(e -> {
+            if (e instanceof HttpException && ((HttpException) e).code() == 404) {
+                deltaSyncUnavailable = true;
+                return fullSync();
+            }
+            return Completable.error(e);
+        });
+    }
+
+    private Completable fullSync() {
+        return apiService.fetchAllNotes()
+                .doOnSuccess(notes -> {
+                    synchronized (storeLock) {
+                        store.replaceAll(notes, 0);
+                        rebaseAndApplyPending(notes);
+                    }
+                    publish(NotesDelta.RESET);
+                })
+                .ignoreElement();
+    }
+
+    // After the store was replaced with everything on the server
+    private void rebaseAndApplyPending(List<Note> serverNotes) throws IOException {
+        List<Mutation> pending = journal.pending();
+        Map<Integer, Note> pendingNotes = new HashMap<>();
+        for (Mutation mutation : pending) {
+            pendingNotes.put(mutation.getNoteId(), null);
+        }
+        for (Note note : serverNotes) {
+            if (pendingNotes.containsKey(note.getId())) {
+                pendingNotes.put(note.getId(), note);
+            }
+        }
+        for (Map.Entry<Integer, Note> note : pendingNotes.entrySet()) {
+            if (note.getKey() > 0) {
+                journal.rebase(note.getKey(), note.getValue());
+            }
+        }
+        for (Mutation mutation : pending) {
+            applyLocally(mutation);
+        }
+    }
+
+    private void applyServerChanges(long cursor, NoteChanges changes) throws IOException {
+        if (cursor == 0) {
+            synchronized (storeLock) {
+                store.replaceAll(changes.getNotes(), changes.getCursor());
+                rebaseAndApplyPending(changes.getNotes());
+            }
+            publish(NotesDelta.RESET);
+            return;
+        }
+
+        List<Note> changed = changes.getNotes();
+        List<Integer> deleted = changes.getDeleted();
+        NotesDelta local;
+        synchronized (storeLock) {
+            store.applyChanges(changed, deleted, changes.getCursor());
+            // Local changes win over the server's until they are sent
+            Set<Integer> touched = new HashSet<>(deleted);
+            for (Note note : changed) {
+                touched.add(note.getId());
+                journal.rebase(note.getId(), note);
+            }
+            for (Integer noteId : deleted) {
+                journal.rebase(noteId, null);
+            }
+            List<Note> upserted = new ArrayList<>();
+            List<Integer> removed = new ArrayList<>();
+            for (Mutation mutation : journal.pending()) {
+                if (!touched.contains(mutation.getNoteId())) {
+                    continue;
+                }
+                applyLocally(mutation);
+                Note note = store.load(mutation.getNoteId());
+                if (note == null) {
+                    removed.add(mutation.getNoteId());
+                } else {
+                    upserted.add(note);
+                }
+            }
+            local = NotesDelta.of(upserted, removed);
+        }
+        publish(NotesDelta.of(changed, deleted));
+        publish(local);
+    }
+
+    /**
+     * Flushes the journal whenever a change is made, and every 30 seconds to retry after a failure
+     * Runs until the returned Disposable is disposed
+     */
+    public Disposable startFlushing() {
+        return flushRequests
+                .startWith(FLUSH)
+                .mergeWith(Observable.interval(FLUSH_RETRY_SECONDS, TimeUnit.SECONDS, scheduler))
+                .toFlowable(BackpressureStrategy.LATEST)
+                .concatMapCompletable(signal -> flush().onErrorComplete(), 1)
+                .subscribe();
+    }
+
+    /**
+     * The note is stored under a temporary id, it gets its server id once the journal is flushed
+     */
+    public Single<Note> createNote(String note) {
+        return Single.fromCallable(() -> {
+            Note created;
+            synchronized (storeLock) {
+                int tempId = journal.nextTempId();
+                journal.append(MutationJournal.CREATE, tempId, note);
+                created = new Note(tempId, note, timestamp(System.currentTimeMillis()));
+                store.upsert(created);
+            }
+            changed(NotesDelta.upsert(created));
+            return created;
+        }).subscribeOn(scheduler);
+    }
+
+    /**
+     * Shown right away, rolled back if the server refuses it
+     */
+    public Completable updateNote(int noteId, String note) {
+        return Completable.fromAction(() -> {
+            Note updated;
+            synchronized (storeLock) {
+                journal.append(MutationJournal.UPDATE, noteId, note, store.load(noteId));
+                store.updateText(noteId, note);
+                updated = store.load(noteId);
+            }
+            changed(updated == null ? NotesDelta.delete(noteId) : NotesDelta.upsert(updated));
+        }).subscribeOn(scheduler);
+    }
+
+    /**
+     * Gone right away, back in the list if the server refuses it
+     */
+    public Completable deleteNote(int noteId) {
+        return Completable.fromAction(() -> {
+            synchronized (storeLock) {
+                journal.append(MutationJournal.DELETE, noteId, null, store.load(noteId));
+                store.delete(noteId);
+            }
+            changed(NotesDelta.delete(noteId));
+        }).subscribeOn(scheduler);
+    }
+
+    /**
+     * The error for every change the server refused, after the change was rolled back
+     */
+    public Observable<Throwable> observeRefusals() {
+        return refusals;
+    }
+
+    public synchronized long getRollbackCount() {
+        return rollbacks;
+    }
+
+    public MutationJournal getJournal() {
+        return journal;
+    }
+
+    public NoteSearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    private void changed(NotesDelta delta) {
+        publish(delta);
+        flushRequests.onNext(FLUSH);
+    }
+
+    private void publish(NotesDelta delta) {
+        if (delta.isReset() || !delta.isEmpty()) {
+            searchIndex.apply(delta);
+            deltas.onNext(delta);
+        }
+    }
+
+    /**
+     * Sends pending changes one at a time until the journal is empty, each send starts when the previous
+     * answer arrived and no thread waits in between
+     * A network or server error puts the change back and ends the flush, a refused change is dropped
+     * A change the server answered is never put back: when the journal cannot record the answer,
+     * the flush fails and the next one records it before sending anything else
+     * Disposing the flush mid-send puts the change back unless its answer already came
+     */
+    Completable flush() {
+        return Completable.defer(() -> {
+            final boolean[] drained = {false};
+            return Completable.defer(() -> {
+                journal.recordAnswer();
+                Mutation mutation = journal.take();
+                if (mutation == null) {
+                    drained[0] = true;
+                    return Completable.complete();
+                }
+                return send(mutation);
+            }).repeatUntil(() -> drained[0]);
+        }).subscribeOn(networkScheduler);
+    }
+
+    private Completable send(final Mutation mutation) {
+        return call(mutation)
+                .onErrorResumeNext(error -> {
+                    if (!isRefused(error)) {
+                        // Not sent, it goes out again with the next flush
+                        journal.release();
+                        return Single.error(error);
+                    }
+                    return Single.just(refused(mutation, error));
+                })
+                // Kept in the journal before it is touched, so a failed write is retried rather than the send
+                .doOnSuccess(answer -> journal.answered(mutation, answer))
+                .doOnDispose(() -> journal.releaseUnanswered(mutation))
+                .observeOn(scheduler)
+                .flatMapCompletable(answer -> Completable.fromAction(journal::recordAnswer));
+    }
+
+    /**
+     * The server call for the change, it emits what recording the answer takes
+     */
+    private Single<Action> call(Mutation mutation) {
+        final int noteId = mutation.getNoteId();
+        switch (mutation.getType()) {
+            case MutationJournal.CREATE:
+                return apiService.createNote(mutation.getNote())
+                        .map(created -> () -> created(noteId, created));
+            case MutationJournal.UPDATE:
+                return apiService.updateNote(noteId, mutation.getNote())
+                        .toSingleDefault(() -> journal.ack(noteId));
+            default:
+                return apiService.deleteNote(noteId)
+                        .toSingleDefault(() -> journal.ack(noteId));
+        }
+    }
+
+    private Action refused(Mutation mutation, Throwable error) {
+        final int noteId = mutation.getNoteId();
+        if (MutationJournal.DELETE.equals(mutation.getType()) && ((HttpException) error).code() == 404) {
+            // Already gone, a retried delete whose first answer was lost ends up here
+            return () -> journal.ack(noteId);
+        }
+        return () -> rollBack(noteId, error);
+    }
+
+    private void created(int tempId, Note created) throws IOException {
+        if (created.getError() != null && !created.getError().isEmpty()) {
+            rollBack(tempId, new IllegalStateException(created.getError()));
+            return;
+        }
+        synchronized (storeLock) {
+            journal.ack(created.getId());
+            // Changes made while it was sent now roll back to what the server created
+            journal.rebase(created.getId(), created);
+            store.delete(tempId);
+            store.upsert(created);
+        }
+        publish(NotesDelta.of(Collections.singletonList(created), Collections.singletonList(tempId)));
+    }
+
+    /**
+     * Rejects the change being sent and puts the note back the way the server has it, with the
+     * changes still pending for it on top. A refused create takes its queued changes with it
+     * A note the journal has no base for, from a journal written before bases were kept, stays as it is
+     */
+    private void rollBack(int noteId, Throwable error) throws IOException {
+        NotesDelta delta = null;
+        synchronized (storeLock) {
+            boolean known = noteId < 0 || journal.hasBase(noteId);
+            Note base = journal.getBase(noteId);
+            journal.reject();
+            if (known) {
+                store.delete(noteId);
+                if (base != null) {
+                    store.upsert(base);
+                }
+                for (Mutation mutation : journal.pending()) {
+                    if (mutation.getNoteId() == noteId) {
+                        applyLocally(mutation);
+                    }
+                }
+                Note restored = store.load(noteId);
+                delta = restored == null ? NotesDelta.delete(noteId) : NotesDelta.upsert(restored);
+            }
+        }
+        if (delta != null) {
+            synchronized (this) {
+                rollbacks++;
+            }
+            publish(delta);
+        }
+        refusals.onNext(error);
+    }
+
+    private void applyLocally(Mutation mutation) {
+        switch (mutation.getType()) {
+            case MutationJournal.CREATE:
+                store.upsert(new Note(mutation.getNoteId(), mutation.getNote(), timestamp(mutation.getEnqueuedAt())));
+                break;
+            case MutationJournal.UPDATE:
+                store.updateText(mutation.getNoteId(), mutation.getNote());
+                break;
+            default:
+                store.delete(mutation.getNoteId());
+        }
+    }
+
+    // 4xx other than timeouts and rate limiting, sending it again would not help
+    private static boolean isRefused(Throwable error) {
+        if (!(error instanceof HttpException)) {
+            return false;
+        }
+        int code = ((HttpException) error).code();
+        return code >= 400 && code < 500 && code != 408 && code != 429;
+    }
+
+    // Same format the server uses, 2018-02-21 00:15:42
+    private static String timestamp(long millis) {
+        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US).format(new Date(millis));
+    }
+}
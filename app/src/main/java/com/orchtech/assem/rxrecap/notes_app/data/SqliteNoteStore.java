@@ -0,0 +1,239 @@
+package com.orchtech.assem.rxrecap.notes_app.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import com.orchtech.assem.rxrecap.notes_app.network.model.Note;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * NoteStore on a SQLite table, one instance per process
+ */
+public class SqliteNoteStore extends SQLiteOpenHelper implements NoteStore {
+    private static final String DATABASE_NAME = "notes.db";
+    private static final int DATABASE_VERSION = 2;
+
+    private static final String TABLE_NOTES = "notes";
+    private static final String COLUMN_ID = "id";
+    private static final String COLUMN_NOTE = "note";
+    private static final String COLUMN_TIMESTAMP = "timestamp";
+
+    private static final String TABLE_SYNC_STATE = "sync_state";
+    private static final String COLUMN_KEY = "key";
+    private static final String COLUMN_VALUE = "value";
+    private static final String KEY_CURSOR = "cursor";
+
+    private static final int MAX_IDS_PER_QUERY = 500;
+    private static final String[] NOTE_COLUMNS = {COLUMN_ID, COLUMN_NOTE, COLUMN_TIMESTAMP};
+    // NoteOrder: local notes (negative ids) newest first, then server notes by id descending
+    private static final String ORDER_NEWEST_FIRST = "(" + COLUMN_ID + " < 0) DESC, "
+            + "CASE WHEN " + COLUMN_ID + " < 0 THEN " + COLUMN_ID + " ELSE -" + COLUMN_ID + " END";
+
+    private static final String SQL_UPSERT = "INSERT OR REPLACE INTO " + TABLE_NOTES
+            + " (" + COLUMN_ID + ", " + COLUMN_NOTE + ", " + COLUMN_TIMESTAMP + ") VALUES (?, ?, ?)";
+
+    private static SqliteNoteStore instance;
+
+    public static synchronized SqliteNoteStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new SqliteNoteStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private SqliteNoteStore(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_NOTES + " ("
+                + COLUMN_ID + " INTEGER PRIMARY KEY, "
+                + COLUMN_NOTE + " TEXT NOT NULL, "
+                + COLUMN_TIMESTAMP + " TEXT)");
+        db.execSQL("CREATE TABLE " + TABLE_SYNC_STATE + " ("
+                + COLUMN_KEY + " TEXT PRIMARY KEY, "
+                + COLUMN_VALUE + " INTEGER NOT NULL)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Only a copy of the server data, the next sync fills it again
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_NOTES);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_SYNC_STATE);
+        onCreate(db);
+    }
+
+    @Override
+    public List<Note> loadAll() {
+        Cursor cursor = getReadableDatabase().query(TABLE_NOTES, NOTE_COLUMNS,
+                null, null, null, null, ORDER_NEWEST_FIRST);
+        try {
+            List<Note> notes = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                notes.add(readNote(cursor));
+            }
+            return notes;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    public int[] loadIds() {
+        // Read in rowid order straight off the table, sorting an int[] is cheaper than the CASE ORDER BY
+        Cursor cursor = getReadableDatabase().query(TABLE_NOTES, new String[]{COLUMN_ID},
+                null, null, null, null, null);
+        try {
+            int[] ids = new int[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                ids[i] = cursor.getInt(0);
+            }
+            return ids;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    public List<Note> loadNotes(int[] noteIds) {
+        List<Note> notes = new ArrayList<>(noteIds.length);
+        // Stays well under SQLite's limit of 999 bound arguments
+        for (int start = 0; start < noteIds.length; start += MAX_IDS_PER_QUERY) {
+            int end = Math.min(noteIds.length, start + MAX_IDS_PER_QUERY);
+            StringBuilder where = new StringBuilder(COLUMN_ID).append(" IN (");
+            String[] args = new String[end - start];
+            for (int i = start; i < end; i++) {
+                where.append(i == start ? "?" : ",?");
+                args[i - start] = String.valueOf(noteIds[i]);
+            }
+            Cursor cursor = getReadableDatabase().query(TABLE_NOTES, NOTE_COLUMNS,
+                    where.append(')').toString(), args, null, null, null);
+            try {
+                while (cursor.moveToNext()) {
+                    notes.add(readNote(cursor));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return notes;
+    }
+
+    @Override
+    public Note load(int noteId) {
+        Cursor cursor = getReadableDatabase().query(TABLE_NOTES, NOTE_COLUMNS,
+                COLUMN_ID + " = ?", new String[]{String.valueOf(noteId)}, null, null, null);
+        try {
+            return cursor.moveToFirst() ? readNote(cursor) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    public int count() {
+        return (int) DatabaseUtils.queryNumEntries(getReadableDatabase(), TABLE_NOTES);
+    }
+
+    @Override
+    public long getSyncCursor() {
+        Cursor cursor = getReadableDatabase().query(TABLE_SYNC_STATE, new String[]{COLUMN_VALUE},
+                COLUMN_KEY + " = ?", new String[]{KEY_CURSOR}, null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    public void replaceAll(List<Note> notes, long syncCursor) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete(TABLE_NOTES, null, null);
+            SQLiteStatement upsert = db.compileStatement(SQL_UPSERT);
+            for (Note note : notes) {
+                bind(upsert, note);
+                upsert.executeInsert();
+            }
+            setSyncCursor(db, syncCursor);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Override
+    public void applyChanges(List<Note> changed, List<Integer> deleted, long syncCursor) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            SQLiteStatement upsert = db.compileStatement(SQL_UPSERT);
+            for (Note note : changed) {
+                bind(upsert, note);
+                upsert.executeInsert();
+            }
+            SQLiteStatement delete = db.compileStatement("DELETE FROM " + TABLE_NOTES + " WHERE " + COLUMN_ID + " = ?");
+            for (int noteId : deleted) {
+                delete.bindLong(1, noteId);
+                delete.executeUpdateDelete();
+            }
+            setSyncCursor(db, syncCursor);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Override
+    public void upsert(Note note) {
+        SQLiteStatement upsert = getWritableDatabase().compileStatement(SQL_UPSERT);
+        bind(upsert, note);
+        upsert.executeInsert();
+    }
+
+    @Override
+    public void updateText(int noteId, String note) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_NOTE, note);
+        getWritableDatabase().update(TABLE_NOTES, values, COLUMN_ID + " = ?",
+                new String[]{String.valueOf(noteId)});
+    }
+
+    @Override
+    public void delete(int noteId) {
+        getWritableDatabase().delete(TABLE_NOTES, COLUMN_ID + " = ?",
+                new String[]{String.valueOf(noteId)});
+    }
+
+    private static void setSyncCursor(SQLiteDatabase db, long syncCursor) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_KEY, KEY_CURSOR);
+        values.put(COLUMN_VALUE, syncCursor);
+        db.insertWithOnConflict(TABLE_SYNC_STATE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    private static Note readNote(Cursor cursor) {
+        return new Note(cursor.getInt(0), cursor.getString(1), cursor.getString(2));
+    }
+
+    private static void bind(SQLiteStatement statement, Note note) {
+        statement.clearBindings();
+        statement.bindLong(1, note.getId());
+        statement.bindString(2, note.getNote() == null ? "" : note.getNote());
+        if (note.getTimestamp() == null) {
+            statement.bindNull(3);
+        } else {
+            statement.bindString(3, note.getTimestamp());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.orchtech.assem.rxrecap.notes_app.network;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import io.reactivex.Completable;
+import io.reactivex.Single;
+import retrofit2.Call;
+import retrofit2.CallAdapter;
+import retrofit2.Retrofit;
+import retrofit2.http.POST;
+
+/**
+ * Holds back every Single and Completable a notes service returns while the device is registering,
+ * they subscribe to the call once ApiKeyProvider.awaitRegistration() completes
+ * The wait is in Rx, so no OkHttp dispatcher thread is parked on it and the registration call always
+ * finds one free. The registration call itself is never held back
+ * Added before the factory that builds the Rx types, it wraps what that factory returns
+ */
+public class ApiKeyCallAdapterFactory extends CallAdapter.Factory {
+    private static final String REGISTER_PATH = "notes/user/register";
+
+    private final ApiKeyProvider apiKeys;
+
+    private ApiKeyCallAdapterFactory(ApiKeyProvider apiKeys) {
+        this.apiKeys = apiKeys;
+    }
+
+    public static ApiKeyCallAdapterFactory create(ApiKeyProvider apiKeys) {
+        return new ApiKeyCallAdapterFactory(apiKeys);
+    }
+
+    @Override
+    public CallAdapter<?> get(Type returnType, Annotation[] annotations, Retrofit retrofit) {
+        Class<?> rawType = getRawType(returnType);
+        if (rawType != Single.class && rawType != Completable.class) {
+            return null;
+        }
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof POST && REGISTER_PATH.equals(((POST) annotation).value())) {
+                return null;
+            }
+        }
+
+        final CallAdapter<?> delegate = retrofit.nextCallAdapter(this, returnType, annotations);
+        return new CallAdapter<Object>() {
+            @Override
+            public Type responseType() {
+                return delegate.responseType();
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public <R> Object adapt(Call<R> call) {
+                Object adapted = delegate.adapt(call);
+                if (adapted instanceof Completable) {
+                    return apiKeys.awaitRegistration().andThen((Completable) adapted);
+                }
+                return apiKeys.awaitRegistration().andThen((Single<Object>) adapted);
+            }
+        };
+    }
+}
@@ -0,0 +1,37 @@
+package com.orchtech.assem.rxrecap.notes_app.network;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Adds the JSON headers and the API key, read from ApiKeyProvider's cache
+ * It never waits for the key, requests made while the device is registering are held back
+ * by ApiKeyCallAdapterFactory before they reach OkHttp
+ */
+public class ApiKeyInterceptor implements Interceptor {
+    private final ApiKeyProvider apiKeys;
+
+    public ApiKeyInterceptor(ApiKeyProvider apiKeys) {
+        this.apiKeys = apiKeys;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request original = chain.request();
+        Request.Builder requestBuilder = original.newBuilder()
+                .addHeader("Accept", "application/json")
+                .addHeader("Content-Type", "application/json");
+
+        // Adding Authorization token (API Key)
+        // Requests will be denied without API key
+        String apiKey = apiKeys.getApiKey();
+        if (apiKey != null) {
+            requestBuilder.addHeader("Authorization", apiKey);
+        }
+
+        return chain.proceed(requestBuilder.build());
+    }
+}
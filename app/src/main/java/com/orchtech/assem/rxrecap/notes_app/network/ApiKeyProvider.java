@@ -0,0 +1,134 @@
+package com.orchtech.assem.rxrecap.notes_app.network;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.BehaviorSubject;
+import io.reactivex.subjects.CompletableSubject;
+import io.reactivex.subjects.Subject;
+
+/**
+ * The API key, held in memory so a request reads a field instead of SharedPreferences
+ * Follows the stored key through onStoredKeyChanged(), and while register() is in flight
+ * requests can wait for its key instead of going out without one, see ApiKeyCallAdapterFactory
+ */
+public class ApiKeyProvider {
+    // Emitted while there is no key, BehaviorSubject does not take null
+    public static final String NO_KEY = "";
+
+    private static final long REGISTRATION_WAIT_SECONDS = 30;
+
+    private final Consumer<String> storage;
+    // Time source of the registration timeout, a TestScheduler can be passed to move time in tests
+    private final Scheduler clock;
+    private final Subject<String> keys;
+    private volatile String apiKey;
+    // Completes when the registration in flight ends, however it ends
+    private volatile CompletableSubject registration;
+
+    private long waits;
+    private long waitedMillis;
+
+    /**
+     * storedKey is the key read once at start, storage persists a key register() got
+     */
+    public ApiKeyProvider(String storedKey, Consumer<String> storage) {
+        this(storedKey, storage, Schedulers.computation());
+    }
+
+    public ApiKeyProvider(String storedKey, Consumer<String> storage, Scheduler clock) {
+        this.storage = storage;
+        this.clock = clock;
+        this.apiKey = emptyToNull(storedKey);
+        this.keys = BehaviorSubject.createDefault(storedKey == null ? NO_KEY : storedKey).toSerialized();
+    }
+
+    /**
+     * The cached key, null when the device is not registered
+     */
+    public String getApiKey() {
+        return apiKey;
+    }
+
+    public boolean hasApiKey() {
+        return apiKey != null;
+    }
+
+    /**
+     * The key now and on every change, NO_KEY while there is none
+     */
+    public Observable<String> observeApiKey() {
+        return keys.distinctUntilChanged();
+    }
+
+    /**
+     * Completes once there is a key or no registration in flight, at most 30 seconds after it is subscribed to
+     * No thread waits meanwhile, a request deferred on it goes out when it completes
+     */
+    public Completable awaitRegistration() {
+        return Completable.defer(() -> {
+            // Registration first: a successful one sets the key before it ends, read the other way round
+            // a registration finishing in between leaves neither the key nor anything to wait for
+            CompletableSubject pending = registration;
+            if (apiKey != null || pending == null) {
+                return Completable.complete();
+            }
+            final long start = clock.now(TimeUnit.MILLISECONDS);
+            return pending
+                    .timeout(REGISTRATION_WAIT_SECONDS, TimeUnit.SECONDS, clock)
+                    // Without a key the request goes out anyway, the server's 401 says what is wrong
+                    .onErrorComplete()
+                    .doFinally(() -> {
+                        synchronized (this) {
+                            waits++;
+                            waitedMillis += clock.now(TimeUnit.MILLISECONDS) - start;
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Wraps the registration call, awaitRegistration() waits from now until it succeeds, fails or is disposed
+     * The result is meant to be subscribed to right away
+     */
+    public <T> Single<T> register(Single<T> registration, Function<T, String> apiKeyOf) {
+        final CompletableSubject pending = CompletableSubject.create();
+        this.registration = pending;
+        return registration
+                .doOnSuccess(result -> {
+                    String key = apiKeyOf.apply(result);
+                    onStoredKeyChanged(key);
+                    storage.accept(key);
+                })
+                .doFinally(() -> {
+                    if (this.registration == pending) {
+                        this.registration = null;
+                    }
+                    pending.onComplete();
+                });
+    }
+
+    /**
+     * The stored key changed, from register() or from the preferences being written or cleared
+     */
+    public void onStoredKeyChanged(String storedKey) {
+        apiKey = emptyToNull(storedKey);
+        keys.onNext(apiKey == null ? NO_KEY : apiKey);
+    }
+
+    private static String emptyToNull(String key) {
+        return key == null || key.isEmpty() ? null : key;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ApiKeyProvider{registered=" + (apiKey != null) + ", registering=" + (registration != null)
+                + ", waits=" + waits + ", waitedMs=" + waitedMillis + "}";
+    }
+}
@@ -1,24 +1,31 @@
 package com.orchtech.assem.rxrecap.notes_app.network;
 
 import android.content.Context;
-import android.text.TextUtils;
+import android.content.SharedPreferences;
+import android.util.Log;
 
-import com.jakewharton.retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
+import com.orchtech.assem.rxrecap.BuildConfig;
 import com.orchtech.assem.rxrecap.Const;
+import com.orchtech.assem.rxrecap.network.AsyncCallAdapterFactory;
+import com.orchtech.assem.rxrecap.network.HttpCore;
+import com.orchtech.assem.rxrecap.network.Resilience;
+import com.orchtech.assem.rxrecap.network.ResilientCallAdapterFactory;
+import com.orchtech.assem.rxrecap.network.SampledLoggingInterceptor;
 import com.orchtech.assem.rxrecap.notes_app.utils.PrefUtils;
 
-import java.util.concurrent.TimeUnit;
-
 import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.logging.HttpLoggingInterceptor;
 import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
 
 public class NotesApiClient {
+    private static String TAG = NotesApiClient.class.getSimpleName();
     private static Retrofit retrofit = null;
-    private static int REQUEST_TIMEOUT = 60;
     private static OkHttpClient okHttpClient;
+    // Retries with backoff, a circuit breaker per endpoint and one retry budget for the notes backend
+    private static Resilience resilience = new Resilience();
+    private static ApiKeyProvider apiKeyProvider;
+    // Held here, SharedPreferences only keeps a weak reference to it
+    private static SharedPreferences.OnSharedPreferenceChangeListener apiKeyListener;
 
     public static Retrofit getClient(Context context) {
 
@@ -29,39 +36,51 @@ public class NotesApiClient {
             retrofit = new Retrofit.Builder()
                     .baseUrl(Const.NOTES_BASE_URL)
                     .client(okHttpClient)
-                    .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
+                    // Calls made while the device registers wait for its key without holding a thread
+                    .addCallAdapterFactory(ApiKeyCallAdapterFactory.create(getApiKeyProvider(context)))
+                    .addCallAdapterFactory(ResilientCallAdapterFactory.create(resilience))
+                    // Calls are enqueued on the shared dispatcher, a call in flight does not hold a thread
+                    .addCallAdapterFactory(AsyncCallAdapterFactory.create())
                     .addConverterFactory(GsonConverterFactory.create())
                     .build();
         }
         return retrofit;
     }
 
-    private static void initOkHttp(final Context context) {
-        OkHttpClient.Builder httpClient = new OkHttpClient().newBuilder()
-                .connectTimeout(REQUEST_TIMEOUT, TimeUnit.SECONDS)
-                .readTimeout(REQUEST_TIMEOUT, TimeUnit.SECONDS)
-                .writeTimeout(REQUEST_TIMEOUT, TimeUnit.SECONDS);
-
-        HttpLoggingInterceptor interceptor = new HttpLoggingInterceptor();
-        interceptor.setLevel(HttpLoggingInterceptor.Level.BODY);
+    public static Resilience getResilience() {
+        return resilience;
+    }
 
-        httpClient.addInterceptor(interceptor);
+    /**
+     * The API key every request carries, read from the preferences once and then kept in memory
+     */
+    public static synchronized ApiKeyProvider getApiKeyProvider(Context context) {
+        if (apiKeyProvider == null) {
+            final Context appContext = context.getApplicationContext();
+            final ApiKeyProvider provider = new ApiKeyProvider(PrefUtils.getApiKey(appContext),
+                    apiKey -> PrefUtils.storeApiKey(appContext, apiKey));
+            apiKeyListener = (preferences, key) -> {
+                if (PrefUtils.API_KEY.equals(key)) {
+                    provider.onStoredKeyChanged(preferences.getString(key, null));
+                }
+            };
+            PrefUtils.registerListener(appContext, apiKeyListener);
+            apiKeyProvider = provider;
+        }
+        return apiKeyProvider;
+    }
 
-        httpClient.addInterceptor(chain -> {
-            Request original = chain.request();
-            Request.Builder requestBuilder = original.newBuilder()
-                    .addHeader("Accept", "application/json")
-                    .addHeader("Content-Type", "application/json");
+    private static void initOkHttp(final Context context) {
+        // Shares connection pool, dispatcher and timeouts with every other api client
+        OkHttpClient.Builder httpClient = HttpCore.getClient().newBuilder();
 
-            // Adding Authorization token (API Key)
-            // Requests will be denied without API key
-            if (!TextUtils.isEmpty(PrefUtils.getApiKey(context))) {
-                requestBuilder.addHeader("Authorization", PrefUtils.getApiKey(context));
-            }
+        // Sampled and written off the request thread, release builds do not log at all
+        if (BuildConfig.DEBUG) {
+            httpClient.addInterceptor(new SampledLoggingInterceptor(message -> Log.d(TAG, message)));
+        }
 
-            Request request = requestBuilder.build();
-            return chain.proceed(request);
-        });
+        // The key comes from memory, not SharedPreferences
+        httpClient.addInterceptor(new ApiKeyInterceptor(getApiKeyProvider(context)));
         okHttpClient = httpClient.build();
     }
 }
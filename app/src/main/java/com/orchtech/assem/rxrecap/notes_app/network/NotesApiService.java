@@ -1,6 +1,7 @@
 package com.orchtech.assem.rxrecap.notes_app.network;
 
 import com.orchtech.assem.rxrecap.notes_app.network.model.Note;
+import com.orchtech.assem.rxrecap.notes_app.network.model.NoteChanges;
 import com.orchtech.assem.rxrecap.notes_app.network.model.NotesUser;
 
 import java.util.List;
@@ -14,6 +15,7 @@ import retrofit2.http.GET;
 import retrofit2.http.POST;
 import retrofit2.http.PUT;
 import retrofit2.http.Path;
+import retrofit2.http.Query;
 
 public interface NotesApiService {
 
@@ -31,13 +33,16 @@ public interface NotesApiService {
     @GET("notes/all")
     Single<List<Note>> fetchAllNotes();
 
+    // Fetch up to limit notes changed since the cursor of an earlier call, 0 starts from the beginning
+    @GET("notes/changes")
+    Single<NoteChanges> fetchChanges(@Query("since") long cursor, @Query("limit") int limit);
+
     // Update single note
     @FormUrlEncoded
     @PUT("notes/{id}")
     Completable updateNote(@Path("id") int noteId, @Field("note") String note);
 
     // delete  note
-    @FormUrlEncoded
     @DELETE("notes/{id}")
     Completable deleteNote(@Path("id") int noteId);
 }
@@ -5,6 +5,15 @@ public class Note extends NotesBaseResponse{
     String note;
     String timestamp;
 
+    public Note() {
+    }
+
+    public Note(int id, String note, String timestamp) {
+        this.id = id;
+        this.note = note;
+        this.timestamp = timestamp;
+    }
+
     public int getId() {
         return id;
     }
@@ -20,4 +29,4 @@ public class Note extends NotesBaseResponse{
     public String getTimestamp() {
         return timestamp;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,35 @@
+package com.orchtech.assem.rxrecap.notes_app.network.model;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Notes created or changed since a cursor, ids of notes deleted since then,
+ * and the cursor to ask with next time
+ * When the server cut the answer at the requested limit hasMore is set and the cursor continues from there
+ */
+public class NoteChanges extends NotesBaseResponse {
+    List<Note> notes;
+    List<Integer> deleted;
+    long cursor;
+    @SerializedName("has_more")
+    boolean hasMore;
+
+    public List<Note> getNotes() {
+        return notes == null ? Collections.<Note>emptyList() : notes;
+    }
+
+    public List<Integer> getDeleted() {
+        return deleted == null ? Collections.<Integer>emptyList() : deleted;
+    }
+
+    public long getCursor() {
+        return cursor;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+}
@@ -4,6 +4,8 @@ import android.content.Context;
 import android.content.SharedPreferences;
 
 public class PrefUtils {
+    public static final String API_KEY = "API_KEY";
+
     /**
      * Storing API Key in shared preferences to
      * add it in header part of every retrofit request
@@ -17,11 +19,18 @@ public class PrefUtils {
 
     public static void storeApiKey(Context context, String apiKey) {
         SharedPreferences.Editor editor = getSharedPreferences(context).edit();
-        editor.putString("API_KEY", apiKey);
+        editor.putString(API_KEY, apiKey);
         editor.apply();
     }
 
     public static String getApiKey(Context context) {
-        return getSharedPreferences(context).getString("API_KEY", null);
+        return getSharedPreferences(context).getString(API_KEY, null);
+    }
+
+    /**
+     * SharedPreferences keeps only a weak reference to the listener, the caller has to hold it
+     */
+    public static void registerListener(Context context, SharedPreferences.OnSharedPreferenceChangeListener listener) {
+        getSharedPreferences(context).registerOnSharedPreferenceChangeListener(listener);
     }
 }
\ No newline at end of file
@@ -0,0 +1,107 @@
+package com.orchtech.assem.rxrecap.notes_app.view;
+
+import com.orchtech.assem.rxrecap.notes_app.network.model.Note;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A note as NotesAdapter shows it, formatted off the main thread when its page or delta is loaded
+ * Binding only sets the prepared values, nothing is parsed, formatted or looked up
+ */
+public class NoteRow {
+    // The dot in front of every note, was Html.fromHtml("&#8226;") on each bind
+    public static final String DOT = "•";
+
+    private final Note note;
+    private final String date;
+    private final int dotColor;
+
+    private NoteRow(Note note, String date, int dotColor) {
+        this.note = note;
+        this.date = date;
+        this.dotColor = dotColor;
+    }
+
+    public Note getNote() {
+        return note;
+    }
+
+    public String getText() {
+        return note.getNote();
+    }
+
+    /**
+     * `MMM d`, Feb 21 for 2018-02-21 00:15:42, empty when the timestamp can't be read
+     */
+    public String getDate() {
+        return date;
+    }
+
+    public int getDotColor() {
+        return dotColor;
+    }
+
+    /**
+     * Builds rows, safe to share between the threads that load notes
+     */
+    public static class Formatter {
+        // yyyy-MM-dd, the part of a timestamp the shown date depends on
+        private static final int DAY_LENGTH = 10;
+        private static final int MAX_CACHED_DAYS = 1024;
+
+        private final int[] dotColors;
+        private final SimpleDateFormat timestampFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+        private final SimpleDateFormat dateFormat = new SimpleDateFormat("MMM d", Locale.getDefault());
+        // Parsing is most of the cost of a row, notes of the same day share their date
+        private final Map<String, String> datesByDay = new HashMap<>();
+
+        /**
+         * dotColors are read once from res/array.xml, a note keeps the same one every time it is shown
+         */
+        public Formatter(int[] dotColors) {
+            this.dotColors = dotColors;
+        }
+
+        public synchronized NoteRow format(Note note) {
+            int dotColor = dotColors.length == 0 ? 0 : dotColors[Math.abs(note.getId() % dotColors.length)];
+            return new NoteRow(note, date(note.getTimestamp()), dotColor);
+        }
+
+        private String date(String timestamp) {
+            if (timestamp == null || timestamp.length() < DAY_LENGTH) {
+                return "";
+            }
+            String day = timestamp.substring(0, DAY_LENGTH);
+            String date = datesByDay.get(day);
+            if (date != null) {
+                return date;
+            }
+            try {
+                date = dateFormat.format(timestampFormat.parse(timestamp));
+            } catch (ParseException e) {
+                // Shown without a date, not cached, another note of that day may be readable
+                return "";
+            }
+            if (datesByDay.size() >= MAX_CACHED_DAYS) {
+                datesByDay.clear();
+            }
+            datesByDay.put(day, date);
+            return date;
+        }
+
+        public List<NoteRow> formatAll(Collection<Note> notes) {
+            List<NoteRow> rows = new ArrayList<>(notes.size());
+            for (Note note : notes) {
+                rows.add(format(note));
+            }
+            return rows;
+        }
+    }
+}
@@ -1,8 +1,5 @@
 package com.orchtech.assem.rxrecap.notes_app.view;
 import android.content.Context;
-import android.content.res.TypedArray;
-import android.graphics.Color;
-import android.text.Html;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -11,12 +8,6 @@ import android.widget.TextView;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.orchtech.assem.rxrecap.R;
-import com.orchtech.assem.rxrecap.notes_app.network.model.Note;
-
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.List;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
@@ -24,7 +15,8 @@ import butterknife.ButterKnife;
 public class NotesAdapter extends RecyclerView.Adapter<NotesAdapter.MyViewHolder> {
 
     private Context context;
-    private List<Note> notesList;
+    // Rows come formatted, binding does no parsing or resource lookups
+    private PagedNoteList notesList;
 
     public class MyViewHolder extends RecyclerView.ViewHolder {
 
@@ -44,7 +36,7 @@ public class NotesAdapter extends RecyclerView.Adapter<NotesAdapter.MyViewHolder
     }
 
 
-    public NotesAdapter(Context context, List<Note> notesList) {
+    public NotesAdapter(Context context, PagedNoteList notesList) {
         this.context = context;
         this.notesList = notesList;
     }
@@ -59,56 +51,22 @@ public class NotesAdapter extends RecyclerView.Adapter<NotesAdapter.MyViewHolder
 
     @Override
     public void onBindViewHolder(MyViewHolder holder, int position) {
-        Note note = notesList.get(position);
-
-        holder.note.setText(note.getNote());
-
-        // Displaying dot from HTML character code
-        holder.dot.setText(Html.fromHtml("&#8226;"));
-
-        // Changing dot color to random color
-        holder.dot.setTextColor(getRandomMaterialColor("400"));
+        NoteRow row = notesList.getRow(position);
+        if (row == null) {
+            // Page not loaded yet, bound again once it is
+            holder.note.setText("");
+            holder.timestamp.setText("");
+            return;
+        }
 
-        // Formatting and displaying timestamp
-        holder.timestamp.setText(formatDate(note.getTimestamp()));
+        holder.note.setText(row.getText());
+        holder.dot.setText(NoteRow.DOT);
+        holder.dot.setTextColor(row.getDotColor());
+        holder.timestamp.setText(row.getDate());
     }
 
     @Override
     public int getItemCount() {
         return notesList.size();
     }
-
-    /**
-     * Chooses random color defined in res/array.xml
-     */
-    private int getRandomMaterialColor(String typeColor) {
-        int returnColor = Color.GRAY;
-        int arrayId = context.getResources().getIdentifier("mdcolor_" + typeColor, "array", context.getPackageName());
-
-        if (arrayId != 0) {
-            TypedArray colors = context.getResources().obtainTypedArray(arrayId);
-            int index = (int) (Math.random() * colors.length());
-            returnColor = colors.getColor(index, Color.GRAY);
-            colors.recycle();
-        }
-        return returnColor;
-    }
-
-    /**
-     * Formatting timestamp to `MMM d` format
-     * Input: 2018-02-21 00:15:42
-     * Output: Feb 21
-     */
-    private String formatDate(String dateStr) {
-        try {
-            SimpleDateFormat fmt = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-            Date date = fmt.parse(dateStr);
-            SimpleDateFormat fmtOut = new SimpleDateFormat("MMM d");
-            return fmtOut.format(date);
-        } catch (ParseException e) {
-
-        }
-
-        return "";
-    }
 }
@@ -1,10 +1,14 @@
 package com.orchtech.assem.rxrecap.notes_app.view;
 
 import android.content.DialogInterface;
+import android.content.res.TypedArray;
 import android.graphics.Color;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
+import android.text.Editable;
 import android.text.TextUtils;
+import android.text.TextWatcher;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -24,21 +28,24 @@ import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.snackbar.Snackbar;
 import com.jakewharton.retrofit2.adapter.rxjava2.HttpException;
 import com.orchtech.assem.rxrecap.R;
+import com.orchtech.assem.rxrecap.network.CircuitOpenException;
+import com.orchtech.assem.rxrecap.network.HttpCore;
+import com.orchtech.assem.rxrecap.notes_app.data.MutationJournal;
+import com.orchtech.assem.rxrecap.notes_app.data.NotesRepository;
+import com.orchtech.assem.rxrecap.notes_app.data.SqliteNoteStore;
+import com.orchtech.assem.rxrecap.notes_app.network.ApiKeyProvider;
 import com.orchtech.assem.rxrecap.notes_app.network.NotesApiClient;
 import com.orchtech.assem.rxrecap.notes_app.network.NotesApiService;
 import com.orchtech.assem.rxrecap.notes_app.network.model.Note;
 import com.orchtech.assem.rxrecap.notes_app.network.model.NotesUser;
 import com.orchtech.assem.rxrecap.notes_app.utils.MyDividerItemDecoration;
-import com.orchtech.assem.rxrecap.notes_app.utils.PrefUtils;
 import com.orchtech.assem.rxrecap.notes_app.utils.RecyclerTouchListener;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 import java.util.UUID;
 
 import butterknife.BindView;
@@ -54,9 +61,15 @@ public class NotesAppActivity extends AppCompatActivity {
     // Vars
     private static final String TAG = NotesAppActivity.class.getSimpleName();
     private NotesApiService apiService;
+    private NotesRepository notesRepository;
+    private ApiKeyProvider apiKeys;
     private CompositeDisposable disposable = new CompositeDisposable();
     private NotesAdapter mAdapter;
-    private List<Note> notesList = new ArrayList<>();
+    private PagedNoteList notesList;
+    // Time to first note, from the store when it has notes, otherwise from the first sync
+    private long createdAtMillis;
+    private boolean firstNoteShown;
+    private boolean synced;
 
     // Views
     @BindView(R.id.notes_layout)
@@ -68,11 +81,15 @@ public class NotesAppActivity extends AppCompatActivity {
     @BindView(R.id.txt_empty_notes_view)
     TextView noNotesView;
 
+    @BindView(R.id.input_search)
+    EditText searchInput;
+
 
     @RequiresApi(api = Build.VERSION_CODES.M)
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        createdAtMillis = SystemClock.elapsedRealtime();
         getWindow().getDecorView().setSystemUiVisibility(View.SYSTEM_UI_FLAG_LIGHT_STATUS_BAR);
         setContentView(R.layout.activity_notes_app);
         ButterKnife.bind(this);
@@ -93,13 +110,54 @@ public class NotesAppActivity extends AppCompatActivity {
         whiteNotificationBar(fab);
 
         apiService = NotesApiClient.getClient(getApplicationContext()).create(NotesApiService.class);
+        apiKeys = NotesApiClient.getApiKeyProvider(this);
+        // Disk work stays on io, calls to the server run on the bounded network scheduler
+        // The journal is only read by the first repository call that needs it, which runs on io too
+        notesRepository = new NotesRepository(apiService, SqliteNoteStore.getInstance(this),
+                MutationJournal.open(new File(getFilesDir(), "notes.journal")), Schedulers.io(),
+                HttpCore.getScheduler());
+
+        notesList = new PagedNoteList(notesRepository, new NoteRow.Formatter(loadDotColors()),
+                Schedulers.computation(), AndroidSchedulers.mainThread(), new PagedNoteList.Listener() {
+                    @Override
+                    public void onReset() {
+                        mAdapter.notifyDataSetChanged();
+                        toggleEmptyNotes();
+                    }
+
+                    @Override
+                    public void onInserted(int positionStart, int itemCount) {
+                        mAdapter.notifyItemRangeInserted(positionStart, itemCount);
+                        toggleEmptyNotes();
+                    }
+
+                    @Override
+                    public void onRemoved(int positionStart, int itemCount) {
+                        mAdapter.notifyItemRangeRemoved(positionStart, itemCount);
+                        toggleEmptyNotes();
+                    }
+
+                    @Override
+                    public void onChanged(int positionStart, int itemCount) {
+                        mAdapter.notifyItemRangeChanged(positionStart, itemCount);
+                        logFirstNote();
+                    }
+                });
 
         mAdapter = new NotesAdapter(this, notesList);
-        RecyclerView.LayoutManager mLayoutManager = new LinearLayoutManager(getApplicationContext());
+        final LinearLayoutManager mLayoutManager = new LinearLayoutManager(getApplicationContext());
         recyclerView.setLayoutManager(mLayoutManager);
         recyclerView.setItemAnimator(new DefaultItemAnimator());
         recyclerView.addItemDecoration(new MyDividerItemDecoration(this, LinearLayoutManager.VERTICAL, 16));
         recyclerView.setAdapter(mAdapter);
+        // Pages of notes are loaded around what is on screen and dropped once it scrolls far away
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                notesList.onVisibleRange(mLayoutManager.findFirstVisibleItemPosition(),
+                        mLayoutManager.findLastVisibleItemPosition());
+            }
+        });
 
         /**
          * On long press on RecyclerView item, open alert dialog
@@ -118,18 +176,42 @@ public class NotesAppActivity extends AppCompatActivity {
             }
         }));
 
+        // Every keystroke goes to the list, which debounces them and searches the index in the background
+        searchInput.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+                notesList.search(s.toString());
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+            }
+        });
+
+        // Stored notes show up right away, the server is only asked in the background
+        notesList.connect();
+        // Local changes are sent from the journal in the background, including ones left from an earlier run
+        disposable.add(notesRepository.startFlushing());
+        // A change the server refused is already rolled back in the list, this only says why
+        disposable.add(notesRepository.observeRefusals()
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(this::showError));
+
         /* *
          * Check for stored Api Key in shared preferences
          * If not present, make api call to register the user
          * This will be executed when app is installed for the first time
          * or data is cleared from settings
+         * Requests made meanwhile, like the sync below, wait for the key
          * */
-        if (TextUtils.isEmpty(PrefUtils.getApiKey(this))) {
+        if (!apiKeys.hasApiKey()) {
             registerUser();
-        } else {
-            // user is already registered, fetch all notes
-            fetchAllNotes();
         }
+        fetchAllNotes();
     }
 
 
@@ -138,19 +220,16 @@ public class NotesAppActivity extends AppCompatActivity {
         String uniqueId = UUID.randomUUID().toString();
 
         disposable.add(
-                apiService
-                        .register(uniqueId)
-                        .subscribeOn(Schedulers.io())
+                apiKeys.register(apiService.register(uniqueId), NotesUser::getApiKey)
+                        .subscribeOn(HttpCore.getScheduler())
                         .observeOn(AndroidSchedulers.mainThread())
                         .subscribeWith(new DisposableSingleObserver<NotesUser>() {
 
                             @Override
                             public void onSuccess(NotesUser notesUser) {
-                                // Storing user API Key in preferences
-                                PrefUtils.storeApiKey(getApplicationContext(), notesUser.getApiKey());
-
+                                // The provider stored the API Key in preferences
                                 Toast.makeText(getApplicationContext(),
-                                        "Device is registered successfully! ApiKey: " + PrefUtils.getApiKey(getApplicationContext()),
+                                        "Device is registered successfully! ApiKey: " + apiKeys.getApiKey(),
                                         Toast.LENGTH_LONG).show();
 
                                 Log.d(TAG, "onSuccess: api_key =>" + notesUser.getApiKey());
@@ -165,23 +244,28 @@ public class NotesAppActivity extends AppCompatActivity {
         );
     }
 
+    private void logFirstNote() {
+        if (!firstNoteShown && notesList.isLoaded(0)) {
+            firstNoteShown = true;
+            Log.d(TAG, "time to first note: " + (SystemClock.elapsedRealtime() - createdAtMillis)
+                    + "ms from " + (synced ? "network" : "store") + ", " + notesList.size() + " notes");
+        }
+    }
+
     private void fetchAllNotes() {
         disposable.add(
-                apiService.fetchAllNotes()
-                        .subscribeOn(Schedulers.io())
+                notesRepository.sync()
                         .observeOn(AndroidSchedulers.mainThread())
-                        .map(notes -> {
-                            Collections.sort(notes, (n1, n2) -> n2.getId() - n1.getId());
-                            return notes;
-                        })
-                        .subscribeWith(new DisposableSingleObserver<List<Note>>() {
+                        .subscribeWith(new DisposableCompletableObserver() {
 
                                            @Override
-                                           public void onSuccess(List<Note> notes) {
-                                               notesList.clear();
-                                               notesList.addAll(notes);
-                                               mAdapter.notifyDataSetChanged();
-                                               toggleEmptyNotes();
+                                           public void onComplete() {
+                                               synced = true;
+                                               Log.d(TAG, "notes synced in " + (SystemClock.elapsedRealtime() - createdAtMillis) + "ms");
+                                               Log.d(TAG, notesRepository.getJournal().toString());
+                                               Log.d(TAG, notesList.toString());
+                                               Log.d(TAG, notesRepository.getSearchIndex().toString());
+                                               Log.d(TAG, NotesApiClient.getResilience().toString());
                                            }
 
                                            @Override
@@ -195,25 +279,14 @@ public class NotesAppActivity extends AppCompatActivity {
 
     private void createNote(String note) {
         disposable.add(
-                apiService.createNote(note)
-                        .subscribeOn(Schedulers.io())
+                notesRepository.createNote(note)
                         .observeOn(AndroidSchedulers.mainThread())
                         .subscribeWith(new DisposableSingleObserver<Note>() {
 
                             @Override
                             public void onSuccess(Note note) {
-                                if (!TextUtils.isEmpty(note.getError())) {
-                                    Toast.makeText(getApplicationContext(), note.getError(), Toast.LENGTH_LONG).show();
-                                    return;
-                                }
-
+                                // Shown from the store right away, sent to the server from the journal
                                 Log.d(TAG, "new note created: " + note.getId() + ", " + note.getNote() + ", " + note.getTimestamp());
-
-                                // Add new item and notify adapter
-                                notesList.add(0, note);
-                                mAdapter.notifyItemInserted(0);
-
-                                toggleEmptyNotes();
                             }
 
                             @Override
@@ -228,23 +301,14 @@ public class NotesAppActivity extends AppCompatActivity {
     //  .subscribeWith(new DisposableCompletableObserver() {
     //
 
-    private void updateNote(int noteId, final String note, final int position) {
+    private void updateNote(int noteId, final String note) {
         disposable.add(
-                apiService.updateNote(noteId, note)
-                        .subscribeOn(Schedulers.io())
+                notesRepository.updateNote(noteId, note)
                         .observeOn(AndroidSchedulers.mainThread())
                         .subscribeWith(new DisposableCompletableObserver() {
                                            @Override
                                            public void onComplete() {
                                                Log.d(TAG, "Note updated!");
-
-                                               Note n = notesList.get(position);
-                                               n.setNote(note);
-
-                                               // Update item and notify adapter
-                                               notesList.set(position, n);
-                                               mAdapter.notifyItemChanged(position);
-
                                            }
 
                                            @Override
@@ -256,24 +320,17 @@ public class NotesAppActivity extends AppCompatActivity {
                         ));
     }
 
-    private void deleteNote(final int noteId, final int position) {
+    private void deleteNote(final int noteId) {
 
         disposable.add(
-                apiService.deleteNote(noteId)
-                        .subscribeOn(Schedulers.io())
+                notesRepository.deleteNote(noteId)
                         .observeOn(AndroidSchedulers.mainThread())
                         .subscribeWith(new DisposableCompletableObserver() {
                             @Override
                             public void onComplete() {
                                 Log.d(TAG, "Note deleted! " + noteId);
 
-                                // Remove and notify adapter about item deletion
-                                notesList.remove(position);
-                                mAdapter.notifyItemRemoved(position);
-
                                 Toast.makeText(NotesAppActivity.this, "Note deleted!", Toast.LENGTH_SHORT).show();
-
-                                toggleEmptyNotes();
                             }
 
                             @Override
@@ -335,7 +392,7 @@ public class NotesAppActivity extends AppCompatActivity {
             // check if user updating note
             if (shouldUpdate && note != null) {
                 // update note by it's id
-                updateNote(note.getId(), inputNote.getText().toString(), position);
+                updateNote(note.getId(), inputNote.getText().toString());
             } else {
                 // create new note
                 createNote(inputNote.getText().toString());
@@ -357,16 +414,34 @@ public class NotesAppActivity extends AppCompatActivity {
         builder.setItems(colors, new DialogInterface.OnClickListener() {
             @Override
             public void onClick(DialogInterface dialog, int which) {
+                Note note = notesList.get(position);
+                if (note == null) {
+                    // Its page is still loading
+                    return;
+                }
                 if (which == 0) {
-                    showNoteDialog(true, notesList.get(position), position);
+                    showNoteDialog(true, note, position);
                 } else {
-                    deleteNote(notesList.get(position).getId(), position);
+                    deleteNote(note.getId());
                 }
             }
         });
         builder.show();
     }
 
+    /**
+     * Colors for the note dots, read once from res/array.xml instead of on every bind
+     */
+    private int[] loadDotColors() {
+        TypedArray colors = getResources().obtainTypedArray(R.array.mdcolor_400);
+        int[] dotColors = new int[colors.length()];
+        for (int i = 0; i < dotColors.length; i++) {
+            dotColors[i] = colors.getColor(i, Color.GRAY);
+        }
+        colors.recycle();
+        return dotColors;
+    }
+
     private void toggleEmptyNotes() {
         if (notesList.size() > 0) {
             noNotesView.setVisibility(View.GONE);
@@ -383,7 +458,10 @@ public class NotesAppActivity extends AppCompatActivity {
     private void showError(Throwable e) {
         String message = "";
         try {
-            if (e instanceof IOException) {
+            if (e instanceof CircuitOpenException) {
+                // Failing fast while the server recovers, asking again right away would not help
+                message = "Server is having trouble, try again in a moment";
+            } else if (e instanceof IOException) {
                 message = "No internet connection!";
             } else if (e instanceof HttpException) {
                 HttpException error = (HttpException) e;
@@ -427,6 +505,7 @@ public class NotesAppActivity extends AppCompatActivity {
     protected void onDestroy() {
         super.onDestroy();
         disposable.dispose();
+        notesList.dispose();
     }
 
 
@@ -0,0 +1,380 @@
+package com.orchtech.assem.rxrecap.notes_app.view;
+
+import com.orchtech.assem.rxrecap.notes_app.data.NoteSearchIndex;
+import com.orchtech.assem.rxrecap.notes_app.data.NotesDelta;
+import com.orchtech.assem.rxrecap.notes_app.data.NotesRepository;
+import com.orchtech.assem.rxrecap.notes_app.network.model.Note;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
+
+/**
+ * The notes NotesAdapter binds, held in fixed-size pages around what is on screen
+ * The ids of all notes are kept in NoteOrder (4 bytes a note), the notes themselves are loaded
+ * from the store a page at a time as the list scrolls near them, pages far from the viewport are dropped
+ * get() returns null for a note whose page is not loaded yet, the row is rebound once it is
+ * Notes are held as NoteRow, formatted on the thread that loaded them
+ * The ids are sorted on the computation scheduler, changes after that are merged in and reported as ranges
+ * search() narrows the list to the notes matching a query, typing is debounced and a newer query
+ * cancels the search still running for an older one
+ * Main thread only
+ */
+public class PagedNoteList extends AbstractList<Note> implements RandomAccess {
+    public static final int PAGE_SIZE = 50;
+    // Pages loaded ahead of and behind the visible rows
+    private static final int PREFETCH_PAGES = 2;
+    // Pages further than this from the visible rows are evicted
+    private static final int RETAIN_PAGES = 4;
+    // Bigger deltas, like a page of a first sync, are reported as a reset
+    private static final int MAX_PRECISE_CHANGES = PAGE_SIZE;
+    // Pause in typing before a query is searched
+    private static final long SEARCH_DEBOUNCE_MILLIS = 300;
+
+    public interface Listener {
+        void onReset();
+
+        void onInserted(int positionStart, int itemCount);
+
+        void onRemoved(int positionStart, int itemCount);
+
+        void onChanged(int positionStart, int itemCount);
+    }
+
+    private final NotesRepository repository;
+    private final Scheduler computationScheduler;
+    private final Scheduler mainScheduler;
+    private final Listener listener;
+    private final CompositeDisposable disposable = new CompositeDisposable();
+    private final Subject<String> queries = PublishSubject.<String>create().toSerialized();
+
+    private SortedNoteIds ids = new SortedNoteIds();
+    private final NoteRow.Formatter formatter;
+    private final Map<Integer, NoteRow> notes = new HashMap<>();
+    private final Set<Integer> loadedPages = new HashSet<>();
+    private final Set<Integer> loadingPages = new HashSet<>();
+    // Bumped on reset, so pages that were loading for the old ids are ignored
+    private int generation;
+    // The query the ids are for, empty for every note
+    private String query = "";
+    private int firstVisible;
+    private int lastVisible = PAGE_SIZE - 1;
+
+    private long pageLoads;
+    private long evictedPages;
+
+    public PagedNoteList(NotesRepository repository, NoteRow.Formatter formatter, Scheduler computationScheduler,
+                         Scheduler mainScheduler, Listener listener) {
+        this.repository = repository;
+        this.formatter = formatter;
+        this.computationScheduler = computationScheduler;
+        this.mainScheduler = mainScheduler;
+        this.listener = listener;
+    }
+
+    /**
+     * Starts following the store, the first ids arrive with a reset, and so do the ids for each new query
+     */
+    public void connect() {
+        disposable.add(queries
+                .debounce(SEARCH_DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS, computationScheduler)
+                .startWith("")
+                .map(String::trim)
+                .distinctUntilChanged()
+                .switchMap(query -> repository.observeChanges()
+                        .concatMap(delta -> delta.isReset()
+                                ? loadIds(query).observeOn(computationScheduler)
+                                        .map(ids -> Change.reset(ids, query)).toObservable()
+                                : Observable.just(Change.delta(delta, formatter.formatAll(delta.getUpserted())))))
+                .observeOn(mainScheduler)
+                .subscribe(change -> {
+                    if (change.ids != null) {
+                        reset(change.ids, change.query);
+                    } else {
+                        apply(change.delta, change.rows);
+                    }
+                }));
+    }
+
+    /**
+     * Shows only the notes matching the query, an empty query shows them all again
+     */
+    public void search(String query) {
+        queries.onNext(query == null ? "" : query);
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    private Single<int[]> loadIds(String query) {
+        return query.isEmpty() ? repository.loadIds() : repository.searchIds(query);
+    }
+
+    public void dispose() {
+        disposable.dispose();
+    }
+
+    /**
+     * Called as the list scrolls, loads the pages around the visible rows and evicts the far ones
+     */
+    public void onVisibleRange(int first, int last) {
+        if (first < 0 || last < first) {
+            return;
+        }
+        firstVisible = first;
+        lastVisible = last;
+        fillWindow();
+    }
+
+    @Override
+    public Note get(int position) {
+        NoteRow row = getRow(position);
+        return row == null ? null : row.getNote();
+    }
+
+    /**
+     * The row to bind, null while its page is loading
+     */
+    public NoteRow getRow(int position) {
+        if (position < 0 || position >= ids.size()) {
+            throw new IndexOutOfBoundsException("Index: " + position + ", Size: " + ids.size());
+        }
+        NoteRow row = notes.get(ids.get(position));
+        if (row == null) {
+            // An id shifted into a loaded page by an insert or remove elsewhere
+            loadedPages.remove(position / PAGE_SIZE);
+            loadPage(position / PAGE_SIZE);
+        }
+        return row;
+    }
+
+    @Override
+    public int size() {
+        return ids.size();
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof Note)) {
+            return -1;
+        }
+        int position = ids.search(((Note) o).getId());
+        return position >= 0 ? position : -1;
+    }
+
+    private void reset(SortedNoteIds sorted, String query) {
+        generation++;
+        ids = sorted;
+        this.query = query;
+        notes.clear();
+        loadedPages.clear();
+        loadingPages.clear();
+        listener.onReset();
+        fillWindow();
+    }
+
+    private void apply(NotesDelta delta, List<NoteRow> rows) {
+        int[] deleted = new int[delta.getDeleted().size() + delta.getUpserted().size()];
+        int deletedCount = 0;
+        for (int noteId : delta.getDeleted()) {
+            deleted[deletedCount++] = noteId;
+        }
+        int[] upserted = new int[delta.getUpserted().size()];
+        int count = 0;
+        for (NoteRow row : rows) {
+            Note note = row.getNote();
+            if (!query.isEmpty() && !NoteSearchIndex.matches(note, query)) {
+                // Edited out of the search
+                deleted[deletedCount++] = note.getId();
+                continue;
+            }
+            upserted[count++] = note.getId();
+            // A note new to the list is held right away, a listed one is only replaced if it is held
+            if (notes.containsKey(note.getId()) || ids.search(note.getId()) < 0) {
+                notes.put(note.getId(), row);
+            }
+        }
+        deleted = Arrays.copyOf(deleted, deletedCount);
+        upserted = Arrays.copyOf(upserted, count);
+        for (int noteId : deleted) {
+            notes.remove(noteId);
+        }
+
+        if (deleted.length + upserted.length > MAX_PRECISE_CHANGES) {
+            ids.removeAll(deleted, null);
+            ids.insertAll(upserted, null);
+            // Positions moved, the notes are kept but pages are checked again
+            loadedPages.clear();
+            listener.onReset();
+            fillWindow();
+            return;
+        }
+        ids.removeAll(deleted, listener::onRemoved);
+        int[] changed = new int[upserted.length];
+        int changedCount = 0;
+        for (int noteId : upserted) {
+            if (ids.search(noteId) >= 0) {
+                changed[changedCount++] = noteId;
+            }
+        }
+        ids.insertAll(upserted, listener::onInserted);
+        ids.findAll(Arrays.copyOf(changed, changedCount), listener::onChanged);
+    }
+
+    private void fillWindow() {
+        if (ids.size() == 0) {
+            return;
+        }
+        int firstPage = Math.max(0, firstVisible / PAGE_SIZE - PREFETCH_PAGES);
+        int lastPage = Math.min((ids.size() - 1) / PAGE_SIZE, lastVisible / PAGE_SIZE + PREFETCH_PAGES);
+        for (int page = firstPage; page <= lastPage; page++) {
+            loadPage(page);
+        }
+        evictFarPages();
+    }
+
+    private void evictFarPages() {
+        int firstKept = firstVisible / PAGE_SIZE - RETAIN_PAGES;
+        int lastKept = lastVisible / PAGE_SIZE + RETAIN_PAGES;
+        Iterator<Integer> iterator = loadedPages.iterator();
+        while (iterator.hasNext()) {
+            int page = iterator.next();
+            if (page >= firstKept && page <= lastKept) {
+                continue;
+            }
+            iterator.remove();
+            int end = Math.min(ids.size(), (page + 1) * PAGE_SIZE);
+            for (int position = page * PAGE_SIZE; position < end; position++) {
+                notes.remove(ids.get(position));
+            }
+            evictedPages++;
+        }
+        // Ids that moved across a page boundary since their page was loaded
+        int keptNotes = (lastKept - firstKept + 1) * PAGE_SIZE;
+        if (notes.size() > 2 * keptNotes) {
+            Map<Integer, NoteRow> kept = new HashMap<>();
+            int end = Math.min(ids.size(), (lastKept + 1) * PAGE_SIZE);
+            for (int position = Math.max(0, firstKept * PAGE_SIZE); position < end; position++) {
+                NoteRow row = notes.get(ids.get(position));
+                if (row != null) {
+                    kept.put(ids.get(position), row);
+                }
+            }
+            notes.clear();
+            notes.putAll(kept);
+        }
+    }
+
+    private void loadPage(final int page) {
+        if (loadedPages.contains(page) || loadingPages.contains(page)) {
+            return;
+        }
+        final int start = page * PAGE_SIZE;
+        final int end = Math.min(ids.size(), start + PAGE_SIZE);
+        int[] missing = new int[end - start];
+        int count = 0;
+        for (int position = start; position < end; position++) {
+            if (!notes.containsKey(ids.get(position))) {
+                missing[count++] = ids.get(position);
+            }
+        }
+        if (count == 0) {
+            loadedPages.add(page);
+            return;
+        }
+
+        loadingPages.add(page);
+        pageLoads++;
+        final int loadGeneration = generation;
+        disposable.add(repository.loadNotes(Arrays.copyOf(missing, count))
+                .map(formatter::formatAll)
+                .observeOn(mainScheduler)
+                .subscribe(loaded -> {
+                    if (loadGeneration != generation) {
+                        return;
+                    }
+                    loadingPages.remove(page);
+                    loadedPages.add(page);
+                    for (NoteRow row : loaded) {
+                        notes.put(row.getNote().getId(), row);
+                    }
+                    int first = Math.min(ids.size(), page * PAGE_SIZE);
+                    int last = Math.min(ids.size(), first + PAGE_SIZE);
+                    if (last > first) {
+                        listener.onChanged(first, last - first);
+                    }
+                    evictFarPages();
+                }, e -> loadingPages.remove(page)));
+    }
+
+    public boolean isLoaded(int position) {
+        return position >= 0 && position < ids.size() && notes.containsKey(ids.get(position));
+    }
+
+    /**
+     * Notes held in memory, bounded by the pages around the viewport
+     */
+    public int getCachedNoteCount() {
+        return notes.size();
+    }
+
+    public int getLoadedPageCount() {
+        return loadedPages.size();
+    }
+
+    public long getPageLoadCount() {
+        return pageLoads;
+    }
+
+    public long getEvictedPageCount() {
+        return evictedPages;
+    }
+
+    @Override
+    public String toString() {
+        return "PagedNoteList{size=" + ids.size() + ", query=" + query + ", cachedNotes=" + notes.size()
+                + ", loadedPages=" + loadedPages.size() + ", pageLoads=" + pageLoads
+                + ", evictedPages=" + evictedPages + "}";
+    }
+
+    private static class Change {
+        final SortedNoteIds ids;
+        final String query;
+        final NotesDelta delta;
+        // The upserted notes of the delta, formatted
+        final List<NoteRow> rows;
+
+        private Change(SortedNoteIds ids, String query, NotesDelta delta, List<NoteRow> rows) {
+            this.ids = ids;
+            this.query = query;
+            this.delta = delta;
+            this.rows = rows;
+        }
+
+        // Runs on the computation scheduler, the sort is the expensive part of a reset
+        static Change reset(int[] unsortedIds, String query) {
+            SortedNoteIds ids = new SortedNoteIds();
+            ids.reset(unsortedIds);
+            return new Change(ids, query, null, null);
+        }
+
+        static Change delta(NotesDelta delta, List<NoteRow> rows) {
+            return new Change(null, null, delta, rows);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.orchtech.assem.rxrecap.notes_app.view;
+
+import com.orchtech.assem.rxrecap.notes_app.data.NoteOrder;
+
+import java.util.Arrays;
+
+/**
+ * Note ids kept in NoteOrder in a plain int array
+ * Inserts and removes are merged in one pass and reported as ranges of adjacent positions,
+ * so a batch of changes costs one copy of the array and a few adapter notifications
+ * Not thread safe
+ */
+class SortedNoteIds {
+
+    interface RangeCallback {
+        void onRange(int positionStart, int itemCount);
+    }
+
+    private int[] ids = new int[0];
+    private int size;
+
+    /**
+     * Takes the array, it is sorted in place
+     */
+    void reset(int[] unsortedIds) {
+        NoteOrder.sortIds(unsortedIds);
+        ids = unsortedIds;
+        size = unsortedIds.length;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(int position) {
+        return ids[position];
+    }
+
+    /**
+     * Position of the id, or -(insertion point) - 1 like Arrays.binarySearch
+     */
+    int search(int noteId) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int compared = NoteOrder.compareIds(ids[mid], noteId);
+            if (compared < 0) {
+                low = mid + 1;
+            } else if (compared > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Removes the ids that are present, ranges are reported from the bottom up in positions before the removal,
+     * so each one is still valid when the adapter gets it
+     */
+    void removeAll(int[] noteIds, RangeCallback removed) {
+        int[] positions = new int[noteIds.length];
+        int count = 0;
+        for (int noteId : noteIds) {
+            int position = search(noteId);
+            if (position >= 0) {
+                positions[count++] = position;
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        Arrays.sort(positions, 0, count);
+
+        int write = positions[0];
+        int next = 0;
+        for (int read = positions[0]; read < size; read++) {
+            if (next < count && positions[next] == read) {
+                // The same id twice in noteIds
+                while (next < count && positions[next] == read) {
+                    next++;
+                }
+                continue;
+            }
+            ids[write++] = ids[read];
+        }
+        size = write;
+
+        if (removed != null) {
+            int end = count - 1;
+            while (end >= 0) {
+                int start = end;
+                while (start > 0 && positions[start - 1] >= positions[start] - 1) {
+                    start--;
+                }
+                removed.onRange(positions[start], positions[end] - positions[start] + 1);
+                end = start - 1;
+            }
+        }
+    }
+
+    /**
+     * Inserts ids that are not present yet, ranges are reported from the top down in positions after the insert
+     */
+    void insertAll(int[] noteIds, RangeCallback inserted) {
+        int[] added = new int[noteIds.length];
+        int count = 0;
+        for (int noteId : noteIds) {
+            if (search(noteId) < 0) {
+                added[count++] = noteId;
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        added = Arrays.copyOf(added, count);
+        NoteOrder.sortIds(added);
+        // The same id twice in noteIds
+        int unique = 1;
+        for (int i = 1; i < count; i++) {
+            if (added[i] != added[unique - 1]) {
+                added[unique++] = added[i];
+            }
+        }
+        count = unique;
+
+        if (size + count > ids.length) {
+            ids = Arrays.copyOf(ids, Math.max(size + count, size + (size >> 1)));
+        }
+        // Merged from the back, so the array is shifted in place
+        int[] positions = new int[count];
+        int read = size - 1;
+        int next = count - 1;
+        for (int write = size + count - 1; next >= 0; write--) {
+            if (read >= 0 && NoteOrder.compareIds(ids[read], added[next]) > 0) {
+                ids[write] = ids[read--];
+            } else {
+                positions[next] = write;
+                ids[write] = added[next--];
+            }
+        }
+        size += count;
+
+        if (inserted != null) {
+            report(positions, count, inserted);
+        }
+    }
+
+    /**
+     * Reports the positions of the ids that are present, as ranges from the top down
+     */
+    void findAll(int[] noteIds, RangeCallback found) {
+        int[] positions = new int[noteIds.length];
+        int count = 0;
+        for (int noteId : noteIds) {
+            int position = search(noteId);
+            if (position >= 0) {
+                positions[count++] = position;
+            }
+        }
+        Arrays.sort(positions, 0, count);
+        report(positions, count, found);
+    }
+
+    // Sorted positions, duplicates allowed
+    private static void report(int[] positions, int count, RangeCallback callback) {
+        int start = 0;
+        while (start < count) {
+            int end = start;
+            while (end + 1 < count && positions[end + 1] <= positions[end] + 1) {
+                end++;
+            }
+            callback.onRange(positions[start], positions[end] - positions[start] + 1);
+            start = end + 1;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.orchtech.assem.rxrecap.tracing;
+
+/**
+ * An operator wrapped at assembly: its name, where it was assembled and, for the stage that names
+ * a pipeline, that name
+ * The call site comes from a stack captured at assembly and is only resolved once the operator
+ * is subscribed to in a traced pipeline
+ */
+final class Assembly {
+    private static final String[] PREFIXES = {"Observable", "Single", "Flowable"};
+    // The wrappers of this package sit between RxJava's frames
+    private static final String TRACED = Assembly.class.getPackage().getName() + ".Traced";
+
+    private final String operator;
+    private final Throwable stack;
+    private final String pipelineName;
+    private volatile String site;
+
+    private Assembly(String operator, Throwable stack, String pipelineName) {
+        this.operator = operator;
+        this.stack = stack;
+        this.pipelineName = pipelineName;
+    }
+
+    static Assembly of(Object source) {
+        return new Assembly(operatorName(source.getClass()), new Throwable(), null);
+    }
+
+    /**
+     * The last stage of a pipeline, what it emits goes to the pipeline's observer
+     */
+    static Assembly named(String pipelineName) {
+        return new Assembly("Subscriber", new Throwable(), pipelineName);
+    }
+
+    /**
+     * The pipeline a subscription made now belongs to, null when it is not traced
+     */
+    PipelineTrace pipeline() {
+        if (!PipelineTracer.isInstalled()) {
+            return null;
+        }
+        if (pipelineName != null) {
+            return PipelineTracer.pipeline(pipelineName);
+        }
+        TraceContext context = TraceContext.current();
+        return context == null ? null : context.pipeline;
+    }
+
+    StageTrace stage(PipelineTrace pipeline) {
+        String resolved = site;
+        if (resolved == null) {
+            resolved = callSite(stack);
+            site = resolved;
+        }
+        return pipeline.stage(operator, resolved);
+    }
+
+    private static String operatorName(Class<?> type) {
+        String name = type.getName().substring(type.getName().lastIndexOf('.') + 1);
+        for (String prefix : PREFIXES) {
+            if (name.startsWith(prefix) && name.length() > prefix.length()) {
+                return name.substring(prefix.length());
+            }
+        }
+        return name;
+    }
+
+    /**
+     * The stack starts in the tracing hooks, goes through RxJava and then reaches the caller
+     * Method references have no frame of their own, their site is whatever called RxJava
+     */
+    private static String callSite(Throwable stack) {
+        boolean inRxJava = false;
+        for (StackTraceElement frame : stack.getStackTrace()) {
+            String type = frame.getClassName();
+            if (type.startsWith("io.reactivex.")) {
+                inRxJava = true;
+            } else if (inRxJava && !type.startsWith(TRACED)) {
+                return type.substring(type.lastIndexOf('.') + 1) + "." + frame.getMethodName() + ":" + frame.getLineNumber();
+            }
+        }
+        return "unknown";
+    }
+}
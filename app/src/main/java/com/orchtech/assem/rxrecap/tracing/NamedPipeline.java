@@ -0,0 +1,40 @@
+package com.orchtech.assem.rxrecap.tracing;
+
+import org.reactivestreams.Publisher;
+
+import io.reactivex.Flowable;
+import io.reactivex.FlowableTransformer;
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.Single;
+import io.reactivex.SingleSource;
+import io.reactivex.SingleTransformer;
+
+/**
+ * Names the pipeline it is composed onto, see PipelineTracer.named()
+ * Leaves the pipeline as it is when tracing is not installed
+ */
+public final class NamedPipeline<T> implements ObservableTransformer<T, T>, SingleTransformer<T, T>,
+        FlowableTransformer<T, T> {
+    private final String name;
+
+    NamedPipeline(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public ObservableSource<T> apply(Observable<T> upstream) {
+        return PipelineTracer.isInstalled() ? new TracedObservable<>(upstream, Assembly.named(name)) : upstream;
+    }
+
+    @Override
+    public SingleSource<T> apply(Single<T> upstream) {
+        return PipelineTracer.isInstalled() ? new TracedSingle<>(upstream, Assembly.named(name)) : upstream;
+    }
+
+    @Override
+    public Publisher<T> apply(Flowable<T> upstream) {
+        return PipelineTracer.isInstalled() ? new TracedFlowable<>(upstream, Assembly.named(name)) : upstream;
+    }
+}
@@ -0,0 +1,63 @@
+package com.orchtech.assem.rxrecap.tracing;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Everything recorded for one named pipeline, its stages in the order they were first subscribed to
+ * Main thread time is the time the main thread spent in the pipeline's subscribe calls, signals
+ * and scheduled tasks, whatever operator or observer the time went to
+ */
+public class PipelineTrace {
+    private final String name;
+    private final Map<String, StageTrace> stages = new LinkedHashMap<>();
+    private final AtomicLong mainThreadNanos = new AtomicLong();
+
+    PipelineTrace(String name) {
+        this.name = name;
+    }
+
+    synchronized StageTrace stage(String operator, String site) {
+        String key = operator + " " + site;
+        StageTrace stage = stages.get(key);
+        if (stage == null) {
+            stage = new StageTrace(operator, site);
+            stages.put(key, stage);
+        }
+        return stage;
+    }
+
+    void addMainThreadNanos(long nanos) {
+        mainThreadNanos.addAndGet(nanos);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized List<StageTrace> getStages() {
+        return new ArrayList<>(stages.values());
+    }
+
+    public double getMainThreadMillis() {
+        return mainThreadNanos.get() / 1e6;
+    }
+
+    public long getThreadSwitchCount() {
+        long switches = 0;
+        for (StageTrace stage : getStages()) {
+            switches += stage.getThreadSwitchCount();
+        }
+        return switches;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "PipelineTrace{%s, %d stages, %d thread switches, main thread %.1fms}",
+                name, getStages().size(), getThreadSwitchCount(), getMainThreadMillis());
+    }
+}
@@ -0,0 +1,193 @@
+package com.orchtech.assem.rxrecap.tracing;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.functions.Function;
+import io.reactivex.plugins.RxJavaPlugins;
+
+/**
+ * Opt-in tracing of named Rx pipelines, installed through RxJavaPlugins
+ * The assembly hooks wrap every Observable, Single and Flowable operator. In a pipeline named with
+ * compose(PipelineTracer.named("...")) each operator records items per second, latency, thread switches
+ * and signals on the main thread, and the pipeline records the time the main thread spent in it
+ * Operators subscribed while one of its signals is delivered, like the inner sources of flatMap, are part
+ * of it too, the schedule handler carries it to the threads subscribeOn and observeOn move to
+ * Operators outside a named pipeline only pay for the wrapper and the stack captured at assembly,
+ * Maybe and Completable operators are not traced
+ * Tracing turns operator fusion off and allocates per signal, the numbers show where time goes
+ * rather than what it would be without tracing
+ */
+public final class PipelineTracer {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final Map<String, PipelineTrace> pipelines = new LinkedHashMap<>();
+    private static volatile boolean installed;
+    private static volatile Thread mainThread;
+
+    @SuppressWarnings("rawtypes")
+    private static Function<? super Observable, ? extends Observable> previousObservableHook;
+    @SuppressWarnings("rawtypes")
+    private static Function<? super Single, ? extends Single> previousSingleHook;
+    @SuppressWarnings("rawtypes")
+    private static Function<? super Flowable, ? extends Flowable> previousFlowableHook;
+    private static Function<? super Runnable, ? extends Runnable> previousScheduleHandler;
+
+    private PipelineTracer() {
+    }
+
+    /**
+     * Starts tracing, operators assembled before this are not traced
+     * Hooks installed before stay in place and run first
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public static synchronized void install(Thread mainThread) {
+        PipelineTracer.mainThread = mainThread;
+        if (installed) {
+            return;
+        }
+        previousObservableHook = RxJavaPlugins.getOnObservableAssembly();
+        previousSingleHook = RxJavaPlugins.getOnSingleAssembly();
+        previousFlowableHook = RxJavaPlugins.getOnFlowableAssembly();
+        previousScheduleHandler = RxJavaPlugins.getScheduleHandler();
+
+        RxJavaPlugins.setOnObservableAssembly(after(previousObservableHook, (Function<Observable, Observable>) source ->
+                source instanceof TracedObservable ? source : new TracedObservable<>(source, Assembly.of(source))));
+        RxJavaPlugins.setOnSingleAssembly(after(previousSingleHook, (Function<Single, Single>) source ->
+                source instanceof TracedSingle ? source : new TracedSingle<>(source, Assembly.of(source))));
+        RxJavaPlugins.setOnFlowableAssembly(after(previousFlowableHook, (Function<Flowable, Flowable>) source ->
+                source instanceof TracedFlowable ? source : new TracedFlowable<>(source, Assembly.of(source))));
+        RxJavaPlugins.setScheduleHandler(after(previousScheduleHandler, (Function<Runnable, Runnable>) task -> {
+            TraceContext context = TraceContext.current();
+            return context == null ? task : new TracedRunnable(task, context.pipeline);
+        }));
+        installed = true;
+    }
+
+    /**
+     * Puts the hooks found by install() back, what was recorded is kept until reset()
+     */
+    public static synchronized void uninstall() {
+        if (!installed) {
+            return;
+        }
+        installed = false;
+        RxJavaPlugins.setOnObservableAssembly(previousObservableHook);
+        RxJavaPlugins.setOnSingleAssembly(previousSingleHook);
+        RxJavaPlugins.setOnFlowableAssembly(previousFlowableHook);
+        RxJavaPlugins.setScheduleHandler(previousScheduleHandler);
+    }
+
+    public static boolean isInstalled() {
+        return installed;
+    }
+
+    /**
+     * Compose it last, right before subscribing, so the observer's time is part of the pipeline
+     */
+    public static <T> NamedPipeline<T> named(String name) {
+        return new NamedPipeline<>(name);
+    }
+
+    public static synchronized List<PipelineTrace> getPipelines() {
+        return new ArrayList<>(pipelines.values());
+    }
+
+    public static synchronized PipelineTrace getPipeline(String name) {
+        return pipelines.get(name);
+    }
+
+    public static synchronized void reset() {
+        pipelines.clear();
+    }
+
+    public static void dump(File file) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), UTF8))) {
+            dump(writer);
+        }
+    }
+
+    /**
+     * Writes every pipeline and its stages as JSON, for analysing offline
+     */
+    public static void dump(Writer writer) throws IOException {
+        JsonWriter json = new JsonWriter(writer);
+        json.setIndent("  ");
+        json.beginObject();
+        json.name("dumpedAt").value(System.currentTimeMillis());
+        Thread main = mainThread;
+        json.name("mainThread").value(main == null ? null : main.getName());
+        json.name("pipelines").beginArray();
+        for (PipelineTrace pipeline : getPipelines()) {
+            json.beginObject();
+            json.name("name").value(pipeline.getName());
+            json.name("mainThreadMillis").value(pipeline.getMainThreadMillis());
+            json.name("threadSwitches").value(pipeline.getThreadSwitchCount());
+            json.name("stages").beginArray();
+            for (StageTrace stage : pipeline.getStages()) {
+                json.beginObject();
+                json.name("operator").value(stage.getOperator());
+                json.name("site").value(stage.getSite());
+                json.name("subscriptions").value(stage.getSubscriptionCount());
+                json.name("items").value(stage.getItemCount());
+                json.name("errors").value(stage.getErrorCount());
+                json.name("completions").value(stage.getCompletionCount());
+                json.name("itemsPerSecond").value(stage.getItemsPerSecond());
+                json.name("latencyMillis").beginObject()
+                        .name("average").value(stage.getAverageLatencyMillis())
+                        .name("p50").value(stage.getLatencyPercentileMillis(50))
+                        .name("p90").value(stage.getLatencyPercentileMillis(90))
+                        .name("p99").value(stage.getLatencyPercentileMillis(99))
+                        .name("max").value(stage.getMaxLatencyMillis())
+                        .endObject();
+                json.name("threadSwitches").value(stage.getThreadSwitchCount());
+                json.name("mainThreadSignals").value(stage.getMainThreadSignalCount());
+                json.name("threads").beginArray();
+                for (String thread : stage.getThreads()) {
+                    json.value(thread);
+                }
+                json.endArray();
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject();
+        }
+        json.endArray();
+        json.endObject();
+        json.flush();
+    }
+
+    static synchronized PipelineTrace pipeline(String name) {
+        PipelineTrace pipeline = pipelines.get(name);
+        if (pipeline == null) {
+            pipeline = new PipelineTrace(name);
+            pipelines.put(name, pipeline);
+        }
+        return pipeline;
+    }
+
+    static boolean isMainThread(Thread thread) {
+        return thread == mainThread;
+    }
+
+    private static <T> Function<T, T> after(final Function<? super T, ? extends T> previous, final Function<T, T> hook) {
+        if (previous == null) {
+            return hook;
+        }
+        return source -> hook.apply(previous.apply(source));
+    }
+}
@@ -0,0 +1,154 @@
+package com.orchtech.assem.rxrecap.tracing;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * What one operator of a pipeline emitted, every subscription to it adds up here
+ * Latency is the time from the signal that led to an emission to the emission, for an operator that
+ * is the work it did on the item, for observeOn the wait for the other thread, for a source the time
+ * since it was subscribed to or since its previous item
+ * A thread switch is an emission on another thread than that signal
+ */
+public class StageTrace {
+    static final int ITEM = 0;
+    static final int ERROR = 1;
+    static final int COMPLETION = 2;
+
+    private final String operator;
+    private final String site;
+    private final long createdNanos = System.nanoTime();
+
+    private long subscriptions;
+    private long items;
+    private long errors;
+    private long completions;
+    private long threadSwitches;
+    private long mainThreadSignals;
+    private long lastItemNanos;
+    private long totalLatencyNanos;
+    private long maxLatencyNanos;
+    // Latencies counted by power of two, bucket i holds those below 2^i nanoseconds
+    private final long[] latencyBuckets = new long[64];
+    private final Set<String> threads = new LinkedHashSet<>();
+
+    StageTrace(String operator, String site) {
+        this.operator = operator;
+        this.site = site;
+    }
+
+    synchronized void onSubscribe() {
+        subscriptions++;
+    }
+
+    synchronized void onSignal(int signal, long latencyNanos, boolean threadSwitch, boolean mainThread, long now) {
+        switch (signal) {
+            case ITEM:
+                items++;
+                lastItemNanos = now;
+                totalLatencyNanos += latencyNanos;
+                maxLatencyNanos = Math.max(maxLatencyNanos, latencyNanos);
+                latencyBuckets[64 - Long.numberOfLeadingZeros(Math.max(0, latencyNanos))]++;
+                break;
+            case ERROR:
+                errors++;
+                break;
+            default:
+                completions++;
+        }
+        if (threadSwitch) {
+            threadSwitches++;
+        }
+        if (mainThread) {
+            mainThreadSignals++;
+        }
+        threads.add(Thread.currentThread().getName());
+    }
+
+    /**
+     * The operator class without its Observable / Single / Flowable prefix, e.g. ObserveOn
+     */
+    public String getOperator() {
+        return operator;
+    }
+
+    /**
+     * Where the operator was assembled, the first caller outside RxJava
+     */
+    public String getSite() {
+        return site;
+    }
+
+    public synchronized long getSubscriptionCount() {
+        return subscriptions;
+    }
+
+    public synchronized long getItemCount() {
+        return items;
+    }
+
+    public synchronized long getErrorCount() {
+        return errors;
+    }
+
+    public synchronized long getCompletionCount() {
+        return completions;
+    }
+
+    public synchronized long getThreadSwitchCount() {
+        return threadSwitches;
+    }
+
+    /**
+     * Items and terminal events emitted on the main thread
+     */
+    public synchronized long getMainThreadSignalCount() {
+        return mainThreadSignals;
+    }
+
+    /**
+     * Items over the time from the first subscription to the last item
+     */
+    public synchronized double getItemsPerSecond() {
+        long nanos = lastItemNanos - createdNanos;
+        return items == 0 || nanos <= 0 ? 0 : items * 1e9 / nanos;
+    }
+
+    public synchronized double getAverageLatencyMillis() {
+        return items == 0 ? 0 : totalLatencyNanos / 1e6 / items;
+    }
+
+    public synchronized double getMaxLatencyMillis() {
+        return maxLatencyNanos / 1e6;
+    }
+
+    /**
+     * Upper bound of the power of two bucket the percentile falls in, at most twice the real value
+     */
+    public synchronized double getLatencyPercentileMillis(double percentile) {
+        long rank = (long) Math.ceil(items * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < latencyBuckets.length; i++) {
+            seen += latencyBuckets[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min(1L << i, maxLatencyNanos) / 1e6;
+            }
+        }
+        return 0;
+    }
+
+    public synchronized List<String> getThreads() {
+        return new ArrayList<>(threads);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "%s at %s: %d items (%.1f/s), latency avg=%.2fms p99<=%.2fms max=%.2fms, "
+                        + "%d thread switches, %d on main",
+                operator, site, items, getItemsPerSecond(), getAverageLatencyMillis(),
+                getLatencyPercentileMillis(99), getMaxLatencyMillis(), threadSwitches, mainThreadSignals);
+    }
+}
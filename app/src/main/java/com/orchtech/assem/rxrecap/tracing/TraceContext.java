@@ -0,0 +1,38 @@
+package com.orchtech.assem.rxrecap.tracing;
+
+/**
+ * The pipeline a thread is working for and the signal it is handling, kept in a ThreadLocal
+ * Stages subscribed or assembled while it is set belong to that pipeline, which is how the inner
+ * sources of flatMap are traced, scheduled tasks carry it to the thread they run on
+ */
+final class TraceContext {
+    private static final ThreadLocal<TraceContext> CURRENT = new ThreadLocal<>();
+
+    final PipelineTrace pipeline;
+    // When and where the signal being handled started, the next stage measures its latency from here
+    final long signalNanos;
+    final Thread thread;
+
+    TraceContext(PipelineTrace pipeline, long signalNanos, Thread thread) {
+        this.pipeline = pipeline;
+        this.signalNanos = signalNanos;
+        this.thread = thread;
+    }
+
+    static TraceContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Makes next the current context, null clears it, returns the one it replaced
+     */
+    static TraceContext swap(TraceContext next) {
+        TraceContext previous = CURRENT.get();
+        if (next == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(next);
+        }
+        return previous;
+    }
+}
@@ -0,0 +1,95 @@
+package com.orchtech.assem.rxrecap.tracing;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import io.reactivex.Flowable;
+import io.reactivex.FlowableSubscriber;
+
+/**
+ * A Flowable operator as assembled, traced when it is subscribed to in a named pipeline
+ * Requests and cancellation pass straight through, the Subscription it hands on is not a
+ * QueueSubscription, so nothing fuses across it
+ */
+final class TracedFlowable<T> extends Flowable<T> {
+    private final Publisher<T> source;
+    private final Assembly assembly;
+
+    TracedFlowable(Publisher<T> source, Assembly assembly) {
+        this.source = source;
+        this.assembly = assembly;
+    }
+
+    @Override
+    protected void subscribeActual(Subscriber<? super T> subscriber) {
+        PipelineTrace pipeline = assembly.pipeline();
+        if (pipeline == null) {
+            source.subscribe(subscriber);
+            return;
+        }
+        StageSubscriber<T> stage = new StageSubscriber<>(subscriber, pipeline, assembly.stage(pipeline));
+        TraceContext previous = stage.enterSubscribe();
+        try {
+            source.subscribe(stage);
+        } finally {
+            stage.exit(previous);
+        }
+    }
+
+    private static final class StageSubscriber<T> extends TracedStage implements FlowableSubscriber<T>, Subscription {
+        private final Subscriber<? super T> downstream;
+        private Subscription upstream;
+
+        StageSubscriber(Subscriber<? super T> downstream, PipelineTrace pipeline, StageTrace stage) {
+            super(pipeline, stage);
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            upstream = s;
+            downstream.onSubscribe(this);
+        }
+
+        @Override
+        public void onNext(T t) {
+            TraceContext previous = enterSignal(StageTrace.ITEM);
+            try {
+                downstream.onNext(t);
+            } finally {
+                exit(previous);
+            }
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            TraceContext previous = enterSignal(StageTrace.ERROR);
+            try {
+                downstream.onError(e);
+            } finally {
+                exit(previous);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            TraceContext previous = enterSignal(StageTrace.COMPLETION);
+            try {
+                downstream.onComplete();
+            } finally {
+                exit(previous);
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            upstream.request(n);
+        }
+
+        @Override
+        public void cancel() {
+            upstream.cancel();
+        }
+    }
+}
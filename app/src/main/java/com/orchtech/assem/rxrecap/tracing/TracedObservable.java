@@ -0,0 +1,93 @@
+package com.orchtech.assem.rxrecap.tracing;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.Observer;
+import io.reactivex.disposables.Disposable;
+
+/**
+ * An Observable operator as assembled, traced when it is subscribed to in a named pipeline
+ * The observer it hands to the operator is not a QueueDisposable, so nothing fuses across it
+ * and every item goes through onNext where it is recorded
+ */
+final class TracedObservable<T> extends Observable<T> {
+    private final ObservableSource<T> source;
+    private final Assembly assembly;
+
+    TracedObservable(ObservableSource<T> source, Assembly assembly) {
+        this.source = source;
+        this.assembly = assembly;
+    }
+
+    @Override
+    protected void subscribeActual(Observer<? super T> observer) {
+        PipelineTrace pipeline = assembly.pipeline();
+        if (pipeline == null) {
+            source.subscribe(observer);
+            return;
+        }
+        StageObserver<T> stage = new StageObserver<>(observer, pipeline, assembly.stage(pipeline));
+        TraceContext previous = stage.enterSubscribe();
+        try {
+            source.subscribe(stage);
+        } finally {
+            stage.exit(previous);
+        }
+    }
+
+    private static final class StageObserver<T> extends TracedStage implements Observer<T>, Disposable {
+        private final Observer<? super T> downstream;
+        private Disposable upstream;
+
+        StageObserver(Observer<? super T> downstream, PipelineTrace pipeline, StageTrace stage) {
+            super(pipeline, stage);
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void onSubscribe(Disposable d) {
+            upstream = d;
+            downstream.onSubscribe(this);
+        }
+
+        @Override
+        public void onNext(T t) {
+            TraceContext previous = enterSignal(StageTrace.ITEM);
+            try {
+                downstream.onNext(t);
+            } finally {
+                exit(previous);
+            }
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            TraceContext previous = enterSignal(StageTrace.ERROR);
+            try {
+                downstream.onError(e);
+            } finally {
+                exit(previous);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            TraceContext previous = enterSignal(StageTrace.COMPLETION);
+            try {
+                downstream.onComplete();
+            } finally {
+                exit(previous);
+            }
+        }
+
+        @Override
+        public void dispose() {
+            upstream.dispose();
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return upstream.isDisposed();
+        }
+    }
+}
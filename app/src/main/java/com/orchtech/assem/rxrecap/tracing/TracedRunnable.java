@@ -0,0 +1,37 @@
+package com.orchtech.assem.rxrecap.tracing;
+
+/**
+ * A task scheduled while a pipeline was the current TraceContext, it runs with that pipeline as the context
+ * so the stages it drives know they are part of it, with the scheduling time and thread as the cause of
+ * their next signal, which makes the wait for the thread part of the latency and the hop a thread switch
+ * The main thread's time in it counts as the pipeline's main thread time
+ */
+final class TracedRunnable implements Runnable {
+    private final Runnable task;
+    private final PipelineTrace pipeline;
+    private final Thread scheduledFrom = Thread.currentThread();
+    private volatile long scheduledNanos = System.nanoTime();
+
+    TracedRunnable(Runnable task, PipelineTrace pipeline) {
+        this.task = task;
+        this.pipeline = pipeline;
+    }
+
+    @Override
+    public void run() {
+        Thread thread = Thread.currentThread();
+        TraceContext previous = TraceContext.swap(new TraceContext(pipeline, scheduledNanos, scheduledFrom));
+        long start = System.nanoTime();
+        try {
+            task.run();
+        } finally {
+            TraceContext.swap(previous);
+            long end = System.nanoTime();
+            if (previous == null && PipelineTracer.isMainThread(thread)) {
+                pipeline.addMainThreadNanos(end - start);
+            }
+            // A periodic task runs again, the wait for its next run starts now
+            scheduledNanos = end;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.orchtech.assem.rxrecap.tracing;
+
+import io.reactivex.Single;
+import io.reactivex.SingleObserver;
+import io.reactivex.SingleSource;
+import io.reactivex.disposables.Disposable;
+
+/**
+ * A Single operator as assembled, traced when it is subscribed to in a named pipeline, onSuccess counts as an item
+ */
+final class TracedSingle<T> extends Single<T> {
+    private final SingleSource<T> source;
+    private final Assembly assembly;
+
+    TracedSingle(SingleSource<T> source, Assembly assembly) {
+        this.source = source;
+        this.assembly = assembly;
+    }
+
+    @Override
+    protected void subscribeActual(SingleObserver<? super T> observer) {
+        PipelineTrace pipeline = assembly.pipeline();
+        if (pipeline == null) {
+            source.subscribe(observer);
+            return;
+        }
+        StageObserver<T> stage = new StageObserver<>(observer, pipeline, assembly.stage(pipeline));
+        TraceContext previous = stage.enterSubscribe();
+        try {
+            source.subscribe(stage);
+        } finally {
+            stage.exit(previous);
+        }
+    }
+
+    private static final class StageObserver<T> extends TracedStage implements SingleObserver<T>, Disposable {
+        private final SingleObserver<? super T> downstream;
+        private Disposable upstream;
+
+        StageObserver(SingleObserver<? super T> downstream, PipelineTrace pipeline, StageTrace stage) {
+            super(pipeline, stage);
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void onSubscribe(Disposable d) {
+            upstream = d;
+            downstream.onSubscribe(this);
+        }
+
+        @Override
+        public void onSuccess(T t) {
+            TraceContext previous = enterSignal(StageTrace.ITEM);
+            try {
+                downstream.onSuccess(t);
+            } finally {
+                exit(previous);
+            }
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            TraceContext previous = enterSignal(StageTrace.ERROR);
+            try {
+                downstream.onError(e);
+            } finally {
+                exit(previous);
+            }
+        }
+
+        @Override
+        public void dispose() {
+            upstream.dispose();
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return upstream.isDisposed();
+        }
+    }
+}
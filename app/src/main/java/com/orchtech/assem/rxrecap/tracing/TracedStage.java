@@ -0,0 +1,43 @@
+package com.orchtech.assem.rxrecap.tracing;
+
+/**
+ * One subscription to a traced operator, base of the observers that sit between the operator and
+ * its downstream
+ * Every signal is recorded in the StageTrace and delivered with this pipeline as the current
+ * TraceContext, the outermost ones on the main thread count as main thread time
+ */
+abstract class TracedStage {
+    private final PipelineTrace pipeline;
+    private final StageTrace stage;
+    private final Thread subscribedOn = Thread.currentThread();
+    // Signals are serialized, a source measures each item from the previous one
+    private long lastSignalNanos = System.nanoTime();
+
+    TracedStage(PipelineTrace pipeline, StageTrace stage) {
+        this.pipeline = pipeline;
+        this.stage = stage;
+    }
+
+    final TraceContext enterSubscribe() {
+        stage.onSubscribe();
+        return TraceContext.swap(new TraceContext(pipeline, System.nanoTime(), Thread.currentThread()));
+    }
+
+    final TraceContext enterSignal(int signal) {
+        long now = System.nanoTime();
+        Thread thread = Thread.currentThread();
+        TraceContext cause = TraceContext.current();
+        long since = cause != null ? cause.signalNanos : lastSignalNanos;
+        Thread from = cause != null ? cause.thread : subscribedOn;
+        lastSignalNanos = now;
+        stage.onSignal(signal, now - since, from != thread, PipelineTracer.isMainThread(thread), now);
+        return TraceContext.swap(new TraceContext(pipeline, now, thread));
+    }
+
+    final void exit(TraceContext previous) {
+        TraceContext own = TraceContext.swap(previous);
+        if (previous == null && PipelineTracer.isMainThread(own.thread)) {
+            pipeline.addMainThreadNanos(System.nanoTime() - own.signalNanos);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.orchtech.assem.rxrecap.fligh_app;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Local stand-in for api.androidhive.info/json/ used with MockWebServer
+ * Serves airline-tickets.php, airline-tickets-price.php and airline-tickets-price-batch.php
+ * and counts how many times each one was hit
+ * Search results carry an ETag, a matching If-None-Match gets a 304
+ */
+public class FakeFlightsDispatcher extends Dispatcher {
+
+    public final AtomicInteger searchCalls = new AtomicInteger();
+    public final AtomicInteger priceCalls = new AtomicInteger();
+    public final AtomicInteger batchCalls = new AtomicInteger();
+    public final AtomicInteger notModified = new AtomicInteger();
+
+    private final int ticketCount;
+    private volatile boolean batchEnabled = true;
+    private volatile long latencyMillis;
+
+    public FakeFlightsDispatcher(int ticketCount) {
+        this.ticketCount = ticketCount;
+    }
+
+    public void setBatchEnabled(boolean batchEnabled) {
+        this.batchEnabled = batchEnabled;
+    }
+
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) {
+        HttpUrl url = request.getRequestUrl();
+        String from = url.queryParameter("from");
+        String to = url.queryParameter("to");
+        MockResponse response;
+
+        switch (url.encodedPath()) {
+            case "/airline-tickets.php":
+                searchCalls.incrementAndGet();
+                String tickets = ticketsJson(from, to);
+                String etag = "\"" + Integer.toHexString(tickets.hashCode()) + "\"";
+                if (etag.equals(request.getHeader("If-None-Match"))) {
+                    notModified.incrementAndGet();
+                    response = new MockResponse().setResponseCode(304).setHeader("ETag", etag);
+                } else {
+                    response = json(tickets).setHeader("ETag", etag);
+                }
+                break;
+            case "/airline-tickets-price.php":
+                priceCalls.incrementAndGet();
+                response = json(priceJson(url.queryParameter("flight_number"), from, to));
+                break;
+            case "/airline-tickets-price-batch.php":
+                batchCalls.incrementAndGet();
+                if (!batchEnabled) {
+                    return new MockResponse().setResponseCode(404);
+                }
+                StringBuilder body = new StringBuilder("[");
+                for (String flightNumber : url.queryParameter("flight_numbers").split(",")) {
+                    if (body.length() > 1) {
+                        body.append(',');
+                    }
+                    body.append(priceJson(flightNumber, from, to));
+                }
+                response = json(body.append(']').toString());
+                break;
+            default:
+                return new MockResponse().setResponseCode(404);
+        }
+
+        if (latencyMillis > 0) {
+            // MockWebServer 3.10 waits out the body delay before the status line, headersDelay is not used
+            response.setBodyDelay(latencyMillis, TimeUnit.MILLISECONDS);
+        }
+        return response;
+    }
+
+    public static String flightNumber(int index) {
+        return "6E-" + (100 + index);
+    }
+
+    public String ticketsJson(String from, String to) {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < ticketCount; i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append("{\"from\":\"").append(from)
+                    .append("\",\"to\":\"").append(to)
+                    .append("\",\"flight_number\":\"").append(flightNumber(i))
+                    .append("\",\"departure\":\"10:00\",\"arrival\":\"12:15\",\"duration\":\"2h 15m\"")
+                    .append(",\"instructions\":\"\",\"stops\":").append(i % 3)
+                    .append(",\"airline\":{\"id\":").append(i % 5)
+                    .append(",\"name\":\"Airline ").append(i % 5)
+                    .append("\",\"logo\":\"https://example.com/logo.png\"}}");
+        }
+        return body.append(']').toString();
+    }
+
+    private static String priceJson(String flightNumber, String from, String to) {
+        return "{\"price\":" + (3000 + Math.abs(flightNumber.hashCode() % 2000))
+                + ",\"seats\":\"" + Math.abs(flightNumber.hashCode() % 40)
+                + "\",\"currency\":\"INR\",\"flight_number\":\"" + flightNumber
+                + "\",\"from\":\"" + from + "\",\"to\":\"" + to + "\"}";
+    }
+
+    private static MockResponse json(String body) {
+        return new MockResponse()
+                .setHeader("Content-Type", "application/json")
+                .setBody(body);
+    }
+}
@@ -0,0 +1,150 @@
+package com.orchtech.assem.rxrecap.fligh_app.network;
+
+import com.orchtech.assem.rxrecap.fligh_app.FakeFlightsDispatcher;
+import com.orchtech.assem.rxrecap.fligh_app.network.model.Price;
+import com.orchtech.assem.rxrecap.network.AdaptiveConcurrencyLimiter;
+import com.orchtech.assem.rxrecap.network.AsyncCallAdapterFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import io.reactivex.Observable;
+import io.reactivex.functions.BooleanSupplier;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PriceBatcherTest {
+    private static final int TICKETS = 300;
+
+    private MockWebServer server;
+    private FakeFlightsDispatcher dispatcher;
+    private FlightsApiService apiService;
+    // Fixed at 8, these tests are about batching and not about the limit
+    private AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 8, 8, 1000);
+
+    @Before
+    public void setUp() throws Exception {
+        dispatcher = new FakeFlightsDispatcher(TICKETS);
+        server = new MockWebServer();
+        server.setDispatcher(dispatcher);
+        server.start();
+
+        apiService = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addCallAdapterFactory(AsyncCallAdapterFactory.create())
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(FlightsApiService.class);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void coalescesPriceCallsIntoBatches() {
+        PriceBatcher batcher = new PriceBatcher(apiService, limiter, 50, 50, Schedulers.io());
+
+        List<Price> prices = priceAll(batcher);
+
+        assertEquals(TICKETS, prices.size());
+        for (int i = 0; i < TICKETS; i++) {
+            assertEquals(FakeFlightsDispatcher.flightNumber(i), prices.get(i).getFlightNumber());
+        }
+        assertEquals(0, dispatcher.priceCalls.get());
+        assertTrue(dispatcher.batchCalls.get() <= 10);
+        batcher.dispose();
+    }
+
+    @Test
+    public void fallsBackToSingleCallsWhenBatchEndpointIsMissing() {
+        dispatcher.setBatchEnabled(false);
+        PriceBatcher batcher = new PriceBatcher(apiService, limiter, 50, 50, Schedulers.io());
+
+        List<Price> prices = priceAll(batcher);
+
+        assertEquals(TICKETS, prices.size());
+        assertTrue(batcher.isBatchUnavailable());
+        assertEquals(TICKETS, dispatcher.priceCalls.get());
+        batcher.dispose();
+    }
+
+    @Test
+    public void disposingTheCallerCancelsItsCall() {
+        dispatcher.setLatencyMillis(2000);
+        PriceBatcher batcher = new PriceBatcher(apiService, limiter, 10, 50, Schedulers.io());
+
+        TestObserver<Price> price = batcher.getPrice(FakeFlightsDispatcher.flightNumber(0), "DEL", "HYD").test();
+        awaitCondition(() -> dispatcher.priceCalls.get() == 1);
+        price.dispose();
+
+        // Without the call being cancelled the slot is held until the delayed response ends
+        awaitCondition(() -> limiter.getInFlight() == 0);
+        batcher.dispose();
+    }
+
+    @Test
+    public void batchCallIsCancelledOnceEveryCallerIsDisposed() {
+        dispatcher.setLatencyMillis(2000);
+        PriceBatcher batcher = new PriceBatcher(apiService, limiter, 50, 50, Schedulers.io());
+
+        TestObserver<Price> first = batcher.getPrice(FakeFlightsDispatcher.flightNumber(0), "DEL", "HYD").test();
+        TestObserver<Price> second = batcher.getPrice(FakeFlightsDispatcher.flightNumber(1), "DEL", "HYD").test();
+        awaitCondition(() -> dispatcher.batchCalls.get() == 1);
+
+        first.dispose();
+        assertEquals(1, limiter.getInFlight());
+        second.dispose();
+        awaitCondition(() -> limiter.getInFlight() == 0);
+        assertEquals(1, batcher.getBatchCallCount());
+        batcher.dispose();
+    }
+
+    @Test
+    public void disposeFailsBufferedRequests() {
+        PriceBatcher batcher = new PriceBatcher(apiService, limiter, 60000, 50, Schedulers.io());
+
+        TestObserver<Price> buffered = batcher.getPrice(FakeFlightsDispatcher.flightNumber(0), "DEL", "HYD").test();
+        batcher.dispose();
+
+        buffered.assertError(CancellationException.class);
+        batcher.getPrice(FakeFlightsDispatcher.flightNumber(1), "DEL", "HYD").test()
+                .assertError(CancellationException.class);
+        assertEquals(0, batcher.getBatchCallCount() + batcher.getSingleCallCount());
+    }
+
+    /**
+     * Waits well under the response latency, a call that is not cancelled keeps its slot past the deadline
+     */
+    private static void awaitCondition(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 1000;
+        try {
+            while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+                Thread.yield();
+            }
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+        assertTrue(System.currentTimeMillis() < deadline);
+    }
+
+    private static List<Price> priceAll(PriceBatcher batcher) {
+        // Every call is subscribed up front, results come back in ticket order
+        return Observable.range(0, TICKETS)
+                .concatMapEager(i -> batcher.getPrice(FakeFlightsDispatcher.flightNumber(i), "DEL", "HYD").toObservable(),
+                        TICKETS, 1)
+                .toList()
+                .blockingGet();
+    }
+}
@@ -0,0 +1,100 @@
+package com.orchtech.assem.rxrecap.fligh_app.network;
+
+import com.google.gson.Gson;
+import com.orchtech.assem.rxrecap.fligh_app.network.model.Price;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Single;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.SingleSubject;
+
+import static org.junit.Assert.assertEquals;
+
+public class PriceCacheTest {
+    private TestScheduler clock;
+    private PriceCache cache;
+    private AtomicInteger loads;
+
+    @Before
+    public void setUp() {
+        clock = new TestScheduler();
+        cache = new PriceCache(2, 1000, clock);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    public void freshPriceIsServedFromCache() {
+        cache.get("6E-101", "DEL", "HYD", load(4500)).test().assertValueCount(1);
+        cache.get("6e-101", "DEL", "HYD", load(4600)).test().assertValueCount(1);
+
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void stalePriceIsEmittedBeforeRefresh() {
+        cache.get("6E-101", "DEL", "HYD", load(4500)).test();
+        clock.advanceTimeBy(2, TimeUnit.SECONDS);
+
+        cache.get("6E-101", "DEL", "HYD", load(4600)).test()
+                .assertValueCount(2)
+                .assertValueAt(0, price -> price.getPrice() == 4500)
+                .assertValueAt(1, price -> price.getPrice() == 4600);
+        assertEquals(1, cache.getStaleHitCount());
+    }
+
+    @Test
+    public void concurrentMissesShareOneLoad() {
+        SingleSubject<Price> response = SingleSubject.create();
+        Single<Price> load = response.doOnSubscribe(d -> loads.incrementAndGet());
+
+        cache.get("6E-101", "DEL", "HYD", load).test();
+        cache.get("6E-101", "DEL", "HYD", load).test();
+        response.onSuccess(price(4500));
+
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getCollapsedCount());
+    }
+
+    @Test
+    public void abandonedLoadIsNotSharedWithLaterCalls() {
+        Single<Price> never = Single.<Price>never().doOnSubscribe(d -> loads.incrementAndGet());
+
+        cache.get("6E-101", "DEL", "HYD", never).test().dispose();
+
+        cache.get("6E-101", "DEL", "HYD", load(4500)).test()
+                .assertValue(price -> price.getPrice() == 4500);
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.getCollapsedCount());
+    }
+
+    @Test
+    public void leastRecentlyUsedPriceIsEvicted() {
+        cache.get("6E-101", "DEL", "HYD", load(1)).test();
+        cache.get("6E-102", "DEL", "HYD", load(2)).test();
+        cache.get("6E-101", "DEL", "HYD", load(1)).test();
+        cache.get("6E-103", "DEL", "HYD", load(3)).test();
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        cache.get("6E-101", "DEL", "HYD", load(1)).test();
+        assertEquals(2, cache.getHitCount());
+    }
+
+    private Single<Price> load(float value) {
+        return Single.fromCallable(() -> {
+            loads.incrementAndGet();
+            return price(value);
+        });
+    }
+
+    private static Price price(float value) {
+        return new Gson().fromJson("{\"price\":" + value + "}", Price.class);
+    }
+}
@@ -0,0 +1,104 @@
+package com.orchtech.assem.rxrecap.fligh_app.network;
+
+import com.orchtech.assem.rxrecap.fligh_app.FakeFlightsDispatcher;
+import com.orchtech.assem.rxrecap.fligh_app.network.model.Ticket;
+import com.orchtech.assem.rxrecap.network.AsyncCallAdapterFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import io.reactivex.subscribers.TestSubscriber;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TicketStreamDecoderTest {
+    private static final int TICKETS = 1000;
+
+    private MockWebServer server;
+    private FlightsApiService apiService;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new FakeFlightsDispatcher(TICKETS));
+        server.start();
+
+        apiService = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addCallAdapterFactory(AsyncCallAdapterFactory.create())
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(FlightsApiService.class);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void decodesEveryTicketInOrder() {
+        List<Ticket> tickets = TicketStreamDecoder.decode(apiService.searchTicketsStream("DEL", "HYD"))
+                .toList()
+                .blockingGet();
+
+        assertEquals(TICKETS, tickets.size());
+        for (int i = 0; i < TICKETS; i++) {
+            assertEquals(FakeFlightsDispatcher.flightNumber(i), tickets.get(i).getFlightNumber());
+        }
+        assertEquals("Airline 1", tickets.get(1).getAirline().getName());
+    }
+
+    @Test
+    public void readsOnlyWhatIsRequestedAndClosesWhenCancelled() {
+        String json = new FakeFlightsDispatcher(TICKETS).ticketsJson("DEL", "HYD");
+        CountingSource source = new CountingSource(new Buffer().writeUtf8(json));
+        ResponseBody body = ResponseBody.create(MediaType.parse("application/json"), -1, Okio.buffer(source));
+
+        TestSubscriber<Ticket> subscriber = TicketStreamDecoder.decode(body).take(5).test(0);
+        subscriber.request(5);
+
+        subscriber.assertValueCount(5).assertComplete();
+        assertTrue(source.closed);
+        // Only the buffers holding the first tickets were read, not the whole body
+        assertTrue(source.bytesRead < json.length() / 10);
+    }
+
+    private static class CountingSource extends ForwardingSource {
+        long bytesRead;
+        boolean closed;
+
+        CountingSource(Source delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public long read(Buffer sink, long byteCount) throws IOException {
+            long read = super.read(sink, byteCount);
+            if (read > 0) {
+                bytesRead += read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.orchtech.assem.rxrecap.fligh_app.network.model;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TicketTest {
+
+    @Test
+    public void flightNumbersAreNormalized() {
+        assertEquals("6E-101", Ticket.normalizeFlightNumber(" 6e-101\t"));
+        assertEquals("6E-101", Ticket.normalizeFlightNumber("6E-101"));
+        assertEquals("", Ticket.normalizeFlightNumber(null));
+    }
+
+    @Test
+    public void ticketsWithTheSameFlightAreEqual() {
+        Ticket ticket = ticket("6E-101", 4500);
+        Ticket sameFlight = ticket(" 6e-101 ", 3900);
+
+        assertEquals(ticket, sameFlight);
+        assertEquals(sameFlight, ticket);
+        assertEquals(ticket.hashCode(), sameFlight.hashCode());
+        assertEquals(ticket, ticket);
+        assertNotEquals(ticket, ticket("6E-102", 4500));
+        assertFalse(ticket.equals(null));
+        assertFalse(ticket.equals("6E-101"));
+    }
+
+    @Test
+    public void equalityIsTransitive() {
+        Ticket upper = ticket("AI-202", 0);
+        Ticket lower = ticket("ai-202", 0);
+        Ticket padded = ticket("  Ai-202", 0);
+
+        assertEquals(upper, lower);
+        assertEquals(lower, padded);
+        assertEquals(upper, padded);
+    }
+
+    @Test
+    public void ticketsWithoutAFlightNumberAreEqual() {
+        assertEquals(ticket(null, 0), ticket(null, 1));
+        assertEquals(ticket(null, 0).hashCode(), ticket(null, 1).hashCode());
+    }
+
+    @Test
+    public void hashSetsFindTicketsByNormalizedFlight() {
+        Set<Ticket> tickets = new HashSet<>();
+        assertTrue(tickets.add(ticket("6E-101", 4500)));
+        assertFalse(tickets.add(ticket("6e-101 ", 4600)));
+        assertTrue(tickets.contains(ticket(" 6E-101", 0)));
+        assertEquals(1, tickets.size());
+    }
+
+    @Test
+    public void withPriceCopiesTheTicket() {
+        Ticket ticket = new Gson().fromJson("{\"from\":\"DEL\",\"to\":\"CHE\",\"flight_number\":\"6E-101\","
+                + "\"stops\":1,\"airline\":{\"name\":\"Indigo\"}}", Ticket.class);
+        Price price = new Price();
+        price.price = 3900;
+
+        Ticket priced = ticket.withPrice(price);
+        assertSame(price, priced.getPrice());
+        assertNull(ticket.getPrice());
+        assertEquals(ticket, priced);
+        assertEquals("DEL", priced.getFrom());
+        assertEquals("CHE", priced.getTo());
+        assertEquals(1, priced.getNumberOfStops());
+        assertSame(ticket.getAirline(), priced.getAirline());
+    }
+
+    private static Ticket ticket(String flightNumber, int price) {
+        Ticket ticket = new Gson().fromJson("{\"price\":{\"price\":" + price + "}}", Ticket.class);
+        ticket.flightNumber = flightNumber;
+        return ticket;
+    }
+}
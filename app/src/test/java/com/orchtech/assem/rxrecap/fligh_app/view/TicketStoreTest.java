@@ -0,0 +1,118 @@
+package com.orchtech.assem.rxrecap.fligh_app.view;
+
+import com.google.gson.Gson;
+import com.orchtech.assem.rxrecap.fligh_app.network.model.Price;
+import com.orchtech.assem.rxrecap.fligh_app.network.model.Ticket;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TicketStoreTest {
+    private TicketStore store;
+
+    @Before
+    public void setUp() {
+        store = new TicketStore();
+        store.setTickets(Arrays.asList(ticket("6E-101"), ticket("AI-202"), ticket("SG-303")));
+    }
+
+    @Test
+    public void findsTicketsByNormalizedFlightNumber() {
+        assertEquals(0, store.indexOf(ticket("6e-101")));
+        assertEquals(1, store.indexOf(ticket(" AI-202 ")));
+        assertEquals(2, store.indexOf(ticket("\tsg-303")));
+        assertTrue(store.contains(ticket("ai-202")));
+        assertFalse(store.contains(ticket("UK-404")));
+        assertEquals(-1, store.indexOf("6E-101"));
+    }
+
+    @Test
+    public void insertingShiftsLaterPositions() {
+        store.add(1, ticket("UK-404"));
+
+        assertEquals(0, store.indexOf(ticket("6E-101")));
+        assertEquals(1, store.indexOf(ticket("uk-404")));
+        assertEquals(2, store.indexOf(ticket("AI-202")));
+        assertEquals(3, store.indexOf(ticket("SG-303")));
+    }
+
+    @Test
+    public void appendingAddsOnePosition() {
+        store.add(ticket("UK-404"));
+        store.addRows(Collections.singletonList(TicketRow.of(ticket("G8-505"))));
+
+        assertEquals(3, store.indexOf(ticket("UK-404")));
+        assertEquals(4, store.indexOf(ticket("g8-505")));
+        assertEquals(5, store.size());
+    }
+
+    @Test
+    public void replacingWithAnotherFlightMovesItsPosition() {
+        store.set(1, ticket("UK-404"));
+
+        assertEquals(-1, store.indexOf(ticket("AI-202")));
+        assertEquals(1, store.indexOf(ticket("UK-404")));
+        assertEquals(2, store.indexOf(ticket("SG-303")));
+    }
+
+    @Test
+    public void replacingWithTheSameFlightKeepsItsPosition() {
+        TicketRow priced = TicketRow.of(ticket("ai-202"));
+        store.setRow(1, priced);
+
+        assertSame(priced, store.getRow(1));
+        assertEquals(1, store.indexOf(ticket("AI-202")));
+    }
+
+    @Test
+    public void pricedRowLeavesTheShownTicketAlone() {
+        Ticket shown = store.get(1);
+        TicketRow priced = TicketRow.priced(shown, new Gson().fromJson("{\"price\":3900,\"seats\":\"12\"}", Price.class));
+
+        assertNull(shown.getPrice());
+        assertSame(shown, store.get(1));
+        assertEquals("12 Seats", priced.getSeats());
+
+        store.setRow(store.indexOf(priced.getTicket()), priced);
+        assertEquals(3900, store.get(1).getPrice().getPrice(), 0);
+        assertNull(shown.getPrice());
+    }
+
+    @Test
+    public void removingAndSortingReindex() {
+        store.remove(0);
+        assertEquals(-1, store.indexOf(ticket("6E-101")));
+        assertEquals(0, store.indexOf(ticket("AI-202")));
+
+        store.sortBy(Collections.reverseOrder(Comparator.comparing(Ticket::getFlightNumber)));
+        assertEquals(0, store.indexOf(ticket("SG-303")));
+        assertEquals(1, store.indexOf(ticket("AI-202")));
+
+        store.clear();
+        assertFalse(store.contains(ticket("SG-303")));
+    }
+
+    @Test
+    public void duplicateFlightMapsToItsFirstPosition() {
+        store.add(ticket("6e-101"));
+        assertEquals(0, store.indexOf(ticket("6E-101")));
+        assertEquals(3, store.lastIndexOf(ticket("6E-101")));
+
+        store.remove(0);
+        assertEquals(2, store.indexOf(ticket("6E-101")));
+    }
+
+    private static Ticket ticket(String flightNumber) {
+        return new Gson().fromJson("{\"flight_number\":\"" + flightNumber.replace("\t", "\\t") + "\"}", Ticket.class);
+    }
+}
@@ -0,0 +1,38 @@
+package com.orchtech.assem.rxrecap.math;
+
+import org.junit.Test;
+
+import io.reactivex.Flowable;
+import io.reactivex.subscribers.TestSubscriber;
+
+import static org.junit.Assert.assertEquals;
+
+public class MathFlowableTest {
+
+    @Test
+    public void aggregates() {
+        Flowable<Integer> numbers = Flowable.fromArray(5, 101, 404, 22, 3, 1024, 65);
+        MathFlowable.sumInt(numbers).test().assertResult(1624);
+        MathFlowable.minInt(numbers).test().assertResult(3);
+        MathFlowable.maxInt(numbers).test().assertResult(1024);
+        MathFlowable.averageInt(numbers).test().assertResult(1624 / 7.0);
+        MathFlowable.averageLong(Flowable.<Long>empty()).test().assertResult();
+    }
+
+    @Test
+    public void rollingVariantsHonourBackpressure() {
+        int[] requested = {0};
+        Flowable<Long> source = Flowable.rangeLong(1, 10).doOnRequest(n -> requested[0] += n);
+
+        TestSubscriber<Long> sums = MathFlowable.rollingSumLong(source, 3).test(2);
+        sums.assertValues(1L, 3L).assertNotComplete();
+        assertEquals(2, requested[0]);
+        sums.requestMore(8);
+        sums.assertResult(1L, 3L, 6L, 9L, 12L, 15L, 18L, 21L, 24L, 27L);
+
+        // Every subscriber starts with an empty window
+        Flowable<Double> averages = MathFlowable.rollingAverageDouble(Flowable.just(2.0, 4.0, 9.0), 2);
+        averages.test().assertResult(2.0, 3.0, 6.5);
+        averages.test().assertResult(2.0, 3.0, 6.5);
+    }
+}
@@ -0,0 +1,124 @@
+package com.orchtech.assem.rxrecap.math;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import io.reactivex.Observable;
+
+import static org.junit.Assert.assertEquals;
+
+public class MathObservableTest {
+    private static final int COUNT = 2000;
+    private static final int[] WINDOWS = {1, 3, 17, COUNT * 2};
+
+    private final Random random = new Random(7);
+
+    @Test
+    public void aggregatesMatchBoxedReduce() {
+        List<Integer> ints = new ArrayList<>();
+        List<Long> longs = new ArrayList<>();
+        List<Double> doubles = new ArrayList<>();
+        for (int i = 0; i < COUNT; i++) {
+            ints.add(random.nextInt());
+            longs.add(random.nextLong() >> 16);
+            doubles.add(random.nextGaussian() * 1000);
+        }
+        Observable<Integer> intSource = Observable.fromIterable(ints);
+        Observable<Long> longSource = Observable.fromIterable(longs);
+        Observable<Double> doubleSource = Observable.fromIterable(doubles);
+
+        // Wraps on overflow like adding ints does
+        MathObservable.sumInt(intSource).test().assertResult(intSource.reduce(0, (a, b) -> a + b).blockingGet());
+        MathObservable.minInt(intSource).test().assertResult(intSource.reduce(Math::min).blockingGet());
+        MathObservable.maxInt(intSource).test().assertResult(intSource.reduce(Math::max).blockingGet());
+        long intSum = 0;
+        for (int value : ints) {
+            intSum += value;
+        }
+        MathObservable.averageInt(intSource).test().assertResult((double) intSum / COUNT);
+
+        MathObservable.sumLong(longSource).test().assertResult(longSource.reduce(0L, (a, b) -> a + b).blockingGet());
+        MathObservable.minLong(longSource).test().assertResult(longSource.reduce(Math::min).blockingGet());
+        MathObservable.maxLong(longSource).test().assertResult(longSource.reduce(Math::max).blockingGet());
+        MathObservable.averageLong(longSource).test()
+                .assertResult((double) longSource.reduce(0L, (a, b) -> a + b).blockingGet() / COUNT);
+
+        double doubleSum = doubleSource.reduce(0.0, (a, b) -> a + b).blockingGet();
+        MathObservable.sumDouble(doubleSource).test().assertResult(doubleSum);
+        MathObservable.minDouble(doubleSource).test().assertResult(doubleSource.reduce(Math::min).blockingGet());
+        MathObservable.maxDouble(doubleSource).test().assertResult(doubleSource.reduce(Math::max).blockingGet());
+        MathObservable.averageDouble(doubleSource).test().assertResult(doubleSum / COUNT);
+    }
+
+    @Test
+    public void noItems() {
+        MathObservable.sumInt(Observable.<Integer>empty()).test().assertResult(0);
+        MathObservable.sumDouble(Observable.<Double>empty()).test().assertResult(0.0);
+        MathObservable.minLong(Observable.<Long>empty()).test().assertResult();
+        MathObservable.maxDouble(Observable.<Double>empty()).test().assertResult();
+        MathObservable.averageInt(Observable.<Integer>empty()).test().assertResult();
+        MathObservable.rollingMaxInt(Observable.<Integer>empty(), 3).test().assertResult();
+    }
+
+    @Test
+    public void rollingAggregatesMatchTheirWindows() {
+        List<Integer> ints = new ArrayList<>();
+        List<Double> doubles = new ArrayList<>();
+        for (int i = 0; i < COUNT; i++) {
+            // Few distinct values, so the windows hold ties
+            ints.add(random.nextInt(50) - 25);
+            doubles.add((double) random.nextInt(1000) / 8);
+        }
+        Observable<Integer> intSource = Observable.fromIterable(ints);
+        Observable<Long> longSource = intSource.map(Integer::longValue);
+        Observable<Double> doubleSource = Observable.fromIterable(doubles);
+
+        for (int window : WINDOWS) {
+            List<Integer> sums = MathObservable.rollingSumInt(intSource, window).toList().blockingGet();
+            List<Long> longSums = MathObservable.rollingSumLong(longSource, window).toList().blockingGet();
+            List<Integer> mins = MathObservable.rollingMinInt(intSource, window).toList().blockingGet();
+            List<Long> maxes = MathObservable.rollingMaxLong(longSource, window).toList().blockingGet();
+            List<Double> averages = MathObservable.rollingAverageInt(intSource, window).toList().blockingGet();
+            List<Double> doubleMins = MathObservable.rollingMinDouble(doubleSource, window).toList().blockingGet();
+            List<Double> doubleMaxes = MathObservable.rollingMaxDouble(doubleSource, window).toList().blockingGet();
+            List<Double> doubleSums = MathObservable.rollingSumDouble(doubleSource, window).toList().blockingGet();
+            assertEquals(COUNT, sums.size());
+
+            for (int end = 1; end <= COUNT; end++) {
+                int start = Math.max(0, end - window);
+                int sum = 0;
+                int min = Integer.MAX_VALUE;
+                int max = Integer.MIN_VALUE;
+                double doubleSum = 0;
+                double doubleMin = Double.MAX_VALUE;
+                double doubleMax = -Double.MAX_VALUE;
+                for (int i = start; i < end; i++) {
+                    sum += ints.get(i);
+                    min = Math.min(min, ints.get(i));
+                    max = Math.max(max, ints.get(i));
+                    doubleSum += doubles.get(i);
+                    doubleMin = Math.min(doubleMin, doubles.get(i));
+                    doubleMax = Math.max(doubleMax, doubles.get(i));
+                }
+                String at = "window " + window + ", item " + end;
+                assertEquals(at, sum, (int) sums.get(end - 1));
+                assertEquals(at, sum, (long) longSums.get(end - 1));
+                assertEquals(at, min, (int) mins.get(end - 1));
+                assertEquals(at, max, (long) maxes.get(end - 1));
+                assertEquals(at, (double) sum / (end - start), averages.get(end - 1), 1e-9);
+                assertEquals(at, doubleMin, doubleMins.get(end - 1), 0);
+                assertEquals(at, doubleMax, doubleMaxes.get(end - 1), 0);
+                // Multiples of 1/8, exact however the sum is kept
+                assertEquals(at, doubleSum, doubleSums.get(end - 1), 0);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAnEmptyWindow() {
+        MathObservable.rollingSumInt(Observable.just(1), 0);
+    }
+}
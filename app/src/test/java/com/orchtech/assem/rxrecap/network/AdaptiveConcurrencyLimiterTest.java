@@ -0,0 +1,225 @@
+package com.orchtech.assem.rxrecap.network;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.SingleSubject;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveConcurrencyLimiterTest {
+    private TestScheduler clock;
+    // Calls the limiter has started and that have not answered yet
+    private List<SingleSubject<Integer>> running;
+
+    @Before
+    public void setUp() {
+        clock = new TestScheduler();
+        running = new ArrayList<>();
+    }
+
+    @Test
+    public void fastCallsGrowTheLimitWhileItIsInUse() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, 100, clock);
+        for (int i = 0; i < 40; i++) {
+            limiter.submit(call()).test();
+        }
+        while (!running.isEmpty()) {
+            answer(5);
+        }
+
+        assertTrue(limiter.getLimit() > 2);
+        assertEquals(40, limiter.getCompletedCount());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void idleLimitDoesNotGrow() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 10, 100, clock);
+        for (int i = 0; i < 20; i++) {
+            limiter.submit(call()).test();
+            answer(5);
+        }
+
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    public void slowCallsBackOffOncePerRound() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 1, 16, 100, clock);
+        for (int i = 0; i < 8; i++) {
+            limiter.submit(call()).test();
+        }
+        answer(5);
+        assertEquals(8, limiter.getLimit());
+
+        // Latency jumps from 5ms to 200ms, the calls in flight all report it but only the first backs off
+        for (int i = 0; i < 7; i++) {
+            limiter.submit(call()).test();
+        }
+        answer(200);
+        assertEquals(7, limiter.getLimit());
+    }
+
+    @Test
+    public void jitterWithinSlackIsNotCongestion() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 16, 100, clock);
+        for (int i = 0; i < 4; i++) {
+            limiter.submit(call()).test();
+        }
+        answer(1);
+        // 15ms is 15 times the lowest latency but still under the 20ms slack
+        for (int i = 0; i < 16; i++) {
+            limiter.submit(call()).test();
+        }
+        while (!running.isEmpty()) {
+            answer(15);
+        }
+
+        assertTrue(limiter.getLimit() >= 4);
+    }
+
+    @Test
+    public void errorsBackOffDownToTheMinimum() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 8, 100, clock);
+        for (int i = 0; i < 4; i++) {
+            limiter.submit(call()).test();
+        }
+        fail();
+        assertEquals(3, limiter.getLimit());
+        assertEquals(4, limiter.getFailedCount());
+
+        for (int i = 0; i < 20; i++) {
+            limiter.submit(call()).test();
+            fail();
+        }
+        assertEquals(1, limiter.getLimit());
+    }
+
+    @Test
+    public void callsOverTheLimitWaitInOrder() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 2, 100, clock);
+        List<SingleSubject<Integer>> started = new ArrayList<>();
+        List<TestObserver<Integer>> observers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            final int id = i;
+            SingleSubject<Integer> response = SingleSubject.create();
+            observers.add(limiter.submit(response.doOnSubscribe(d -> started.add(response)).map(value -> id)).test());
+        }
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(3, limiter.getQueueLength());
+
+        // A queued call that is disposed leaves the queue and never starts
+        observers.get(3).dispose();
+        assertEquals(2, limiter.getQueueLength());
+
+        started.get(0).onSuccess(0);
+        observers.get(0).assertValue(0);
+        assertEquals(3, started.size());
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(1, limiter.getQueueLength());
+
+        started.get(1).onSuccess(0);
+        started.get(2).onSuccess(0);
+        started.get(3).onSuccess(0);
+        assertEquals(4, started.size());
+        observers.get(2).assertValue(2);
+        observers.get(3).assertNoValues();
+        observers.get(4).assertValue(4);
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(0, limiter.getQueueLength());
+    }
+
+    @Test
+    public void callsOverAFullQueueAreRejected() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, 1, clock);
+        TestObserver<Integer> first = limiter.submit(call()).test();
+        TestObserver<Integer> queued = limiter.submit(call()).test();
+        TestObserver<Integer> rejected = limiter.submit(call()).test();
+
+        rejected.assertError(RejectedExecutionException.class);
+        assertEquals(1, limiter.getRejectedCount());
+        assertEquals(1, running.size());
+
+        answer(5);
+        first.assertValue(1);
+        answer(5);
+        queued.assertValue(1);
+    }
+
+    @Test
+    public void queuedCallsThatCompleteRightAwayDoNotNest() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, 100000, clock);
+        limiter.submit(call()).test();
+        List<TestObserver<Integer>> queued = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            queued.add(limiter.submit(Single.just(i)).test());
+        }
+
+        // Each one completes while it is started, and makes room for the next
+        answer(5);
+
+        assertEquals(100001, limiter.getCompletedCount());
+        queued.get(queued.size() - 1).assertValue(99999);
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(0, limiter.getQueueLength());
+    }
+
+    @Test
+    public void countsOutcomes() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 2, 0, clock);
+        limiter.submit(call()).test();
+        limiter.submit(call()).test();
+        limiter.submit(call()).test();
+        running.remove(0).onSuccess(1);
+        running.remove(0).onError(new IOException("reset"));
+
+        // A cancelled call is neither a success nor a failure
+        TestObserver<Integer> cancelled = limiter.submit(call()).test();
+        cancelled.dispose();
+        assertFalse(running.get(0).hasObservers());
+
+        assertEquals(1, limiter.getCompletedCount());
+        assertEquals(1, limiter.getFailedCount());
+        assertEquals(1, limiter.getRejectedCount());
+        assertEquals(0, limiter.getInFlight());
+        assertTrue(limiter.toString().contains("completed=1, failed=1, rejected=1"));
+    }
+
+    private Single<Integer> call() {
+        SingleSubject<Integer> response = SingleSubject.create();
+        return response.doOnSubscribe(d -> running.add(response));
+    }
+
+    /**
+     * Lets millis pass, then answers every running call
+     * Queued calls they make room for start now and are answered by the next call
+     */
+    private void answer(long millis) {
+        clock.advanceTimeBy(millis, TimeUnit.MILLISECONDS);
+        List<SingleSubject<Integer>> answered = new ArrayList<>(running);
+        running.clear();
+        for (SingleSubject<Integer> response : answered) {
+            response.onSuccess(1);
+        }
+    }
+
+    private void fail() {
+        List<SingleSubject<Integer>> answered = new ArrayList<>(running);
+        running.clear();
+        for (SingleSubject<Integer> response : answered) {
+            response.onError(new IOException("reset"));
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.orchtech.assem.rxrecap.network;
+
+import com.jakewharton.retrofit2.adapter.rxjava2.HttpException;
+import com.jakewharton.retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
+import com.orchtech.assem.rxrecap.fligh_app.FakeFlightsDispatcher;
+import com.orchtech.assem.rxrecap.fligh_app.network.FlightsApiService;
+import com.orchtech.assem.rxrecap.fligh_app.network.model.Price;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit2.CallAdapter;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+import retrofit2.http.GET;
+import retrofit2.http.Query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncCallAdapterFactoryTest {
+    private static final int LOOKUPS = 500;
+    private static final long LATENCY_MILLIS = 50;
+
+    private MockWebServer server;
+    private FakeFlightsDispatcher dispatcher;
+    private OkHttpClient client;
+
+    interface Probe {
+        @GET("airline-tickets-price.php")
+        Single<Response<Price>> price(@Query("flight_number") String flightNumber);
+
+        @GET("missing.php")
+        Single<Price> missing();
+
+        @GET("missing.php")
+        Single<Response<Price>> missingResponse();
+
+        @GET("airline-tickets-price.php")
+        Completable touch(@Query("flight_number") String flightNumber);
+
+        @GET("missing.php")
+        Completable touchMissing();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        dispatcher = new FakeFlightsDispatcher(10);
+        server = new MockWebServer();
+        server.setDispatcher(dispatcher);
+        server.start();
+        client = HttpCore.getClient();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void emitsBodiesResponsesAndHttpErrors() {
+        FlightsApiService api = retrofit(AsyncCallAdapterFactory.create()).create(FlightsApiService.class);
+        Probe probe = retrofit(AsyncCallAdapterFactory.create()).create(Probe.class);
+
+        Price price = api.getPrice("6E-101", "BLR", "DEL").blockingGet();
+        assertEquals("6E-101", price.getFlightNumber());
+
+        Response<Price> response = probe.price("6E-102").blockingGet();
+        assertEquals(200, response.code());
+        assertEquals("6E-102", response.body().getFlightNumber());
+        assertEquals(404, probe.missingResponse().blockingGet().code());
+
+        TestObserver<Price> missing = probe.missing().test().awaitDone(5, TimeUnit.SECONDS);
+        missing.assertError(HttpException.class);
+        assertEquals(404, ((HttpException) missing.errors().get(0)).code());
+
+        probe.touch("6E-103").test().awaitDone(5, TimeUnit.SECONDS).assertResult();
+        probe.touchMissing().test().awaitDone(5, TimeUnit.SECONDS).assertError(HttpException.class);
+
+        // Every subscription is its own request, which is what a retry relies on
+        Single<Price> again = api.getPrice("6E-103", "BLR", "DEL");
+        again.blockingGet();
+        again.blockingGet();
+        assertEquals(5, dispatcher.priceCalls.get());
+    }
+
+    @Test
+    public void disposingCancelsTheCall() throws Exception {
+        dispatcher.setLatencyMillis(1000);
+        FlightsApiService api = retrofit(AsyncCallAdapterFactory.create()).create(FlightsApiService.class);
+
+        TestObserver<Price> observer = api.getPrice("6E-101", "BLR", "DEL").test();
+        server.takeRequest(5, TimeUnit.SECONDS);
+        assertEquals(1, client.dispatcher().runningCallsCount());
+
+        observer.dispose();
+        long deadline = System.currentTimeMillis() + 500;
+        while (client.dispatcher().runningCallsCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, client.dispatcher().runningCallsCount());
+        // The IOException of the cancelled call is not delivered
+        observer.assertEmpty();
+    }
+
+    @Test
+    public void priceFanOutHoldsNoThreadPerRequest() {
+        dispatcher.setLatencyMillis(LATENCY_MILLIS);
+        int perHost = client.dispatcher().getMaxRequestsPerHost();
+
+        FanOut blocking = lookUpPrices(retrofit(client, RxJava2CallAdapterFactory.create()), Schedulers.io());
+        FanOut enqueued = lookUpPrices(retrofit(client, AsyncCallAdapterFactory.create()), null);
+
+        // Every blocking call holds an io thread, the dispatcher limits do not apply to execute()
+        assertTrue(blocking.peakCalls > perHost);
+        // Enqueued calls wait in the dispatcher queue without a thread until the limit lets them run
+        assertTrue(enqueued.peakCalls <= perHost);
+        assertFalse(enqueued.threads.contains(Thread.currentThread()));
+        assertEquals(0, client.dispatcher().queuedCallsCount());
+    }
+
+    private Retrofit retrofit(CallAdapter.Factory callAdapterFactory) {
+        return retrofit(client, callAdapterFactory);
+    }
+
+    private Retrofit retrofit(OkHttpClient client, CallAdapter.Factory callAdapterFactory) {
+        return new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .client(client)
+                .addCallAdapterFactory(callAdapterFactory)
+                .addConverterFactory(GsonConverterFactory.create())
+                .build();
+    }
+
+    /**
+     * LOOKUPS price calls subscribed to at once, on the scheduler when there is one
+     * Samples how many calls run at the same time, a running call blocks a thread either way,
+     * the caller's with execute() and a dispatcher thread with enqueue()
+     */
+    private static FanOut lookUpPrices(Retrofit retrofit, Scheduler scheduler) {
+        FlightsApiService api = retrofit.create(FlightsApiService.class);
+        Dispatcher calls = ((OkHttpClient) retrofit.callFactory()).dispatcher();
+        AtomicInteger peakCalls = new AtomicInteger();
+        Disposable sampler = Observable.interval(1, TimeUnit.MILLISECONDS, Schedulers.single())
+                .subscribe(tick -> peakCalls.accumulateAndGet(calls.runningCallsCount(), Math::max));
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+        long priced = Observable.range(0, LOOKUPS)
+                .flatMap(i -> {
+                    Single<Price> price = api.getPrice(FakeFlightsDispatcher.flightNumber(i % 10), "BLR", "DEL");
+                    if (scheduler != null) {
+                        price = price.subscribeOn(scheduler);
+                    }
+                    return price.doOnSuccess(p -> threads.add(Thread.currentThread())).toObservable();
+                })
+                .count()
+                .blockingGet();
+        sampler.dispose();
+
+        assertEquals(LOOKUPS, priced);
+        return new FanOut(peakCalls.get(), threads);
+    }
+
+    private static class FanOut {
+        final int peakCalls;
+        // Where results arrived, OkHttp gives every dispatcher thread the same name
+        final Set<Thread> threads;
+
+        FanOut(int peakCalls, Set<Thread> threads) {
+            this.peakCalls = peakCalls;
+            this.threads = threads;
+        }
+    }
+}
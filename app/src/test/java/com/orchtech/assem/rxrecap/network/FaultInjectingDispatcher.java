@@ -0,0 +1,45 @@
+package com.orchtech.assem.rxrecap.network;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Wraps a stand-in server and answers a share of its requests with a 503 instead
+ * Seeded, so a run fails the same requests every time when they arrive in the same order
+ */
+public class FaultInjectingDispatcher extends Dispatcher {
+    public final AtomicInteger requests = new AtomicInteger();
+    public final AtomicInteger injected = new AtomicInteger();
+
+    private final Dispatcher delegate;
+    private final Random random;
+    private volatile double failureRate;
+
+    public FaultInjectingDispatcher(Dispatcher delegate, double failureRate, long seed) {
+        this.delegate = delegate;
+        this.failureRate = failureRate;
+        this.random = new Random(seed);
+    }
+
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        requests.incrementAndGet();
+        boolean fail;
+        synchronized (random) {
+            fail = random.nextDouble() < failureRate;
+        }
+        if (fail) {
+            injected.incrementAndGet();
+            return new MockResponse().setResponseCode(503);
+        }
+        return delegate.dispatch(request);
+    }
+}
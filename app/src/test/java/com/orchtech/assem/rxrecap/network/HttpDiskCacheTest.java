@@ -0,0 +1,91 @@
+package com.orchtech.assem.rxrecap.network;
+
+import com.orchtech.assem.rxrecap.fligh_app.FakeFlightsDispatcher;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HttpDiskCacheTest {
+    private static final String SEARCH = "/airline-tickets.php?from=DEL&to=HYD";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private FakeFlightsDispatcher dispatcher;
+    private HttpDiskCache httpCache;
+    private OkHttpClient client;
+    private volatile boolean online = true;
+
+    @Before
+    public void setUp() throws Exception {
+        dispatcher = new FakeFlightsDispatcher(300);
+        server = new MockWebServer();
+        server.setDispatcher(dispatcher);
+        server.start();
+
+        httpCache = new HttpDiskCache(folder.newFolder("http"), 1024 * 1024, () -> online, "airline-tickets.php");
+        OkHttpClient.Builder builder = new OkHttpClient.Builder();
+        httpCache.install(builder);
+        client = builder.build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void unchangedSearchIsRevalidatedWith304() throws Exception {
+        String first = get(SEARCH);
+        String second = get(SEARCH);
+
+        assertEquals(first, second);
+        assertEquals(2, dispatcher.searchCalls.get());
+        assertEquals(1, dispatcher.notModified.get());
+        assertEquals(1, httpCache.getConditionalHitCount());
+        assertEquals(first.length(), httpCache.getBytesSaved());
+        assertEquals(0.5, httpCache.getHitRatio(), 0.001);
+    }
+
+    @Test
+    public void offlineSearchIsServedFromCache() throws Exception {
+        String first = get(SEARCH);
+
+        online = false;
+        String offline = get(SEARCH);
+
+        assertEquals(first, offline);
+        assertEquals(1, dispatcher.searchCalls.get());
+        assertEquals(1, httpCache.getOfflineHitCount());
+    }
+
+    @Test
+    public void failedNetworkCallFallsBackToCache() throws Exception {
+        String first = get(SEARCH);
+
+        server.shutdown();
+        String cached = get(SEARCH);
+
+        assertEquals(first, cached);
+        assertTrue(httpCache.getSize() > 0);
+    }
+
+    private String get(String path) throws Exception {
+        Request request = new Request.Builder().url(server.url(path)).build();
+        try (Response response = client.newCall(request).execute()) {
+            return response.body().string();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.orchtech.assem.rxrecap.network;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.plugins.RxJavaPlugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NetworkSchedulerTest {
+    private static final int LOOKUPS = 200;
+    private static final long LOOKUP_MILLIS = 20;
+    private static final int MAX_THREADS = 8;
+
+    private final List<NetworkScheduler> schedulers = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        RxJavaPlugins.reset();
+        for (NetworkScheduler scheduler : schedulers) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void priceFanOutStaysWithinTheThreadBound() {
+        NetworkScheduler network = newScheduler(MAX_THREADS, 1024, NetworkScheduler.SaturationPolicy.BLOCK);
+
+        assertEquals(MAX_THREADS, lookUpPrices(network.getScheduler()));
+        assertEquals(MAX_THREADS, network.getLargestThreadCount());
+        assertEquals(LOOKUPS, network.getStartedTaskCount());
+        // Most of them waited in the queue for a thread
+        assertTrue(network.getMaxQueueDepth() >= LOOKUPS - MAX_THREADS * 2);
+        assertTrue(network.getAverageWaitMillis() > LOOKUP_MILLIS);
+        assertTrue(network.getMaxWaitMillis() >= network.getAverageWaitMillis());
+        assertEquals(0, network.getSaturatedCount());
+        assertEquals(0, network.getQueueDepth());
+    }
+
+    @Test
+    public void callerRunsWhenSaturated() throws Exception {
+        NetworkScheduler network = newScheduler(1, 1, NetworkScheduler.SaturationPolicy.CALLER_RUNS);
+        CountDownLatch release = saturate(network);
+
+        String[] ranOn = {null};
+        network.getScheduler().scheduleDirect(() -> ranOn[0] = Thread.currentThread().getName());
+        assertEquals(Thread.currentThread().getName(), ranOn[0]);
+        assertEquals(1, network.getSaturatedCount());
+        release.countDown();
+    }
+
+    @Test
+    public void spillRunsOnIoWithoutWaiting() throws Exception {
+        NetworkScheduler network = newScheduler(1, 1, NetworkScheduler.SaturationPolicy.SPILL_TO_IO);
+        CountDownLatch release = saturate(network);
+
+        String[] ranOn = {null};
+        CountDownLatch ran = new CountDownLatch(1);
+        network.getScheduler().scheduleDirect(() -> {
+            ranOn[0] = Thread.currentThread().getName();
+            ran.countDown();
+        });
+        // Still saturated, the caller did not wait for room
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        assertTrue(ranOn[0].startsWith("RxCachedThreadScheduler"));
+        assertEquals(1, network.getSaturatedCount());
+        release.countDown();
+    }
+
+    @Test
+    public void sharedSchedulerNeverBlocks() {
+        assertEquals(NetworkScheduler.SaturationPolicy.SPILL_TO_IO, HttpCore.getNetworkScheduler().getSaturationPolicy());
+    }
+
+    @Test
+    public void abortDropsTheTaskAndReportsIt() throws Exception {
+        List<Throwable> errors = new ArrayList<>();
+        RxJavaPlugins.setErrorHandler(errors::add);
+        NetworkScheduler network = newScheduler(1, 1, NetworkScheduler.SaturationPolicy.ABORT);
+        CountDownLatch release = saturate(network);
+
+        boolean[] ran = {false};
+        network.getScheduler().scheduleDirect(() -> ran[0] = true);
+        release.countDown();
+        Thread.sleep(50);
+
+        assertFalse(ran[0]);
+        assertEquals(1, errors.size());
+        // RxJavaPlugins wraps what it could not deliver
+        assertTrue(errors.get(0).getCause() instanceof RejectedExecutionException);
+    }
+
+    @Test
+    public void blockWaitsForRoomExceptOnItsOwnThreads() throws Exception {
+        NetworkScheduler network = newScheduler(1, 1, NetworkScheduler.SaturationPolicy.BLOCK);
+        CountDownLatch release = saturate(network);
+
+        CountDownLatch ran = new CountDownLatch(1);
+        Thread caller = new Thread(() -> network.getScheduler().scheduleDirect(ran::countDown));
+        caller.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (caller.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(Thread.State.WAITING, caller.getState());
+
+        release.countDown();
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        caller.join(5000);
+        assertFalse(caller.isAlive());
+
+        // A task scheduling more work while the queue is full runs it itself instead of waiting on itself
+        String[] nested = {null};
+        String outer = Single.fromCallable(() -> {
+            CountDownLatch queued = new CountDownLatch(1);
+            network.getScheduler().scheduleDirect(queued::countDown);
+            network.getScheduler().scheduleDirect(() -> nested[0] = Thread.currentThread().getName());
+            return Thread.currentThread().getName();
+        }).subscribeOn(network.getScheduler()).blockingGet();
+        assertEquals(outer, nested[0]);
+    }
+
+    private NetworkScheduler newScheduler(int maxThreads, int queueCapacity, NetworkScheduler.SaturationPolicy policy) {
+        NetworkScheduler scheduler = new NetworkScheduler("test-network", maxThreads, queueCapacity, policy);
+        schedulers.add(scheduler);
+        return scheduler;
+    }
+
+    /**
+     * Occupies the only thread and fills the queue of one, until the returned latch is released
+     */
+    private static CountDownLatch saturate(NetworkScheduler network) throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch running = new CountDownLatch(1);
+        network.getScheduler().scheduleDirect(() -> {
+            running.countDown();
+            await(release);
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        network.getScheduler().scheduleDirect(() -> await(release));
+        assertEquals(1, network.getQueueDepth());
+        return release;
+    }
+
+    /**
+     * LOOKUPS lookups that block their thread, like a synchronous Retrofit call
+     * Returns how many ran at the same time at most
+     */
+    private static int lookUpPrices(Scheduler scheduler) {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        Observable.range(0, LOOKUPS)
+                .flatMap(i -> Single.fromCallable(() -> {
+                    int now = running.incrementAndGet();
+                    peak.accumulateAndGet(now, Math::max);
+                    Thread.sleep(LOOKUP_MILLIS);
+                    running.decrementAndGet();
+                    return i;
+                }).subscribeOn(scheduler).toObservable())
+                .blockingLast();
+        return peak.get();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.orchtech.assem.rxrecap.network;
+
+import com.orchtech.assem.rxrecap.fligh_app.FakeFlightsDispatcher;
+import com.orchtech.assem.rxrecap.fligh_app.network.FlightsApiService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ResilienceTest {
+    private static final int CALLS = 400;
+    private static final double RETRY_RATIO = 0.2;
+    private static final int MIN_RETRIES = 10;
+    private static final long OPEN_MILLIS = 1000;
+    // The harness runs on the real clock, a lookup starts every ARRIVAL_MILLIS whatever happened to the last ones
+    private static final long ARRIVAL_MILLIS = 5;
+    private static final long HARNESS_OPEN_MILLIS = 200;
+    private static final int SUCCEEDED = 0;
+    private static final int FAILED = 1;
+    private static final int FAILED_FAST = 2;
+
+    private MockWebServer server;
+    private FaultInjectingDispatcher faults;
+    private TestScheduler clock;
+
+    @Before
+    public void setUp() throws Exception {
+        faults = new FaultInjectingDispatcher(new FakeFlightsDispatcher(10), 0.5, 42);
+        server = new MockWebServer();
+        server.setDispatcher(faults);
+        server.start();
+        clock = new TestScheduler();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void breakerOpensFailsFastAndProbes() {
+        CircuitBreaker breaker = new CircuitBreaker("GET x", 10, 4, 0.5, OPEN_MILLIS, 1, clock);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(breaker.tryAcquire());
+            if (i % 2 == 0) {
+                breaker.onSuccess();
+            } else {
+                breaker.onFailure();
+            }
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+
+        // One probe after the open time, the next caller still fails fast until it answers
+        clock.advanceTimeBy(OPEN_MILLIS, TimeUnit.MILLISECONDS);
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        clock.advanceTimeBy(OPEN_MILLIS, TimeUnit.MILLISECONDS);
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(2, breaker.getOpenedCount());
+        assertEquals(2, breaker.getRejectedCount());
+    }
+
+    @Test
+    public void retriesBackOffWithJitterWithinTheBudget() {
+        Resilience resilience = new Resilience(4, 100, 1000, new RetryBudget(0.5, 2),
+                endpoint -> new CircuitBreaker(endpoint, 100, 100, 1, OPEN_MILLIS, clock), clock);
+        for (int retry = 1; retry <= 6; retry++) {
+            long ceiling = Math.min(1000, 100L << (retry - 1));
+            for (int i = 0; i < 50; i++) {
+                long delay = resilience.backoffMillis(retry);
+                assertTrue(delay >= 0 && delay <= ceiling);
+            }
+        }
+
+        int[] subscriptions = {0};
+        Single<String> failing = Single.defer(() -> {
+            subscriptions[0]++;
+            return Single.<String>error(new IOException("reset"));
+        });
+        TestObserver<String> first = failing.compose(resilience.<String>single("GET x", true)).test();
+        clock.advanceTimeBy(10, TimeUnit.SECONDS);
+        first.assertError(IOException.class);
+        // The two retries the budget starts with, the third one is denied
+        assertEquals(3, subscriptions[0]);
+
+        subscriptions[0] = 0;
+        TestObserver<String> second = failing.compose(resilience.<String>single("GET x", true)).test();
+        clock.advanceTimeBy(10, TimeUnit.SECONDS);
+        second.assertError(IOException.class);
+        // The call earned half a token, not enough for a retry
+        assertEquals(1, subscriptions[0]);
+        assertEquals(2, resilience.getBudget().getDeniedCount());
+
+        // Not something a retry fixes
+        subscriptions[0] = 0;
+        Single.<String>defer(() -> {
+            subscriptions[0]++;
+            return Single.error(new IllegalStateException("bad json"));
+        }).compose(resilience.<String>single("GET y", true)).test().assertError(IllegalStateException.class);
+        assertEquals(1, subscriptions[0]);
+    }
+
+    @Test
+    public void severalProbesDecideWhetherToClose() {
+        CircuitBreaker breaker = new CircuitBreaker("GET x", 10, 10, 0.8, OPEN_MILLIS, 5, clock);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        // Five probes go out together, a cancelled one makes room for another
+        clock.advanceTimeBy(OPEN_MILLIS, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(breaker.tryAcquire());
+        }
+        assertFalse(breaker.tryAcquire());
+        breaker.onCancel();
+        assertTrue(breaker.tryAcquire());
+
+        // One failed probe out of five is not enough to open it again, two successes close it
+        breaker.onFailure();
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure();
+        }
+        clock.advanceTimeBy(OPEN_MILLIS, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(3, breaker.getOpenedCount());
+    }
+
+    @Test
+    public void halfOfAllRequestsFailingStillGetsMoreThrough() {
+        Outcome plain = lookUpPrices(null);
+        Resilience resilience = harnessResilience();
+        Outcome resilient = lookUpPrices(resilience);
+
+        assertEquals(CALLS, plain.requests);
+        assertEquals(CALLS, resilient.succeeded + resilient.failed + resilient.failedFast);
+        // Retries get calls through that failed at random, the breaker does not take them away again
+        assertTrue(plain + " / " + resilient, resilient.succeeded > plain.succeeded);
+        assertTrue(resilient.toString(), resilient.failedFast < CALLS / 10);
+        // Retries cannot multiply the load
+        assertTrue(resilient.toString(), resilient.requests <= CALLS * (1 + RETRY_RATIO) + MIN_RETRIES);
+    }
+
+    @Test
+    public void serverDownOpensTheBreakerUntilItRecovers() throws Exception {
+        faults.setFailureRate(1);
+        Resilience resilience = harnessResilience();
+        Outcome down = lookUpPrices(resilience);
+        CircuitBreaker breaker = resilience.getBreaker("GET airline-tickets-price.php");
+
+        assertEquals(0, down.succeeded);
+        assertTrue(down.toString(), down.failedFast > 0);
+        assertTrue(breaker.getOpenedCount() > 0);
+        // The breaker takes load off the server, retries included it gets fewer requests than calls made
+        assertTrue(down.toString(), down.requests < CALLS);
+
+        // Once the server is healthy the breaker lets calls through again, only the calls made
+        // while its first probes are out still fail fast
+        faults.setFailureRate(0);
+        Thread.sleep(HARNESS_OPEN_MILLIS);
+        Outcome recovered = lookUpPrices(resilience);
+        assertEquals(0, recovered.failed);
+        assertTrue(recovered.toString(), recovered.succeeded > CALLS * 0.9);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    /**
+     * The default breaker thresholds with a short open time, so the tests can wait it out
+     */
+    private static Resilience harnessResilience() {
+        return new Resilience(3, 1, 8, new RetryBudget(RETRY_RATIO, MIN_RETRIES),
+                endpoint -> new CircuitBreaker(endpoint, 20, 20, 0.8, HARNESS_OPEN_MILLIS, 5, Schedulers.computation()),
+                Schedulers.computation());
+    }
+
+    /**
+     * CALLS price lookups arriving at a steady rate
+     */
+    private Outcome lookUpPrices(Resilience resilience) {
+        Retrofit.Builder retrofit = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(GsonConverterFactory.create());
+        if (resilience != null) {
+            retrofit.addCallAdapterFactory(ResilientCallAdapterFactory.create(resilience));
+        }
+        FlightsApiService apiService = retrofit
+                .addCallAdapterFactory(AsyncCallAdapterFactory.create())
+                .build()
+                .create(FlightsApiService.class);
+
+        Outcome outcome = new Outcome();
+        int requestsBefore = faults.requests.get();
+        Observable.interval(ARRIVAL_MILLIS, TimeUnit.MILLISECONDS, Schedulers.computation())
+                .take(CALLS)
+                .flatMap(i -> apiService.getPrice(FakeFlightsDispatcher.flightNumber((int) (i % 10)), "DEL", "HYD")
+                        .map(price -> SUCCEEDED)
+                        .onErrorReturn(error -> error instanceof CircuitOpenException ? FAILED_FAST : FAILED)
+                        .subscribeOn(Schedulers.io())
+                        .toObservable())
+                .blockingForEach(result -> {
+                    if (result == SUCCEEDED) {
+                        outcome.succeeded++;
+                    } else if (result == FAILED_FAST) {
+                        outcome.failedFast++;
+                    } else {
+                        outcome.failed++;
+                    }
+                });
+        outcome.requests = faults.requests.get() - requestsBefore;
+        return outcome;
+    }
+
+    private static class Outcome {
+        int succeeded;
+        int failed;
+        int failedFast;
+        int requests;
+
+        @Override
+        public String toString() {
+            return "succeeded " + succeeded + ", failed " + failed + ", failed fast " + failedFast
+                    + ", server requests " + requests;
+        }
+    }
+}
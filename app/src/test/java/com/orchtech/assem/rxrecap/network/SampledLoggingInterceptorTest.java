@@ -0,0 +1,148 @@
+package com.orchtech.assem.rxrecap.network;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class SampledLoggingInterceptorTest {
+    private static final long LOG_TIMEOUT_SECONDS = 5;
+
+    private MockWebServer server;
+    private BlockingQueue<String> lines;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        lines = new LinkedBlockingQueue<>();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void logsSampledAndFailedCalls() throws Exception {
+        // Drawn once per call: in, out, in, out (but fails), in
+        OkHttpClient client = client(new SampledLoggingInterceptor(lines::add, draws(0.1, 0.9, 0.4, 0.9, 0.2))
+                .setSampleRate(0.5));
+        get(client, "/a", new MockResponse().setBody("a"));
+        get(client, "/b", new MockResponse().setBody("b"));
+        get(client, "/c", new MockResponse().setBody("c"));
+        get(client, "/d", new MockResponse().setResponseCode(500).setBody("d"));
+        get(client, "/e", new MockResponse().setBody("e"));
+
+        List<String> logged = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            logged.add(nextLine());
+        }
+        assertTrue(logged.get(0).contains("/a"));
+        assertTrue(logged.get(1).contains("/c"));
+        assertTrue(logged.get(2).contains("/d") && logged.get(2).contains("<-- 500"));
+        assertTrue(logged.get(3).contains("/e"));
+        assertTrue(lines.isEmpty());
+    }
+
+    @Test
+    public void peeksAtMostMaxBodyBytesAndLeavesTheBodyReadable() throws Exception {
+        String body = body(5000);
+        OkHttpClient client = client(new SampledLoggingInterceptor(lines::add, draws(0)).setSampleRate(1));
+
+        assertEquals(body, get(client, "/tickets", new MockResponse().setBody(body)));
+
+        String line = nextLine();
+        String logged = line.substring(line.indexOf('\n', line.indexOf("<-- 200")) + 1);
+        assertEquals(body.substring(0, 2048) + "...", logged);
+    }
+
+    @Test
+    public void countsLinesDroppedWhileTheWriterIsBehind() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SampledLoggingInterceptor blocking = new SampledLoggingInterceptor(message -> {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            lines.add(message);
+        }, draws(0)).setSampleRate(1);
+        OkHttpClient client = client(blocking);
+
+        long droppedBefore = SampledLoggingInterceptor.getDroppedCount();
+        try {
+            get(client, "/first", new MockResponse().setBody("1"));
+            writing.await();
+            // The writer thread is busy with the first line, 256 more fill its queue and the rest are dropped
+            for (int i = 0; i < 256 + 3; i++) {
+                get(client, "/next", new MockResponse().setBody("2"));
+            }
+            assertEquals(3, SampledLoggingInterceptor.getDroppedCount() - droppedBefore);
+        } finally {
+            release.countDown();
+        }
+        for (int i = 0; i < 257; i++) {
+            assertNotNull(lines.poll(LOG_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+    }
+
+    private OkHttpClient client(SampledLoggingInterceptor interceptor) {
+        return new OkHttpClient.Builder().addInterceptor(interceptor).build();
+    }
+
+    private String get(OkHttpClient client, String path, MockResponse response) throws Exception {
+        server.enqueue(response);
+        Request request = new Request.Builder().url(server.url(path)).build();
+        try (Response received = client.newCall(request).execute()) {
+            return received.body().string();
+        }
+    }
+
+    private String nextLine() throws InterruptedException {
+        String line = lines.poll(LOG_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertNotNull("nothing logged", line);
+        return line;
+    }
+
+    private static String body(int length) {
+        StringBuilder body = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            body.append((char) ('a' + i % 26));
+        }
+        return body.toString();
+    }
+
+    /**
+     * Returns the given values from nextDouble(), the last one from then on
+     */
+    private static Random draws(final double... values) {
+        return new Random() {
+            private int next;
+
+            @Override
+            public double nextDouble() {
+                return values[Math.min(next++, values.length - 1)];
+            }
+        };
+    }
+}
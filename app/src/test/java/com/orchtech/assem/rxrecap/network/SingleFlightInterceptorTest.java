@@ -0,0 +1,404 @@
+package com.orchtech.assem.rxrecap.network;
+
+import com.orchtech.assem.rxrecap.fligh_app.FakeFlightsDispatcher;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Connection;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SingleFlightInterceptorTest {
+    private static final int CALLERS = 8;
+
+    private MockWebServer server;
+    private FakeFlightsDispatcher dispatcher;
+    private SingleFlightInterceptor singleFlight;
+    private OkHttpClient client;
+    private final AtomicInteger networkCalls = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        dispatcher = new FakeFlightsDispatcher(200);
+        dispatcher.setLatencyMillis(300);
+        server = new MockWebServer();
+        server.setDispatcher(dispatcher);
+        server.start();
+
+        singleFlight = new SingleFlightInterceptor();
+        client = new OkHttpClient.Builder()
+                .addInterceptor(singleFlight)
+                .build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void identicalGetsShareOneCall() throws Exception {
+        String content = content(3 * 8192 + 100);
+        CountDownLatch leaderCalling = new CountDownLatch(1);
+        CountDownLatch respond = new CountDownLatch(1);
+        // The leader's response is held until every follower waits for it
+        Responder network = request -> {
+            leaderCalling.countDown();
+            respond.await();
+            return response(request, new TrackedSource(content));
+        };
+        Request request = request();
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<String>> bodies = new ArrayList<>();
+            bodies.add(executor.submit(() -> read(singleFlight.intercept(new FakeChain(request, network)))));
+            leaderCalling.await();
+            for (int i = 1; i < CALLERS; i++) {
+                FakeChain followerChain = new FakeChain(request, network);
+                bodies.add(executor.submit(() -> read(singleFlight.intercept(followerChain))));
+                followerChain.call.polled.await();
+            }
+            respond.countDown();
+
+            for (Future<String> body : bodies) {
+                assertEquals(content, body.get());
+            }
+            assertEquals(1, networkCalls.get());
+            assertEquals(CALLERS - 1, singleFlight.getDedupHitCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void differentUrlsAreNotShared() throws Exception {
+        get("/airline-tickets.php?from=DEL&to=HYD");
+        get("/airline-tickets.php?from=DEL&to=BOM");
+
+        assertEquals(2, dispatcher.searchCalls.get());
+        assertEquals(0, singleFlight.getDedupHitCount());
+    }
+
+    @Test
+    public void followerKeepsReadingAfterTheLeaderClosesItsBody() throws Exception {
+        String content = content(3 * 8192 + 100);
+        TrackedSource upstream = new TrackedSource(content);
+        Responder network = request -> response(request, upstream);
+        Request request = request();
+
+        Response leader = singleFlight.intercept(new FakeChain(request, network));
+        Response follower = singleFlight.intercept(new FakeChain(request, network));
+        assertEquals(1, singleFlight.getDedupHitCount());
+
+        assertEquals(content.substring(0, 10), leader.body().source().readUtf8(10));
+        leader.close();
+        assertFalse(upstream.closed);
+
+        assertEquals(content, follower.body().string());
+        assertTrue(upstream.closed);
+        assertEquals(1, networkCalls.get());
+    }
+
+    @Test
+    public void closingEveryReaderEarlyEndsTheFlight() throws Exception {
+        TrackedSource upstream = new TrackedSource(content(3 * 8192));
+        Responder network = request -> response(request, upstream);
+        Request request = request();
+
+        Response leader = singleFlight.intercept(new FakeChain(request, network));
+        leader.body().source().readUtf8(10);
+        leader.close();
+        assertTrue(upstream.closed);
+
+        // Nothing is left to share, the next caller leads a call of its own
+        singleFlight.intercept(new FakeChain(request, request2 -> response(request2, new TrackedSource("{}")))).close();
+        assertEquals(2, singleFlight.getLeaderCount());
+        assertEquals(0, singleFlight.getDedupHitCount());
+    }
+
+    @Test
+    public void cancelledFollowerStopsWaitingForTheLeader() throws Exception {
+        CountDownLatch leaderCalling = new CountDownLatch(1);
+        CountDownLatch respond = new CountDownLatch(1);
+        Responder network = request -> {
+            leaderCalling.countDown();
+            respond.await();
+            return response(request, new TrackedSource("{}"));
+        };
+        Request request = request();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Response> leader = executor.submit(() -> singleFlight.intercept(new FakeChain(request, network)));
+            leaderCalling.await();
+
+            FakeChain followerChain = new FakeChain(request, network);
+            Future<Response> follower = executor.submit(() -> singleFlight.intercept(followerChain));
+            // The follower only asks its call while it waits for the leader
+            followerChain.call.polled.await();
+            followerChain.call.cancel();
+
+            try {
+                follower.get();
+                fail("expected the follower to be cancelled");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+            assertFalse(leader.isDone());
+
+            respond.countDown();
+            leader.get().close();
+            assertEquals(1, networkCalls.get());
+            assertEquals(0, singleFlight.getDedupHitCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void leaderFailureFailsItsFollowers() throws Exception {
+        CountDownLatch leaderCalling = new CountDownLatch(1);
+        CountDownLatch respond = new CountDownLatch(1);
+        IOException reset = new IOException("reset");
+        Responder network = request -> {
+            leaderCalling.countDown();
+            respond.await();
+            throw reset;
+        };
+        Request request = request();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Response> leader = executor.submit(() -> singleFlight.intercept(new FakeChain(request, network)));
+            leaderCalling.await();
+            FakeChain followerChain = new FakeChain(request, network);
+            Future<Response> follower = executor.submit(() -> singleFlight.intercept(followerChain));
+            followerChain.call.polled.await();
+            respond.countDown();
+
+            try {
+                leader.get();
+                fail("expected the leader to fail");
+            } catch (ExecutionException e) {
+                assertSame(reset, e.getCause());
+            }
+            try {
+                follower.get();
+                fail("expected the follower to fail");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+                assertSame(reset, e.getCause().getCause());
+            }
+            assertEquals(1, networkCalls.get());
+
+            // The failed flight is over, the next caller tries again
+            singleFlight.intercept(new FakeChain(request, request2 -> response(request2, new TrackedSource("{}")))).close();
+            assertEquals(2, singleFlight.getLeaderCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private String get(String path) throws Exception {
+        Request request = new Request.Builder().url(server.url(path)).build();
+        try (Response response = client.newCall(request).execute()) {
+            return response.body().string();
+        }
+    }
+
+    private static String read(Response response) throws IOException {
+        try (Response closed = response) {
+            return closed.body().string();
+        }
+    }
+
+    private static Request request() {
+        return new Request.Builder().url("http://flights.test/airline-tickets.php?from=DEL&to=HYD").build();
+    }
+
+    private static Response response(Request request, TrackedSource body) {
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .body(ResponseBody.create(MediaType.parse("application/json"), -1, Okio.buffer(body)))
+                .build();
+    }
+
+    private static String content(int length) {
+        StringBuilder content = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            content.append((char) ('a' + i % 26));
+        }
+        return content.toString();
+    }
+
+    /**
+     * The rest of the chain, called in place of the network
+     */
+    private interface Responder {
+        Response respond(Request request) throws Exception;
+    }
+
+    /**
+     * Stands in for the rest of the interceptor chain, the call can be cancelled by the test
+     */
+    private class FakeChain implements Interceptor.Chain {
+        final Request request;
+        final Responder network;
+        final FakeCall call;
+
+        FakeChain(Request request, Responder network) {
+            this.request = request;
+            this.network = network;
+            this.call = new FakeCall(request);
+        }
+
+        @Override
+        public Request request() {
+            return request;
+        }
+
+        @Override
+        public Response proceed(Request request) throws IOException {
+            networkCalls.incrementAndGet();
+            try {
+                return network.respond(request);
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        public Connection connection() {
+            return null;
+        }
+
+        @Override
+        public Call call() {
+            return call;
+        }
+
+        @Override
+        public int connectTimeoutMillis() {
+            return 0;
+        }
+
+        @Override
+        public Interceptor.Chain withConnectTimeout(int timeout, TimeUnit unit) {
+            return this;
+        }
+
+        @Override
+        public int readTimeoutMillis() {
+            return 0;
+        }
+
+        @Override
+        public Interceptor.Chain withReadTimeout(int timeout, TimeUnit unit) {
+            return this;
+        }
+
+        @Override
+        public int writeTimeoutMillis() {
+            return 0;
+        }
+
+        @Override
+        public Interceptor.Chain withWriteTimeout(int timeout, TimeUnit unit) {
+            return this;
+        }
+    }
+
+    private static class FakeCall implements Call {
+        // Counted down the first time the call is asked whether it was cancelled
+        final CountDownLatch polled = new CountDownLatch(1);
+        final Request request;
+        volatile boolean canceled;
+
+        FakeCall(Request request) {
+            this.request = request;
+        }
+
+        @Override
+        public Request request() {
+            return request;
+        }
+
+        @Override
+        public Response execute() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void enqueue(Callback responseCallback) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void cancel() {
+            canceled = true;
+        }
+
+        @Override
+        public boolean isExecuted() {
+            return true;
+        }
+
+        @Override
+        public boolean isCanceled() {
+            polled.countDown();
+            return canceled;
+        }
+
+        @Override
+        public Call clone() {
+            return new FakeCall(request);
+        }
+    }
+
+    private static class TrackedSource extends ForwardingSource {
+        volatile boolean closed;
+
+        TrackedSource(String content) {
+            super(new Buffer().writeUtf8(content));
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+}
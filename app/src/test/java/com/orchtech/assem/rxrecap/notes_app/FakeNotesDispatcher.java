@@ -0,0 +1,271 @@
+package com.orchtech.assem.rxrecap.notes_app;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Local stand-in for the notes api used with MockWebServer
+ * Keeps the notes in memory and serves register, notes/all, notes/changes, notes/new, PUT and DELETE notes/{id}
+ * Every change bumps a revision, notes/changes?since= returns what changed after it, deletes as tombstones,
+ * at most limit entries a page
+ */
+public class FakeNotesDispatcher extends Dispatcher {
+    public static final String TIMESTAMP = "2018-02-21 00:15:42";
+    public static final String API_KEY = "test-key";
+
+    public final AtomicInteger fetchAllCalls = new AtomicInteger();
+    public final AtomicInteger writeCalls = new AtomicInteger();
+    public final AtomicInteger changesCalls = new AtomicInteger();
+    // Notes and tombstones in the last notes/changes page
+    public final AtomicInteger lastChangesCount = new AtomicInteger();
+    // Requests refused with a 401 for a missing or wrong API key
+    public final AtomicInteger unauthorizedCalls = new AtomicInteger();
+
+    private final Map<Integer, String> notes = new TreeMap<>();
+    private final Map<Integer, Long> revisions = new TreeMap<>();
+    private final Map<Integer, Long> tombstones = new TreeMap<>();
+    private final Set<Integer> locked = new HashSet<>();
+    private long revision;
+    private volatile boolean deltaEnabled = true;
+    private int nextId = 1;
+    private volatile long latencyMillis;
+    private volatile boolean failing;
+    private volatile boolean requireApiKey;
+    private volatile boolean writesFailing;
+
+    public synchronized void addNotes(int count) {
+        for (int i = 0; i < count; i++) {
+            put(nextId, "note " + nextId);
+            nextId++;
+        }
+    }
+
+    /**
+     * A change made from another device
+     */
+    public synchronized void editNote(int id, String note) {
+        put(id, note);
+    }
+
+    public synchronized void removeNote(int id) {
+        remove(id);
+    }
+
+    /**
+     * Answers notes/changes with a 404 while disabled, like a server without delta sync
+     */
+    public void setDeltaEnabled(boolean deltaEnabled) {
+        this.deltaEnabled = deltaEnabled;
+    }
+
+    private void put(int id, String note) {
+        notes.put(id, note);
+        revisions.put(id, ++revision);
+        tombstones.remove(id);
+    }
+
+    private void remove(int id) {
+        notes.remove(id);
+        revisions.remove(id);
+        tombstones.put(id, ++revision);
+    }
+
+    public synchronized String getNote(int id) {
+        return notes.get(id);
+    }
+
+    public synchronized int getNoteCount() {
+        return notes.size();
+    }
+
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Answers requests other than register without the API key with a 401 while set
+     */
+    public void setRequireApiKey(boolean requireApiKey) {
+        this.requireApiKey = requireApiKey;
+    }
+
+    /**
+     * Refuses changes to the note with a 403 while locked, like a note shared read-only
+     */
+    public synchronized void setLocked(int id, boolean locked) {
+        if (locked) {
+            this.locked.add(id);
+        } else {
+            this.locked.remove(id);
+        }
+    }
+
+    /**
+     * Answers creates, updates and deletes with a 503 while set, reads still work
+     */
+    public void setWritesFailing(boolean writesFailing) {
+        this.writesFailing = writesFailing;
+    }
+
+    /**
+     * Answers every request with a 503 while set
+     */
+    public void setFailing(boolean failing) {
+        this.failing = failing;
+    }
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) {
+        MockResponse response;
+        if (failing) {
+            response = new MockResponse().setResponseCode(503);
+        } else if (requireApiKey && !request.getPath().startsWith("/notes/user/register")
+                && !API_KEY.equals(request.getHeader("Authorization"))) {
+            unauthorizedCalls.incrementAndGet();
+            response = new MockResponse().setResponseCode(401);
+        } else {
+            response = handle(request);
+        }
+        if (latencyMillis > 0) {
+            // MockWebServer 3.10 waits out the body delay before the status line, headersDelay is not used
+            response.setBodyDelay(latencyMillis, TimeUnit.MILLISECONDS);
+        }
+        return response;
+    }
+
+    private synchronized MockResponse handle(RecordedRequest request) {
+        String path = request.getRequestUrl().encodedPath();
+        String method = request.getMethod();
+
+        if (path.equals("/notes/user/register")) {
+            return json("{\"api_key\":\"" + API_KEY + "\"}");
+        }
+        if (path.equals("/notes/all") && method.equals("GET")) {
+            fetchAllCalls.incrementAndGet();
+            StringBuilder body = new StringBuilder("[");
+            for (Map.Entry<Integer, String> entry : notes.entrySet()) {
+                if (body.length() > 1) {
+                    body.append(',');
+                }
+                body.append(noteJson(entry.getKey(), entry.getValue()));
+            }
+            return json(body.append(']').toString());
+        }
+        if (path.equals("/notes/changes") && method.equals("GET")) {
+            changesCalls.incrementAndGet();
+            if (!deltaEnabled) {
+                return new MockResponse().setResponseCode(404);
+            }
+            String limit = request.getRequestUrl().queryParameter("limit");
+            return json(changesJson(Long.parseLong(request.getRequestUrl().queryParameter("since")),
+                    limit == null ? Integer.MAX_VALUE : Integer.parseInt(limit)));
+        }
+        if (writesFailing && !method.equals("GET")) {
+            return new MockResponse().setResponseCode(503);
+        }
+        if (path.equals("/notes/new") && method.equals("POST")) {
+            writeCalls.incrementAndGet();
+            int id = nextId++;
+            put(id, formField(request, "note"));
+            return json(noteJson(id, notes.get(id)));
+        }
+        if (path.startsWith("/notes/")) {
+            writeCalls.incrementAndGet();
+            int id = Integer.parseInt(path.substring("/notes/".length()));
+            if (!notes.containsKey(id)) {
+                return new MockResponse().setResponseCode(404).setBody("{\"error\":\"Note not found\"}");
+            }
+            if (locked.contains(id)) {
+                return new MockResponse().setResponseCode(403).setBody("{\"error\":\"Note is read-only\"}");
+            }
+            if (method.equals("PUT")) {
+                put(id, formField(request, "note"));
+                return new MockResponse().setResponseCode(200);
+            }
+            if (method.equals("DELETE")) {
+                remove(id);
+                return new MockResponse().setResponseCode(200);
+            }
+        }
+        return new MockResponse().setResponseCode(404);
+    }
+
+    /**
+     * Changes after since in revision order, cut after limit entries
+     */
+    private String changesJson(long since, int limit) {
+        // A first sync has nothing to delete
+        TreeMap<Long, Integer> changed = new TreeMap<>();
+        for (Map.Entry<Integer, Long> entry : revisions.entrySet()) {
+            if (entry.getValue() > since) {
+                changed.put(entry.getValue(), entry.getKey());
+            }
+        }
+        if (since > 0) {
+            for (Map.Entry<Integer, Long> entry : tombstones.entrySet()) {
+                if (entry.getValue() > since) {
+                    changed.put(entry.getValue(), -entry.getKey());
+                }
+            }
+        }
+
+        StringBuilder notesJson = new StringBuilder();
+        StringBuilder deletedJson = new StringBuilder();
+        long cursor = revision;
+        int count = 0;
+        for (Map.Entry<Long, Integer> entry : changed.entrySet()) {
+            if (count == limit) {
+                break;
+            }
+            int id = entry.getValue();
+            if (id > 0) {
+                notesJson.append(notesJson.length() > 0 ? "," : "").append(noteJson(id, notes.get(id)));
+            } else {
+                deletedJson.append(deletedJson.length() > 0 ? "," : "").append(-id);
+            }
+            cursor = entry.getKey();
+            count++;
+        }
+        boolean hasMore = count < changed.size();
+        if (!hasMore) {
+            cursor = revision;
+        }
+        lastChangesCount.set(count);
+        return "{\"notes\":[" + notesJson + "],\"deleted\":[" + deletedJson + "],\"cursor\":" + cursor
+                + ",\"has_more\":" + hasMore + "}";
+    }
+
+    private static String formField(RecordedRequest request, String name) {
+        try {
+            for (String pair : request.getBody().readUtf8().split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0 && pair.substring(0, eq).equals(name)) {
+                    return URLDecoder.decode(pair.substring(eq + 1), "UTF-8");
+                }
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+        return null;
+    }
+
+    private static String noteJson(int id, String note) {
+        return "{\"id\":" + id + ",\"note\":\"" + note + "\",\"timestamp\":\"" + TIMESTAMP + "\"}";
+    }
+
+    private static MockResponse json(String body) {
+        return new MockResponse()
+                .setHeader("Content-Type", "application/json")
+                .setBody(body);
+    }
+}
@@ -0,0 +1,106 @@
+package com.orchtech.assem.rxrecap.notes_app.data;
+
+import com.orchtech.assem.rxrecap.notes_app.network.model.Note;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * NoteStore for JVM tests, SqliteNoteStore needs a device
+ * Reads return copies, the way rows read from a database are new objects
+ */
+public class InMemoryNoteStore implements NoteStore {
+    private final Map<Integer, Note> notes = new TreeMap<>(NoteOrder::compareIds);
+    private long syncCursor;
+
+    @Override
+    public synchronized List<Note> loadAll() {
+        List<Note> loaded = new ArrayList<>(notes.size());
+        for (Note note : notes.values()) {
+            loaded.add(copy(note));
+        }
+        return loaded;
+    }
+
+    @Override
+    public synchronized int[] loadIds() {
+        int[] ids = new int[notes.size()];
+        int i = 0;
+        for (int id : notes.keySet()) {
+            ids[i++] = id;
+        }
+        return ids;
+    }
+
+    @Override
+    public synchronized List<Note> loadNotes(int[] noteIds) {
+        List<Note> loaded = new ArrayList<>(noteIds.length);
+        for (int id : noteIds) {
+            Note note = notes.get(id);
+            if (note != null) {
+                loaded.add(copy(note));
+            }
+        }
+        return loaded;
+    }
+
+    @Override
+    public synchronized Note load(int noteId) {
+        Note note = notes.get(noteId);
+        return note == null ? null : copy(note);
+    }
+
+    @Override
+    public synchronized int count() {
+        return notes.size();
+    }
+
+    @Override
+    public synchronized long getSyncCursor() {
+        return syncCursor;
+    }
+
+    @Override
+    public synchronized void replaceAll(List<Note> replacement, long syncCursor) {
+        notes.clear();
+        for (Note note : replacement) {
+            notes.put(note.getId(), note);
+        }
+        this.syncCursor = syncCursor;
+    }
+
+    @Override
+    public synchronized void applyChanges(List<Note> changed, List<Integer> deleted, long syncCursor) {
+        for (Note note : changed) {
+            notes.put(note.getId(), note);
+        }
+        for (int noteId : deleted) {
+            notes.remove(noteId);
+        }
+        this.syncCursor = syncCursor;
+    }
+
+    @Override
+    public synchronized void upsert(Note note) {
+        notes.put(note.getId(), note);
+    }
+
+    @Override
+    public synchronized void updateText(int noteId, String note) {
+        Note old = notes.get(noteId);
+        if (old != null) {
+            notes.put(noteId, new Note(noteId, note, old.getTimestamp()));
+        }
+    }
+
+    @Override
+    public synchronized void delete(int noteId) {
+        notes.remove(noteId);
+    }
+
+    private static Note copy(Note note) {
+        return new Note(note.getId(), note.getNote(), note.getTimestamp());
+    }
+}
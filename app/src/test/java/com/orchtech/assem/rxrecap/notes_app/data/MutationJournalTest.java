@@ -0,0 +1,160 @@
+package com.orchtech.assem.rxrecap.notes_app.data;
+
+import com.orchtech.assem.rxrecap.notes_app.data.MutationJournal.Mutation;
+import com.orchtech.assem.rxrecap.notes_app.network.model.Note;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MutationJournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void coalescesChangesToTheSameNote() throws Exception {
+        MutationJournal journal = new MutationJournal(folder.newFile());
+
+        journal.append(MutationJournal.CREATE, -1, "a");
+        journal.append(MutationJournal.UPDATE, -1, "b");
+        journal.append(MutationJournal.UPDATE, -1, "c");
+        journal.append(MutationJournal.CREATE, -2, "gone");
+        journal.append(MutationJournal.DELETE, -2, null);
+        journal.append(MutationJournal.UPDATE, 5, "x");
+        journal.append(MutationJournal.UPDATE, 5, "y");
+        journal.append(MutationJournal.UPDATE, 6, "x");
+        journal.append(MutationJournal.DELETE, 6, null);
+
+        List<Mutation> pending = journal.pending();
+        assertEquals(3, pending.size());
+        assertMutation(pending.get(0), MutationJournal.CREATE, -1, "c");
+        assertMutation(pending.get(1), MutationJournal.UPDATE, 5, "y");
+        assertMutation(pending.get(2), MutationJournal.DELETE, 6, null);
+        assertEquals(5, journal.getCoalescedCount());
+    }
+
+    @Test
+    public void changesMadeWhileSendingQueueBehindAndMoveToTheServerId() throws Exception {
+        File file = folder.newFile();
+        MutationJournal journal = new MutationJournal(file);
+
+        journal.append(MutationJournal.CREATE, -1, "a");
+        assertMutation(journal.take(), MutationJournal.CREATE, -1, "a");
+        journal.append(MutationJournal.UPDATE, -1, "b");
+        assertNull(journal.take());
+        journal.ack(42);
+
+        List<Mutation> pending = journal.pending();
+        assertEquals(1, pending.size());
+        assertMutation(pending.get(0), MutationJournal.UPDATE, 42, "b");
+
+        List<Mutation> replayed = new MutationJournal(file).pending();
+        assertEquals(1, replayed.size());
+        assertMutation(replayed.get(0), MutationJournal.UPDATE, 42, "b");
+    }
+
+    @Test
+    public void survivesProcessDeathWithAChangeInFlight() throws Exception {
+        File file = folder.newFile();
+        MutationJournal journal = new MutationJournal(file);
+        journal.append(MutationJournal.CREATE, journal.nextTempId(), "a");
+        journal.append(MutationJournal.UPDATE, 7, "b");
+        journal.take();
+        journal.append(MutationJournal.CREATE, journal.nextTempId(), "c");
+        // A line torn by the crash
+        FileWriter torn = new FileWriter(file, true);
+        torn.write("{\"op\":\"upd");
+        torn.close();
+
+        MutationJournal reopened = new MutationJournal(file);
+
+        List<Mutation> pending = reopened.pending();
+        assertEquals(3, pending.size());
+        assertMutation(pending.get(0), MutationJournal.CREATE, -1, "a");
+        assertMutation(pending.get(1), MutationJournal.UPDATE, 7, "b");
+        assertMutation(pending.get(2), MutationJournal.CREATE, -2, "c");
+        assertEquals(-3, reopened.nextTempId());
+        // Sent again first
+        assertMutation(reopened.take(), MutationJournal.CREATE, -1, "a");
+    }
+
+    @Test
+    public void refusedCreateDropsTheChangesQueuedBehindIt() throws Exception {
+        MutationJournal journal = new MutationJournal(folder.newFile());
+        journal.append(MutationJournal.CREATE, -1, "a");
+        journal.take();
+        journal.append(MutationJournal.UPDATE, -1, "b");
+        journal.append(MutationJournal.DELETE, -1, null);
+
+        journal.reject();
+
+        assertEquals(0, journal.getDepth());
+        assertEquals(1, journal.getRejectedCount());
+    }
+
+    @Test
+    public void keepsTheServerVersionOfNotesWithPendingChanges() throws Exception {
+        File file = folder.newFile();
+        MutationJournal journal = new MutationJournal(file);
+
+        journal.append(MutationJournal.UPDATE, 5, "a", new Note(5, "server", "t"));
+        // Only the first change knows the server version, later ones see the local edit
+        journal.append(MutationJournal.UPDATE, 5, "b", new Note(5, "a", "t"));
+        assertEquals("server", journal.getBase(5).getNote());
+        journal.take();
+        journal.append(MutationJournal.UPDATE, 5, "c", new Note(5, "b", "t"));
+        journal.ack(5);
+        assertEquals("b", journal.getBase(5).getNote());
+
+        journal.rebase(5, new Note(5, "elsewhere", "t"));
+        journal.rebase(6, new Note(6, "no pending changes", "t"));
+        assertEquals("elsewhere", new MutationJournal(file).getBase(5).getNote());
+        assertTrue(!journal.hasBase(6));
+
+        journal.take();
+        journal.reject();
+        assertTrue(!journal.hasBase(5));
+    }
+
+    @Test
+    public void compactsToThePendingChanges() throws Exception {
+        File file = folder.newFile();
+        MutationJournal journal = new MutationJournal(file);
+        journal.append(MutationJournal.UPDATE, 1, "kept");
+        for (int i = 0; i < 200; i++) {
+            journal.append(MutationJournal.UPDATE, 2, "note " + i, new Note(2, "server", "t"));
+            if (i % 2 == 0) {
+                journal.take();
+                journal.ack(1);
+            }
+        }
+        journal.take();
+
+        assertTrue(journal.getCompactionCount() > 0);
+        assertTrue(journal.getRecordCount() < 64);
+
+        MutationJournal reopened = new MutationJournal(file);
+        List<Mutation> expected = journal.pending();
+        List<Mutation> replayed = reopened.pending();
+        assertEquals(expected.size(), replayed.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Mutation mutation = expected.get(i);
+            assertMutation(replayed.get(i), mutation.getType(), mutation.getNoteId(), mutation.getNote());
+        }
+        assertEquals(journal.getBase(2).getNote(), reopened.getBase(2).getNote());
+    }
+
+    private static void assertMutation(Mutation mutation, String type, int noteId, String note) {
+        assertEquals(type, mutation.getType());
+        assertEquals(noteId, mutation.getNoteId());
+        assertEquals(note, mutation.getNote());
+    }
+}
@@ -0,0 +1,74 @@
+package com.orchtech.assem.rxrecap.notes_app.data;
+
+import com.orchtech.assem.rxrecap.notes_app.network.model.Note;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NoteSearchIndexTest {
+    private static final int NOTES = 10000;
+    private static final String[] WORDS = {"groceries", "meeting", "call", "birthday", "recipe", "gym", "travel",
+            "invoice", "dentist", "book", "movie", "garden", "project", "budget", "holiday", "car", "doctor",
+            "school", "payment", "password", "gift", "party", "flight", "hotel", "report", "review", "idea"};
+
+    @Test
+    public void wordsMatchAsPrefixesAndFollowChanges() {
+        InMemoryNoteStore store = new InMemoryNoteStore();
+        store.upsert(new Note(1, "Groceries: milk, eggs", null));
+        store.upsert(new Note(2, "Call mom", null));
+        store.upsert(new Note(3, "Milkshake recipe", null));
+        NoteSearchIndex index = new NoteSearchIndex(store);
+
+        assertEquals("[1, 3]", sorted(index.search("MIL")));
+        assertEquals("[1]", sorted(index.search("gro mil")));
+        assertEquals("[]", sorted(index.search("gro mom")));
+        assertEquals("[]", sorted(index.search("  ,. ")));
+
+        store.updateText(2, "Call mom about milk");
+        index.apply(NotesDelta.upsert(store.load(2)));
+        store.delete(1);
+        index.apply(NotesDelta.delete(1));
+        assertEquals("[2, 3]", sorted(index.search("milk")));
+        assertEquals("[]", sorted(index.search("groceries")));
+
+        // Dropped on a reset, built again from the store
+        store.upsert(new Note(4, "milk run", null));
+        index.apply(NotesDelta.RESET);
+        assertEquals("[2, 3, 4]", sorted(index.search("milk")));
+        assertTrue(NoteSearchIndex.matches(store.load(4), "mil ru"));
+    }
+
+    @Test
+    public void indexFindsWhatAScanFinds() {
+        InMemoryNoteStore store = new InMemoryNoteStore();
+        for (int id = 1; id <= NOTES; id++) {
+            store.upsert(new Note(id, "Note " + id + " about " + WORDS[id % WORDS.length] + " and "
+                    + WORDS[(id * 7 + 3) % WORDS.length], "2018-02-21 00:15:42"));
+        }
+        NoteSearchIndex index = new NoteSearchIndex(store);
+        List<Note> all = store.loadAll();
+
+        for (String query : new String[]{"g", "gro", "groceries", "gym gar", "123", "nothing"}) {
+            int matching = 0;
+            for (Note note : all) {
+                if (NoteSearchIndex.matches(note, query)) {
+                    matching++;
+                }
+            }
+            assertEquals(query, matching, index.search(query).length);
+        }
+        assertEquals(NOTES, index.getIndexedNoteCount());
+        assertEquals(6, index.getSearchCount());
+    }
+
+    private static String sorted(int[] ids) {
+        int[] copy = ids.clone();
+        Arrays.sort(copy);
+        return Arrays.toString(copy);
+    }
+}
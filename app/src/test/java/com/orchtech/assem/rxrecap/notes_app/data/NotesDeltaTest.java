@@ -0,0 +1,49 @@
+package com.orchtech.assem.rxrecap.notes_app.data;
+
+import com.orchtech.assem.rxrecap.notes_app.network.model.Note;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class NotesDeltaTest {
+
+    @Test
+    public void keepsLocalNotesOnTopAndServerNotesNewestFirst() {
+        List<Note> notes = new ArrayList<>();
+        notes = NotesDelta.of(Arrays.asList(note(3), note(-1), note(10), note(-2), note(Integer.MAX_VALUE)),
+                Collections.<Integer>emptyList()).applyTo(notes);
+
+        assertEquals(Arrays.asList(-2, -1, Integer.MAX_VALUE, 10, 3), ids(notes));
+    }
+
+    @Test
+    public void applyingTwiceGivesTheSameList() {
+        List<Note> notes = Arrays.asList(note(5), note(4), note(3));
+        NotesDelta delta = NotesDelta.of(Arrays.asList(note(6), new Note(4, "edited", null)), Collections.singletonList(3));
+
+        List<Note> once = delta.applyTo(notes);
+        List<Note> twice = delta.applyTo(once);
+
+        assertEquals(Arrays.asList(6, 5, 4), ids(once));
+        assertEquals(ids(once), ids(twice));
+        assertEquals("edited", twice.get(2).getNote());
+    }
+
+    private static Note note(int id) {
+        return new Note(id, "note " + id, null);
+    }
+
+    private static List<Integer> ids(List<Note> notes) {
+        List<Integer> ids = new ArrayList<>();
+        for (Note note : notes) {
+            ids.add(note.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,432 @@
+package com.orchtech.assem.rxrecap.notes_app.data;
+
+import com.orchtech.assem.rxrecap.network.AsyncCallAdapterFactory;
+import com.orchtech.assem.rxrecap.notes_app.FakeNotesDispatcher;
+import com.orchtech.assem.rxrecap.notes_app.network.NotesApiService;
+import com.orchtech.assem.rxrecap.notes_app.network.model.Note;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Completable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.BooleanSupplier;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NotesRepositoryTest {
+    private static final int NOTES = 10000;
+    private static final long SERVER_LATENCY_MILLIS = 500;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private FakeNotesDispatcher dispatcher;
+    private NotesApiService apiService;
+    private InMemoryNoteStore store;
+    private NotesRepository repository;
+
+    @Before
+    public void setUp() throws Exception {
+        dispatcher = new FakeNotesDispatcher();
+        server = new MockWebServer();
+        server.setDispatcher(dispatcher);
+        server.start();
+
+        apiService = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addCallAdapterFactory(AsyncCallAdapterFactory.create())
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(NotesApiService.class);
+        store = new InMemoryNoteStore();
+        repository = new NotesRepository(apiService, store,
+                new MutationJournal(new File(folder.getRoot(), "notes.journal")), Schedulers.io());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void storedNotesShowBeforeTheServerAnswers() {
+        dispatcher.addNotes(NOTES);
+        repository.sync().blockingAwait();
+        dispatcher.setLatencyMillis(SERVER_LATENCY_MILLIS);
+
+        TestObserver<Void> sync = repository.sync().test();
+        List<Note> first = repository.observeNotes()
+                .filter(notes -> !notes.isEmpty())
+                .blockingFirst();
+
+        // Straight from the store, the server has not answered yet
+        assertEquals(NOTES, first.size());
+        sync.assertNotComplete();
+        sync.awaitDone(5, TimeUnit.SECONDS).assertComplete();
+        assertEquals(NOTES, store.count());
+    }
+
+    @Test
+    public void syncMakesTheStoreMatchTheServer() {
+        dispatcher.addNotes(3);
+        store.upsert(new Note(99, "deleted on the server", FakeNotesDispatcher.TIMESTAMP));
+
+        repository.sync().blockingAwait();
+
+        List<Note> notes = store.loadAll();
+        assertEquals(3, notes.size());
+        assertEquals(3, notes.get(0).getId());
+        assertEquals(1, notes.get(2).getId());
+    }
+
+    @Test
+    public void writesShowLocallyAndReachTheServerOnFlush() {
+        List<List<Note>> emitted = new ArrayList<>();
+        repository.observeNotes().subscribe(emitted::add);
+
+        Note created = repository.createNote("first").blockingGet();
+        assertTrue(created.getId() < 0);
+        repository.updateNote(created.getId(), "edited").blockingAwait();
+        Note other = repository.createNote("second").blockingGet();
+        repository.deleteNote(created.getId()).blockingAwait();
+
+        awaitEmissions(emitted, 5);
+        List<Note> last = emitted.get(emitted.size() - 1);
+        assertEquals(1, last.size());
+        assertEquals("second", last.get(0).getNote());
+        assertEquals(0, dispatcher.writeCalls.get());
+
+        repository.flush().blockingAwait();
+
+        // The first note was created and deleted before it was sent, it never reaches the server
+        assertEquals(1, dispatcher.writeCalls.get());
+        assertEquals(1, dispatcher.getNoteCount());
+        List<Note> stored = store.loadAll();
+        assertEquals(1, stored.size());
+        assertEquals("second", dispatcher.getNote(stored.get(0).getId()));
+        assertEquals(0, repository.getJournal().getDepth());
+    }
+
+    @Test
+    public void offlineEditsAreSentOnceTheServerIsBack() {
+        dispatcher.addNotes(2);
+        repository.sync().blockingAwait();
+        dispatcher.setFailing(true);
+
+        Note created = repository.createNote("new").blockingGet();
+        repository.updateNote(created.getId(), "new, edited").blockingAwait();
+        repository.updateNote(1, "one").blockingAwait();
+        repository.updateNote(1, "one, edited").blockingAwait();
+        repository.deleteNote(2).blockingAwait();
+
+        assertTrue(repository.flush().blockingGet() != null);
+        assertEquals(3, repository.getJournal().getDepth());
+
+        dispatcher.setFailing(false);
+        repository.flush().blockingAwait();
+
+        assertEquals(3, dispatcher.writeCalls.get());
+        assertEquals("one, edited", dispatcher.getNote(1));
+        assertEquals(null, dispatcher.getNote(2));
+        assertEquals("new, edited", dispatcher.getNote(3));
+        assertEquals(0, repository.getJournal().getDepth());
+        assertEquals(3, store.loadAll().get(0).getId());
+    }
+
+    @Test
+    public void flushHoldsNoThreadWhileTheServerAnswers() throws Exception {
+        ExecutorService network = Executors.newSingleThreadExecutor();
+        try {
+            Scheduler networkScheduler = Schedulers.from(network);
+            repository = new NotesRepository(apiService, store,
+                    new MutationJournal(new File(folder.getRoot(), "single.journal")), Schedulers.io(), networkScheduler);
+            for (int i = 0; i < 3; i++) {
+                repository.createNote("note " + i).blockingGet();
+            }
+            dispatcher.setLatencyMillis(SERVER_LATENCY_MILLIS);
+
+            TestObserver<Void> flush = repository.flush().test();
+            // The only network thread is free while the changes are on their way
+            boolean flushedFirst = Single.fromCallable(flush::isTerminated)
+                    .subscribeOn(networkScheduler)
+                    .blockingGet();
+
+            assertFalse(flushedFirst);
+            flush.awaitDone(10, TimeUnit.SECONDS).assertComplete();
+            assertEquals(3, dispatcher.getNoteCount());
+        } finally {
+            network.shutdown();
+        }
+    }
+
+    @Test
+    public void createIsNotSentAgainWhenItsAckCannotBeWritten() {
+        FailingAckJournal journal = new FailingAckJournal(new File(folder.getRoot(), "failing.journal"));
+        repository = new NotesRepository(apiService, store, journal, Schedulers.io());
+        repository.createNote("once").blockingGet();
+        journal.failAcks = 1;
+
+        assertTrue(repository.flush().blockingGet() instanceof IOException);
+        assertEquals(1, dispatcher.getNoteCount());
+        assertEquals(1, journal.getDepth());
+
+        repository.flush().blockingAwait();
+
+        assertEquals(1, dispatcher.writeCalls.get());
+        assertEquals(1, dispatcher.getNoteCount());
+        assertEquals(0, journal.getDepth());
+        assertEquals(1, store.loadAll().get(0).getId());
+    }
+
+    @Test
+    public void answerIsRecordedByTheNextRepository() {
+        FailingAckJournal journal = new FailingAckJournal(new File(folder.getRoot(), "failing.journal"));
+        repository = new NotesRepository(apiService, store, journal, Schedulers.io());
+        repository.createNote("once").blockingGet();
+        journal.failAcks = 1;
+        assertTrue(repository.flush().blockingGet() instanceof IOException);
+
+        // The journal is shared by the process, the activity's repository is not
+        new NotesRepository(apiService, store, journal, Schedulers.io()).flush().blockingAwait();
+
+        assertEquals(1, dispatcher.writeCalls.get());
+        assertEquals(0, journal.getDepth());
+        assertEquals(1, journal.getSentCount());
+    }
+
+    @Test
+    public void flushDisposedMidSendPutsTheChangeBack() {
+        dispatcher.addNotes(1);
+        repository.sync().blockingAwait();
+        MutationJournal journal = repository.getJournal();
+        repository.updateNote(1, "edited").blockingAwait();
+        dispatcher.setLatencyMillis(SERVER_LATENCY_MILLIS);
+
+        Disposable flushing = repository.startFlushing();
+        awaitCondition(() -> dispatcher.writeCalls.get() == 1);
+        flushing.dispose();
+
+        // Taken by nobody anymore, the next repository sends it
+        assertEquals(1, journal.getDepth());
+        assertEquals(1, journal.pending().size());
+        dispatcher.setLatencyMillis(0);
+        new NotesRepository(apiService, store, journal, Schedulers.io()).flush().blockingAwait();
+
+        assertEquals(0, journal.getDepth());
+        assertEquals(1, journal.getSentCount());
+        assertEquals("edited", dispatcher.getNote(1));
+    }
+
+    @Test
+    public void backgroundFlushingCreatesTheNoteOnceAfterAFailedAck() {
+        FailingAckJournal journal = new FailingAckJournal(new File(folder.getRoot(), "failing.journal"));
+        repository = new NotesRepository(apiService, store, journal, Schedulers.io());
+        journal.failAcks = 1;
+        Disposable flushing = repository.startFlushing();
+        try {
+            repository.createNote("first").blockingGet();
+            awaitCondition(() -> journal.failedAcks == 1);
+            // The next change flushes again, the first note is recorded then, not created a second time
+            repository.createNote("second").blockingGet();
+            awaitCondition(() -> journal.getDepth() == 0);
+        } finally {
+            flushing.dispose();
+        }
+
+        assertEquals(2, dispatcher.writeCalls.get());
+        assertEquals(2, dispatcher.getNoteCount());
+        assertEquals("first", dispatcher.getNote(1));
+        assertEquals("second", dispatcher.getNote(2));
+        assertEquals(2, store.count());
+    }
+
+    @Test
+    public void deltaSyncOnlyFetchesAndEmitsWhatChanged() {
+        dispatcher.addNotes(1000);
+        List<List<Note>> emitted = new ArrayList<>();
+        repository.observeNotes().subscribe(emitted::add);
+        repository.sync().blockingAwait();
+        awaitEmissions(emitted, 2);
+        List<Note> before = emitted.get(emitted.size() - 1);
+        assertEquals(1000, before.size());
+
+        dispatcher.editNote(500, "edited elsewhere");
+        dispatcher.removeNote(7);
+        dispatcher.addNotes(1);
+        repository.sync().blockingAwait();
+        awaitEmissions(emitted, 3);
+
+        assertEquals(3, dispatcher.lastChangesCount.get());
+        assertEquals(0, dispatcher.fetchAllCalls.get());
+        List<Note> after = emitted.get(emitted.size() - 1);
+        assertEquals(1000, after.size());
+        assertEquals(1001, after.get(0).getId());
+        assertEquals("edited elsewhere", after.get(1001 - 500).getNote());
+        // Every row the server did not touch is the same object as before
+        for (int i = 1; i < after.size(); i++) {
+            Note note = after.get(i);
+            if (note.getId() != 500) {
+                assertTrue(note == before.get(note.getId() > 7 ? i - 1 : i));
+            }
+        }
+        assertEquals(1000, store.count());
+        assertEquals(null, store.load(7));
+    }
+
+    @Test
+    public void fallsBackToFullSyncWithoutTheChangesEndpoint() {
+        dispatcher.setDeltaEnabled(false);
+        dispatcher.addNotes(3);
+
+        repository.sync().blockingAwait();
+        dispatcher.removeNote(2);
+        repository.sync().blockingAwait();
+
+        assertEquals(1, dispatcher.changesCalls.get());
+        assertEquals(2, dispatcher.fetchAllCalls.get());
+        assertEquals(2, store.count());
+    }
+
+    @Test
+    public void refusedChangesRollBackToTheServerVersion() {
+        dispatcher.addNotes(3);
+        repository.sync().blockingAwait();
+        List<Throwable> refusals = new ArrayList<>();
+        repository.observeRefusals().subscribe(refusals::add);
+        List<List<Note>> emitted = new ArrayList<>();
+        repository.observeNotes().subscribe(emitted::add);
+        dispatcher.setLocked(2, true);
+        dispatcher.setLocked(3, true);
+
+        repository.updateNote(1, "one").blockingAwait();
+        repository.updateNote(2, "two").blockingAwait();
+        repository.updateNote(2, "two, edited").blockingAwait();
+        repository.deleteNote(3).blockingAwait();
+        // Shown before the server answers
+        assertEquals("two, edited", store.load(2).getNote());
+        assertEquals(null, store.load(3));
+
+        repository.flush().blockingAwait();
+
+        assertEquals("one", store.load(1).getNote());
+        assertEquals("note 2", store.load(2).getNote());
+        assertEquals("note 3", store.load(3).getNote());
+        assertEquals(FakeNotesDispatcher.TIMESTAMP, store.load(3).getTimestamp());
+        assertEquals(2, refusals.size());
+        assertEquals(2, repository.getRollbackCount());
+        assertEquals(0, repository.getJournal().getDepth());
+        awaitEmissions(emitted, 7);
+        List<Note> last = emitted.get(emitted.size() - 1);
+        assertEquals(3, last.size());
+        assertEquals("note 2", last.get(1).getNote());
+    }
+
+    @Test
+    public void editsMadeWhileARefusedChangeIsSentStayOnTop() {
+        dispatcher.addNotes(2);
+        repository.sync().blockingAwait();
+        dispatcher.setLocked(2, true);
+        dispatcher.setLatencyMillis(SERVER_LATENCY_MILLIS);
+
+        repository.updateNote(2, "first").blockingAwait();
+        Completable flush = repository.flush().cache();
+        flush.subscribe();
+        // The first change reached the server and is refused there, the answer is still on its way
+        long deadline = System.currentTimeMillis() + 5000;
+        while (dispatcher.writeCalls.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.yield();
+        }
+        dispatcher.setLocked(2, false);
+        repository.updateNote(2, "second").blockingAwait();
+        flush.blockingAwait();
+
+        // Rolled back to the server's text with the later edit applied again, then the later edit is sent
+        assertEquals("second", store.load(2).getNote());
+        assertEquals("second", dispatcher.getNote(2));
+        assertEquals(1, repository.getRollbackCount());
+        assertEquals(0, repository.getJournal().getDepth());
+    }
+
+    @Test
+    public void rollbackFollowsChangesFromOtherDevices() {
+        dispatcher.addNotes(2);
+        repository.sync().blockingAwait();
+        dispatcher.setWritesFailing(true);
+
+        repository.updateNote(2, "mine").blockingAwait();
+        dispatcher.editNote(2, "theirs");
+        repository.sync().blockingAwait();
+        // Local changes win until they are sent
+        assertEquals("mine", store.load(2).getNote());
+
+        dispatcher.setWritesFailing(false);
+        dispatcher.setLocked(2, true);
+        repository.flush().blockingAwait();
+
+        assertEquals("theirs", store.load(2).getNote());
+        assertEquals(1, repository.getRollbackCount());
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        try {
+            while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+                Thread.yield();
+            }
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+        assertTrue(condition.toString(), System.currentTimeMillis() < deadline);
+    }
+
+    /**
+     * Fails the next failAcks acks the way a full disk would, before anything is written
+     */
+    private static class FailingAckJournal extends MutationJournal {
+        volatile int failAcks;
+        volatile int failedAcks;
+
+        FailingAckJournal(File file) {
+            super(file);
+        }
+
+        @Override
+        public synchronized void ack(int serverId) throws IOException {
+            if (failAcks > 0) {
+                failAcks--;
+                failedAcks++;
+                throw new IOException("No space left on device");
+            }
+            super.ack(serverId);
+        }
+    }
+
+    private static void awaitEmissions(List<?> emitted, int count) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (emitted.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.orchtech.assem.rxrecap.notes_app.network;
+
+import com.orchtech.assem.rxrecap.network.AsyncCallAdapterFactory;
+import com.orchtech.assem.rxrecap.notes_app.FakeNotesDispatcher;
+import com.orchtech.assem.rxrecap.notes_app.network.model.Note;
+import com.orchtech.assem.rxrecap.notes_app.network.model.NotesUser;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.SingleSubject;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.Dispatcher;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ApiKeyProviderTest {
+    private static final long SERVER_LATENCY_MILLIS = 300;
+    private static final int READERS = 4;
+    private static final int ROUNDS = 2000;
+
+    private MockWebServer server;
+    private FakeNotesDispatcher dispatcher;
+    private List<String> stored;
+    private ApiKeyProvider apiKeys;
+    private NotesApiService apiService;
+
+    @Before
+    public void setUp() throws Exception {
+        dispatcher = new FakeNotesDispatcher();
+        dispatcher.setRequireApiKey(true);
+        server = new MockWebServer();
+        server.setDispatcher(dispatcher);
+        server.start();
+
+        stored = new ArrayList<>();
+        apiKeys = new ApiKeyProvider(null, stored::add);
+        apiService = newApiService(new OkHttpClient.Builder()
+                .addInterceptor(new ApiKeyInterceptor(apiKeys))
+                .build());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void requestsWaitForRegistration() throws Exception {
+        dispatcher.addNotes(3);
+        dispatcher.setLatencyMillis(SERVER_LATENCY_MILLIS);
+
+        // Sent while the register call is still on the wire, like the sync started right after registerUser()
+        TestObserver<NotesUser> registration = apiKeys.register(apiService.register("device"), NotesUser::getApiKey)
+                .subscribeOn(Schedulers.io())
+                .test();
+        TestObserver<List<Note>> notes = apiService.fetchAllNotes()
+                .subscribeOn(Schedulers.io())
+                .test();
+
+        registration.awaitDone(5, TimeUnit.SECONDS).assertComplete();
+        notes.awaitDone(5, TimeUnit.SECONDS).assertComplete();
+        assertEquals(3, notes.values().get(0).size());
+        assertEquals(0, dispatcher.unauthorizedCalls.get());
+        for (int i = 0; i < 2; i++) {
+            RecordedRequest request = server.takeRequest();
+            if (request.getPath().equals("/notes/all")) {
+                assertEquals(FakeNotesDispatcher.API_KEY, request.getHeader("Authorization"));
+            }
+        }
+        assertEquals("[" + FakeNotesDispatcher.API_KEY + "]", stored.toString());
+    }
+
+    @Test
+    public void waitingRequestsHoldNoDispatcherThread() {
+        dispatcher.addNotes(3);
+        Dispatcher calls = new Dispatcher();
+        calls.setMaxRequests(1);
+        NotesApiService service = newApiService(new OkHttpClient.Builder()
+                .dispatcher(calls)
+                .addInterceptor(new ApiKeyInterceptor(apiKeys))
+                .build());
+
+        Single<NotesUser> registration = apiKeys.register(service.register("device"), NotesUser::getApiKey);
+        TestObserver<List<Note>> notes = service.fetchAllNotes().test();
+        // Held back before OkHttp, the only call the dispatcher runs at a time is left for the registration
+        assertEquals(0, calls.runningCallsCount() + calls.queuedCallsCount());
+
+        registration.test().awaitDone(5, TimeUnit.SECONDS).assertComplete();
+        notes.awaitDone(5, TimeUnit.SECONDS).assertComplete();
+        assertEquals(0, dispatcher.unauthorizedCalls.get());
+    }
+
+    @Test
+    public void requestsStopWaitingForARegistrationAfterThirtySeconds() {
+        TestScheduler clock = new TestScheduler();
+        ApiKeyProvider keys = new ApiKeyProvider(null, key -> {
+        }, clock);
+        keys.register(SingleSubject.<String>create(), key -> key).test();
+
+        TestObserver<Void> waiting = keys.awaitRegistration().test();
+        clock.advanceTimeBy(29, TimeUnit.SECONDS);
+        waiting.assertNotComplete();
+        clock.advanceTimeBy(1, TimeUnit.SECONDS);
+        waiting.assertComplete();
+    }
+
+    @Test
+    public void failedRegistrationReleasesWaitingRequests() {
+        dispatcher.setFailing(true);
+
+        apiKeys.register(apiService.register("device"), NotesUser::getApiKey)
+                .test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertNoValues();
+
+        // Nothing to wait for any more, the request goes out without a key instead of hanging
+        dispatcher.setFailing(false);
+        apiService.fetchAllNotes().test().awaitDone(5, TimeUnit.SECONDS);
+        assertEquals(1, dispatcher.unauthorizedCalls.get());
+        assertEquals(0, stored.size());
+    }
+
+    @Test
+    public void followsTheStoredKey() {
+        TestObserver<String> keys = apiKeys.observeApiKey().test();
+
+        apiKeys.onStoredKeyChanged("a");
+        apiKeys.onStoredKeyChanged("a");
+        apiKeys.onStoredKeyChanged(null);
+
+        keys.assertValues(ApiKeyProvider.NO_KEY, "a", ApiKeyProvider.NO_KEY);
+        assertNull(apiKeys.getApiKey());
+    }
+
+    @Test
+    public void registrationFinishingWhileRequestsAskIsNeverMissed() throws Exception {
+        ExecutorService requests = Executors.newFixedThreadPool(READERS);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                ApiKeyProvider keys = new ApiKeyProvider(null, key -> {
+                });
+                SingleSubject<String> registration = SingleSubject.create();
+                keys.register(registration, key -> key).test();
+
+                // Every request asks while the registration is in flight or after it, none may go out without a key
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<String>> seen = new ArrayList<>();
+                for (int i = 0; i < READERS; i++) {
+                    seen.add(requests.submit(() -> {
+                        start.await();
+                        return keyAfterRegistration(keys);
+                    }));
+                }
+                start.countDown();
+                registration.onSuccess(FakeNotesDispatcher.API_KEY);
+                for (Future<String> key : seen) {
+                    assertEquals(FakeNotesDispatcher.API_KEY, key.get());
+                }
+                assertEquals(FakeNotesDispatcher.API_KEY, keyAfterRegistration(keys));
+            }
+        } finally {
+            requests.shutdown();
+        }
+    }
+
+    @Test
+    public void interceptorAddsTheCachedKey() throws Exception {
+        Interceptor interceptor = new ApiKeyInterceptor(new ApiKeyProvider(FakeNotesDispatcher.API_KEY, key -> {
+        }));
+        FakeChain chain = new FakeChain(new Request.Builder().url(server.url("/notes/all")).build());
+
+        interceptor.intercept(chain);
+        assertEquals(FakeNotesDispatcher.API_KEY, chain.last.header("Authorization"));
+        assertEquals("application/json", chain.last.header("Accept"));
+    }
+
+    private NotesApiService newApiService(OkHttpClient client) {
+        return new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .client(client)
+                .addCallAdapterFactory(ApiKeyCallAdapterFactory.create(apiKeys))
+                .addCallAdapterFactory(AsyncCallAdapterFactory.create())
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(NotesApiService.class);
+    }
+
+    private static String keyAfterRegistration(ApiKeyProvider keys) {
+        keys.awaitRegistration().blockingAwait(5, TimeUnit.SECONDS);
+        return keys.getApiKey();
+    }
+
+    /**
+     * Answers every request at once
+     */
+    private static class FakeChain implements Interceptor.Chain {
+        private final Request request;
+        private Request last;
+
+        FakeChain(Request request) {
+            this.request = request;
+        }
+
+        @Override
+        public Request request() {
+            return request;
+        }
+
+        @Override
+        public Response proceed(Request request) {
+            last = request;
+            return new Response.Builder()
+                    .request(request)
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(200)
+                    .message("OK")
+                    .build();
+        }
+
+        @Override
+        public Connection connection() {
+            return null;
+        }
+
+        @Override
+        public Call call() {
+            return null;
+        }
+
+        @Override
+        public int connectTimeoutMillis() {
+            return 0;
+        }
+
+        @Override
+        public Interceptor.Chain withConnectTimeout(int timeout, TimeUnit unit) {
+            return this;
+        }
+
+        @Override
+        public int readTimeoutMillis() {
+            return 0;
+        }
+
+        @Override
+        public Interceptor.Chain withReadTimeout(int timeout, TimeUnit unit) {
+            return this;
+        }
+
+        @Override
+        public int writeTimeoutMillis() {
+            return 0;
+        }
+
+        @Override
+        public Interceptor.Chain withWriteTimeout(int timeout, TimeUnit unit) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.orchtech.assem.rxrecap.notes_app.view;
+
+import com.orchtech.assem.rxrecap.notes_app.data.InMemoryNoteStore;
+import com.orchtech.assem.rxrecap.notes_app.data.MutationJournal;
+import com.orchtech.assem.rxrecap.notes_app.data.NotesRepository;
+import com.orchtech.assem.rxrecap.notes_app.network.model.Note;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PagedNoteListTest {
+    private static final int NOTES = 100000;
+    // Visible page, prefetch and retained pages on both sides
+    private static final int MAX_CACHED = (1 + 2 * 4 + 1) * PagedNoteList.PAGE_SIZE;
+    private static final int[] DOT_COLORS = {0xffef5350, 0xffec407a, 0xffab47bc};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private InMemoryNoteStore store;
+    private NotesRepository repository;
+    private final List<String> events = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        store = new InMemoryNoteStore();
+        for (int id = 1; id <= NOTES; id++) {
+            store.upsert(new Note(id, "note " + id, "2018-02-21 00:15:42"));
+        }
+        repository = new NotesRepository(null, store,
+                MutationJournal.open(new File(folder.getRoot(), "notes.journal")), Schedulers.trampoline());
+    }
+
+    @Test
+    public void connectLoadsOnlyTheFirstPagesAt100kNotes() {
+        PagedNoteList list = newList();
+        list.connect();
+
+        assertTrue(list.isLoaded(0));
+        assertEquals(NOTES, list.size());
+        assertEquals(NOTES, list.get(0).getId());
+        // The visible page and the two prefetched after it, nothing else is read from the store
+        assertEquals(3, list.getPageLoadCount());
+        assertEquals(3 * PagedNoteList.PAGE_SIZE, list.getCachedNoteCount());
+        assertFalse(list.isLoaded(3 * PagedNoteList.PAGE_SIZE));
+        list.dispose();
+    }
+
+    @Test
+    public void scrollingLoadsAheadAndEvictsFarPages() {
+        PagedNoteList list = newList();
+        list.connect();
+
+        list.onVisibleRange(50000, 50010);
+
+        assertTrue(list.isLoaded(50000));
+        // Prefetched ahead and behind
+        assertTrue(list.isLoaded(50000 + 2 * PagedNoteList.PAGE_SIZE));
+        assertTrue(list.isLoaded(50000 - 2 * PagedNoteList.PAGE_SIZE));
+        assertFalse(list.isLoaded(0));
+        assertTrue(list.getEvictedPageCount() > 0);
+        assertTrue(list.getCachedNoteCount() <= MAX_CACHED);
+
+        // A row bound before its page arrived comes back as null and loads the page
+        long loads = list.getPageLoadCount();
+        assertNull(list.get(10));
+        assertEquals(loads + 1, list.getPageLoadCount());
+        list.dispose();
+    }
+
+    @Test
+    public void deltasAreReportedRowByRow() {
+        PagedNoteList list = newList();
+        list.connect();
+        events.clear();
+
+        Note created = repository.createNote("new").blockingGet();
+        repository.updateNote(NOTES - 1, "edited").blockingAwait();
+        repository.deleteNote(NOTES).blockingAwait();
+
+        assertEquals("inserted 0+1", events.get(0));
+        assertEquals("changed 2+1", events.get(1));
+        assertEquals("removed 1+1", events.get(2));
+        assertEquals(3, events.size());
+        assertEquals(created.getId(), list.get(0).getId());
+        assertEquals("edited", list.get(1).getNote());
+        // Formatted before it reached the list
+        assertEquals("edited", list.getRow(1).getText());
+        assertEquals(new SimpleDateFormat("MMM d").format(new GregorianCalendar(2018, Calendar.FEBRUARY, 21).getTime()),
+                list.getRow(1).getDate());
+        assertEquals(DOT_COLORS[(NOTES - 1) % DOT_COLORS.length], list.getRow(1).getDotColor());
+        assertEquals(NOTES, list.size());
+        list.dispose();
+    }
+
+    @Test
+    public void searchIsDebouncedAndFollowsEdits() {
+        TestScheduler computation = new TestScheduler();
+        PagedNoteList list = newList(computation);
+        list.connect();
+        computation.triggerActions();
+        assertEquals(NOTES, list.size());
+
+        // Typed quickly, only the last query is searched
+        list.search("note 1234");
+        computation.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        list.search("note 99999");
+        computation.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        assertEquals(NOTES, list.size());
+        computation.advanceTimeBy(300, TimeUnit.MILLISECONDS);
+        assertEquals("note 99999", list.getQuery());
+        assertEquals(1, list.size());
+        assertEquals(99999, list.get(0).getId());
+        assertEquals(1, repository.getSearchIndex().getSearchCount());
+
+        events.clear();
+        repository.createNote("note 99999 copy").blockingGet();
+        repository.createNote("something else").blockingGet();
+        repository.updateNote(99999, "edited away").blockingAwait();
+        assertEquals("[inserted 0+1, removed 1+1]", events.toString());
+        assertEquals("note 99999 copy", list.get(0).getNote());
+
+        list.search("");
+        computation.advanceTimeBy(300, TimeUnit.MILLISECONDS);
+        assertEquals(NOTES + 2, list.size());
+        list.dispose();
+    }
+
+    private PagedNoteList newList() {
+        return newList(Schedulers.trampoline());
+    }
+
+    private PagedNoteList newList(Scheduler computation) {
+        return new PagedNoteList(repository, new NoteRow.Formatter(DOT_COLORS), computation, Schedulers.trampoline(),
+                new PagedNoteList.Listener() {
+                    @Override
+                    public void onReset() {
+                        events.add("reset");
+                    }
+
+                    @Override
+                    public void onInserted(int positionStart, int itemCount) {
+                        events.add("inserted " + positionStart + "+" + itemCount);
+                    }
+
+                    @Override
+                    public void onRemoved(int positionStart, int itemCount) {
+                        events.add("removed " + positionStart + "+" + itemCount);
+                    }
+
+                    @Override
+                    public void onChanged(int positionStart, int itemCount) {
+                        events.add("changed " + positionStart + "+" + itemCount);
+                    }
+                });
+    }
+}
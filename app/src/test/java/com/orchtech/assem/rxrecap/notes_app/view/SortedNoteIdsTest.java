@@ -0,0 +1,74 @@
+package com.orchtech.assem.rxrecap.notes_app.view;
+
+import com.orchtech.assem.rxrecap.notes_app.data.NoteOrder;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class SortedNoteIdsTest {
+    private static final int NOTES = 100000;
+
+    @Test
+    public void keepsNoteOrderWithIdsFarApart() {
+        SortedNoteIds ids = new SortedNoteIds();
+        // A subtraction comparator overflows on these
+        ids.reset(new int[]{3, Integer.MAX_VALUE, -1, 1, Integer.MIN_VALUE, -7});
+
+        // Local ids newest (lowest) first, then server ids highest first
+        assertEquals(Integer.MIN_VALUE + " -7 -1 " + Integer.MAX_VALUE + " 3 1", join(ids));
+    }
+
+    @Test
+    public void batchesAreReportedAsRanges() {
+        SortedNoteIds ids = new SortedNoteIds();
+        ids.reset(new int[]{10, 20, 30, 40, 50});
+        List<String> events = new ArrayList<>();
+
+        // 60 and 55 land at 0 and 1, 35 and 33 at 4 and 5
+        ids.insertAll(new int[]{33, 60, 35, 55, 60}, (start, count) -> events.add("inserted " + start + "+" + count));
+        assertEquals("[inserted 0+2, inserted 4+2]", events.toString());
+        assertEquals("60 55 50 40 35 33 30 20 10", join(ids));
+
+        events.clear();
+        ids.removeAll(new int[]{55, 60, 20, 10, 99, 30}, (start, count) -> events.add("removed " + start + "+" + count));
+        // Bottom up, so each range is valid when it is applied
+        assertEquals("[removed 6+3, removed 0+2]", events.toString());
+        assertEquals("50 40 35 33", join(ids));
+
+        events.clear();
+        ids.findAll(new int[]{33, 50, 35}, (start, count) -> events.add("changed " + start + "+" + count));
+        assertEquals("[changed 0+1, changed 2+2]", events.toString());
+    }
+
+    @Test
+    public void primitiveSortAgreesWithTheComparator() {
+        Random random = new Random(42);
+        int[] sorted = new int[NOTES];
+        List<Integer> boxed = new ArrayList<>(NOTES);
+        for (int i = 0; i < NOTES; i++) {
+            sorted[i] = random.nextBoolean() ? random.nextInt(Integer.MAX_VALUE) + 1 : -random.nextInt(1000) - 1;
+            boxed.add(sorted[i]);
+        }
+
+        NoteOrder.sortIds(sorted);
+        Collections.sort(boxed, NoteOrder::compareIds);
+
+        for (int i = 0; i < NOTES; i++) {
+            assertEquals((int) boxed.get(i), sorted[i]);
+        }
+    }
+
+    private static String join(SortedNoteIds ids) {
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < ids.size(); i++) {
+            joined.append(i == 0 ? "" : " ").append(ids.get(i));
+        }
+        return joined.toString();
+    }
+}
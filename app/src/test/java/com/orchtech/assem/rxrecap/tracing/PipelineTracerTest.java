@@ -0,0 +1,199 @@
+package com.orchtech.assem.rxrecap.tracing;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.plugins.RxJavaPlugins;
+import io.reactivex.schedulers.Schedulers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PipelineTracerTest {
+    private static final int TICKETS = 20;
+    private static final long PRICE_MILLIS = 5;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ExecutorService mainExecutor;
+    private Scheduler main;
+
+    @Before
+    public void setUp() throws Exception {
+        Thread[] mainThread = {null};
+        mainExecutor = Executors.newSingleThreadExecutor(runnable -> mainThread[0] = new Thread(runnable, "main"));
+        mainExecutor.submit(() -> { }).get();
+        main = Schedulers.from(mainExecutor);
+        PipelineTracer.install(mainThread[0]);
+    }
+
+    @After
+    public void tearDown() {
+        PipelineTracer.uninstall();
+        PipelineTracer.reset();
+        RxJavaPlugins.reset();
+        mainExecutor.shutdown();
+    }
+
+    @Test
+    public void tracesStagesThreadHopsAndMainThreadTime() throws Exception {
+        // Shaped like fetchTicketPrice(): ticket chunks hop io -> main, every ticket is priced on io and hops back
+        List<Integer> prices = Observable.range(0, TICKETS)
+                .buffer(5)
+                .subscribeOn(Schedulers.io())
+                .observeOn(main)
+                .flatMap(Observable::fromIterable)
+                .flatMap(ticket -> price(ticket)
+                        .subscribeOn(Schedulers.io())
+                        .map(price -> price + 1)
+                        .toObservable()
+                        .observeOn(main))
+                .compose(PipelineTracer.named("prices"))
+                .toList()
+                .blockingGet();
+        assertEquals(TICKETS, prices.size());
+
+        PipelineTrace trace = PipelineTracer.getPipeline("prices");
+        assertNotNull(trace);
+        assertEquals(TICKETS, stage(trace, "Subscriber").getItemCount());
+        assertEquals(1, stage(trace, "Subscriber").getCompletionCount());
+        assertEquals(TICKETS / 5, stage(trace, "Buffer").getItemCount());
+
+        // The inner sources of flatMap are part of the pipeline, one subscription per ticket
+        StageTrace priced = stage(trace, "FromCallable");
+        assertEquals(TICKETS, priced.getSubscriptionCount());
+        assertTrue(priced.getAverageLatencyMillis() >= PRICE_MILLIS);
+        assertEquals(TICKETS, stage(trace, "Map").getItemCount());
+        assertTrue(priced.getSite().startsWith("PipelineTracerTest.price:"));
+
+        // Both observeOn(main) emit on main after a hop from io
+        long onMain = 0;
+        for (StageTrace stage : trace.getStages()) {
+            if (stage.getOperator().equals("ObserveOn")) {
+                assertTrue(stage.getThreads().contains("main"));
+                assertTrue(stage.getThreadSwitchCount() > 0);
+                onMain += stage.getItemCount();
+            }
+        }
+        assertEquals(TICKETS / 5 + TICKETS, onMain);
+        assertTrue(trace.getThreadSwitchCount() >= TICKETS * 2);
+        assertTrue(trace.getMainThreadMillis() > 0);
+
+        // The dump carries the same numbers, stage by stage
+        StringWriter written = new StringWriter();
+        PipelineTracer.dump(written);
+        JsonObject pipeline = new JsonParser().parse(written.toString()).getAsJsonObject()
+                .getAsJsonArray("pipelines").get(0).getAsJsonObject();
+        assertEquals("prices", pipeline.get("name").getAsString());
+        assertEquals(trace.getThreadSwitchCount(), pipeline.get("threadSwitches").getAsLong());
+        assertTrue(pipeline.get("mainThreadMillis").getAsLong() > 0);
+        JsonArray stages = pipeline.getAsJsonArray("stages");
+        assertEquals(trace.getStages().size(), stages.size());
+        for (int i = 0; i < stages.size(); i++) {
+            JsonObject dumped = stages.get(i).getAsJsonObject();
+            StageTrace stage = trace.getStages().get(i);
+            assertEquals(stage.getOperator(), dumped.get("operator").getAsString());
+            assertEquals(stage.getSite(), dumped.get("site").getAsString());
+            assertEquals(stage.getItemCount(), dumped.get("items").getAsLong());
+            assertEquals(stage.getSubscriptionCount(), dumped.get("subscriptions").getAsLong());
+            if (stage.getOperator().equals("ObserveOn")) {
+                assertTrue(dumped.get("mainThreadSignals").getAsLong() > 0);
+                assertTrue(dumped.getAsJsonArray("threads").toString().contains("\"main\""));
+            }
+        }
+    }
+
+    @Test
+    public void onlyNamedPipelinesAreRecorded() {
+        Observable.range(0, 10).map(i -> i * 2).subscribeOn(Schedulers.io()).blockingLast();
+        Flowable.range(0, 10).map(i -> i * 2).compose(PipelineTracer.named("flowable")).blockingLast();
+        Single.just(1).map(i -> i * 2).compose(PipelineTracer.named("single")).blockingGet();
+
+        assertEquals(2, PipelineTracer.getPipelines().size());
+        assertEquals(10, stage(PipelineTracer.getPipeline("flowable"), "Map").getItemCount());
+        assertEquals(1, stage(PipelineTracer.getPipeline("single"), "Map").getItemCount());
+    }
+
+    @Test
+    public void dumpsJson() throws Exception {
+        Observable.range(0, 10).map(i -> i * 2).compose(PipelineTracer.named("numbers")).blockingLast();
+        File file = folder.newFile("rx-trace.json");
+        PipelineTracer.dump(file);
+
+        JsonObject dump;
+        try (Reader reader = new FileReader(file)) {
+            dump = new JsonParser().parse(reader).getAsJsonObject();
+        }
+        assertEquals("main", dump.get("mainThread").getAsString());
+        JsonObject pipeline = dump.getAsJsonArray("pipelines").get(0).getAsJsonObject();
+        assertEquals("numbers", pipeline.get("name").getAsString());
+        JsonArray stages = pipeline.getAsJsonArray("stages");
+        assertEquals(3, stages.size());
+        JsonObject map = stages.get(1).getAsJsonObject();
+        assertEquals("Map", map.get("operator").getAsString());
+        assertEquals(10, map.get("items").getAsInt());
+        assertTrue(map.getAsJsonObject("latencyMillis").has("p99"));
+    }
+
+    @Test
+    public void uninstallPutsThePreviousHooksBack() {
+        RxJavaPlugins.reset();
+        PipelineTracer.uninstall();
+        boolean[] called = {false};
+        RxJavaPlugins.setOnObservableAssembly(source -> {
+            called[0] = true;
+            return source;
+        });
+        PipelineTracer.install(Thread.currentThread());
+        assertTrue(Observable.just(1).map(i -> i) instanceof TracedObservable);
+        assertTrue(called[0]);
+
+        PipelineTracer.uninstall();
+        assertFalse(Observable.just(1).map(i -> i) instanceof TracedObservable);
+        assertNull(RxJavaPlugins.getOnSingleAssembly());
+        assertNull(RxJavaPlugins.getScheduleHandler());
+        // Named pipelines are left as they are
+        Observable<Integer> numbers = Observable.just(1);
+        assertTrue(numbers.compose(PipelineTracer.named("off")) == numbers);
+    }
+
+    private static Single<Integer> price(int ticket) {
+        return Single.fromCallable(() -> {
+            TimeUnit.MILLISECONDS.sleep(PRICE_MILLIS);
+            return 3000 + ticket;
+        });
+    }
+
+    private static StageTrace stage(PipelineTrace trace, String operator) {
+        for (StageTrace stage : trace.getStages()) {
+            if (stage.getOperator().equals(operator)) {
+                return stage;
+            }
+        }
+        throw new AssertionError(operator + " not in " + trace.getStages());
+    }
+}
@@ -0,0 +1,117 @@
+package com.orchtech.assem.rxrecap.benchmarks;
+
+import com.orchtech.assem.rxrecap.math.MathFlowable;
+import com.orchtech.assem.rxrecap.math.MathObservable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+
+/**
+ * MathObservable and MathFlowable against the boxed reduce they replace, for the numbers of mathExample()
+ * The numbers are boxed once in setUp and are mostly outside the Integer cache, so what gc.alloc.rate.norm
+ * shows is what the aggregation itself allocates
+ * The rolling sum is compared to buffer(window, 1), the usual way to get sliding windows
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+public class AggregationBenchmark {
+    private static final int WINDOW = 16;
+
+    @Param({"1000", "100000"})
+    public int count;
+
+    private Observable<Integer> numbers;
+    private Flowable<Integer> flowableNumbers;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        Integer[] values = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = random.nextInt(1000000);
+        }
+        numbers = Observable.fromArray(values);
+        flowableNumbers = Flowable.fromArray(values);
+    }
+
+    @Benchmark
+    public Integer sumReduce() {
+        return numbers.reduce(0, (a, b) -> a + b).blockingGet();
+    }
+
+    @Benchmark
+    public Integer sumMath() {
+        return MathObservable.sumInt(numbers).blockingGet();
+    }
+
+    @Benchmark
+    public Integer flowableSumReduce() {
+        return flowableNumbers.reduce(0, (a, b) -> a + b).blockingGet();
+    }
+
+    @Benchmark
+    public Integer flowableSumMath() {
+        return MathFlowable.sumInt(flowableNumbers).blockingGet();
+    }
+
+    @Benchmark
+    public Integer maxReduce() {
+        return numbers.reduce(Math::max).blockingGet();
+    }
+
+    @Benchmark
+    public Integer maxMath() {
+        return MathObservable.maxInt(numbers).blockingGet();
+    }
+
+    @Benchmark
+    public Double averageReduce() {
+        // The boxed way to carry a sum and a count
+        List<Integer> all = numbers.toList().blockingGet();
+        long sum = 0;
+        for (Integer value : all) {
+            sum += value;
+        }
+        return (double) sum / all.size();
+    }
+
+    @Benchmark
+    public Double averageMath() {
+        return MathObservable.averageInt(numbers).blockingGet();
+    }
+
+    @Benchmark
+    public void rollingSumBuffer(Blackhole blackhole) {
+        numbers.buffer(WINDOW, 1)
+                .map(window -> {
+                    int sum = 0;
+                    for (Integer value : window) {
+                        sum += value;
+                    }
+                    return sum;
+                })
+                .subscribe(blackhole::consume);
+    }
+
+    @Benchmark
+    public void rollingSumMath(Blackhole blackhole) {
+        MathObservable.rollingSumInt(numbers, WINDOW).subscribe(blackhole::consume);
+    }
+}
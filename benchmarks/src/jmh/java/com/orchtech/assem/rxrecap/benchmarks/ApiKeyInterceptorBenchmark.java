@@ -0,0 +1,161 @@
+package com.orchtech.assem.rxrecap.benchmarks;
+
+import com.orchtech.assem.rxrecap.notes_app.network.ApiKeyInterceptor;
+import com.orchtech.assem.rxrecap.notes_app.network.ApiKeyProvider;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Adding the API key to a request: read from the preferences twice, the way NotesApiClient's lambda did,
+ * against ApiKeyInterceptor reading ApiKeyProvider's cached field
+ * The chain answers at once, so only the interceptor's own work is measured
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+public class ApiKeyInterceptorBenchmark {
+    private static final String API_KEY = "b9c8a4f5e7d6";
+
+    private Interceptor preferences;
+    private Interceptor cached;
+    private Interceptor.Chain chain;
+
+    @Setup
+    public void setUp() {
+        LockedPreferences stored = new LockedPreferences();
+        stored.put(API_KEY);
+        preferences = chain -> {
+            Request original = chain.request();
+            Request.Builder requestBuilder = original.newBuilder()
+                    .addHeader("Accept", "application/json")
+                    .addHeader("Content-Type", "application/json");
+            String key = stored.getApiKey();
+            if (key != null && !key.isEmpty()) {
+                requestBuilder.addHeader("Authorization", stored.getApiKey());
+            }
+            return chain.proceed(requestBuilder.build());
+        };
+        cached = new ApiKeyInterceptor(new ApiKeyProvider(API_KEY, key -> {
+        }));
+        chain = new AnsweringChain(new Request.Builder().url("http://localhost/notes/all").build());
+    }
+
+    @Benchmark
+    public Response preferences() throws IOException {
+        return preferences.intercept(chain);
+    }
+
+    @Benchmark
+    public Response cached() throws IOException {
+        return cached.intercept(chain);
+    }
+
+    /**
+     * SharedPreferences as ContextImpl hands them out, both steps take a lock on every read
+     */
+    private static class LockedPreferences {
+        private final Map<String, Map<String, String>> files = new HashMap<>();
+        private final Map<String, String> values = new HashMap<>();
+
+        LockedPreferences() {
+            files.put("notes_prefs", values);
+        }
+
+        synchronized void put(String apiKey) {
+            values.put("API_KEY", apiKey);
+        }
+
+        String getApiKey() {
+            Map<String, String> file;
+            synchronized (files) {
+                file = files.get("notes_prefs");
+            }
+            synchronized (this) {
+                return file.get("API_KEY");
+            }
+        }
+    }
+
+    private static class AnsweringChain implements Interceptor.Chain {
+        private final Request request;
+
+        AnsweringChain(Request request) {
+            this.request = request;
+        }
+
+        @Override
+        public Request request() {
+            return request;
+        }
+
+        @Override
+        public Response proceed(Request request) {
+            return new Response.Builder()
+                    .request(request)
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(200)
+                    .message("OK")
+                    .build();
+        }
+
+        @Override
+        public Connection connection() {
+            return null;
+        }
+
+        @Override
+        public Call call() {
+            return null;
+        }
+
+        @Override
+        public int connectTimeoutMillis() {
+            return 0;
+        }
+
+        @Override
+        public Interceptor.Chain withConnectTimeout(int timeout, TimeUnit unit) {
+            return this;
+        }
+
+        @Override
+        public int readTimeoutMillis() {
+            return 0;
+        }
+
+        @Override
+        public Interceptor.Chain withReadTimeout(int timeout, TimeUnit unit) {
+            return this;
+        }
+
+        @Override
+        public int writeTimeoutMillis() {
+            return 0;
+        }
+
+        @Override
+        public Interceptor.Chain withWriteTimeout(int timeout, TimeUnit unit) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.orchtech.assem.rxrecap.benchmarks;
+
+import com.orchtech.assem.rxrecap.basic_examples.User;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+
+/**
+ * range, filter and map from basicExample() and the email map from mapExample(), all on the caller's thread
+ * so only the operators are measured
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+public class BasicOperatorsBenchmark {
+    @Param({"20", "10000"})
+    public int count;
+
+    private Observable<String> evenNumbers;
+    private Observable<User> withEmails;
+
+    @Setup
+    public void setUp() {
+        evenNumbers = OperatorPipelines.evenNumbers(count);
+        withEmails = OperatorPipelines.withEmails(
+                OperatorPipelines.users(OperatorPipelines.MALE_NAMES, "male", count, null));
+    }
+
+    @Benchmark
+    public void rangeFilterMap(Blackhole blackhole) {
+        evenNumbers.subscribe(blackhole::consume);
+    }
+
+    @Benchmark
+    public void mapUsers(Blackhole blackhole) {
+        withEmails.subscribe(blackhole::consume);
+    }
+}
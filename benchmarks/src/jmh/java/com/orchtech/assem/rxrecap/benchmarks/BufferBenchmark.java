@@ -0,0 +1,44 @@
+package com.orchtech.assem.rxrecap.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+
+/**
+ * bufferExample() over a longer range, one list per bufferSize items
+ * Small buffers pay for a list and an emission every few items, large ones hold more items alive
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+public class BufferBenchmark {
+    private static final int COUNT = 10_000;
+
+    @Param({"1", "3", "16", "128", "1024"})
+    public int bufferSize;
+
+    private Observable<List<Integer>> pipeline;
+
+    @Setup
+    public void setUp() {
+        pipeline = OperatorPipelines.batches(COUNT, bufferSize);
+    }
+
+    @Benchmark
+    public void buffer(Blackhole blackhole) {
+        pipeline.subscribe(blackhole::consume);
+    }
+}
@@ -0,0 +1,55 @@
+package com.orchtech.assem.rxrecap.benchmarks;
+
+import com.orchtech.assem.rxrecap.basic_examples.User;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * flatMap vs concatMap vs concatMapEager for the user and address lookups of flatOrContactMapExample()
+ * Each operation is a whole run, users lookups on Schedulers.io() of latencyMicros each
+ * flatMap and concatMapEager run the lookups at once, concatMap one after the other, concatMapEager
+ * also keeps the order at the cost of buffering the users that come back early
+ * With a latency of 0 the result is the cost of the operator and the thread hops
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+public class EnrichmentBenchmark {
+    @Param({"FLAT_MAP", "CONCAT_MAP", "CONCAT_MAP_EAGER"})
+    public OperatorPipelines.Mapping mapping;
+
+    @Param({"4", "64"})
+    public int users;
+
+    @Param({"0", "200"})
+    public long latencyMicros;
+
+    private Observable<User> pipeline;
+
+    @Setup
+    public void setUp() {
+        pipeline = OperatorPipelines.withAddresses(
+                OperatorPipelines.users(OperatorPipelines.MALE_NAMES, "male", users, Schedulers.io()),
+                mapping, latencyMicros, Schedulers.io());
+    }
+
+    @Benchmark
+    public void enrichUsers(Blackhole blackhole) {
+        pipeline.blockingSubscribe(blackhole::consume);
+    }
+}
@@ -0,0 +1,60 @@
+package com.orchtech.assem.rxrecap.benchmarks;
+
+import com.orchtech.assem.rxrecap.basic_examples.User;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * mergeExample() with fanIn sources sharing TOTAL users, against concatExample() for the same users
+ * With async the sources run on Schedulers.io() like in the activity, so merge interleaves them and
+ * pays for the queues between the threads, without it every source runs on the caller's thread
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+public class MergeBenchmark {
+    private static final int TOTAL = 4096;
+
+    @Param({"2", "8", "64"})
+    public int fanIn;
+
+    @Param({"false", "true"})
+    public boolean async;
+
+    private Observable<User> merged;
+    private Observable<User> concatenated;
+
+    @Setup
+    public void setUp() {
+        merged = OperatorPipelines.merge(fanIn, TOTAL / fanIn, async ? Schedulers.io() : null);
+        concatenated = OperatorPipelines.concat(TOTAL / 2, async ? Schedulers.io() : null);
+    }
+
+    @Benchmark
+    public void merge(Blackhole blackhole) {
+        merged.blockingSubscribe(blackhole::consume);
+    }
+
+    /**
+     * Always two sources, fanIn does not change it
+     */
+    @Benchmark
+    public void concat(Blackhole blackhole) {
+        concatenated.blockingSubscribe(blackhole::consume);
+    }
+}
@@ -0,0 +1,75 @@
+package com.orchtech.assem.rxrecap.benchmarks;
+
+import com.orchtech.assem.rxrecap.network.NetworkScheduler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * A fan-out of blocking price lookups on Schedulers.io(), which starts a thread per lookup,
+ * against NetworkScheduler, which runs at most maxThreads of them and queues the rest
+ * The time is what the bound costs a burst, the gc profiler shows what the extra threads cost
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+public class NetworkSchedulerBenchmark {
+    @Param({"200"})
+    public int lookups;
+
+    @Param({"5"})
+    public long lookupMillis;
+
+    @Param({"8", "16", "64"})
+    public int maxThreads;
+
+    private NetworkScheduler network;
+
+    @Setup
+    public void setUp() {
+        network = new NetworkScheduler("bench-network", maxThreads, 1024, NetworkScheduler.SaturationPolicy.BLOCK);
+    }
+
+    @TearDown
+    public void tearDown() {
+        network.shutdown();
+    }
+
+    @Benchmark
+    public Integer io() {
+        return lookUpPrices(Schedulers.io());
+    }
+
+    @Benchmark
+    public Integer network() {
+        return lookUpPrices(network.getScheduler());
+    }
+
+    /**
+     * Lookups that block their thread, like a synchronous Retrofit call
+     */
+    private Integer lookUpPrices(Scheduler scheduler) {
+        return Observable.range(0, lookups)
+                .flatMap(i -> Single.fromCallable(() -> {
+                    Thread.sleep(lookupMillis);
+                    return i;
+                }).subscribeOn(scheduler).toObservable())
+                .blockingLast();
+    }
+}
@@ -0,0 +1,76 @@
+package com.orchtech.assem.rxrecap.benchmarks;
+
+import com.orchtech.assem.rxrecap.notes_app.data.InMemoryNoteStore;
+import com.orchtech.assem.rxrecap.notes_app.data.NoteSearchIndex;
+import com.orchtech.assem.rxrecap.notes_app.network.model.Note;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Searching the notes through NoteSearchIndex against testing every note with NoteSearchIndex.matches
+ * rebuild is the cost of the first search, when the index is built from the store, as after a reset
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+public class NoteSearchIndexBenchmark {
+    private static final String[] WORDS = {"groceries", "meeting", "call", "birthday", "recipe", "gym", "travel",
+            "invoice", "dentist", "book", "movie", "garden", "project", "budget", "holiday", "car", "doctor",
+            "school", "payment", "password", "gift", "party", "flight", "hotel", "report", "review", "idea"};
+
+    @Param({"100000"})
+    public int notes;
+
+    // From a single letter matching most notes to a query matching none
+    @Param({"g", "gro", "groceries", "gym gar", "12345", "nothing"})
+    public String query;
+
+    private InMemoryNoteStore store;
+    private NoteSearchIndex index;
+    private List<Note> all;
+
+    @Setup
+    public void setUp() {
+        store = new InMemoryNoteStore();
+        for (int id = 1; id <= notes; id++) {
+            store.upsert(new Note(id, "Note " + id + " about " + WORDS[id % WORDS.length] + " and "
+                    + WORDS[(id * 7 + 3) % WORDS.length], "2018-02-21 00:15:42"));
+        }
+        index = new NoteSearchIndex(store);
+        index.search(query);
+        all = store.loadAll();
+    }
+
+    @Benchmark
+    public int[] indexed() {
+        return index.search(query);
+    }
+
+    @Benchmark
+    public int scanned() {
+        int matching = 0;
+        for (Note note : all) {
+            if (NoteSearchIndex.matches(note, query)) {
+                matching++;
+            }
+        }
+        return matching;
+    }
+
+    @Benchmark
+    public int[] rebuild() {
+        return new NoteSearchIndex(store).search(query);
+    }
+}
@@ -0,0 +1,111 @@
+package com.orchtech.assem.rxrecap.benchmarks;
+
+import com.orchtech.assem.rxrecap.network.AsyncCallAdapterFactory;
+import com.orchtech.assem.rxrecap.notes_app.FakeNotesDispatcher;
+import com.orchtech.assem.rxrecap.notes_app.data.InMemoryNoteStore;
+import com.orchtech.assem.rxrecap.notes_app.data.MutationJournal;
+import com.orchtech.assem.rxrecap.notes_app.data.NotesRepository;
+import com.orchtech.assem.rxrecap.notes_app.network.NotesApiService;
+import com.orchtech.assem.rxrecap.notes_app.network.model.Note;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+/**
+ * Time from opening the notes until the first ones show, with sync() running against a local server
+ * With the notes already stored they come from the store, with an empty store they wait for the
+ * server's first page, which is answered after latencyMillis
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+public class NotesFirstShowBenchmark {
+    @Param({"true", "false"})
+    public boolean stored;
+
+    @Param({"10000"})
+    public int notes;
+
+    @Param({"50"})
+    public long latencyMillis;
+
+    private MockWebServer server;
+    private InMemoryNoteStore store;
+    private NotesRepository repository;
+    private List<Note> synced;
+    private long syncCursor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        FakeNotesDispatcher dispatcher = new FakeNotesDispatcher();
+        dispatcher.addNotes(notes);
+        server = new MockWebServer();
+        server.setDispatcher(dispatcher);
+        server.start();
+
+        NotesApiService apiService = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addCallAdapterFactory(AsyncCallAdapterFactory.create())
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(NotesApiService.class);
+        File journal = File.createTempFile("notes", ".journal");
+        journal.deleteOnExit();
+        store = new InMemoryNoteStore();
+        repository = new NotesRepository(apiService, store, MutationJournal.open(journal), Schedulers.io());
+
+        repository.sync().blockingAwait();
+        synced = store.loadAll();
+        syncCursor = store.getSyncCursor();
+        dispatcher.setLatencyMillis(latencyMillis);
+    }
+
+    // Every open starts from the same store, the previous sync filled an empty one
+    @Setup(Level.Invocation)
+    public void resetStore() {
+        if (stored) {
+            store.replaceAll(synced, syncCursor);
+        } else {
+            store.replaceAll(Collections.<Note>emptyList(), 0);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Benchmark
+    public List<Note> firstNotes() {
+        Disposable sync = repository.sync().onErrorComplete().subscribe();
+        try {
+            return repository.observeNotes()
+                    .filter(loaded -> !loaded.isEmpty())
+                    .blockingFirst();
+        } finally {
+            sync.dispose();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.orchtech.assem.rxrecap.benchmarks;
+
+import com.orchtech.assem.rxrecap.basic_examples.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+
+/**
+ * The pipelines of OperatorsExampleActivity without the Android parts
+ * observeOn(mainThread) and the logging are left out, the sources take the scheduler the activity
+ * hard-codes as Schedulers.io(), and the address lookup waits a fixed latency instead of a random
+ * 500 to 1500 ms so runs can be compared
+ */
+public final class OperatorPipelines {
+    static final String[] MALE_NAMES = {"Mark", "John", "Trump", "Obama"};
+    static final String[] FEMALE_NAMES = {"Lucy", "Scarlett", "April"};
+    private static final String[] ADDRESSES = {
+            "1600 Amphitheatre Parkway, Mountain View, CA 94043",
+            "2300 Traverwood Dr. Ann Arbor, MI 48105",
+            "500 W 2nd St Suite 2900 Austin, TX 78701",
+            "355 Main Street Cambridge, MA 02142"
+    };
+
+    // Public, the code JMH generates sets @Param fields of this type from another package
+    public enum Mapping {FLAT_MAP, CONCAT_MAP, CONCAT_MAP_EAGER}
+
+    private OperatorPipelines() {
+    }
+
+    /**
+     * basicExample(): the even numbers of range(1, count) as text
+     */
+    static Observable<String> evenNumbers(int count) {
+        return Observable.range(1, count)
+                .filter(integer -> integer % 2 == 0)
+                .map(integer -> integer + " is even number");
+    }
+
+    /**
+     * bufferExample(): range(1, count) in batches of bufferSize
+     */
+    static Observable<List<Integer>> batches(int count, int bufferSize) {
+        return Observable.range(1, count).buffer(bufferSize);
+    }
+
+    /**
+     * getMaleObservable() and getFemaleObservable(), count users named after names in turn
+     * A null scheduler emits on the subscribing thread
+     */
+    static Observable<User> users(String[] names, String gender, int count, Scheduler scheduler) {
+        final List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            User user = new User();
+            user.setName(names[i % names.length]);
+            user.setGender(gender);
+            users.add(user);
+        }
+        Observable<User> source = Observable.create(emitter -> {
+            for (User user : users) {
+                if (!emitter.isDisposed()) {
+                    emitter.onNext(user);
+                }
+            }
+            if (!emitter.isDisposed()) {
+                emitter.onComplete();
+            }
+        });
+        return scheduler == null ? source : source.subscribeOn(scheduler);
+    }
+
+    /**
+     * concatExample()
+     */
+    static Observable<User> concat(int count, Scheduler scheduler) {
+        return Observable.concat(users(MALE_NAMES, "male", count, scheduler),
+                users(FEMALE_NAMES, "female", count, scheduler));
+    }
+
+    /**
+     * mergeExample() with fanIn sources of count users each instead of two
+     */
+    static Observable<User> merge(int fanIn, int count, Scheduler scheduler) {
+        List<Observable<User>> sources = new ArrayList<>(fanIn);
+        for (int i = 0; i < fanIn; i++) {
+            sources.add(i % 2 == 0
+                    ? users(MALE_NAMES, "male", count, scheduler)
+                    : users(FEMALE_NAMES, "female", count, scheduler));
+        }
+        return Observable.merge(sources);
+    }
+
+    /**
+     * mapExample(): adds the email and upper cases the name
+     */
+    static Observable<User> withEmails(Observable<User> users) {
+        return users.map(user -> {
+            user.setEmail(String.format("%s@rxjava.wtf", user.getName()));
+            user.setName(user.getName().toUpperCase());
+            return user;
+        });
+    }
+
+    /**
+     * flatOrContactMapExample(): one address lookup per user, joined by mapping
+     */
+    static Observable<User> withAddresses(Observable<User> users, Mapping mapping, long latencyMicros,
+                                          Scheduler scheduler) {
+        switch (mapping) {
+            case CONCAT_MAP:
+                return users.concatMap(user -> address(user, latencyMicros, scheduler));
+            case CONCAT_MAP_EAGER:
+                return users.concatMapEager(user -> address(user, latencyMicros, scheduler));
+            default:
+                return users.flatMap(user -> address(user, latencyMicros, scheduler));
+        }
+    }
+
+    /**
+     * getAddressObservable(), the stand-in for a network call that blocks its thread for latencyMicros
+     */
+    static Observable<User> address(final User user, final long latencyMicros, Scheduler scheduler) {
+        Observable<User> lookup = Observable.create(emitter -> {
+            if (!emitter.isDisposed()) {
+                user.setAddress(ADDRESSES[(user.getName().length() + user.getGender().length()) % ADDRESSES.length]);
+                if (latencyMicros > 0) {
+                    LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(latencyMicros));
+                }
+                emitter.onNext(user);
+                emitter.onComplete();
+            }
+        });
+        return scheduler == null ? lookup : lookup.subscribeOn(scheduler);
+    }
+}
@@ -0,0 +1,89 @@
+package com.orchtech.assem.rxrecap.benchmarks;
+
+import com.orchtech.assem.rxrecap.notes_app.data.InMemoryNoteStore;
+import com.orchtech.assem.rxrecap.notes_app.data.MutationJournal;
+import com.orchtech.assem.rxrecap.notes_app.data.NotesRepository;
+import com.orchtech.assem.rxrecap.notes_app.network.model.Note;
+import com.orchtech.assem.rxrecap.notes_app.view.NoteRow;
+import com.orchtech.assem.rxrecap.notes_app.view.PagedNoteList;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * First page of PagedNoteList against loading and formatting the whole list, the way the adapter did before paging
+ * Everything runs on the calling thread, so the result is the work done rather than the thread hops
+ * firstPage is the id load, the sort and the rows of the visible page and its prefetch, wholeList is every row
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+public class PagedNoteListBenchmark {
+    private static final int[] DOT_COLORS = {0xffef5350, 0xffec407a, 0xffab47bc};
+
+    @Param({"10000", "100000"})
+    public int notes;
+
+    private InMemoryNoteStore store;
+    private NotesRepository repository;
+    private NoteRow.Formatter formatter;
+
+    @Setup
+    public void setUp() throws IOException {
+        store = new InMemoryNoteStore();
+        for (int id = 1; id <= notes; id++) {
+            // A few notes a day, like a long used account
+            store.upsert(new Note(id, "note " + id, String.format("2018-%02d-%02d 00:15:42", 1 + id / 28 % 12, 1 + id % 28)));
+        }
+        File journal = File.createTempFile("notes", ".journal");
+        journal.deleteOnExit();
+        repository = new NotesRepository(null, store, MutationJournal.open(journal), Schedulers.trampoline());
+        formatter = new NoteRow.Formatter(DOT_COLORS);
+    }
+
+    @Benchmark
+    public NoteRow firstPage() {
+        PagedNoteList list = new PagedNoteList(repository, formatter, Schedulers.trampoline(), Schedulers.trampoline(),
+                new PagedNoteList.Listener() {
+                    @Override
+                    public void onReset() {
+                    }
+
+                    @Override
+                    public void onInserted(int positionStart, int itemCount) {
+                    }
+
+                    @Override
+                    public void onRemoved(int positionStart, int itemCount) {
+                    }
+
+                    @Override
+                    public void onChanged(int positionStart, int itemCount) {
+                    }
+                });
+        list.connect();
+        NoteRow first = list.getRow(0);
+        list.dispose();
+        return first;
+    }
+
+    @Benchmark
+    public List<NoteRow> wholeList() {
+        return formatter.formatAll(store.loadAll());
+    }
+}
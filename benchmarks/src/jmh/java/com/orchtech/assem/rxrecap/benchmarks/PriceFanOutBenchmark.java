@@ -0,0 +1,105 @@
+package com.orchtech.assem.rxrecap.benchmarks;
+
+import com.jakewharton.retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
+import com.orchtech.assem.rxrecap.fligh_app.FakeFlightsDispatcher;
+import com.orchtech.assem.rxrecap.fligh_app.network.FlightsApiService;
+import com.orchtech.assem.rxrecap.network.AsyncCallAdapterFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit2.CallAdapter;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+/**
+ * A fan-out of price lookups to one host, every one subscribed to at once
+ * execute() runs each call on its own io thread, no dispatcher limit applies
+ * enqueue() hands them to OkHttp's Dispatcher, which runs maxRequestsPerHost of them and queues the rest
+ * The latency is the server's, so the limit sets how many round trips the fan-out takes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+public class PriceFanOutBenchmark {
+    @Param({"500"})
+    public int lookups;
+
+    @Param({"50"})
+    public long latencyMillis;
+
+    @Param({"16", "64", "128"})
+    public int maxRequestsPerHost;
+
+    private MockWebServer server;
+    private FlightsApiService executing;
+    private FlightsApiService enqueuing;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        FakeFlightsDispatcher dispatcher = new FakeFlightsDispatcher(10);
+        dispatcher.setLatencyMillis(latencyMillis);
+        server = new MockWebServer();
+        server.setDispatcher(dispatcher);
+        server.start();
+
+        Dispatcher calls = new Dispatcher();
+        calls.setMaxRequests(Math.max(maxRequestsPerHost, 64));
+        calls.setMaxRequestsPerHost(maxRequestsPerHost);
+        OkHttpClient client = new OkHttpClient.Builder().dispatcher(calls).build();
+        executing = service(client, RxJava2CallAdapterFactory.create());
+        enqueuing = service(client, AsyncCallAdapterFactory.create());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Benchmark
+    public Long execute() {
+        return Observable.range(0, lookups)
+                .flatMap(i -> executing.getPrice(FakeFlightsDispatcher.flightNumber(i % 10), "BLR", "DEL")
+                        .subscribeOn(Schedulers.io())
+                        .toObservable())
+                .count()
+                .blockingGet();
+    }
+
+    @Benchmark
+    public Long enqueue() {
+        return Observable.range(0, lookups)
+                .flatMap(i -> enqueuing.getPrice(FakeFlightsDispatcher.flightNumber(i % 10), "BLR", "DEL")
+                        .toObservable())
+                .count()
+                .blockingGet();
+    }
+
+    private FlightsApiService service(OkHttpClient client, CallAdapter.Factory callAdapterFactory) {
+        return new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .client(client)
+                .addCallAdapterFactory(callAdapterFactory)
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(FlightsApiService.class);
+    }
+}
@@ -0,0 +1,143 @@
+package com.orchtech.assem.rxrecap.benchmarks;
+
+import com.orchtech.assem.rxrecap.fligh_app.FakeFlightsDispatcher;
+import com.orchtech.assem.rxrecap.fligh_app.network.FlightsApiService;
+import com.orchtech.assem.rxrecap.network.AsyncCallAdapterFactory;
+import com.orchtech.assem.rxrecap.network.CircuitBreaker;
+import com.orchtech.assem.rxrecap.network.CircuitOpenException;
+import com.orchtech.assem.rxrecap.network.FaultInjectingDispatcher;
+import com.orchtech.assem.rxrecap.network.Resilience;
+import com.orchtech.assem.rxrecap.network.ResilientCallAdapterFactory;
+import com.orchtech.assem.rxrecap.network.RetryBudget;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+/**
+ * A burst of price lookups against a server failing a share of its requests, with and without Resilience
+ * Lookups arrive at a steady rate whatever happened to the last ones, like a scrolling list asking for prices
+ * The counters add up over the measured bursts: lookups that succeeded, failed, failed fast on an open breaker,
+ * and the requests that reached the server, retries included
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+// A burst takes CALLS * ARRIVAL_MILLIS, longer than an iteration, so every iteration is one burst
+@Warmup(iterations = 1, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class ResilienceBenchmark {
+    private static final int CALLS = 400;
+    private static final long ARRIVAL_MILLIS = 5;
+    private static final long OPEN_MILLIS = 200;
+
+    @Param({"0.5", "1.0"})
+    public double failureRate;
+
+    @Param({"false", "true"})
+    public boolean resilient;
+
+    private MockWebServer server;
+    private FaultInjectingDispatcher faults;
+    private FlightsApiService apiService;
+
+    @Setup(Level.Trial)
+    public void startServer() throws IOException {
+        faults = new FaultInjectingDispatcher(new FakeFlightsDispatcher(10), failureRate, 42);
+        server = new MockWebServer();
+        server.setDispatcher(faults);
+        server.start();
+    }
+
+    /**
+     * A fresh breaker and budget per burst, so every burst starts from a closed breaker
+     */
+    @Setup(Level.Iteration)
+    public void createService() {
+        Retrofit.Builder retrofit = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(GsonConverterFactory.create());
+        if (resilient) {
+            retrofit.addCallAdapterFactory(ResilientCallAdapterFactory.create(new Resilience(3, 1, 8,
+                    new RetryBudget(),
+                    endpoint -> new CircuitBreaker(endpoint, 20, 20, 0.8, OPEN_MILLIS, 5, Schedulers.computation()),
+                    Schedulers.computation())));
+        }
+        apiService = retrofit
+                .addCallAdapterFactory(AsyncCallAdapterFactory.create())
+                .build()
+                .create(FlightsApiService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws IOException {
+        server.shutdown();
+    }
+
+    @Benchmark
+    public void lookUpPrices(Outcome outcome) {
+        int requestsBefore = faults.requests.get();
+        Observable.interval(ARRIVAL_MILLIS, TimeUnit.MILLISECONDS, Schedulers.computation())
+                .take(CALLS)
+                .flatMap(i -> apiService.getPrice(FakeFlightsDispatcher.flightNumber((int) (i % 10)), "DEL", "HYD")
+                        .map(price -> Outcome.SUCCEEDED)
+                        .onErrorReturn(error -> error instanceof CircuitOpenException
+                                ? Outcome.FAILED_FAST : Outcome.FAILED)
+                        .subscribeOn(Schedulers.io())
+                        .toObservable())
+                .blockingForEach(outcome::count);
+        outcome.serverRequests += faults.requests.get() - requestsBefore;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcome {
+        static final int SUCCEEDED = 0;
+        static final int FAILED = 1;
+        static final int FAILED_FAST = 2;
+
+        public long succeeded;
+        public long failed;
+        public long failedFast;
+        public long serverRequests;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            succeeded = 0;
+            failed = 0;
+            failedFast = 0;
+            serverRequests = 0;
+        }
+
+        void count(int result) {
+            if (result == SUCCEEDED) {
+                succeeded++;
+            } else if (result == FAILED_FAST) {
+                failedFast++;
+            } else {
+                failed++;
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.orchtech.assem.rxrecap.benchmarks;
+
+import com.orchtech.assem.rxrecap.notes_app.data.NoteOrder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorting note ids as an int[] against sorting them boxed with the comparator, the way the list was sorted before
+ * Ids are a mix of server ids and local (negative) ids, both benchmarks copy the unsorted ids first
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+public class SortedNoteIdsBenchmark {
+    @Param({"10000", "100000"})
+    public int notes;
+
+    private int[] unsorted;
+    private List<Integer> unsortedBoxed;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        unsorted = new int[notes];
+        unsortedBoxed = new ArrayList<>(notes);
+        for (int i = 0; i < notes; i++) {
+            unsorted[i] = random.nextBoolean() ? random.nextInt(Integer.MAX_VALUE) + 1 : -random.nextInt(1000) - 1;
+            unsortedBoxed.add(unsorted[i]);
+        }
+    }
+
+    @Benchmark
+    public int[] primitive() {
+        int[] sorted = unsorted.clone();
+        NoteOrder.sortIds(sorted);
+        return sorted;
+    }
+
+    @Benchmark
+    public List<Integer> boxedWithComparator() {
+        List<Integer> sorted = new ArrayList<>(unsortedBoxed);
+        Collections.sort(sorted, NoteOrder::compareIds);
+        return sorted;
+    }
+}